@@ -9,10 +9,12 @@ import javax.measure.unit.NonSI;
 import javax.measure.unit.SI;
 
 import repast.simphony.context.Context;
+import repast.simphony.context.DefaultContext;
 import repast.simphony.dataLoader.ContextBuilder;
 import repast.simphony.engine.environment.RunEnvironment;
 import repast.simphony.engine.schedule.ISchedulableAction;
 import repast.simphony.engine.schedule.ISchedule;
+import repast.simphony.engine.schedule.Schedule;
 import repast.simphony.engine.schedule.ScheduleParameters;
 import repast.simphony.essentials.RepastEssentials;
 import repast.simphony.space.gis.Geography;
@@ -34,6 +36,7 @@ import mets_r.data.input.TravelDemand;
 import mets_r.data.output.*;
 import mets_r.facility.*;
 import mets_r.mobility.*;
+import mets_r.routing.RouteContext;
 
 /**
  * This is the class with the main function which includes:
@@ -183,6 +186,22 @@ public class ContextCreator implements ContextBuilder<Object> {
 		if (tscheduler != null) {
 			status.put("threadedScheduler", tscheduler.getStatus());
 		}
+		LinkedHashMap<String, Object> routeCache = RouteContext.getRouteCacheStatus();
+		if (routeCache != null) {
+			status.put("routeCache", routeCache);
+		}
+		LinkedHashMap<String, Object> routingStage = RouteContext.getRoutingStageStatus();
+		if (routingStage != null) {
+			status.put("routingStage", routingStage);
+		}
+		LinkedHashMap<String, Object> skim = RouteContext.getSkimStatus();
+		if (skim != null) {
+			status.put("skim", skim);
+		}
+		LinkedHashMap<String, Object> routingEngine = RouteContext.getRoutingEngineStatus();
+		if (routingEngine != null) {
+			status.put("routingEngine", routingEngine);
+		}
 		if (GlobalVariables.ENABLE_SCHEDULER_PROFILING) {
 			LinkedHashMap<String, Object> scheduledNanos = new LinkedHashMap<String, Object>();
 			scheduledNanos.put("roadNetworkRefresh", roadNetworkRefreshNanos);
@@ -386,6 +405,7 @@ public class ContextCreator implements ContextBuilder<Object> {
 	public void refreshRoadNetwork() {
 		long start = GlobalVariables.ENABLE_SCHEDULER_PROFILING ? System.nanoTime() : 0L;
 		cityContext.modifyRoadNetwork();
+		RouteContext.refreshSkim(tscheduler == null ? null : tscheduler.getRoutingPool());
 		if (GlobalVariables.ENABLE_SCHEDULER_PROFILING) {
 			roadNetworkRefreshNanos += System.nanoTime() - start;
 			roadNetworkRefreshCount++;
@@ -395,6 +415,7 @@ public class ContextCreator implements ContextBuilder<Object> {
 	public void refreshFreeFlowSpeeds() {
 		long start = GlobalVariables.ENABLE_SCHEDULER_PROFILING ? System.nanoTime() : 0L;
 		cityContext.updateBackgroundSpeeds();
+		RouteContext.refreshSkim(tscheduler == null ? null : tscheduler.getRoutingPool());
 		if (GlobalVariables.ENABLE_SCHEDULER_PROFILING) {
 			freeFlowRefreshNanos += System.nanoTime() - start;
 			freeFlowRefreshCount++;
@@ -454,11 +475,17 @@ public class ContextCreator implements ContextBuilder<Object> {
 		ScheduleParameters part1Params = ScheduleParameters.createRepeating(initTick + 1, 1, 0.3);
 		ScheduleParameters part2Params = ScheduleParameters.createRepeating(initTick + 1, 1, 0.2);
 		ScheduleParameters transferParams = ScheduleParameters.createRepeating(initTick + 1, 1, 0.1);
-		for (Road r : getRoadContext().getAll()) {
-			scheduledActions.add(schedule.schedule(part1Params, r, "stepPart1"));
-		}
-		for (Road r : getRoadContext().getAll()) {
-			scheduledActions.add(schedule.schedule(part2Params, r, "stepPart2"));
+		if (GlobalVariables.BATCHED_SEQUENTIAL_ROAD_STEP) {
+			// One action per phase walks all roads, including roads added at runtime
+			scheduledActions.add(schedule.schedule(part1Params, getRoadContext(), "stepRoadsPart1"));
+			scheduledActions.add(schedule.schedule(part2Params, getRoadContext(), "stepRoadsPart2"));
+		} else {
+			for (Road r : getRoadContext().getAll()) {
+				scheduledActions.add(schedule.schedule(part1Params, r, "stepPart1"));
+			}
+			for (Road r : getRoadContext().getAll()) {
+				scheduledActions.add(schedule.schedule(part2Params, r, "stepPart2"));
+			}
 		}
 		scheduledActions.add(schedule.schedule(transferParams,
 				ContextCreator.getVehicleContext(), "executeGlobalTransfers"));
@@ -473,13 +500,14 @@ public class ContextCreator implements ContextBuilder<Object> {
 	/**
 	 * Schedule recurring road actions for a road created at runtime.
 	 *
-	 * In single-threaded mode road movement is scheduled per road, so the new road
-	 * needs stepPart1 and stepPart2 actions. In multi-threaded mode movement is
-	 * driven by ThreadedScheduler partitions. Free-flow speed refresh is batched
-	 * for all roads in CityContext.
+	 * In single-threaded mode without batched stepping road movement is scheduled
+	 * per road, so the new road needs stepPart1 and stepPart2 actions. The batched
+	 * sequential step and the multi-threaded ThreadedScheduler partitions pick the
+	 * road up from RoadContext. Free-flow speed refresh is batched for all roads in
+	 * CityContext.
 	 */
 	public static void scheduleNewRoad(Road r) {
-		if (!GlobalVariables.MULTI_THREADING) {
+		if (!GlobalVariables.MULTI_THREADING && !GlobalVariables.BATCHED_SEQUENTIAL_ROAD_STEP) {
 			ISchedule schedule = RunEnvironment.getInstance().getCurrentSchedule();
 			ScheduleParameters part1Params = ScheduleParameters.createRepeating(
 					getCurrentTick() + 1, 1, 0.3);
@@ -669,6 +697,27 @@ public class ContextCreator implements ContextBuilder<Object> {
 		freeFlowRefreshCount = 0L;
 	}
 
+	/**
+	 * Build the configured scenario outside a Repast run: the facilities and
+	 * agents as in build, on a schedule of its own with no events scheduled.
+	 * Used by the main-method checks that drive the model classes.
+	 */
+	public static void buildStandalone() {
+		RunEnvironment.init(new Schedule(), null, null, true);
+		mainContext = new DefaultContext<Object>("MainContext");
+		buildSubContexts();
+	}
+
+	/**
+	 * Schedule the simulation events of a standalone build, as build does, and
+	 * return its schedule; each execute() on it runs one tick.
+	 */
+	public static ISchedule scheduleStandalone() {
+		scheduleOwner = new ContextCreator();
+		scheduleEvents();
+		return RunEnvironment.getInstance().getCurrentSchedule();
+	}
+
 	// The main function
 	public Context<Object> build(Context<Object> context) {
 		start_time = System.currentTimeMillis(); // Record the start time of the simulation
@@ -865,8 +914,8 @@ public class ContextCreator implements ContextBuilder<Object> {
 		initTick = (int) Math.max(RepastEssentials.GetTickCount(), 0);
 
 		GlobalVariables.RandomGenerator = new java.util.Random(GlobalVariables.RANDOM_SEED);
-		BusSchedule.rand_route_only = new Random(GlobalVariables.RandomGenerator.nextInt());
-		BSMDataStream.setRandom(new Random(GlobalVariables.RandomGenerator.nextInt()));
+		BusSchedule.rand_route_only = newRandom(BusSchedule.ROUTE_STREAM, 0);
+		BSMDataStream.setRandom(newRandom(BSMDataStream.NOISE_STREAM, 0));
 		BusSchedule.route_num = 0;
 
 		recreateAggregateLogger();
@@ -940,8 +989,8 @@ public class ContextCreator implements ContextBuilder<Object> {
 		
 		agentID = 0;
 		GlobalVariables.RandomGenerator = new java.util.Random(GlobalVariables.RANDOM_SEED);
-		BusSchedule.rand_route_only = new Random(GlobalVariables.RandomGenerator.nextInt());
-		BSMDataStream.RANDOM = new Random(GlobalVariables.RandomGenerator.nextInt()); 
+		BusSchedule.rand_route_only = newRandom(BusSchedule.ROUTE_STREAM, 0);
+		BSMDataStream.setRandom(newRandom(BSMDataStream.NOISE_STREAM, 0));
 		BusSchedule.route_num = 0;
 		
 		recreateAggregateLogger();
@@ -1049,7 +1098,7 @@ public class ContextCreator implements ContextBuilder<Object> {
 		recreateAggregateLogger();
 		background_traffic = new BackgroundTraffic();
 		travel_demand = new TravelDemand();
-		BusSchedule.rand_route_only = new Random(GlobalVariables.RandomGenerator.nextInt());
+		BusSchedule.rand_route_only = newRandom(BusSchedule.ROUTE_STREAM, 0);
 		BusSchedule.route_num = 0;
 		bus_schedule = new BusSchedule();
 		for (Zone z : getZoneContext().getAll()) {
@@ -1127,7 +1176,7 @@ public class ContextCreator implements ContextBuilder<Object> {
 		recreateAggregateLogger();
 		background_traffic = new BackgroundTraffic();
 		travel_demand = new TravelDemand();
-		BusSchedule.rand_route_only = new Random(GlobalVariables.RandomGenerator.nextInt());
+		BusSchedule.rand_route_only = newRandom(BusSchedule.ROUTE_STREAM, 0);
 		BusSchedule.route_num = 0;
 		bus_schedule = new BusSchedule();
 		partitioner = new MetisPartition(GlobalVariables.N_Partition);
@@ -1157,6 +1206,7 @@ public class ContextCreator implements ContextBuilder<Object> {
 		
 		// Initialize operational parameters
 		cityContext.modifyRoadNetwork();
+		RouteContext.refreshSkim(tscheduler == null ? null : tscheduler.getRoutingPool());
 		
 		if (GlobalVariables.MULTI_THREADING) {
 			try {
@@ -1247,6 +1297,34 @@ public class ContextCreator implements ContextBuilder<Object> {
 		return ContextCreator.agentID++;
 	}
 
+	/** Seed of an entity's private random stream derived from RANDOM_SEED and its ID (SplitMix64). */
+	public static long entityRandomSeed(int entityID) {
+		return mixSeed(((long) GlobalVariables.RANDOM_SEED << 32) + entityID * 0x9E3779B97F4A7C15L);
+	}
+
+	/**
+	 * Seed of a named random stream of an entity, for streams other than the
+	 * vehicle streams: the name keeps equal IDs of different kinds apart.
+	 */
+	public static long entityRandomSeed(String stream, int entityID) {
+		return mixSeed(entityRandomSeed(entityID) + stream.hashCode() * 0xD1B54A32D192ED03L);
+	}
+
+	/**
+	 * Random stream of a shared entity: seeded from the stream name and ID in
+	 * deterministic mode, otherwise drawn from the shared generator as before.
+	 */
+	public static Random newRandom(String stream, int entityID) {
+		return GlobalVariables.DETERMINISTIC_PARALLEL ? new Random(entityRandomSeed(stream, entityID))
+				: new Random(GlobalVariables.RandomGenerator.nextInt());
+	}
+
+	private static long mixSeed(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
 	public static double convertToMeters(double dist) {
 		double distInMeters = NonSI.NAUTICAL_MILE.getConverterTo(SI.METER).convert(dist * 60);
 		return distInMeters;
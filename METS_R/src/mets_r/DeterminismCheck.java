@@ -0,0 +1,127 @@
+package mets_r;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import repast.simphony.engine.schedule.ISchedule;
+
+import mets_r.facility.Road;
+import mets_r.mobility.ElectricVehicle;
+import mets_r.mobility.Vehicle;
+
+/**
+ * Checks that DETERMINISTIC_PARALLEL makes a multi-threaded run independent of
+ * N_THREADS. The configured scenario is run with the same seed and partition
+ * count once per thread count, each in its own JVM (the thread pools and the
+ * random streams are static), built and stepped without a Repast run. Each run
+ * prints the state of every vehicle on the roads after the last tick (road,
+ * lane, position, speed, acceleration and battery), and the outputs must be
+ * identical. Exits with status 1 on any difference.
+ *
+ * Usage: DeterminismCheck [ticks] [threadCounts, e.g. 1,2,4]
+ */
+public class DeterminismCheck {
+	private static final String RUN = "--run";
+	private static final String STATE = "V ";
+
+	public static void main(String[] args) throws Exception {
+		if (args.length > 0 && RUN.equals(args[0])) {
+			run(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+			return;
+		}
+		int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 600;
+		String[] threadCounts = (args.length > 1 ? args[1] : "1,2,4").split(",");
+
+		List<String> reference = null;
+		String referenceThreads = null;
+		boolean failed = false;
+		for (String threads : threadCounts) {
+			long start = System.nanoTime();
+			List<String> state = runChild(threads.trim(), ticks);
+			System.out.println(String.format("threads=%s ticks=%d vehicles=%d ms=%.0f", threads.trim(), ticks,
+					state.size(), (System.nanoTime() - start) / 1e6));
+			if (reference == null) {
+				reference = state;
+				referenceThreads = threads.trim();
+				continue;
+			}
+			int diff = firstDifference(reference, state);
+			if (diff >= 0) {
+				failed = true;
+				System.out.println("FAIL: threads=" + threads.trim() + " differs from threads=" + referenceThreads
+						+ " at line " + diff);
+				System.out.println("  " + referenceThreads + ": " + (diff < reference.size() ? reference.get(diff) : "<none>"));
+				System.out.println("  " + threads.trim() + ": " + (diff < state.size() ? state.get(diff) : "<none>"));
+			}
+		}
+		if (!failed) System.out.println("OK: the vehicle states are identical across thread counts");
+		System.exit(failed ? 1 : 0);
+	}
+
+	// Run one thread count in a child JVM on the same class path and working directory
+	private static List<String> runChild(String threads, int ticks) throws Exception {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+				DeterminismCheck.class.getName(), RUN, threads, Integer.toString(ticks));
+		builder.redirectErrorStream(true);
+		Process process = builder.start();
+		List<String> state = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith(STATE)) state.add(line);
+			}
+		} finally {
+			reader.close();
+		}
+		int status = process.waitFor();
+		if (status != 0) throw new IllegalStateException("Run with threads=" + threads + " exited with " + status);
+		return state;
+	}
+
+	private static int firstDifference(List<String> a, List<String> b) {
+		int n = Math.min(a.size(), b.size());
+		for (int i = 0; i < n; i++) {
+			if (!a.get(i).equals(b.get(i))) return i;
+		}
+		return a.size() == b.size() ? -1 : n;
+	}
+
+	// Child: configure before ContextCreator is loaded, since it creates the scheduler statically
+	private static void run(int threads, int ticks) {
+		GlobalVariables.STANDALONE = true;
+		GlobalVariables.SYNCHRONIZED = false;
+		GlobalVariables.MULTI_THREADING = true;
+		GlobalVariables.DETERMINISTIC_PARALLEL = true;
+		GlobalVariables.N_THREADS = threads;
+
+		ContextCreator.buildStandalone();
+		ISchedule schedule = ContextCreator.scheduleStandalone();
+		for (int t = 0; t < ticks; t++) schedule.execute();
+
+		ArrayList<Road> roads = new ArrayList<Road>(ContextCreator.getRoadContext().getAll());
+		Collections.sort(roads, new Comparator<Road>() {
+			@Override
+			public int compare(Road a, Road b) {
+				return Integer.compare(a.getID(), b.getID());
+			}
+		});
+		for (Road road : roads) {
+			for (Vehicle v = road.firstVehicle(); v != null; v = v.macroTrailing()) {
+				System.out.println(String.format(Locale.ROOT, "%s%d %d %d %.9f %.9f %.9f %s", STATE, v.getID(),
+						road.getID(), v.getLane() == null ? -1 : v.getLane().getID(), v.getDistanceToNextJunction(),
+						v.currentSpeed(), v.currentAcc(), v instanceof ElectricVehicle
+								? String.format(Locale.ROOT, "%.9f", ((ElectricVehicle) v).getBatteryLevel()) : "-"));
+			}
+		}
+		System.out.flush();
+		System.exit(0);
+	}
+}
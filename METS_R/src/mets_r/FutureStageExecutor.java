@@ -0,0 +1,58 @@
+package mets_r;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Default backend: each stage submits its tasks to a pool and waits on the futures. */
+final class FutureStageExecutor implements StageExecutor {
+	private final ExecutorService executor;
+	private Future<?>[] futures = new Future<?>[0];
+
+	FutureStageExecutor(int nThreads) {
+		this.executor = Executors.newFixedThreadPool(Math.max(1, nThreads));
+	}
+
+	public synchronized void runStage(Runnable[] tasks, int count) throws Exception {
+		if (this.futures.length < count) this.futures = new Future<?>[count];
+		int submitted = 0;
+		Exception failure = null;
+		boolean interrupted = false;
+		try {
+			try {
+				for (; submitted < count; submitted++) {
+					this.futures[submitted] = this.executor.submit(tasks[submitted]);
+				}
+			} catch (RuntimeException ex) {
+				failure = ex;
+			}
+			for (int i = 0; i < submitted; i++) {
+				boolean complete = false;
+				while (!complete) {
+					try {
+						this.futures[i].get();
+						complete = true;
+					} catch (InterruptedException ex) {
+						interrupted = true;
+						if (failure == null) failure = ex;
+					} catch (Exception ex) {
+						if (failure == null) failure = ex;
+						complete = true;
+					}
+				}
+			}
+		} finally {
+			for (int i = 0; i < submitted; i++) this.futures[i] = null;
+			if (interrupted) Thread.currentThread().interrupt();
+		}
+		if (failure != null) throw failure;
+	}
+
+	public String getName() {
+		return "executor";
+	}
+
+	public void shutdown() {
+		this.executor.shutdown();
+	}
+}
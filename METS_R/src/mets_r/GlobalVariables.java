@@ -67,6 +67,11 @@ public class GlobalVariables {
 		return value == null || value.trim().isEmpty()
 				? defaultValue : Integer.valueOf(value.trim());
 	}
+
+	private static String loadStringConfig(String property, String defaultValue) {
+		String value = loadConfig(property);
+		return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+	}
 	
 	// Whether the simulation is ran in the synchronized mode
 	public static boolean SYNCHRONIZED = Boolean.valueOf(loadConfig("SYNCHRONIZED"));
@@ -234,6 +239,22 @@ public class GlobalVariables {
 
 	/* Operation Options */
 	public static boolean K_SHORTEST_PATH = Boolean.valueOf(loadConfig("K_SHORTEST_PATH"));
+	// Shortest paths kept per (origin road, destination road) until the routing weights
+	// change, evicting the least recently used beyond this many (0 = no cache)
+	public static int ROUTE_CACHE_SIZE = loadIntConfig("ROUTE_CACHE_SIZE", 0);
+	// Routing engine: JGRAPHT (the JGraphT object graph), DIJKSTRA (bidirectional, on the primitive
+	// road graph) or CCH (customizable contraction hierarchy for single shortest paths, re-customized
+	// after each routing weight change). DIJKSTRA and CCH are opt-in: they return paths of the same
+	// weight as JGraphT but may pick a different one among equal-weight ties.
+	public static String ROUTING_ENGINE = loadStringConfig("ROUTING_ENGINE", "JGRAPHT").toUpperCase();
+	// Compute the routes of the tick's departures in a parallel stage before the road step,
+	// deduplicated by departure and destination road, instead of inline in the departure pass.
+	// Only departures are batched: reroutes when a vehicle changes road still search inline,
+	// and the stage's routes are dropped after the departure pass (skipped with K_SHORTEST_PATH)
+	public static boolean BATCHED_ROUTING_STAGE = loadBooleanConfig("BATCHED_ROUTING_STAGE", false);
+	// Recompute a zone-to-zone travel time and distance matrix after each routing weight refresh,
+	// read by the mode choice instead of a point-to-point search per request (ignored with K_SHORTEST_PATH)
+	public static boolean SKIM_MATRIX = loadBooleanConfig("SKIM_MATRIX", false);
 	public static boolean PROACTIVE_RELOCATION = Boolean.valueOf(loadConfig("PROACTIVE_RELOCATION"));
 
 	// Vehicle charging
@@ -248,9 +269,49 @@ public class GlobalVariables {
 	
 	/* Network Partitioning */
 	public static boolean MULTI_THREADING = Boolean.valueOf(loadConfig("MULTI_THREADING"));
+	// Single-thread mode: step all roads from one scheduled action per phase instead
+	// of scheduling stepPart1/stepPart2 on every road. Opt-in: it steps the roads in
+	// road context order rather than the schedule's order, which changes single-thread results.
+	public static boolean BATCHED_SEQUENTIAL_ROAD_STEP = loadBooleanConfig("BATCHED_SEQUENTIAL_ROAD_STEP", false);
 	public static boolean ACTIVE_ROAD_STEPPING = Boolean.valueOf(loadConfig("ACTIVE_ROAD_STEPPING"));
 	public static boolean ENABLE_INTERSECTION_SWEPT_COLLISION_CHECK =
 			loadBooleanConfig("ENABLE_INTERSECTION_SWEPT_COLLISION_CHECK", true);
+	// Multi-thread mode only: run road.part1/road.part2 on a fork/join pool whose
+	// stealable chunks are sized from measured per-road step time.
+	public static boolean ROAD_STEP_WORK_STEALING = loadBooleanConfig("ROAD_STEP_WORK_STEALING", false);
+	// Target number of road chunks per worker thread in work-stealing mode
+	public static int ROAD_STEP_CHUNKS_PER_THREAD = loadIntConfig("ROAD_STEP_CHUNKS_PER_THREAD", 8);
+	// Multi-thread mode only: keep long-lived workers that move through the stages of
+	// each tick on a phase barrier instead of submitting futures per stage.
+	public static boolean PERSISTENT_STAGE_WORKERS = loadBooleanConfig("PERSISTENT_STAGE_WORKERS", false);
+	// Multi-thread mode only: commit global transfers that stay within one road
+	// partition in parallel; conflicting or cross-partition ones stay serial.
+	public static boolean PARTITIONED_GLOBAL_TRANSFERS = loadBooleanConfig("PARTITIONED_GLOBAL_TRANSFERS", false);
+	// Multi-thread mode only: plan each zone's passenger generation in parallel
+	// before the ordered zone.part1 pass replays it.
+	public static boolean PARALLEL_ZONE_PART1 = loadBooleanConfig("PARALLEL_ZONE_PART1", false);
+	// Multi-thread mode: make outputs independent of N_THREADS and worker timing. Vehicle
+	// random streams are seeded from their IDs, the BSM noise, generated trip zones and
+	// query routes from their own named streams, and snapshot records and energy totals
+	// are merged in ID order. Checked by DeterminismCheck.
+	public static boolean DETERMINISTIC_PARALLEL = loadBooleanConfig("DETERMINISTIC_PARALLEL", false);
+	// Road partitioner: GREEDY balances step load only, LOCALITY also minimizes the
+	// number of junction movements cut between partitions (multilevel edge cut).
+	public static String ROAD_PARTITION_MODE = loadStringConfig("ROAD_PARTITION_MODE", "GREEDY").toUpperCase();
+	// Allowed load imbalance of the LOCALITY partitioner, in percent above the mean
+	public static int ROAD_PARTITION_IMBALANCE = loadIntConfig("ROAD_PARTITION_IMBALANCE", 10);
+	// Multi-thread mode only: choose the number of workers of each stage per tick from
+	// its item count and measured cost instead of always fanning out to N_Partition.
+	public static boolean ADAPTIVE_STAGE_WIDTH = loadBooleanConfig("ADAPTIVE_STAGE_WIDTH", false);
+	// Adaptive mode: stages estimated below this many nanoseconds run on the calling thread
+	public static int ADAPTIVE_INLINE_THRESHOLD_NANOS = loadIntConfig("ADAPTIVE_INLINE_THRESHOLD_NANOS", 100000);
+	// Adaptive mode: estimated work each extra worker must receive to be worth its hand-off
+	public static int ADAPTIVE_TASK_NANOS = loadIntConfig("ADAPTIVE_TASK_NANOS", 50000);
+	// Multi-thread mode only: roads whose step load weight exceeds this value split their
+	// acceleration decisions into position-range sub-tasks (0 disables the split)
+	public static int INTRA_ROAD_PARALLEL_WEIGHT = loadIntConfig("INTRA_ROAD_PARALLEL_WEIGHT", 0);
+	// Intra-road split: minimum number of vehicles per sub-task
+	public static int INTRA_ROAD_CHUNK_VEHICLES = loadIntConfig("INTRA_ROAD_CHUNK_VEHICLES", 64);
 	// Load the number of partitions from the config file
 	public static int N_Partition = Integer.valueOf(loadConfig("N_PARTITION"));
 	public static int N_THREADS = Integer.valueOf(loadConfig("N_THREADS"));
@@ -327,6 +388,28 @@ public class GlobalVariables {
 	// For car following and lane changing model selection
 	public static String CAR_FOLLOWING_MODEL = loadConfig("CAR_FOLLOWING_MODEL").trim().toUpperCase();
 	public static String LANE_CHANGING_MODEL = loadConfig("LANE_CHANGING_MODEL").trim().toUpperCase();
+	// Keep per-lane arrays of vehicle position, speed, acceleration and length, synced
+	// after the transfers, and run the acceleration pass lane by lane over them
+	public static boolean KINEMATIC_STORE = loadBooleanConfig("KINEMATIC_STORE", false);
+	// Road fidelity: MICRO runs car-following and lane changing per vehicle, MESO holds
+	// vehicles in a link queue for the link travel time (Road.stepMesoscopicQueue)
+	public static String ROAD_FIDELITY_DEFAULT = loadStringConfig("ROAD_FIDELITY_DEFAULT", "MICRO").toUpperCase();
+	// Comma-separated original road IDs that use the other fidelity, e.g. a study corridor
+	public static String ROAD_FIDELITY_EXCEPTIONS = loadStringConfig("ROAD_FIDELITY_EXCEPTIONS", "");
+	// Decision action step: each vehicle re-evaluates lane changing and acceleration every
+	// this many ticks on a staggered phase, holding its acceleration in between (1 = every tick)
+	public static int DECISION_INTERVAL_TICKS = loadIntConfig("DECISION_INTERVAL_TICKS", 1);
+	// Find the leader and follower on an adjacent lane by binary search over the lane's
+	// position-sorted kinematic store instead of walking the road's vehicle list
+	public static boolean LANE_POSITION_INDEX = loadBooleanConfig("LANE_POSITION_INDEX", false);
+	// Free-flow fast path: an isolated vehicle (no leader, junction or mandatory lane change
+	// within sight) skips lane changing and takes the free-road acceleration of its model
+	public static boolean FREE_FLOW_FAST_PATH = loadBooleanConfig("FREE_FLOW_FAST_PATH", false);
+	// Sight distance (m) of the fast path, added to the vehicle's comfortable braking distance
+	public static int FREE_FLOW_SIGHT_DISTANCE = loadIntConfig("FREE_FLOW_SIGHT_DISTANCE", 150);
+	// Compute the tick energy of all EVs moved by a road worker in one batch over primitive
+	// arrays after the movement (EnergyBatch) instead of per vehicle inside the movement loop
+	public static boolean BATCHED_ENERGY_STAGE = loadBooleanConfig("BATCHED_ENERGY_STAGE", false);
 
 	// For the Herman car following model
 	public static float ALPHA_DEC = Float.valueOf(loadConfig("ALPHA_DEC"));
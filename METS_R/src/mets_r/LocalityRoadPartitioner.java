@@ -0,0 +1,339 @@
+package mets_r;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+
+import mets_r.facility.Road;
+
+/**
+ * Multilevel edge-cut partitioner over the road graph, in the spirit of METIS.
+ * Roads are vertices weighted by {@link Road#getStepLoadWeight()} and every
+ * junction movement (road to downstream road) is an edge. The graph is
+ * coarsened by heavy-edge matching, the coarsest graph is split by region
+ * growing, and each level is refined with greedy boundary moves under a load
+ * balance constraint.
+ *
+ * Later refreshes on the same road set keep the previous assignment and only
+ * rerun the boundary refinement with the new weights, so partitions move
+ * gradually instead of being rebuilt.
+ */
+class LocalityRoadPartitioner {
+	private static final int COARSEN_VERTICES_PER_PARTITION = 30;
+	private static final int REFINE_PASSES = 4;
+
+	private final int nPartition;
+	private final double imbalance;
+
+	// Finest level graph in CSR form, rebuilt only when the road set changes
+	private Road[] roads = new Road[0];
+	private HashMap<Integer, Integer> roadIndex = new HashMap<Integer, Integer>();
+	private int[] xadj = new int[1];
+	private int[] adjncy = new int[0];
+	private int[] adjwgt = new int[0];
+	private int[] owner = new int[0];
+
+	private long edgeCut;
+	private double loadImbalance;
+	private int fullRuns;
+	private int incrementalRuns;
+
+	LocalityRoadPartitioner(int nPartition, double imbalance) {
+		this.nPartition = Math.max(1, nPartition);
+		this.imbalance = Math.max(0.0, imbalance);
+	}
+
+	/**
+	 * Assign every road to a partition. The result lists roads of each partition
+	 * in road-ID order.
+	 */
+	ArrayList<ArrayList<Road>> partition(Collection<Road> allRoads) {
+		ArrayList<Road> sorted = new ArrayList<Road>();
+		for (Road road : allRoads) {
+			if (road != null) sorted.add(road);
+		}
+		sorted.sort((a, b) -> Integer.compare(a.getID(), b.getID()));
+
+		long[] vwgt = new long[sorted.size()];
+		for (int i = 0; i < vwgt.length; i++) vwgt[i] = Math.max(1, sorted.get(i).getStepLoadWeight());
+
+		if (sameRoadSet(sorted)) {
+			refine(this.xadj, this.adjncy, this.adjwgt, vwgt, this.owner);
+			this.incrementalRuns++;
+		} else {
+			buildGraph(sorted);
+			this.owner = multilevelPartition(this.xadj, this.adjncy, this.adjwgt, vwgt);
+			this.fullRuns++;
+		}
+		updateQuality(vwgt);
+
+		ArrayList<ArrayList<Road>> partitions = new ArrayList<ArrayList<Road>>(this.nPartition);
+		for (int p = 0; p < this.nPartition; p++) partitions.add(new ArrayList<Road>());
+		for (int i = 0; i < this.roads.length; i++) {
+			partitions.get(this.owner[i]).add(this.roads[i]);
+		}
+		return partitions;
+	}
+
+	/** Partition of a road in the last assignment, or -1 for roads not seen yet. */
+	int getOwner(Road road) {
+		Integer idx = road == null ? null : this.roadIndex.get(road.getID());
+		return idx == null ? -1 : this.owner[idx];
+	}
+
+	long getEdgeCut() {
+		return this.edgeCut;
+	}
+
+	double getLoadImbalance() {
+		return this.loadImbalance;
+	}
+
+	int getFullRuns() {
+		return this.fullRuns;
+	}
+
+	int getIncrementalRuns() {
+		return this.incrementalRuns;
+	}
+
+	private boolean sameRoadSet(ArrayList<Road> sorted) {
+		if (sorted.size() != this.roads.length) return false;
+		for (int i = 0; i < this.roads.length; i++) {
+			if (this.roads[i] != sorted.get(i)) return false;
+		}
+		return true;
+	}
+
+	private void buildGraph(ArrayList<Road> sorted) {
+		int n = sorted.size();
+		this.roads = sorted.toArray(new Road[n]);
+		this.roadIndex = new HashMap<Integer, Integer>(n * 2);
+		for (int i = 0; i < n; i++) this.roadIndex.put(this.roads[i].getID(), i);
+
+		// Undirected adjacency; a movement in both directions counts twice
+		ArrayList<HashMap<Integer, Integer>> neighbours = new ArrayList<HashMap<Integer, Integer>>(n);
+		for (int i = 0; i < n; i++) neighbours.add(new HashMap<Integer, Integer>());
+		for (int i = 0; i < n; i++) {
+			for (int downID : this.roads[i].getDownStreamRoads()) {
+				Integer j = this.roadIndex.get(downID);
+				if (j == null || j == i) continue;
+				neighbours.get(i).merge(j, 1, Integer::sum);
+				neighbours.get(j).merge(i, 1, Integer::sum);
+			}
+		}
+		this.xadj = new int[n + 1];
+		for (int i = 0; i < n; i++) this.xadj[i + 1] = this.xadj[i] + neighbours.get(i).size();
+		this.adjncy = new int[this.xadj[n]];
+		this.adjwgt = new int[this.xadj[n]];
+		for (int i = 0; i < n; i++) {
+			int[] keys = new int[neighbours.get(i).size()];
+			int k = 0;
+			for (int j : neighbours.get(i).keySet()) keys[k++] = j;
+			Arrays.sort(keys);
+			int e = this.xadj[i];
+			for (int j : keys) {
+				this.adjncy[e] = j;
+				this.adjwgt[e] = neighbours.get(i).get(j);
+				e++;
+			}
+		}
+	}
+
+	private int[] multilevelPartition(int[] xadj, int[] adjncy, int[] adjwgt, long[] vwgt) {
+		int n = vwgt.length;
+		if (n == 0) return new int[0];
+		if (n <= COARSEN_VERTICES_PER_PARTITION * this.nPartition || this.nPartition == 1) {
+			int[] part = growRegions(xadj, adjncy, vwgt);
+			refine(xadj, adjncy, adjwgt, vwgt, part);
+			return part;
+		}
+
+		// Coarsen by heavy-edge matching
+		long total = 0L;
+		for (long w : vwgt) total += w;
+		long maxVertexWeight = Math.max(1L, total / (4L * this.nPartition));
+		int[] match = new int[n];
+		Arrays.fill(match, -1);
+		int[] cmap = new int[n];
+		int cn = 0;
+		for (int u = 0; u < n; u++) {
+			if (match[u] >= 0) continue;
+			int best = u;
+			int bestWeight = -1;
+			for (int e = xadj[u]; e < xadj[u + 1]; e++) {
+				int v = adjncy[e];
+				if (match[v] >= 0 || vwgt[u] + vwgt[v] > maxVertexWeight) continue;
+				if (adjwgt[e] > bestWeight) {
+					best = v;
+					bestWeight = adjwgt[e];
+				}
+			}
+			match[u] = best;
+			match[best] = u;
+			cmap[u] = cn;
+			cmap[best] = cn;
+			cn++;
+		}
+		if (cn > 0.9 * n) {
+			// Matching stalled (e.g. mostly isolated roads); partition this level directly
+			int[] part = growRegions(xadj, adjncy, vwgt);
+			refine(xadj, adjncy, adjwgt, vwgt, part);
+			return part;
+		}
+
+		long[] cvwgt = new long[cn];
+		for (int u = 0; u < n; u++) cvwgt[cmap[u]] += vwgt[u];
+		int[] cxadj = new int[cn + 1];
+		int[] marker = new int[cn];
+		Arrays.fill(marker, -1);
+		int[] cadjncyTmp = new int[adjncy.length];
+		int[] cadjwgtTmp = new int[adjncy.length];
+		int ce = 0;
+		int c = 0;
+		for (int u = 0; u < n; u++) {
+			if (u != match[u] && u > match[u]) continue;
+			int start = ce;
+			int[] members = u == match[u] ? new int[] { u } : new int[] { u, match[u] };
+			for (int m : members) {
+				for (int e = xadj[m]; e < xadj[m + 1]; e++) {
+					int cv = cmap[adjncy[e]];
+					if (cv == c) continue;
+					if (marker[cv] >= start) {
+						cadjwgtTmp[marker[cv]] += adjwgt[e];
+					} else {
+						marker[cv] = ce;
+						cadjncyTmp[ce] = cv;
+						cadjwgtTmp[ce] = adjwgt[e];
+						ce++;
+					}
+				}
+			}
+			c++;
+			cxadj[c] = ce;
+		}
+		int[] cpart = multilevelPartition(cxadj, Arrays.copyOf(cadjncyTmp, ce), Arrays.copyOf(cadjwgtTmp, ce), cvwgt);
+
+		// Project back and refine at this level
+		int[] part = new int[n];
+		for (int u = 0; u < n; u++) part[u] = cpart[cmap[u]];
+		refine(xadj, adjncy, adjwgt, vwgt, part);
+		return part;
+	}
+
+	/** Split by breadth-first region growing so each part is a connected patch where possible. */
+	private int[] growRegions(int[] xadj, int[] adjncy, long[] vwgt) {
+		int n = vwgt.length;
+		int[] part = new int[n];
+		Arrays.fill(part, -1);
+		long total = 0L;
+		for (long w : vwgt) total += w;
+		long target = Math.max(1L, (total + this.nPartition - 1) / this.nPartition);
+		int[] queue = new int[n];
+		int head = 0;
+		int tail = 0;
+		int current = 0;
+		long load = 0L;
+		int nextSeed = 0;
+		int assigned = 0;
+		while (assigned < n) {
+			if (head == tail) {
+				while (part[nextSeed] >= 0) nextSeed++;
+				queue[tail++] = nextSeed;
+				part[nextSeed] = -2;
+			}
+			int u = queue[head++];
+			if (load >= target && current < this.nPartition - 1) {
+				current++;
+				load = 0L;
+			}
+			part[u] = current;
+			load += vwgt[u];
+			assigned++;
+			for (int e = xadj[u]; e < xadj[u + 1]; e++) {
+				int v = adjncy[e];
+				if (part[v] == -1) {
+					part[v] = -2;
+					queue[tail++] = v;
+				}
+			}
+		}
+		return part;
+	}
+
+	/**
+	 * Greedy k-way boundary refinement. A vertex moves to the neighbouring
+	 * partition with the largest cut reduction if the target stays within the
+	 * balance limit; overloaded partitions also shed boundary vertices at the
+	 * smallest cut increase.
+	 */
+	private void refine(int[] xadj, int[] adjncy, int[] adjwgt, long[] vwgt, int[] part) {
+		int n = vwgt.length;
+		if (n == 0 || this.nPartition == 1) return;
+		long[] loads = new long[this.nPartition];
+		long total = 0L;
+		for (int u = 0; u < n; u++) {
+			loads[part[u]] += vwgt[u];
+			total += vwgt[u];
+		}
+		long maxLoad = (long) Math.ceil((1.0 + this.imbalance) * total / this.nPartition);
+		long[] conn = new long[this.nPartition];
+		for (int pass = 0; pass < REFINE_PASSES; pass++) {
+			int moves = 0;
+			for (int u = 0; u < n; u++) {
+				int from = part[u];
+				boolean boundary = false;
+				for (int e = xadj[u]; e < xadj[u + 1]; e++) {
+					int p = part[adjncy[e]];
+					conn[p] += adjwgt[e];
+					if (p != from) boundary = true;
+				}
+				boolean overloaded = loads[from] > maxLoad;
+				if (boundary || overloaded) {
+					int best = -1;
+					long bestGain = Long.MIN_VALUE;
+					for (int p = 0; p < this.nPartition; p++) {
+						if (p == from || loads[p] + vwgt[u] > maxLoad) continue;
+						if (!overloaded && conn[p] == 0) continue;
+						long gain = conn[p] - conn[from];
+						boolean better = gain > bestGain || (gain == bestGain && best >= 0 && loads[p] < loads[best]);
+						if (better) {
+							best = p;
+							bestGain = gain;
+						}
+					}
+					boolean move = best >= 0 && (bestGain > 0
+							|| (bestGain == 0 && loads[best] + vwgt[u] < loads[from])
+							|| overloaded);
+					if (move) {
+						part[u] = best;
+						loads[from] -= vwgt[u];
+						loads[best] += vwgt[u];
+						moves++;
+					}
+				}
+				for (int e = xadj[u]; e < xadj[u + 1]; e++) conn[part[adjncy[e]]] = 0L;
+				conn[from] = 0L;
+			}
+			if (moves == 0) break;
+		}
+	}
+
+	private void updateQuality(long[] vwgt) {
+		long cut = 0L;
+		long[] loads = new long[this.nPartition];
+		long total = 0L;
+		for (int u = 0; u < vwgt.length; u++) {
+			loads[this.owner[u]] += vwgt[u];
+			total += vwgt[u];
+			for (int e = this.xadj[u]; e < this.xadj[u + 1]; e++) {
+				if (this.owner[this.adjncy[e]] != this.owner[u]) cut += this.adjwgt[e];
+			}
+		}
+		this.edgeCut = cut / 2;
+		long max = 0L;
+		for (long load : loads) max = Math.max(max, load);
+		this.loadImbalance = total == 0L ? 1.0 : max / ((double) total / this.nPartition);
+	}
+}
@@ -2,6 +2,8 @@ package mets_r;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import mets_r.facility.ChargingStation;
 import mets_r.facility.Road;
@@ -15,7 +17,10 @@ import mets_r.facility.Zone;
  * The original implementation used the bundled Galois/METIS graph partitioner.
  * Road stepping now benefits more from dynamic load balancing than from static
  * graph locality, so this class keeps the old public API while assigning work
- * with weighted greedy partitioning.
+ * with weighted greedy partitioning. ROAD_PARTITION_MODE = LOCALITY selects a
+ * multilevel edge-cut partitioner instead (see {@link LocalityRoadPartitioner}),
+ * which keeps adjacent roads on the same worker; road-to-road transfers are
+ * counted as local or cross-partition in both modes so the two can be compared.
  */
 public class MetisPartition {
 	private final int nPartition;
@@ -30,9 +35,18 @@ public class MetisPartition {
 	private final long[] activePartitionLoads;
 	private long lastActiveRoadVersion = Long.MIN_VALUE;
 	private int lastActiveRoadRebalanceTick = Integer.MIN_VALUE;
+	private final LocalityRoadPartitioner localityPartitioner;
+	private ArrayList<ArrayList<Road>> localityPartitions;
+	private int localityRunTick = Integer.MIN_VALUE;
+	private int localityRunRoadSetVersion = Integer.MIN_VALUE;
+	private final LongAdder localTransfers = new LongAdder();
+	private final LongAdder crossTransfers = new LongAdder();
 
 	public MetisPartition(int nparts) {
 		this.nPartition = Math.max(1, nparts);
+		this.localityPartitioner = "LOCALITY".equals(GlobalVariables.ROAD_PARTITION_MODE)
+				? new LocalityRoadPartitioner(this.nPartition, GlobalVariables.ROAD_PARTITION_IMBALANCE / 100.0)
+				: null;
 		this.initializeEmptyPartitions();
 		this.activeRoadPartitions = newRoadPartitions();
 		this.activeRoadLoads = new ArrayList<RoadStepLoad>();
@@ -60,6 +74,15 @@ public class MetisPartition {
 		}
 		this.activeRoadLoads.clear();
 		java.util.Arrays.fill(this.activePartitionLoads, 0L);
+		if (this.localityPartitioner != null) {
+			if (periodicRebalance && roadContext != null) {
+				this.runLocalityPartitioner(roadContext, currentTick);
+			}
+			assignActiveRoadsByLocality(roadContext);
+			this.lastActiveRoadVersion = activeVersion;
+			if (periodicRebalance) this.lastActiveRoadRebalanceTick = currentTick;
+			return this.activeRoadPartitions;
+		}
 		if (roadContext != null) {
 			for (Road road : roadContext.getActiveRoadsSnapshot()) {
 				if (road != null) {
@@ -75,12 +98,84 @@ public class MetisPartition {
 			int partition = lightestPartition(this.activePartitionLoads);
 			this.activeRoadPartitions.get(partition).add(roadLoad.road);
 			this.activePartitionLoads[partition] += roadLoad.weight;
+			roadLoad.road.setPartitionOwner(partition);
 		}
 		this.lastActiveRoadVersion = activeVersion;
 		this.lastActiveRoadRebalanceTick = currentTick;
 		return this.activeRoadPartitions;
 	}
 
+	/**
+	 * Locality assignment of all roads. The periodic refresh and the active-road
+	 * rebalance can both ask for it in the same tick; the partitioner only runs
+	 * again when the tick or the road set changed.
+	 */
+	private synchronized ArrayList<ArrayList<Road>> runLocalityPartitioner(RoadContext roadContext, int tick) {
+		int roadSetVersion = roadContext.getRoadSetVersion();
+		if (this.localityPartitions == null || tick != this.localityRunTick
+				|| roadSetVersion != this.localityRunRoadSetVersion) {
+			this.localityPartitions = this.localityPartitioner.partition(roadContext.getAll());
+			this.localityRunTick = tick;
+			this.localityRunRoadSetVersion = roadSetVersion;
+		}
+		return this.localityPartitions;
+	}
+
+	/**
+	 * Place active roads on the partition owning them in the locality assignment.
+	 * Roads created after the last partitioner run go to the lightest partition
+	 * until the next refresh.
+	 */
+	private void assignActiveRoadsByLocality(RoadContext roadContext) {
+		if (roadContext == null) return;
+		ArrayList<Road> unowned = new ArrayList<Road>();
+		for (Road road : roadContext.getActiveRoadsSnapshot()) {
+			if (road == null) continue;
+			int partition = this.localityPartitioner.getOwner(road);
+			if (partition < 0) {
+				unowned.add(road);
+				continue;
+			}
+			this.activeRoadPartitions.get(partition).add(road);
+			this.activePartitionLoads[partition] += road.getStepLoadWeight();
+			road.setPartitionOwner(partition);
+		}
+		for (Road road : unowned) {
+			int partition = lightestPartition(this.activePartitionLoads);
+			this.activeRoadPartitions.get(partition).add(road);
+			this.activePartitionLoads[partition] += road.getStepLoadWeight();
+			road.setPartitionOwner(partition);
+		}
+	}
+
+	/** Count a committed road-to-road transfer as local or cross-partition. */
+	public void recordRoadTransfer(Road from, Road to) {
+		if (from == null || to == null || from == to) return;
+		int fromPartition = from.getPartitionOwner();
+		if (fromPartition >= 0 && fromPartition == to.getPartitionOwner()) {
+			this.localTransfers.increment();
+		} else {
+			this.crossTransfers.increment();
+		}
+	}
+
+	public LinkedHashMap<String, Object> getStatus() {
+		LinkedHashMap<String, Object> status = new LinkedHashMap<String, Object>();
+		status.put("mode", this.localityPartitioner != null ? "LOCALITY" : "GREEDY");
+		long local = this.localTransfers.sum();
+		long cross = this.crossTransfers.sum();
+		status.put("localTransfers", local);
+		status.put("crossPartitionTransfers", cross);
+		status.put("crossPartitionFraction", local + cross == 0L ? 0.0 : cross / (double) (local + cross));
+		if (this.localityPartitioner != null) {
+			status.put("edgeCut", this.localityPartitioner.getEdgeCut());
+			status.put("loadImbalance", this.localityPartitioner.getLoadImbalance());
+			status.put("fullRuns", this.localityPartitioner.getFullRuns());
+			status.put("incrementalRuns", this.localityPartitioner.getIncrementalRuns());
+		}
+		return status;
+	}
+
 	public ArrayList<Road> getPartitionedBwRoads() {
 		return this.partitionedBwRoads;
 	}
@@ -176,7 +271,15 @@ public class MetisPartition {
 	}
 
 	public void run() {
-		this.partitionedInRoads = partitionRoadsByCurrentLoad(ContextCreator.getRoadContext().getAll());
+		if (this.localityPartitioner != null) {
+			this.partitionedInRoads = this.runLocalityPartitioner(ContextCreator.getRoadContext(),
+					ContextCreator.getCurrentTick());
+			for (int i = 0; i < this.partitionedInRoads.size(); i++) {
+				for (Road road : this.partitionedInRoads.get(i)) road.setPartitionOwner(i);
+			}
+		} else {
+			this.partitionedInRoads = partitionRoadsByCurrentLoad(ContextCreator.getRoadContext().getAll());
+		}
 		this.partitionedBwRoads = new ArrayList<Road>();
 	}
 
@@ -229,6 +332,7 @@ public class MetisPartition {
 			int partition = lightestPartition(loads);
 			partitions.get(partition).add(roadLoad.road);
 			loads[partition] += roadLoad.weight;
+			roadLoad.road.setPartitionOwner(partition);
 		}
 		return partitions;
 	}
@@ -0,0 +1,94 @@
+package mets_r;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Persistent-worker backend. A fixed set of long-lived workers stays attached to
+ * one Phaser and moves through every stage of every tick with the caller: one
+ * barrier releases the stage, the tasks are claimed from a shared counter, and a
+ * second barrier waits for completion. Nothing is allocated or queued per stage.
+ * Phaser waiters spin briefly before parking, so short stages are handed over
+ * without a park/unpark round trip.
+ *
+ * The calling thread takes part in the stage, so nThreads - 1 workers are
+ * started to keep the same parallelism as the executor backend.
+ */
+final class PhaseBarrierStageExecutor implements StageExecutor {
+	private final Phaser phaser;
+	private final Thread[] workers;
+	private final AtomicInteger nextTask = new AtomicInteger();
+	private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+	private volatile Runnable[] stageTasks;
+	private volatile int stageCount;
+	private volatile boolean stopped;
+
+	PhaseBarrierStageExecutor(int nThreads) {
+		int nWorkers = Math.max(0, nThreads - 1);
+		this.phaser = new Phaser(nWorkers + 1);
+		this.workers = new Thread[nWorkers];
+		for (int i = 0; i < nWorkers; i++) {
+			Thread worker = new Thread(new Runnable() {
+				public void run() {
+					workerLoop();
+				}
+			}, "mets-r-stage-worker-" + i);
+			worker.setDaemon(true);
+			this.workers[i] = worker;
+			worker.start();
+		}
+	}
+
+	public synchronized void runStage(Runnable[] tasks, int count) throws Exception {
+		if (count <= 0) return;
+		if (this.stopped) throw new IllegalStateException("Stage executor already shut down");
+		this.stageTasks = tasks;
+		this.stageCount = count;
+		this.nextTask.set(0);
+		this.failure.set(null);
+		this.phaser.arriveAndAwaitAdvance();
+		drain();
+		this.phaser.arriveAndAwaitAdvance();
+		this.stageTasks = null;
+		Throwable ex = this.failure.getAndSet(null);
+		if (ex instanceof Exception) throw (Exception) ex;
+		if (ex != null) throw new ExecutionException(ex);
+	}
+
+	private void workerLoop() {
+		while (true) {
+			this.phaser.arriveAndAwaitAdvance();
+			if (this.stopped) {
+				this.phaser.arriveAndDeregister();
+				return;
+			}
+			drain();
+			this.phaser.arriveAndAwaitAdvance();
+		}
+	}
+
+	private void drain() {
+		Runnable[] tasks = this.stageTasks;
+		int count = this.stageCount;
+		int i;
+		while ((i = this.nextTask.getAndIncrement()) < count) {
+			try {
+				tasks[i].run();
+			} catch (Throwable ex) {
+				this.failure.compareAndSet(null, ex);
+			}
+		}
+	}
+
+	public String getName() {
+		return "phaseBarrier";
+	}
+
+	public synchronized void shutdown() {
+		if (this.stopped) return;
+		this.stopped = true;
+		this.phaser.arriveAndDeregister();
+	}
+}
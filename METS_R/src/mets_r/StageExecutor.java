@@ -0,0 +1,14 @@
+package mets_r;
+
+/**
+ * Runs one scheduler stage: every task in the array is executed once and the
+ * call returns only after all of them finished. The first task failure is
+ * rethrown after the barrier.
+ */
+interface StageExecutor {
+	void runStage(Runnable[] tasks, int count) throws Exception;
+
+	String getName();
+
+	void shutdown();
+}
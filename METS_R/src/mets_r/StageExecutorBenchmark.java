@@ -0,0 +1,66 @@
+package mets_r;
+
+/**
+ * Compares ticks per second of the executor and phase-barrier stage backends.
+ * A synthetic tick runs the same number of stages as a multi-threaded simulation
+ * tick (road.part1, road.part2, intersections, zones, charging, signals), each
+ * with one task per partition. Task work is kept small so that the measurement
+ * reflects the stage handoff cost, which dominates with small active sets.
+ *
+ * Usage: StageExecutorBenchmark [ticks] [workPerTask] [maxThreads]
+ */
+public class StageExecutorBenchmark {
+	private static final int STAGES_PER_TICK = 6;
+	private static volatile long sink;
+
+	public static void main(String[] args) throws Exception {
+		int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		int work = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+		System.out.println(String.format("ticks=%d stagesPerTick=%d workPerTask=%d cores=%d", ticks,
+				STAGES_PER_TICK, work, Runtime.getRuntime().availableProcessors()));
+		System.out.println(String.format("%8s %16s %16s %8s", "threads", "executor t/s", "phaseBarrier t/s", "speedup"));
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			double executorRate = measure(new FutureStageExecutor(threads), threads, ticks, work);
+			double barrierRate = measure(new PhaseBarrierStageExecutor(threads), threads, ticks, work);
+			System.out.println(String.format("%8d %16.1f %16.1f %8.2f", threads, executorRate, barrierRate,
+					barrierRate / executorRate));
+		}
+	}
+
+	private static double measure(StageExecutor backend, int nPartitions, int ticks, int work) throws Exception {
+		Runnable[] tasks = new Runnable[nPartitions];
+		for (int i = 0; i < nPartitions; i++) {
+			final int seed = i + 1;
+			final int iterations = work;
+			tasks[i] = new Runnable() {
+				public void run() {
+					long x = seed;
+					for (int k = 0; k < iterations; k++) {
+						x ^= x << 13;
+						x ^= x >>> 7;
+						x ^= x << 17;
+					}
+					sink += x;
+				}
+			};
+		}
+		try {
+			runTicks(backend, tasks, Math.max(1, ticks / 5));
+			long start = System.nanoTime();
+			runTicks(backend, tasks, ticks);
+			long nanos = System.nanoTime() - start;
+			return ticks / (nanos / 1e9);
+		} finally {
+			backend.shutdown();
+		}
+	}
+
+	private static void runTicks(StageExecutor backend, Runnable[] tasks, int ticks) throws Exception {
+		for (int t = 0; t < ticks; t++) {
+			for (int s = 0; s < STAGES_PER_TICK; s++) {
+				backend.runStage(tasks, tasks.length);
+			}
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package mets_r;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Fixed-bucket latency histogram of one scheduler stage. Bucket k counts
+ * durations in [2^(k-1), 2^k) nanoseconds, so recording is a leading-zero count
+ * and an increment, and percentiles are reported as bucket upper bounds (within
+ * a factor of two). The histogram also tracks the partition skew of the stage,
+ * the slowest partition's busy time over the mean partition busy time.
+ *
+ * Stages are recorded by the scheduling thread and read by the status query,
+ * so access is synchronized; the lock is uncontended on the recording path.
+ */
+final class StageLatencyHistogram {
+	private static final int BUCKETS = 40;
+	private static final double[] PERCENTILES = { 0.5, 0.9, 0.99, 0.999 };
+	private static final String[] PERCENTILE_KEYS = { "p50Nanos", "p90Nanos", "p99Nanos", "p999Nanos" };
+
+	private final long[] counts = new long[BUCKETS];
+	private long count;
+	private long totalNanos;
+	private long maxNanos;
+	private long lastNanos;
+	private long skewCount;
+	private double skewTotal;
+	private double maxSkew;
+	private double lastSkew;
+
+	synchronized void record(long nanos) {
+		long value = Math.max(0L, nanos);
+		this.counts[bucket(value)]++;
+		this.count++;
+		this.totalNanos += value;
+		this.lastNanos = value;
+		if (value > this.maxNanos) this.maxNanos = value;
+	}
+
+	/** Record partition skew from the busy time of each partition task of one stage run. */
+	synchronized void recordSkew(long[] busyNanos, int partitions) {
+		if (partitions <= 0) return;
+		long max = 0L;
+		long total = 0L;
+		for (int i = 0; i < partitions; i++) {
+			total += busyNanos[i];
+			if (busyNanos[i] > max) max = busyNanos[i];
+		}
+		if (total <= 0L) return;
+		double skew = max / ((double) total / partitions);
+		this.skewCount++;
+		this.skewTotal += skew;
+		this.lastSkew = skew;
+		if (skew > this.maxSkew) this.maxSkew = skew;
+	}
+
+	synchronized void reset() {
+		java.util.Arrays.fill(this.counts, 0L);
+		this.count = 0L;
+		this.totalNanos = 0L;
+		this.maxNanos = 0L;
+		this.lastNanos = 0L;
+		this.skewCount = 0L;
+		this.skewTotal = 0.0;
+		this.maxSkew = 0.0;
+		this.lastSkew = 0.0;
+	}
+
+	synchronized LinkedHashMap<String, Object> getStatus() {
+		LinkedHashMap<String, Object> status = new LinkedHashMap<String, Object>();
+		status.put("count", this.count);
+		status.put("lastNanos", this.lastNanos);
+		status.put("meanNanos", this.count == 0L ? 0L : this.totalNanos / this.count);
+		status.put("maxNanos", this.maxNanos);
+		for (int p = 0; p < PERCENTILES.length; p++) {
+			status.put(PERCENTILE_KEYS[p], percentile(PERCENTILES[p]));
+		}
+		if (this.skewCount > 0L) {
+			LinkedHashMap<String, Object> skew = new LinkedHashMap<String, Object>();
+			skew.put("last", this.lastSkew);
+			skew.put("mean", this.skewTotal / this.skewCount);
+			skew.put("max", this.maxSkew);
+			status.put("partitionSkew", skew);
+		}
+		// Non-empty buckets keyed by their upper bound in nanoseconds
+		LinkedHashMap<String, Long> buckets = new LinkedHashMap<String, Long>();
+		for (int k = 0; k < BUCKETS; k++) {
+			if (this.counts[k] > 0L) buckets.put(Long.toString(upperBound(k)), this.counts[k]);
+		}
+		status.put("buckets", buckets);
+		return status;
+	}
+
+	private long percentile(double fraction) {
+		if (this.count == 0L) return 0L;
+		long rank = (long) Math.ceil(fraction * this.count);
+		long seen = 0L;
+		for (int k = 0; k < BUCKETS; k++) {
+			seen += this.counts[k];
+			if (seen >= rank) return Math.min(upperBound(k), this.maxNanos);
+		}
+		return this.maxNanos;
+	}
+
+	private static int bucket(long nanos) {
+		return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+	}
+
+	private static long upperBound(int bucket) {
+		return bucket >= 63 ? Long.MAX_VALUE : 1L << bucket;
+	}
+}
@@ -4,27 +4,63 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
 
 import mets_r.facility.ChargingStation;
 import mets_r.facility.Road;
 import mets_r.facility.Signal;
 import mets_r.facility.Zone;
+import mets_r.mobility.EnergyBatch;
+import mets_r.mobility.Vehicle;
+import mets_r.mobility.VehicleContext;
+import mets_r.routing.RouteContext;
 
 /** Parallel scheduler with a barrier between the two road phases. */
 public class ThreadedScheduler {
-	private final ExecutorService executor;
+	private final StageExecutor stageExecutor;
+	private final int nThreads;
 	private final int nPartitions;
 	private final boolean profilingEnabled;
-	private final Future<?>[] futures;
+	private final boolean workStealing;
+	private final boolean measureRoadIdle;
+	private final ForkJoinPool stealingPool;
+	// Stealing pools of the reduced road stage widths, by width, created when a width is first chosen
+	private final ForkJoinPool[] narrowStealingPools;
+	private final ForkJoinPool routingPool; // Routing stage and zone skim, shared with the road stealing pool
+	private final RoadStealingStage roadStealingStage;
 	private final RoadPartitionTask[] roadPart1Tasks;
 	private final RoadPartitionTask[] roadPart2Tasks;
+	private final TransferPartitionTask[] transferTasks;
 	private final IntersectionPartitionTask[] intersectionTasks;
+	private final ZonePartitionTask[] zonePart1Tasks;
 	private final ZonePartitionTask[] zonePart2Tasks;
 	private final ChargingPartitionTask[] chargingPart1Tasks;
 	private final SignalPartitionTask[] signalTasks;
+	// Always-on latency histograms per stage, reset with the tick guards
+	private final LinkedHashMap<String, StageLatencyHistogram> stageLatencies =
+			new LinkedHashMap<String, StageLatencyHistogram>();
+	private final StageLatencyHistogram routingLatency = stageLatency("routing");
+	private final StageLatencyHistogram roadPart1Latency = stageLatency("road.part1");
+	private final StageLatencyHistogram roadPart2Latency = stageLatency("road.part2");
+	private final StageLatencyHistogram transferLatency = stageLatency("globalTransfers");
+	private final StageLatencyHistogram intersectionLatency = stageLatency("intersections");
+	private final StageLatencyHistogram zoneLatency = stageLatency("zones");
+	private final StageLatencyHistogram chargingLatency = stageLatency("charging");
+	private final StageLatencyHistogram signalLatency = stageLatency("signals");
+	private long[] partitionBusyNanos;
+
+	// Per-stage width controllers, registered only in adaptive mode
+	private final LinkedHashMap<String, StageWidth> stageWidths = new LinkedHashMap<String, StageWidth>();
+	private final StageWidth roadPart1Width;
+	private final StageWidth roadPart2Width;
+	private final StageWidth transferWidth;
+	private final StageWidth intersectionWidth;
+	private final StageWidth zonePrepareWidth;
+	private final StageWidth zonePart2Width;
+	private final StageWidth chargingWidth;
+	private final StageWidth signalWidth;
 
 	private volatile String activeStage = "idle";
 	private volatile int activeStageTick = -1;
@@ -38,6 +74,7 @@ public class ThreadedScheduler {
 	private int lastChargingStationStepTick = -1;
 	private int lastSignalStepTick = -1;
 
+	private volatile long routingNanos;
 	private volatile long roadPart1Nanos;
 	private volatile long roadPart2Nanos;
 	private volatile long intersectionNanos;
@@ -52,29 +89,93 @@ public class ThreadedScheduler {
 	private volatile long signalStepCount;
 	private volatile long chargingStepCount;
 
+	// Worker idle time of the road phases: wall time times workers minus busy time
+	private volatile long roadPart1IdleNanos;
+	private volatile long roadPart2IdleNanos;
+	private volatile long lastRoadPart1WallNanos;
+	private volatile long lastRoadPart1IdleNanos;
+	private volatile long lastRoadPart2WallNanos;
+	private volatile long lastRoadPart2IdleNanos;
+	private volatile int lastRoadIdleTick = -1;
+	private volatile long lastRoadPart1Chunks;
+	private volatile long lastRoadPart2Chunks;
+	private volatile int lastRoadPart1Workers;
+	private volatile int lastRoadPart2Workers;
+
+	// Partition-local versus serial global transfers
+	private volatile int lastLocalTransfers;
+	private volatile int lastSerialTransfers;
+	private volatile long localTransferCount;
+	private volatile long serialTransferCount;
+
 	public ThreadedScheduler(int nThreads) {
-		this.executor = Executors.newFixedThreadPool(Math.max(1, nThreads));
+		this.nThreads = Math.max(1, nThreads);
+		this.stageExecutor = GlobalVariables.PERSISTENT_STAGE_WORKERS
+				? new PhaseBarrierStageExecutor(this.nThreads)
+				: new FutureStageExecutor(this.nThreads);
 		this.nPartitions = Math.max(1, GlobalVariables.N_Partition);
 		this.profilingEnabled = GlobalVariables.ENABLE_SCHEDULER_PROFILING;
-		this.futures = new Future<?>[this.nPartitions];
+		this.workStealing = GlobalVariables.ROAD_STEP_WORK_STEALING;
+		this.measureRoadIdle = this.workStealing || this.profilingEnabled;
+		this.stealingPool = this.workStealing ? new ForkJoinPool(this.nThreads) : null;
+		this.narrowStealingPools = new ForkJoinPool[this.workStealing ? this.nThreads : 0];
+		this.roadStealingStage = this.workStealing ? new RoadStealingStage() : null;
+		this.routingPool = !GlobalVariables.BATCHED_ROUTING_STAGE && !GlobalVariables.SKIM_MATRIX ? null
+				: this.stealingPool != null ? this.stealingPool : new ForkJoinPool(this.nThreads);
 		this.roadPart1Tasks = new RoadPartitionTask[this.nPartitions];
 		this.roadPart2Tasks = new RoadPartitionTask[this.nPartitions];
+		this.transferTasks = GlobalVariables.PARTITIONED_GLOBAL_TRANSFERS
+				? new TransferPartitionTask[this.nPartitions]
+				: new TransferPartitionTask[0];
 		this.intersectionTasks = GlobalVariables.ENABLE_INTERSECTION_SWEPT_COLLISION_CHECK
 				? new IntersectionPartitionTask[this.nPartitions]
 				: new IntersectionPartitionTask[0];
+		this.zonePart1Tasks = new ZonePartitionTask[this.nPartitions];
 		this.zonePart2Tasks = new ZonePartitionTask[this.nPartitions];
 		this.chargingPart1Tasks = new ChargingPartitionTask[this.nPartitions];
 		this.signalTasks = new SignalPartitionTask[this.nPartitions];
 		for (int i = 0; i < this.nPartitions; i++) {
 			this.roadPart1Tasks[i] = new RoadPartitionTask(i, true);
 			this.roadPart2Tasks[i] = new RoadPartitionTask(i, false);
+			if (GlobalVariables.PARTITIONED_GLOBAL_TRANSFERS) {
+				this.transferTasks[i] = new TransferPartitionTask(i);
+			}
 			if (GlobalVariables.ENABLE_INTERSECTION_SWEPT_COLLISION_CHECK) {
 				this.intersectionTasks[i] = new IntersectionPartitionTask(i);
 			}
-			this.zonePart2Tasks[i] = new ZonePartitionTask(i);
+			this.zonePart1Tasks[i] = new ZonePartitionTask(i, true);
+			this.zonePart2Tasks[i] = new ZonePartitionTask(i, false);
 			this.chargingPart1Tasks[i] = new ChargingPartitionTask(i);
 			this.signalTasks[i] = new SignalPartitionTask(i);
 		}
+		this.partitionBusyNanos = new long[this.nPartitions];
+		// Work-stealing road stages run on the whole stealing pool rather than one task per partition
+		int roadWidth = this.workStealing ? this.stealingPool.getParallelism() : this.nPartitions;
+		this.roadPart1Width = stageWidth("road.part1", roadWidth);
+		this.roadPart2Width = stageWidth("road.part2", roadWidth);
+		this.transferWidth = stageWidth("vehicle.globalTransfers");
+		this.intersectionWidth = stageWidth("intersection.collision");
+		this.zonePrepareWidth = stageWidth("zone.prepare");
+		this.zonePart2Width = stageWidth("zone.part2");
+		this.chargingWidth = stageWidth("charging.part1");
+		this.signalWidth = stageWidth("signal");
+	}
+
+	private StageLatencyHistogram stageLatency(String stage) {
+		StageLatencyHistogram latency = new StageLatencyHistogram();
+		this.stageLatencies.put(stage, latency);
+		return latency;
+	}
+
+	private StageWidth stageWidth(String stage) {
+		return stageWidth(stage, this.nPartitions);
+	}
+
+	private StageWidth stageWidth(String stage, int fullWidth) {
+		if (!GlobalVariables.ADAPTIVE_STAGE_WIDTH) return null;
+		StageWidth width = new StageWidth(this.nPartitions, fullWidth, this.nThreads);
+		this.stageWidths.put(stage, width);
+		return width;
 	}
 
 	public synchronized void resetTickGuards() {
@@ -91,10 +192,27 @@ public class ThreadedScheduler {
 		this.zoneNanos = 0L;
 		this.signalNanos = 0L;
 		this.chargingNanos = 0L;
+		this.routingNanos = 0L;
 		this.roadStepCount = 0L;
 		this.zoneStepCount = 0L;
 		this.signalStepCount = 0L;
 		this.chargingStepCount = 0L;
+		this.roadPart1IdleNanos = 0L;
+		this.roadPart2IdleNanos = 0L;
+		this.lastRoadPart1WallNanos = 0L;
+		this.lastRoadPart1IdleNanos = 0L;
+		this.lastRoadPart2WallNanos = 0L;
+		this.lastRoadPart2IdleNanos = 0L;
+		this.lastRoadIdleTick = -1;
+		this.lastRoadPart1Chunks = 0L;
+		this.lastRoadPart2Chunks = 0L;
+		this.lastRoadPart1Workers = 0;
+		this.lastRoadPart2Workers = 0;
+		this.lastLocalTransfers = 0;
+		this.lastSerialTransfers = 0;
+		this.localTransferCount = 0L;
+		this.serialTransferCount = 0L;
+		for (StageLatencyHistogram latency : this.stageLatencies.values()) latency.reset();
 	}
 
 	private boolean claimRoadTick() {
@@ -161,6 +279,18 @@ public class ThreadedScheduler {
 		return this.profilingEnabled ? System.nanoTime() - start : 0L;
 	}
 
+	/** Record a stage duration in its histogram; returns it for the profiling totals when enabled. */
+	private long finishStage(StageLatencyHistogram latency, long start) {
+		long nanos = System.nanoTime() - start;
+		latency.record(nanos);
+		return this.profilingEnabled ? nanos : 0L;
+	}
+
+	private void recordSkew(StageLatencyHistogram latency, TimedPartitionTask[] tasks) {
+		for (int i = 0; i < this.nPartitions; i++) this.partitionBusyNanos[i] = tasks[i].busyNanos;
+		latency.recordSkew(this.partitionBusyNanos, this.nPartitions);
+	}
+
 	public LinkedHashMap<String, Object> getStatus() {
 		LinkedHashMap<String, Object> status = new LinkedHashMap<String, Object>();
 		long now = System.currentTimeMillis();
@@ -174,9 +304,49 @@ public class ThreadedScheduler {
 		status.put("profilingEnabled", this.profilingEnabled);
 		if (GlobalVariables.ACTIVE_ROAD_STEPPING && ContextCreator.getRoadContext() != null) {
 			status.put("activeRoadCount", ContextCreator.getRoadContext().getActiveRoadCount());
+			status.put("departureWheel", ContextCreator.getRoadContext().getDepartureWheelStatus());
+		}
+		status.put("stageBackend", this.stageExecutor.getName());
+		status.put("deterministic", GlobalVariables.DETERMINISTIC_PARALLEL);
+		status.put("roadStepMode", this.workStealing ? "workStealing" : "partitioned");
+		if (GlobalVariables.PARTITIONED_GLOBAL_TRANSFERS) {
+			LinkedHashMap<String, Object> transfers = new LinkedHashMap<String, Object>();
+			transfers.put("lastLocal", this.lastLocalTransfers);
+			transfers.put("lastSerial", this.lastSerialTransfers);
+			transfers.put("totalLocal", this.localTransferCount);
+			transfers.put("totalSerial", this.serialTransferCount);
+			status.put("globalTransfers", transfers);
+		}
+		if (ContextCreator.partitioner != null) {
+			status.put("partition", ContextCreator.partitioner.getStatus());
+		}
+		if (GlobalVariables.INTRA_ROAD_PARALLEL_WEIGHT > 0) {
+			status.put("intraRoad", Road.getIntraRoadStatus());
+		}
+		if (GlobalVariables.KINEMATIC_STORE) {
+			status.put("kinematicResyncs", Road.getKinematicResyncCount());
+		}
+		if (GlobalVariables.FREE_FLOW_FAST_PATH) {
+			status.put("freeFlowFastPath", Vehicle.getFreeFlowStatus());
+		}
+		LinkedHashMap<String, Object> latencies = new LinkedHashMap<String, Object>();
+		for (java.util.Map.Entry<String, StageLatencyHistogram> entry : this.stageLatencies.entrySet()) {
+			latencies.put(entry.getKey(), entry.getValue().getStatus());
+		}
+		status.put("stageLatency", latencies);
+		if (!this.stageWidths.isEmpty()) {
+			LinkedHashMap<String, Object> widths = new LinkedHashMap<String, Object>();
+			for (java.util.Map.Entry<String, StageWidth> entry : this.stageWidths.entrySet()) {
+				widths.put(entry.getKey(), entry.getValue().getStatus());
+			}
+			status.put("adaptiveWidth", widths);
+		}
+		if (this.measureRoadIdle) {
+			status.put("roadStepIdle", getRoadIdleStatus());
 		}
 		if (this.profilingEnabled) {
 			LinkedHashMap<String, Object> nanos = new LinkedHashMap<String, Object>();
+			nanos.put("routing", this.routingNanos);
 			nanos.put("roadPart1", this.roadPart1Nanos);
 			nanos.put("roadPart2", this.roadPart2Nanos);
 			nanos.put("intersections", this.intersectionNanos);
@@ -187,6 +357,10 @@ public class ThreadedScheduler {
 			nanos.put("signals", this.signalNanos);
 			nanos.put("charging", this.chargingNanos);
 			status.put("cumulativeNanos", nanos);
+			LinkedHashMap<String, Object> idleNanos = new LinkedHashMap<String, Object>();
+			idleNanos.put("roadPart1", this.roadPart1IdleNanos);
+			idleNanos.put("roadPart2", this.roadPart2IdleNanos);
+			status.put("cumulativeIdleNanos", idleNanos);
 			LinkedHashMap<String, Object> counts = new LinkedHashMap<String, Object>();
 			counts.put("road", this.roadStepCount);
 			counts.put("zone", this.zoneStepCount);
@@ -200,6 +374,7 @@ public class ThreadedScheduler {
 	public void paraRoadStep() {
 		if (!claimRoadTick()) return;
 		long partitionStart = profileStart();
+		ContextCreator.getRoadContext().wakeDueDepartures(ContextCreator.getCurrentTick());
 		ArrayList<ArrayList<Road>> partitions = getRoadStepPartitions();
 		this.activeRoadPartitionNanos += elapsed(partitionStart);
 		for (int i = 0; i < this.nPartitions; i++) {
@@ -207,42 +382,63 @@ public class ThreadedScheduler {
 			this.roadPart1Tasks[i].setRoads(roads);
 			this.roadPart2Tasks[i].setRoads(roads);
 		}
+		int roadCount = countItems(partitions);
+
+		long stageStart;
+		if (GlobalVariables.BATCHED_ROUTING_STAGE) {
+			stageStart = System.nanoTime();
+			beginStage("routing");
+			try {
+				RouteContext.runRoutingStage(partitions, ContextCreator.getCurrentTick(), this.routingPool);
+			} catch (Throwable ex) {
+				ContextCreator.logger.error("ThreadedScheduler routing failed", ex);
+			} finally {
+				this.routingNanos += finishStage(this.routingLatency, stageStart);
+				endStage("routing");
+			}
+		}
 
-		long stageStart = profileStart();
+		this.lastRoadIdleTick = ContextCreator.getCurrentTick();
+		stageStart = System.nanoTime();
 		beginStage("road.part1");
 		try {
-			submitAndAwait(this.roadPart1Tasks);
+			runRoadStage(partitions, roadCount, true);
 		} catch (Exception ex) {
 			ContextCreator.logger.error("ThreadedScheduler road.part1 failed", ex);
 		} finally {
-			this.roadPart1Nanos += elapsed(stageStart);
+			this.roadPart1Nanos += finishStage(this.roadPart1Latency, stageStart);
 			endStage("road.part1");
+			if (GlobalVariables.BATCHED_ROUTING_STAGE) RouteContext.endRoutingStage();
 		}
 
-		stageStart = profileStart();
+		stageStart = System.nanoTime();
 		beginStage("road.part2");
 		try {
-			submitAndAwait(this.roadPart2Tasks);
+			runRoadStage(partitions, roadCount, false);
 		} catch (Exception ex) {
 			ContextCreator.logger.error("ThreadedScheduler road.part2 failed", ex);
 		} finally {
-			this.roadPart2Nanos += elapsed(stageStart);
+			this.roadPart2Nanos += finishStage(this.roadPart2Latency, stageStart);
 			endStage("road.part2");
 		}
 
-		stageStart = profileStart();
+		stageStart = System.nanoTime();
 		beginStage("vehicle.globalTransfers");
 		try {
-			ContextCreator.getVehicleContext().executeGlobalTransfers();
+			if (GlobalVariables.PARTITIONED_GLOBAL_TRANSFERS) {
+				runPartitionedTransfers(ContextCreator.getVehicleContext());
+			} else {
+				ContextCreator.getVehicleContext().executeGlobalTransfers();
+			}
 		} catch (Throwable ex) {
 			ContextCreator.logger.error("ThreadedScheduler vehicle.globalTransfers failed", ex);
 		} finally {
-			this.globalTransferNanos += elapsed(stageStart);
+			this.globalTransferNanos += finishStage(this.transferLatency, stageStart);
 			endStage("vehicle.globalTransfers");
 		}
 
 		if (GlobalVariables.ENABLE_INTERSECTION_SWEPT_COLLISION_CHECK) {
-			stageStart = profileStart();
+			stageStart = System.nanoTime();
 			beginStage("intersection.collision");
 			try {
 				ArrayList<ArrayList<Integer>> intersectionPartitions =
@@ -254,12 +450,13 @@ public class ThreadedScheduler {
 									? intersectionPartitions.get(i)
 									: Collections.<Integer>emptyList());
 				}
-				submitAndAwait(this.intersectionTasks);
+				runTasks(this.intersectionWidth, this.intersectionTasks, countItems(intersectionPartitions));
+				recordSkew(this.intersectionLatency, this.intersectionTasks);
 			} catch (Exception ex) {
 				ContextCreator.logger.error(
 						"ThreadedScheduler intersection.collision failed", ex);
 			} finally {
-				this.intersectionNanos += elapsed(stageStart);
+				this.intersectionNanos += finishStage(this.intersectionLatency, stageStart);
 				endStage("intersection.collision");
 			}
 		}
@@ -272,6 +469,127 @@ public class ThreadedScheduler {
 		if (this.profilingEnabled) this.roadStepCount++;
 	}
 
+	/**
+	 * Run one road phase either on the fixed partition tasks or, in work-stealing
+	 * mode, as cost-sized chunks on a fork/join pool of the chosen width: the full
+	 * stealing pool, or a narrower pool when ADAPTIVE_STAGE_WIDTH picks fewer
+	 * workers. Both paths report worker idle time when it is measured.
+	 */
+	private void runRoadStage(ArrayList<ArrayList<Road>> partitions, int roadCount, boolean part1) throws Exception {
+		long wallStart = this.measureRoadIdle ? System.nanoTime() : 0L;
+		long busyNanos = 0L;
+		long chunks = 0L;
+		int workers;
+		StageWidth width = part1 ? this.roadPart1Width : this.roadPart2Width;
+		int chosen = !this.workStealing ? 0 : width == null ? this.nThreads : width.choose(roadCount);
+		if (chosen > 1) {
+			long start = width == null ? 0L : System.nanoTime();
+			ForkJoinPool pool = this.stealingPool(chosen);
+			workers = pool.getParallelism();
+			RoadStealingStage stage = this.roadStealingStage;
+			stage.prepare(partitions, part1, workers);
+			if (stage.size > 0) {
+				pool.invoke(new RoadStealingTask(stage, 0, stage.size));
+			}
+			busyNanos = stage.busyNanos.sum();
+			chunks = stage.chunks.sum();
+			if (width != null) width.record(roadCount, workers, System.nanoTime() - start);
+		} else {
+			RoadPartitionTask[] tasks = part1 ? this.roadPart1Tasks : this.roadPart2Tasks;
+			int used = runTasks(width, tasks, roadCount);
+			recordSkew(part1 ? this.roadPart1Latency : this.roadPart2Latency, tasks);
+			if (this.measureRoadIdle) {
+				for (RoadPartitionTask task : tasks) busyNanos += task.busyNanos;
+			}
+			chunks = this.nPartitions;
+			workers = Math.max(1, Math.min(this.nThreads, used));
+		}
+		if (!this.measureRoadIdle) return;
+		long wallNanos = System.nanoTime() - wallStart;
+		long idleNanos = Math.max(0L, wallNanos * workers - busyNanos);
+		if (part1) {
+			this.lastRoadPart1WallNanos = wallNanos;
+			this.lastRoadPart1IdleNanos = idleNanos;
+			this.lastRoadPart1Chunks = chunks;
+			this.lastRoadPart1Workers = workers;
+			this.roadPart1IdleNanos += idleNanos;
+		} else {
+			this.lastRoadPart2WallNanos = wallNanos;
+			this.lastRoadPart2IdleNanos = idleNanos;
+			this.lastRoadPart2Chunks = chunks;
+			this.lastRoadPart2Workers = workers;
+			this.roadPart2IdleNanos += idleNanos;
+		}
+	}
+
+	/** Stealing pool with the given number of workers, the full pool at or above N_THREADS. */
+	private ForkJoinPool stealingPool(int width) {
+		if (width >= this.nThreads) return this.stealingPool;
+		synchronized (this.narrowStealingPools) {
+			if (this.narrowStealingPools[width] == null) this.narrowStealingPools[width] = new ForkJoinPool(width);
+			return this.narrowStealingPools[width];
+		}
+	}
+
+	/**
+	 * Commit partition-local transfers on the stage workers, then the conflicting
+	 * and cross-partition remainder and the arrivals on the calling thread.
+	 */
+	private void runPartitionedTransfers(VehicleContext vehicleContext) throws Exception {
+		VehicleContext.GlobalTransferPlan plan = vehicleContext.planGlobalTransfers(this.nPartitions);
+		for (int i = 0; i < this.nPartitions; i++) {
+			this.transferTasks[i].setTransfers(vehicleContext, plan.getPartitionTransfers(i));
+		}
+		try {
+			if (plan.getLocalCount() > 0) {
+				runTasks(this.transferWidth, this.transferTasks, plan.getLocalCount());
+				recordSkew(this.transferLatency, this.transferTasks);
+			}
+		} finally {
+			for (TransferPartitionTask task : this.transferTasks) task.setTransfers(null, Collections.<Vehicle>emptyList());
+		}
+		vehicleContext.commitTransfers(plan.getSerialTransfers());
+		vehicleContext.executeArrivals();
+		this.lastLocalTransfers = plan.getLocalCount();
+		this.lastSerialTransfers = plan.getSerialCount();
+		this.localTransferCount += plan.getLocalCount();
+		this.serialTransferCount += plan.getSerialCount();
+	}
+
+	private LinkedHashMap<String, Object> getRoadIdleStatus() {
+		LinkedHashMap<String, Object> idle = new LinkedHashMap<String, Object>();
+		int workers = this.workStealing ? this.stealingPool.getParallelism()
+				: Math.min(this.nThreads, this.nPartitions);
+		idle.put("tick", this.lastRoadIdleTick);
+		idle.put("workers", workers);
+		// Each stage ran on the workers of its last chosen width
+		idle.put("roadPart1", roadIdleStageStatus(this.lastRoadPart1WallNanos, this.lastRoadPart1IdleNanos,
+				this.lastRoadPart1Chunks, this.lastRoadPart1Workers > 0 ? this.lastRoadPart1Workers : workers));
+		idle.put("roadPart2", roadIdleStageStatus(this.lastRoadPart2WallNanos, this.lastRoadPart2IdleNanos,
+				this.lastRoadPart2Chunks, this.lastRoadPart2Workers > 0 ? this.lastRoadPart2Workers : workers));
+		if (this.workStealing) {
+			long steals = this.stealingPool.getStealCount();
+			synchronized (this.narrowStealingPools) {
+				for (ForkJoinPool pool : this.narrowStealingPools) {
+					if (pool != null) steals += pool.getStealCount();
+				}
+			}
+			idle.put("stealCount", steals);
+		}
+		return idle;
+	}
+
+	private static LinkedHashMap<String, Object> roadIdleStageStatus(long wallNanos, long idleNanos,
+			long chunks, int workers) {
+		LinkedHashMap<String, Object> stage = new LinkedHashMap<String, Object>();
+		stage.put("wallNanos", wallNanos);
+		stage.put("idleNanos", idleNanos);
+		stage.put("idleFraction", wallNanos <= 0L ? 0.0 : idleNanos / ((double) wallNanos * workers));
+		stage.put("chunks", chunks);
+		stage.put("workers", workers);
+		return stage;
+	}
+
 	private ArrayList<ArrayList<Road>> getRoadStepPartitions() {
 		if (!GlobalVariables.ACTIVE_ROAD_STEPPING) {
 			return ContextCreator.partitioner.getPartitionedInRoads();
@@ -282,7 +600,26 @@ public class ThreadedScheduler {
 
 	public void paraZoneStep() {
 		if (!claimZoneTick()) return;
-		long totalStart = profileStart();
+		long totalStart = System.nanoTime();
+		ArrayList<ArrayList<Zone>> partitions = ContextCreator.partitioner.getpartitionedZones();
+		for (int i = 0; i < this.nPartitions; i++) {
+			List<Zone> zones = i < partitions.size() ? partitions.get(i) : Collections.<Zone>emptyList();
+			this.zonePart1Tasks[i].setZones(zones);
+			this.zonePart2Tasks[i].setZones(zones);
+		}
+		int zoneCount = countItems(partitions);
+		if (GlobalVariables.PARALLEL_ZONE_PART1) {
+			// Plan passenger generation per zone in parallel; the ordered pass below
+			// replays the plans so results equal the serial step
+			beginStage("zone.prepare");
+			try {
+				runTasks(this.zonePrepareWidth, this.zonePart1Tasks, zoneCount);
+			} catch (Exception ex) {
+				ContextCreator.logger.error("ThreadedScheduler zone.prepare failed", ex);
+			} finally {
+				endStage("zone.prepare");
+			}
+		}
 		beginStage("zone.part1");
 		try {
 			for (Zone zone : ContextCreator.getZoneContext().getAll()) zone.stepPart1();
@@ -292,25 +629,22 @@ public class ThreadedScheduler {
 			endStage("zone.part1");
 		}
 
-		ArrayList<ArrayList<Zone>> partitions = ContextCreator.partitioner.getpartitionedZones();
-		for (int i = 0; i < this.nPartitions; i++) {
-			this.zonePart2Tasks[i].setZones(i < partitions.size() ? partitions.get(i) : Collections.<Zone>emptyList());
-		}
 		beginStage("zone.part2");
 		try {
-			submitAndAwait(this.zonePart2Tasks);
+			runTasks(this.zonePart2Width, this.zonePart2Tasks, zoneCount);
+			recordSkew(this.zoneLatency, this.zonePart2Tasks);
 		} catch (Exception ex) {
 			ContextCreator.logger.error("ThreadedScheduler zone.part2 failed", ex);
 		} finally {
 			endStage("zone.part2");
-			this.zoneNanos += elapsed(totalStart);
+			this.zoneNanos += finishStage(this.zoneLatency, totalStart);
 		}
 		if (this.profilingEnabled) this.zoneStepCount++;
 	}
 
 	public void paraChargingStationStep() {
 		if (!claimChargingTick()) return;
-		long totalStart = profileStart();
+		long totalStart = System.nanoTime();
 		ArrayList<ArrayList<ChargingStation>> partitions = ContextCreator.partitioner.getpartitionedChargingStations();
 		for (int i = 0; i < this.nPartitions; i++) {
 			this.chargingPart1Tasks[i].setStations(i < partitions.size()
@@ -318,7 +652,8 @@ public class ThreadedScheduler {
 		}
 		beginStage("charging.part1");
 		try {
-			submitAndAwait(this.chargingPart1Tasks);
+			runTasks(this.chargingWidth, this.chargingPart1Tasks, countItems(partitions));
+			recordSkew(this.chargingLatency, this.chargingPart1Tasks);
 		} catch (Exception ex) {
 			ContextCreator.logger.error("ThreadedScheduler charging.part1 failed", ex);
 		} finally {
@@ -331,66 +666,98 @@ public class ThreadedScheduler {
 			ContextCreator.logger.error("ThreadedScheduler charging.part2 failed", ex);
 		} finally {
 			endStage("charging.part2");
-			this.chargingNanos += elapsed(totalStart);
+			this.chargingNanos += finishStage(this.chargingLatency, totalStart);
 		}
 		if (this.profilingEnabled) this.chargingStepCount++;
 	}
 
 	public void paraSignalStep() {
 		if (!claimSignalTick()) return;
-		long totalStart = profileStart();
+		long totalStart = System.nanoTime();
 		ArrayList<ArrayList<Signal>> partitions = ContextCreator.partitioner.getpartitionedSignals();
 		for (int i = 0; i < this.nPartitions; i++) {
 			this.signalTasks[i].setSignals(i < partitions.size() ? partitions.get(i) : Collections.<Signal>emptyList());
 		}
 		beginStage("signal");
 		try {
-			submitAndAwait(this.signalTasks);
+			runTasks(this.signalWidth, this.signalTasks, countItems(partitions));
+			recordSkew(this.signalLatency, this.signalTasks);
 		} catch (Exception ex) {
 			ContextCreator.logger.error("ThreadedScheduler signal failed", ex);
 		} finally {
-			this.signalNanos += elapsed(totalStart);
+			this.signalNanos += finishStage(this.signalLatency, totalStart);
 			endStage("signal");
 		}
 		if (this.profilingEnabled) this.signalStepCount++;
 	}
 
 	private void submitAndAwait(Runnable[] tasks) throws Exception {
-		int submitted = 0;
-		Exception failure = null;
-		boolean interrupted = false;
+		this.stageExecutor.runStage(tasks, this.nPartitions);
+	}
+
+	/**
+	 * Run the partition tasks of one stage. Without a width controller every
+	 * partition is its own task; otherwise the controller's width decides how many
+	 * workers share the partitions, and a width of one runs them all inline.
+	 * Returns the number of workers used.
+	 */
+	private int runTasks(StageWidth width, Runnable[] tasks, int items) throws Exception {
+		if (width == null) {
+			submitAndAwait(tasks);
+			return this.nPartitions;
+		}
+		int used = width.choose(items);
+		long start = System.nanoTime();
 		try {
-			try {
-				for (; submitted < this.nPartitions; submitted++) {
-					this.futures[submitted] = this.executor.submit(tasks[submitted]);
-				}
-			} catch (RuntimeException ex) {
-				failure = ex;
-			}
-			for (int i = 0; i < submitted; i++) {
-				boolean complete = false;
-				while (!complete) {
-					try {
-						this.futures[i].get();
-						complete = true;
-					} catch (InterruptedException ex) {
-						interrupted = true;
-						if (failure == null) failure = ex;
-					} catch (Exception ex) {
-						if (failure == null) failure = ex;
-						complete = true;
-					}
-				}
+			if (used <= 1) {
+				runInline(tasks);
+			} else if (used >= this.nPartitions) {
+				submitAndAwait(tasks);
+			} else {
+				this.stageExecutor.runStage(width.group(tasks, used), used);
 			}
 		} finally {
-			for (int i = 0; i < submitted; i++) this.futures[i] = null;
-			if (interrupted) Thread.currentThread().interrupt();
+			width.record(items, used, System.nanoTime() - start);
+		}
+		return used;
+	}
+
+	/** Run every task on the calling thread, rethrowing the first failure at the end like the executors. */
+	private void runInline(Runnable[] tasks) throws Exception {
+		Throwable failure = null;
+		for (int i = 0; i < this.nPartitions; i++) {
+			try {
+				tasks[i].run();
+			} catch (Throwable ex) {
+				if (failure == null) failure = ex;
+			}
+		}
+		if (failure instanceof Exception) throw (Exception) failure;
+		if (failure != null) throw new java.util.concurrent.ExecutionException(failure);
+	}
+
+	private static int countItems(List<? extends List<?>> partitions) {
+		int count = 0;
+		for (List<?> partition : partitions) {
+			if (partition != null) count += partition.size();
 		}
-		if (failure != null) throw failure;
+		return count;
+	}
+
+	/** Pool of the routing stage and the zone skim, or null when neither is enabled. */
+	public ForkJoinPool getRoutingPool() {
+		return this.routingPool;
 	}
 
 	public void shutdownScheduler() {
-		this.executor.shutdown();
+		this.stageExecutor.shutdown();
+		if (this.stealingPool != null) this.stealingPool.shutdown();
+		synchronized (this.narrowStealingPools) {
+			for (ForkJoinPool pool : this.narrowStealingPools) {
+				if (pool != null) pool.shutdown();
+			}
+		}
+		if (this.routingPool != null && this.routingPool != this.stealingPool) this.routingPool.shutdown();
 	}
 
 	public void reportTime() {
@@ -399,7 +766,138 @@ public class ThreadedScheduler {
 		}
 	}
 
-	private static class RoadPartitionTask implements Runnable {
+	/**
+	 * Width decision of one stage. The per-item cost is smoothed over recent runs:
+	 * inline runs measure it directly, parallel runs scale the wall time by the
+	 * number of busy workers, which includes the hand-off cost and so errs on the
+	 * side of staying parallel. The next width is the estimated stage work divided
+	 * by ADAPTIVE_TASK_NANOS, and stages under ADAPTIVE_INLINE_THRESHOLD_NANOS run
+	 * inline. A stage without a measurement yet runs at full width.
+	 */
+	private static final class StageWidth {
+		private final int maxWidth; // Partition tasks to group
+		private final int fullWidth; // Widest run of the stage: the partitions, or the stealing pool
+		private final int nThreads;
+		private final GroupTask[] groups;
+		private volatile double nanosPerItem = -1.0;
+		private volatile int lastItems;
+		private volatile int lastWidth;
+		private volatile long lastNanos;
+		private volatile long inlineRuns;
+		private volatile long reducedRuns;
+		private volatile long fullRuns;
+
+		StageWidth(int maxWidth, int fullWidth, int nThreads) {
+			this.maxWidth = maxWidth;
+			this.fullWidth = Math.max(1, fullWidth);
+			this.nThreads = nThreads;
+			this.groups = new GroupTask[maxWidth];
+			for (int i = 0; i < maxWidth; i++) this.groups[i] = new GroupTask(i);
+		}
+
+		int choose(int items) {
+			if (items <= 0) return 1;
+			double perItem = this.nanosPerItem;
+			if (perItem < 0.0) return this.fullWidth;
+			double work = perItem * items;
+			if (work < GlobalVariables.ADAPTIVE_INLINE_THRESHOLD_NANOS) return 1;
+			long width = (long) Math.ceil(work / Math.max(1, GlobalVariables.ADAPTIVE_TASK_NANOS));
+			width = Math.min(width, Math.min(this.fullWidth, items));
+			return (int) Math.max(1L, width);
+		}
+
+		void record(int items, int width, long nanos) {
+			this.lastItems = items;
+			this.lastWidth = width;
+			this.lastNanos = nanos;
+			if (width <= 1) this.inlineRuns++;
+			else if (width >= this.fullWidth) this.fullRuns++;
+			else this.reducedRuns++;
+			if (items <= 0) return;
+			double sample = nanos * (double) Math.max(1, Math.min(width, this.nThreads)) / items;
+			double previous = this.nanosPerItem;
+			this.nanosPerItem = previous < 0.0 ? sample : 0.75 * previous + 0.25 * sample;
+		}
+
+		/** Spread the partition tasks over width group tasks, round robin. */
+		GroupTask[] group(Runnable[] tasks, int width) {
+			for (int i = 0; i < width; i++) this.groups[i].set(tasks, width, this.maxWidth);
+			return this.groups;
+		}
+
+		LinkedHashMap<String, Object> getStatus() {
+			LinkedHashMap<String, Object> status = new LinkedHashMap<String, Object>();
+			int width = this.lastWidth;
+			status.put("lastItems", this.lastItems);
+			status.put("lastWidth", width);
+			status.put("lastMode", width <= 1 ? "inline" : width >= this.fullWidth ? "full" : "reduced");
+			status.put("fullWidth", this.fullWidth);
+			status.put("lastNanos", this.lastNanos);
+			status.put("nanosPerItem", Math.max(0.0, this.nanosPerItem));
+			status.put("inlineRuns", this.inlineRuns);
+			status.put("reducedRuns", this.reducedRuns);
+			status.put("fullRuns", this.fullRuns);
+			return status;
+		}
+	}
+
+	private static final class GroupTask implements Runnable {
+		private final int index;
+		private Runnable[] tasks;
+		private int stride;
+		private int count;
+
+		GroupTask(int index) { this.index = index; }
+
+		void set(Runnable[] tasks, int stride, int count) {
+			this.tasks = tasks;
+			this.stride = stride;
+			this.count = count;
+		}
+
+		public void run() {
+			Throwable failure = null;
+			for (int i = this.index; i < this.count; i += this.stride) {
+				try {
+					this.tasks[i].run();
+				} catch (Throwable ex) {
+					if (failure == null) failure = ex;
+				}
+			}
+			if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+			if (failure instanceof Error) throw (Error) failure;
+			if (failure != null) throw new RuntimeException(failure);
+		}
+	}
+
+	/** Partition task whose busy time is measured on every run for the skew statistics. */
+	private abstract static class TimedPartitionTask implements Runnable {
+		protected long busyNanos;
+
+		public final void run() {
+			long start = System.nanoTime();
+			try {
+				runPartition();
+			} finally {
+				this.busyNanos = System.nanoTime() - start;
+			}
+		}
+
+		abstract void runPartition();
+	}
+
+	/**
+	 * Open the worker's energy batch for a road stepPart2 run, so the EV energy of
+	 * all its roads is computed in one pass (BATCHED_ENERGY_STAGE); null otherwise.
+	 */
+	private static EnergyBatch openEnergyBatch(boolean part1) {
+		if (part1 || !GlobalVariables.BATCHED_ENERGY_STAGE) return null;
+		EnergyBatch energyBatch = EnergyBatch.local();
+		energyBatch.begin();
+		return energyBatch;
+	}
+
+	private class RoadPartitionTask extends TimedPartitionTask {
 		private final int partitionID;
 		private final boolean part1;
 		private List<Road> roads = Collections.emptyList();
@@ -411,22 +909,177 @@ public class ThreadedScheduler {
 
 		void setRoads(List<Road> roads) { this.roads = roads; }
 
-		public void run() {
-			for (Road road : this.roads) {
-				try {
-					if (this.part1) road.stepPart1(); else road.stepPart2();
-				} catch (Throwable ex) {
-					int roadID = road == null ? -1 : road.getID();
-					int vehicleCount = road == null ? -1 : road.getVehicleNum();
-					ContextCreator.logger.error("road.part" + (this.part1 ? "1" : "2")
-							+ " partition " + this.partitionID + " failed on road " + roadID
-							+ " vehicles=" + vehicleCount, ex);
+		void runPartition() {
+			int tick = ContextCreator.getCurrentTick();
+			EnergyBatch energyBatch = openEnergyBatch(this.part1);
+			try {
+				for (Road road : this.roads) {
+					try {
+						if (this.part1) road.setStepPartition(this.partitionID, tick);
+						if (this.part1) road.stepPart1(); else road.stepPart2();
+					} catch (Throwable ex) {
+						int roadID = road == null ? -1 : road.getID();
+						int vehicleCount = road == null ? -1 : road.getVehicleNum();
+						ContextCreator.logger.error("road.part" + (this.part1 ? "1" : "2")
+								+ " partition " + this.partitionID + " failed on road " + roadID
+								+ " vehicles=" + vehicleCount, ex);
+					}
+				}
+			} finally {
+				if (energyBatch != null) energyBatch.end();
+			}
+		}
+	}
+
+	/**
+	 * Per-phase state of the work-stealing road step. Roads keep the partition
+	 * order so neighbouring chunks stay cache friendly, and a prefix sum over the
+	 * measured per-road cost lets each task split its range at the cost midpoint.
+	 */
+	private static final class RoadStealingStage {
+		private Road[] roads = new Road[0];
+		private long[] costPrefix = new long[1];
+		private int size;
+		private boolean part1;
+		private long chunkCost;
+		private final LongAdder busyNanos = new LongAdder();
+		private final LongAdder chunks = new LongAdder();
+
+		void prepare(List<? extends List<Road>> partitions, boolean part1, int workers) {
+			int count = 0;
+			for (List<Road> partition : partitions) count += partition.size();
+			if (this.roads.length < count) {
+				this.roads = new Road[count];
+				this.costPrefix = new long[count + 1];
+			}
+			// Unmeasured roads (new or just activated) are priced at the mean
+			// measured cost so they neither hog nor vanish from a chunk.
+			long measuredTotal = 0L;
+			int measuredCount = 0;
+			int next = 0;
+			int tick = ContextCreator.getCurrentTick();
+			for (int p = 0; p < partitions.size(); p++) {
+				for (Road road : partitions.get(p)) {
+					if (road == null) continue;
+					if (part1) road.setStepPartition(p, tick);
+					this.roads[next++] = road;
+					long cost = road.getStepCostNanos(part1);
+					if (cost > 0L) {
+						measuredTotal += cost;
+						measuredCount++;
+					}
+				}
+			}
+			long defaultCost = measuredCount == 0 ? 1L : Math.max(1L, measuredTotal / measuredCount);
+			this.costPrefix[0] = 0L;
+			for (int i = 0; i < next; i++) {
+				long cost = this.roads[i].getStepCostNanos(part1);
+				this.costPrefix[i + 1] = this.costPrefix[i] + (cost > 0L ? cost : defaultCost);
+			}
+			for (int i = next; i < this.size; i++) this.roads[i] = null;
+			this.size = next;
+			this.part1 = part1;
+			long targetChunks = (long) Math.max(1, workers) * Math.max(1, GlobalVariables.ROAD_STEP_CHUNKS_PER_THREAD);
+			this.chunkCost = Math.max(1L, this.costPrefix[next] / targetChunks);
+			this.busyNanos.reset();
+			this.chunks.reset();
+		}
+
+		long cost(int lo, int hi) {
+			return this.costPrefix[hi] - this.costPrefix[lo];
+		}
+
+		int splitIndex(int lo, int hi) {
+			long target = (this.costPrefix[lo] + this.costPrefix[hi]) >>> 1;
+			int left = lo + 1;
+			int right = hi - 1;
+			while (left < right) {
+				int mid = (left + right) >>> 1;
+				if (this.costPrefix[mid] < target) left = mid + 1; else right = mid;
+			}
+			return left;
+		}
+
+		void runChunk(int lo, int hi) {
+			long chunkStart = System.nanoTime();
+			long roadStart = chunkStart;
+			EnergyBatch energyBatch = openEnergyBatch(this.part1);
+			try {
+				for (int i = lo; i < hi; i++) {
+					Road road = this.roads[i];
+					try {
+						if (this.part1) road.stepPart1(); else road.stepPart2();
+					} catch (Throwable ex) {
+						ContextCreator.logger.error("road.part" + (this.part1 ? "1" : "2")
+								+ " chunk [" + lo + "," + hi + ") failed on road " + road.getID()
+								+ " vehicles=" + road.getVehicleNum(), ex);
+					}
+					long roadEnd = System.nanoTime();
+					road.recordStepCost(this.part1, roadEnd - roadStart);
+					roadStart = roadEnd;
 				}
+			} finally {
+				if (energyBatch != null) {
+					energyBatch.end();
+					roadStart = System.nanoTime();
+				}
+			}
+			this.busyNanos.add(roadStart - chunkStart);
+			this.chunks.increment();
+		}
+	}
+
+	/** Recursive cost-midpoint split of a road range until chunks are small enough. */
+	private static final class RoadStealingTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final RoadStealingStage stage;
+		private final int lo;
+		private final int hi;
+
+		RoadStealingTask(RoadStealingStage stage, int lo, int hi) {
+			this.stage = stage;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.hi - this.lo > 1 && this.stage.cost(this.lo, this.hi) > this.stage.chunkCost) {
+				int mid = this.stage.splitIndex(this.lo, this.hi);
+				invokeAll(new RoadStealingTask(this.stage, this.lo, mid),
+						new RoadStealingTask(this.stage, mid, this.hi));
+				return;
+			}
+			this.stage.runChunk(this.lo, this.hi);
+		}
+	}
+
+	private static class TransferPartitionTask extends TimedPartitionTask {
+		private final int partitionID;
+		private VehicleContext vehicleContext;
+		private List<Vehicle> transfers = Collections.emptyList();
+
+		TransferPartitionTask(int partitionID) {
+			this.partitionID = partitionID;
+		}
+
+		void setTransfers(VehicleContext vehicleContext, List<Vehicle> transfers) {
+			this.vehicleContext = vehicleContext;
+			this.transfers = transfers;
+		}
+
+		void runPartition() {
+			if (this.transfers.isEmpty()) return;
+			try {
+				this.vehicleContext.commitTransfers(this.transfers);
+			} catch (Throwable ex) {
+				ContextCreator.logger.error("vehicle.globalTransfers partition " + this.partitionID
+						+ " failed with " + this.transfers.size() + " transfers", ex);
 			}
 		}
 	}
 
-	private static class IntersectionPartitionTask implements Runnable {
+	private static class IntersectionPartitionTask extends TimedPartitionTask {
 		private final int partitionID;
 		private List<Integer> intersectionIDs = Collections.emptyList();
 
@@ -438,7 +1091,7 @@ public class ThreadedScheduler {
 			this.intersectionIDs = intersectionIDs;
 		}
 
-		public void run() {
+		void runPartition() {
 			for (Integer intersectionID : this.intersectionIDs) {
 				try {
 					if (intersectionID != null) {
@@ -454,34 +1107,36 @@ public class ThreadedScheduler {
 		}
 	}
 
-	private static class ZonePartitionTask implements Runnable {
+	private static class ZonePartitionTask extends TimedPartitionTask {
 		private final int partitionID;
+		private final boolean prepare;
 		private List<Zone> zones = Collections.emptyList();
-		ZonePartitionTask(int partitionID) { this.partitionID = partitionID; }
+		ZonePartitionTask(int partitionID, boolean prepare) { this.partitionID = partitionID; this.prepare = prepare; }
 		void setZones(List<Zone> zones) { this.zones = zones; }
-		public void run() {
-			try { for (Zone zone : this.zones) zone.stepPart2(); }
-			catch (Throwable ex) { ContextCreator.logger.error("zone.part2 partition " + this.partitionID + " failed", ex); }
+		void runPartition() {
+			try { for (Zone zone : this.zones) { if (this.prepare) zone.prepareStepPart1(); else zone.stepPart2(); } }
+			catch (Throwable ex) { ContextCreator.logger.error((this.prepare ? "zone.prepare" : "zone.part2")
+					+ " partition " + this.partitionID + " failed", ex); }
 		}
 	}
 
-	private static class ChargingPartitionTask implements Runnable {
+	private static class ChargingPartitionTask extends TimedPartitionTask {
 		private final int partitionID;
 		private List<ChargingStation> stations = Collections.emptyList();
 		ChargingPartitionTask(int partitionID) { this.partitionID = partitionID; }
 		void setStations(List<ChargingStation> stations) { this.stations = stations; }
-		public void run() {
+		void runPartition() {
 			try { for (ChargingStation station : this.stations) station.stepPart1(); }
 			catch (Throwable ex) { ContextCreator.logger.error("charging.part1 partition " + this.partitionID + " failed", ex); }
 		}
 	}
 
-	private static class SignalPartitionTask implements Runnable {
+	private static class SignalPartitionTask extends TimedPartitionTask {
 		private final int partitionID;
 		private List<Signal> signals = Collections.emptyList();
 		SignalPartitionTask(int partitionID) { this.partitionID = partitionID; }
 		void setSignals(List<Signal> signals) { this.signals = signals; }
-		public void run() {
+		void runPartition() {
 			try { for (Signal signal : this.signals) signal.step(); }
 			catch (Throwable ex) { ContextCreator.logger.error("signal partition " + this.partitionID + " failed", ex); }
 		}
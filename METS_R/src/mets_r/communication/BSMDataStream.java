@@ -24,7 +24,10 @@ public class BSMDataStream {
 	/** Default 1-sigma GPS position error in meters (typical consumer-grade GNSS). */
 	public static final double DEFAULT_COORDINATE_RANDOMNESS = 2.0;
 
-	public static Random RANDOM = new Random(GlobalVariables.RandomGenerator.nextInt());
+	public static final String NOISE_STREAM = "bsm.noise";
+
+	// Shared noise stream; in deterministic mode each vehicle-tick draws its own instead
+	public static Random RANDOM = ContextCreator.newRandom(NOISE_STREAM, 0);
 
 	public int vid;
 	public int utc_fix_mode;
@@ -78,10 +81,15 @@ public class BSMDataStream {
 	 *                             typical consumer-grade GNSS receiver.
 	 */
 	public BSMDataStream(int vid, Vehicle vehicle, Coordinate coordinate, int type, double coordinateRandomness) {
+		this(vid, vehicle, coordinate, type, coordinateRandomness, noiseRandom(vid));
+	}
+
+	private BSMDataStream(int vid, Vehicle vehicle, Coordinate coordinate, int type, double coordinateRandomness,
+			Random random) {
 		this(vid,
 				3,                                          // utc_fix_mode: 3D fix
-				noisyLat(coordinate.x, coordinateRandomness),
-				noisyLon(coordinate.x, coordinate.y, coordinateRandomness),
+				noisyLat(random, coordinate.x, coordinateRandomness),
+				noisyLon(random, coordinate.x, coordinate.y, coordinateRandomness),
 				0,                                          // altitude
 				svInView(coordinateRandomness),
 				svUsed(coordinateRandomness),
@@ -92,7 +100,7 @@ public class BSMDataStream {
 				false,                                      // GNSS_networkCorrectionsPresent
 				coordinateRandomness,                       // SemiMajorAxisAccuracy mirrors 1-sigma error
 				coordinateRandomness * 0.8,                 // SemiMinorAxisAccuracy (minor axis slightly tighter)
-				RANDOM.nextDouble() * 360.0,                // SemiMajorAxisOrientation: random ellipse heading
+				random.nextDouble() * 360.0,                // SemiMajorAxisOrientation: random ellipse heading
 				vehicle.getBearing(),
 				vehicle.currentSpeed(),
 				0,                                          // climb
@@ -353,8 +361,8 @@ public class BSMDataStream {
 	 * The noise is converted from metres to degrees using the fixed
 	 * {@value #METERS_PER_LAT_DEG} m/° approximation.
 	 */
-	private static double noisyLat(double latDeg, double randomnessMeters) {
-		return latDeg + RANDOM.nextGaussian() * (randomnessMeters / METERS_PER_LAT_DEG);
+	private static double noisyLat(Random random, double latDeg, double randomnessMeters) {
+		return latDeg + random.nextGaussian() * (randomnessMeters / METERS_PER_LAT_DEG);
 	}
 
 	/**
@@ -362,10 +370,21 @@ public class BSMDataStream {
 	 * The metres-to-degrees conversion accounts for the latitude-dependent arc
 	 * length: 1° longitude = {@value #METERS_PER_LAT_DEG} × cos(lat) metres.
 	 */
-	private static double noisyLon(double latDeg, double lonDeg, double randomnessMeters) {
+	private static double noisyLon(Random random, double latDeg, double lonDeg, double randomnessMeters) {
 		double cosLat = Math.cos(Math.toRadians(latDeg));
 		double metersPerLonDeg = METERS_PER_LAT_DEG * Math.max(cosLat, 1e-6); // guard against poles
-		return lonDeg + RANDOM.nextGaussian() * (randomnessMeters / metersPerLonDeg);
+		return lonDeg + random.nextGaussian() * (randomnessMeters / metersPerLonDeg);
+	}
+
+	/**
+	 * Noise stream of one message. In deterministic mode it is seeded from the
+	 * vehicle and the tick, so the noise does not depend on which road worker
+	 * reports first; otherwise all messages share RANDOM.
+	 */
+	private static Random noiseRandom(int vid) {
+		if (!GlobalVariables.DETERMINISTIC_PARALLEL) return RANDOM;
+		return new Random(ContextCreator.entityRandomSeed(NOISE_STREAM, vid)
+				^ ContextCreator.entityRandomSeed(ContextCreator.getCurrentTick()));
 	}
 
 	/**
@@ -10,6 +10,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Random;
 import java.util.Set;
 
 import org.geotools.geometry.jts.JTS;
@@ -106,6 +107,8 @@ public class ControlMessageHandler extends MessageHandler {
 		// =============================================================
 		messageHandlers.put("setCoSimRoad", this::setCoSimRoad);
 		messageHandlers.put("releaseCoSimRoad", this::releaseCoSimRoad);
+		messageHandlers.put("setMesoRoad", this::setMesoRoad);
+		messageHandlers.put("releaseMesoRoad", this::releaseMesoRoad);
 		messageHandlers.put("initializeCoSimVeh", this::initializeCoSimVeh);
 		messageHandlers.put("teleportCoSimVeh", this::teleportCoSimVeh);
 		messageHandlers.put("teleportDigitalTwinVeh", this::teleportDigitalTwinVeh);
@@ -795,6 +798,66 @@ public class ControlMessageHandler extends MessageHandler {
 		return jsonAns;
 	}
 
+	/**
+	* Run one or more roads with the mesoscopic link model instead of
+	* per-vehicle car-following and lane changing. Co-simulated roads are
+	* rejected.
+	*
+	* <p>Input DATA: list of original road IDs.
+	*/
+	private synchronized HashMap<String, Object> setMesoRoad(JSONObject jsonMsg) {
+		return updateRoadFidelity(jsonMsg, Road.FIDELITY_MESO);
+	}
+
+	/**
+	* Return one or more mesoscopic roads to microscopic simulation.
+	*
+	* <p>Input DATA: list of original road IDs.
+	*/
+	private synchronized HashMap<String, Object> releaseMesoRoad(JSONObject jsonMsg) {
+		return updateRoadFidelity(jsonMsg, Road.FIDELITY_MICRO);
+	}
+
+	private HashMap<String, Object> updateRoadFidelity(JSONObject jsonMsg, int fidelity) {
+		HashMap<String, Object> jsonAns = new HashMap<String, Object>();
+		if(!jsonMsg.containsKey("data")) {
+			jsonAns.put("message", "No DATA field found in the control message");
+			jsonAns.put("status", "error");
+		}
+		else {
+			try {
+				Gson gson = new Gson();
+				TypeToken<Collection<String>> collectionType = new TypeToken<Collection<String>>() {};
+				Collection<String> IDs = gson.fromJson(jsonMsg.get("data").toString(), collectionType.getType());
+				ArrayList<Object> jsonData = new ArrayList<Object>();
+
+				for (String roadId : IDs) {
+					Road r = ContextCreator.getCityContext().findRoadWithOrigID(roadId);
+					HashMap<String, Object> record2 = new HashMap<String, Object>();
+					record2.put("roadId", roadId);
+					if (r == null) {
+						ContextCreator.logger.warn("Cannot find the road, road ID: " + roadId);
+						record2.put("status", "error");
+					} else if (!r.setFidelity(fidelity)) {
+						record2.put("status", "error");
+						record2.put("message", "Road " + roadId + " is under COSIM control");
+					} else {
+						record2.put("status", "ok");
+						record2.put("fidelity", r.getFidelity() == Road.FIDELITY_MESO ? "MESO" : "MICRO");
+					}
+					jsonData.add(record2);
+				}
+				jsonAns.put("data", jsonData);
+				jsonAns.put("status", "ok");
+			}
+			catch (Exception e) {
+				ContextCreator.logger.error("Error processing control: " + e.toString());
+				jsonAns.put("status", "error");
+			}
+		}
+		return jsonAns;
+	}
+
 	// =============================================================
 	// PRIVATE-VEHICLE TRIP GENERATION
 	// =============================================================
@@ -804,6 +867,17 @@ public class ControlMessageHandler extends MessageHandler {
 				&& length.doubleValue() > 0.0);
 	}
 
+	/**
+	 * Stream for the random origin and destination zones of a generated trip.
+	 * In deterministic mode it is seeded from the vehicle and the tick instead
+	 * of drawing from the shared generator.
+	 */
+	private static Random tripZoneRandom(int vehicleId) {
+		if (!GlobalVariables.DETERMINISTIC_PARALLEL) return GlobalVariables.RandomGenerator;
+		return new Random(ContextCreator.entityRandomSeed("trip.zones", vehicleId)
+				^ ContextCreator.entityRandomSeed(ContextCreator.getCurrentTick()));
+	}
+
 	private static String invalidVehicleLengthWarning() {
 		return "length must be a finite positive value in meters";
 	}
@@ -857,6 +931,7 @@ public class ControlMessageHandler extends MessageHandler {
 					// Find the origin and dest zones
 					int originID = vehIDVehTypeOrigDest.originZoneId;
 					int destID = vehIDVehTypeOrigDest.destinationZoneId;
+					Random tripZones = tripZoneRandom(vehicleId);
 					Zone originZone = null;
 					Zone destZone = null;
 
@@ -871,7 +946,7 @@ public class ControlMessageHandler extends MessageHandler {
 						}
 						else {
 							// randomly select a zone as origin
-							originID = GlobalVariables.RandomGenerator.nextInt(ContextCreator.getZoneContext().ZONE_NUM - 1) + 1;
+							originID = tripZones.nextInt(ContextCreator.getZoneContext().ZONE_NUM - 1) + 1;
 							originZone = ContextCreator.getZoneContext().get(originID);
 						}
 					}
@@ -902,7 +977,7 @@ public class ControlMessageHandler extends MessageHandler {
 						}
 						else {
 							// randomly select a zone as destination
-							destID = GlobalVariables.RandomGenerator.nextInt(ContextCreator.getZoneContext().ZONE_NUM - 1) + 1;
+							destID = tripZones.nextInt(ContextCreator.getZoneContext().ZONE_NUM - 1) + 1;
 							destZone = ContextCreator.getZoneContext().get(destID);
 						}
 					}
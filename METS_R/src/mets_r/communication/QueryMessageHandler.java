@@ -43,7 +43,7 @@ import mets_r.communication.MessageClass.*;
 public class QueryMessageHandler extends MessageHandler {
 	private static final double MILE_IN_METERS = 1609.344;
 	private static final double DEFAULT_ALMOST_FINISHED_TAXI_MILES = 5.0;
-	private Random rand_route = new Random(GlobalVariables.RandomGenerator.nextInt());
+	private Random rand_route = ContextCreator.newRandom("query.route", 0);
 	private HashMap<String, Integer> roadIndexByOrigIDCache = null;
 	private int roadIndexCacheRoadCount = -1;
 	private Object roadIndexCacheRoadContext = null;
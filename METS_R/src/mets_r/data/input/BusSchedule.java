@@ -50,7 +50,8 @@ public class BusSchedule {
 	private ConcurrentHashMap<Integer, Integer> ongoingSchedules;
 	
 	// For generating bus routes
-	public static Random rand_route_only = new Random(GlobalVariables.RandomGenerator.nextInt());
+	public static final String ROUTE_STREAM = "bus.route";
+	public static Random rand_route_only = ContextCreator.newRandom(ROUTE_STREAM, 0);
 	public static int route_num = 0;
 
 	public BusSchedule() {
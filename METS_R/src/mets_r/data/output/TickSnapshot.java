@@ -3,8 +3,11 @@ package mets_r.data.output;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
 import com.vividsolutions.jts.geom.Coordinate;
 
+import mets_r.GlobalVariables;
 import mets_r.mobility.ElectricBus;
 import mets_r.mobility.ElectricTaxi;
 import mets_r.mobility.ElectricVehicle;
@@ -33,13 +36,13 @@ public class TickSnapshot {
 
 	/** The collection of vehicle data gathered during this time tick. */
 	/** Consider two classes of vehicles: EV and Bus */
-	private HashMap<Integer, VehicleSnapshot> vehicles;
-	private HashMap<Integer, EVSnapshot> evs_private;
-	private HashMap<Integer, ETaxiSnapshot> evs_occupied;
-	private HashMap<Integer, ETaxiSnapshot> evs_relocation;
-	private HashMap<Integer, ETaxiSnapshot> evs_charging;
-	private HashMap<Integer, ETaxiSnapshot> evs_attack;
-	private HashMap<Integer, BusSnapshot> buses;
+	private Map<Integer, VehicleSnapshot> vehicles;
+	private Map<Integer, EVSnapshot> evs_private;
+	private Map<Integer, ETaxiSnapshot> evs_occupied;
+	private Map<Integer, ETaxiSnapshot> evs_relocation;
+	private Map<Integer, ETaxiSnapshot> evs_charging;
+	private Map<Integer, ETaxiSnapshot> evs_attack;
+	private Map<Integer, BusSnapshot> buses;
 	private boolean frameSummaryRecorded;
 	private int matchedRequests;
 	private int matchedPassengers;
@@ -58,6 +61,13 @@ public class TickSnapshot {
 	private int roadVehicleCount;
 	private final Object summaryLock = new Object();
 	private ArrayList<LinkSnapshot> links;
+	// Deterministic mode: vehicles are kept in ID order and energy is summed in
+	// fixed point, so the output does not depend on which thread logged first.
+	private final boolean ordered = GlobalVariables.DETERMINISTIC_PARALLEL;
+	private long privateEVEnergyFixed;
+	private long eTaxiEnergyFixed;
+	private long eBusEnergyFixed;
+	private static final double ENERGY_FIXED_SCALE = 1 << 24;
 
 	// Link energy consumptions for UCB
 //	private Map<Integer, ArrayList<Double>> link_UCB; // the link energy consumption for taxis
@@ -85,13 +95,13 @@ public class TickSnapshot {
 		this.tickNumber = tickNumber;
 
 		// Setup the map for holding the vehicle data
-		this.vehicles = new HashMap<Integer, VehicleSnapshot>();
-		this.buses = new HashMap<Integer, BusSnapshot>();
-		this.evs_private = new HashMap<Integer, EVSnapshot>();
-		this.evs_occupied = new HashMap<Integer, ETaxiSnapshot>();
-		this.evs_relocation = new HashMap<Integer, ETaxiSnapshot>();
-		this.evs_charging = new HashMap<Integer, ETaxiSnapshot>();
-		this.evs_attack = new HashMap<Integer, ETaxiSnapshot>();
+		this.vehicles = snapshotMap();
+		this.buses = snapshotMap();
+		this.evs_private = snapshotMap();
+		this.evs_occupied = snapshotMap();
+		this.evs_relocation = snapshotMap();
+		this.evs_charging = snapshotMap();
+		this.evs_attack = snapshotMap();
 		this.frameSummaryRecorded = false;
 		this.roadVehicleCount = 0;
 		this.links = new ArrayList<LinkSnapshot>();
@@ -120,6 +130,9 @@ public class TickSnapshot {
 				this.privateEVEnergy = privateEVEnergy;
 				this.eTaxiEnergy = eTaxiEnergy;
 				this.eBusEnergy = eBusEnergy;
+				this.privateEVEnergyFixed = toFixed(privateEVEnergy);
+				this.eTaxiEnergyFixed = toFixed(eTaxiEnergy);
+				this.eBusEnergyFixed = toFixed(eBusEnergy);
 			}
 			this.energyConsumption = this.privateEVEnergy + this.eTaxiEnergy + this.eBusEnergy;
 		}
@@ -203,13 +216,31 @@ public class TickSnapshot {
 
 	private void addEnergy(float privateEVEnergyDelta, float eTaxiEnergyDelta, float eBusEnergyDelta) {
 		synchronized (this.summaryLock) {
-			this.privateEVEnergy += privateEVEnergyDelta;
-			this.eTaxiEnergy += eTaxiEnergyDelta;
-			this.eBusEnergy += eBusEnergyDelta;
+			if (this.ordered) {
+				// Integer sums are associative, so the totals do not depend on logging order
+				this.privateEVEnergyFixed += toFixed(privateEVEnergyDelta);
+				this.eTaxiEnergyFixed += toFixed(eTaxiEnergyDelta);
+				this.eBusEnergyFixed += toFixed(eBusEnergyDelta);
+				this.privateEVEnergy = (float) (this.privateEVEnergyFixed / ENERGY_FIXED_SCALE);
+				this.eTaxiEnergy = (float) (this.eTaxiEnergyFixed / ENERGY_FIXED_SCALE);
+				this.eBusEnergy = (float) (this.eBusEnergyFixed / ENERGY_FIXED_SCALE);
+			} else {
+				this.privateEVEnergy += privateEVEnergyDelta;
+				this.eTaxiEnergy += eTaxiEnergyDelta;
+				this.eBusEnergy += eBusEnergyDelta;
+			}
 			this.energyConsumption = this.privateEVEnergy + this.eTaxiEnergy + this.eBusEnergy;
 		}
 	}
 
+	private static long toFixed(float energy) {
+		return Math.round(energy * ENERGY_FIXED_SCALE);
+	}
+
+	private <V> Map<Integer, V> snapshotMap() {
+		return this.ordered ? new TreeMap<Integer, V>() : new HashMap<Integer, V>();
+	}
+
 	private void updatePrivateEVEnergy(EVSnapshot oldSnapshot, EVSnapshot newSnapshot) {
 		float delta = 0;
 		if (oldSnapshot != null) {
@@ -241,7 +272,7 @@ public class TickSnapshot {
 		this.addEnergy(privateDelta, taxiDelta, 0);
 	}
 
-	private void removeETaxiSnapshot(HashMap<Integer, ETaxiSnapshot> snapshots, int id) {
+	private void removeETaxiSnapshot(Map<Integer, ETaxiSnapshot> snapshots, int id) {
 		synchronized (snapshots) {
 			ETaxiSnapshot oldSnapshot = snapshots.remove(id);
 			if (oldSnapshot != null) {
@@ -692,9 +723,15 @@ public class TickSnapshot {
 	}
 
 	public ArrayList<LinkSnapshot> getLinkSnapshots() {
+		ArrayList<LinkSnapshot> copy;
 		synchronized (this.links) {
-			return new ArrayList<LinkSnapshot>(this.links);
+			copy = new ArrayList<LinkSnapshot>(this.links);
+		}
+		if (this.ordered) {
+			// Road workers append in completion order; merge them by road ID
+			copy.sort((a, b) -> a.id.compareTo(b.id));
 		}
+		return copy;
 	}
 
 	public boolean isEmpty() {
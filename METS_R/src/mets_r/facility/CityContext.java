@@ -86,10 +86,11 @@ public class CityContext extends DefaultContext<Object> {
 			}
 			lane.setLength(length3D);
 			lane.setSegmentSlopes(slopes);
+			lane.prepareArcLengths();
 		}
 	}
 
-	private double getHorizontalDistance(Coordinate c1, Coordinate c2) {
+	double getHorizontalDistance(Coordinate c1, Coordinate c2) {
 		GeodeticCalculator calculator = new GeodeticCalculator(ContextCreator.getLaneGeography().getCRS());
 		calculator.setStartingGeographicPoint(c1.x, c1.y);
 		calculator.setDestinationGeographicPoint(c2.x, c2.y);
@@ -963,9 +964,28 @@ public class CityContext extends DefaultContext<Object> {
 		markInvalidDestinations();
 		ContextCreator.getRoadContext().rebuildConnectorTopology();
 		
+		for (Road road : ContextCreator.getRoadContext().getAll()) {
+			applyConfiguredFidelity(road);
+		}
+		
 		ContextCreator.logger.info("City initialized!");
 	}
 	
+	/**
+	 * Roads listed in ROAD_FIDELITY_EXCEPTIONS take the fidelity level other than
+	 * ROAD_FIDELITY_DEFAULT, which every road starts with.
+	 */
+	public void applyConfiguredFidelity(Road road) {
+		if (GlobalVariables.ROAD_FIDELITY_EXCEPTIONS.isEmpty() || road.getOrigID() == null) return;
+		for (String origID : GlobalVariables.ROAD_FIDELITY_EXCEPTIONS.split(",")) {
+			if (origID.trim().equals(road.getOrigID())) {
+				road.setFidelity(Road.parseFidelity(GlobalVariables.ROAD_FIDELITY_DEFAULT) == Road.FIDELITY_MESO
+						? Road.FIDELITY_MICRO : Road.FIDELITY_MESO);
+				return;
+			}
+		}
+	}
+	
 	
 	/**
 	 * Marks all roads that are part of a dead-end branch (a "cul-de-sac").
@@ -1116,10 +1136,14 @@ public class CityContext extends DefaultContext<Object> {
 			return false;
 		}
 		double routingWeight = Math.max(weight, 1.0e-3);
+		boolean changed = edge.getWeight() != routingWeight;
 		edge.setWeight(routingWeight);
 		if (this.networkInitialized) {
 			RouteContext.setEdgeWeight(node1, node2, routingWeight);
 		}
+		if (changed) {
+			RouteContext.bumpWeightEpoch(); // Cached routes used the old weight
+		}
 		return true;
 	}
 
@@ -1172,6 +1196,7 @@ public class CityContext extends DefaultContext<Object> {
 		markInvalidDestinations();
 		ContextCreator.getRoadContext().rebuildConnectorTopology();
 		clearRoadLookupCaches();
+		applyConfiguredFidelity(road);
 	}
 
 	private Junction resolveAddedRoadJunction(Road road, List<Road> connectorRoads, boolean upstream,
@@ -1232,6 +1257,7 @@ public class CityContext extends DefaultContext<Object> {
 		RepastEdge<Node> existingEdge = roadNetwork.getEdge(node1, node2);
 		if (existingEdge != null) {
 			existingEdge.setWeight(road.getTravelTime());
+			RouteContext.bumpWeightEpoch();
 			this.edgeRoadID_KeyEdge.put(existingEdge, road.getID());
 			this.edgeIDEdge_KeyID.put(road.getID(), existingEdge);
 			return;
@@ -1326,6 +1352,7 @@ public class CityContext extends DefaultContext<Object> {
 		RepastEdge<Node> existingEdge = roadNetwork.getEdge(node1, node2);
 		if (existingEdge != null) {
 			existingEdge.setWeight(weight);
+			RouteContext.bumpWeightEpoch();
 			this.edgeRoadID_KeyEdge.put(existingEdge, -1);
 			return;
 		}
@@ -100,11 +100,10 @@ public final class ConnectorRoad extends Road {
 		double maxLength = 0.0;
 		double explicitSpeed = Double.POSITIVE_INFINITY;
 		for (ConnectorPath path : this.paths) {
-			List<Coordinate> line = path.getCenterLine();
 			double pathLength = Double.isFinite(path.getDeclaredLength())
 					&& path.getDeclaredLength() >= 0.0
 							? path.getDeclaredLength()
-							: polylineLengthMeters(line, intersectionAnchor(line));
+							: path.getPolylineLength();
 			maxLength = Math.max(maxLength, pathLength);
 			if (Double.isFinite(path.getSpeed()) && path.getSpeed() >= 0.0) {
 				explicitSpeed = Math.min(explicitSpeed, path.getSpeed());
@@ -137,11 +136,6 @@ public final class ConnectorRoad extends Road {
 		return Collections.unmodifiableList(result);
 	}
 
-	private Coordinate intersectionAnchor(List<Coordinate> line) {
-		if (line == null || line.isEmpty()) return new Coordinate(0.0, 0.0, 0.0);
-		return line.get(0);
-	}
-
 	private static ArrayList<Coordinate> deepCopy(List<Coordinate> coordinates) {
 		ArrayList<Coordinate> result = new ArrayList<Coordinate>();
 		if (coordinates == null) return result;
@@ -153,30 +147,22 @@ public final class ConnectorRoad extends Road {
 		return result;
 	}
 
-	private static double polylineLengthMeters(List<Coordinate> line, Coordinate anchor) {
-		if (line == null || line.size() < 2) return 0.0;
-		double[][] local = toLocalMeters(line, anchor);
-		double length = 0.0;
-		for (int i = 0; i < local.length - 1; i++) {
-			length += Math.hypot(local[i + 1][0] - local[i][0],
-					local[i + 1][1] - local[i][1]);
-		}
-		return length;
-	}
-
 	static double[][] toLocalMeters(List<Coordinate> line, Coordinate anchor) {
 		double[][] result = new double[line == null ? 0 : line.size()][2];
 		if (line == null || anchor == null) return result;
+		for (int i = 0; i < line.size(); i++) {
+			toLocalMeters(line.get(i), anchor, result[i]);
+		}
+		return result;
+	}
+
+	private static void toLocalMeters(Coordinate coordinate, Coordinate anchor, double[] result) {
 		double earthRadius = 6371008.8;
 		double latitudeRadians = Math.toRadians(anchor.y);
 		double longitudeRadians = Math.toRadians(anchor.x);
 		double longitudeScale = earthRadius * Math.cos(latitudeRadians);
-		for (int i = 0; i < line.size(); i++) {
-			Coordinate coordinate = line.get(i);
-			result[i][0] = longitudeScale * (Math.toRadians(coordinate.x) - longitudeRadians);
-			result[i][1] = earthRadius * (Math.toRadians(coordinate.y) - latitudeRadians);
-		}
-		return result;
+		result[0] = longitudeScale * (Math.toRadians(coordinate.x) - longitudeRadians);
+		result[1] = earthRadius * (Math.toRadians(coordinate.y) - latitudeRadians);
 	}
 
 	public static boolean polylinesConflict(double[][] first, double[][] second,
@@ -565,6 +551,10 @@ public final class ConnectorRoad extends Road {
 		private final double declaredLength;
 		private final double speed;
 		private final boolean explicitGeometry;
+		// Centerline in meters around its first point and the cumulative length
+		// along it, fixed with the geometry so pose queries only project the pose
+		private final double[][] localMeters;
+		private final double[] arcLength;
 
 		public ConnectorPath(Lane sourceLane, Lane targetLane, List<Coordinate> centerLine) {
 			this(sourceLane, targetLane, centerLine, Collections.<String>emptyList(),
@@ -590,6 +580,19 @@ public final class ConnectorRoad extends Road {
 			this.declaredLength = declaredLength;
 			this.speed = speed;
 			this.explicitGeometry = explicitGeometry;
+			this.localMeters = toLocalMeters(this.centerLine,
+					this.centerLine.isEmpty() ? null : this.centerLine.get(0));
+			this.arcLength = new double[this.localMeters.length];
+			for (int i = 1; i < this.localMeters.length; i++) {
+				this.arcLength[i] = this.arcLength[i - 1]
+						+ Math.hypot(this.localMeters[i][0] - this.localMeters[i - 1][0],
+								this.localMeters[i][1] - this.localMeters[i - 1][1]);
+			}
+		}
+
+		/** Planar length of the centerline in meters. */
+		public double getPolylineLength() {
+			return this.arcLength.length == 0 ? 0.0 : this.arcLength[this.arcLength.length - 1];
 		}
 
 		public Lane getSourceLane() {
@@ -631,20 +634,15 @@ public final class ConnectorRoad extends Road {
 		}
 		double bestDistanceSquared = Double.POSITIVE_INFINITY;
 		double bestRemaining = Double.NaN;
-		for (List<Coordinate> line : this.centerLines) {
-			if (line == null || line.size() < 2) continue;
-			Coordinate anchor = intersectionAnchor(line);
-			double[][] local = toLocalMeters(line, anchor);
-			double[][] posePoint = toLocalMeters(
-					Collections.singletonList(pose), anchor);
-			double poseX = posePoint[0][0];
-			double poseY = posePoint[0][1];
-			double totalLength = 0.0;
-			for (int i = 0; i < local.length - 1; i++) {
-				totalLength += Math.hypot(local[i + 1][0] - local[i][0],
-						local[i + 1][1] - local[i][1]);
-			}
-			double distanceBeforeSegment = 0.0;
+		double[] posePoint = new double[2];
+		for (ConnectorPath path : this.paths) {
+			double[][] local = path.localMeters;
+			double[] arcLength = path.arcLength;
+			if (local.length < 2) continue;
+			toLocalMeters(pose, path.getCenterLine().get(0), posePoint);
+			double poseX = posePoint[0];
+			double poseY = posePoint[1];
+			double totalLength = arcLength[local.length - 1];
 			for (int i = 0; i < local.length - 1; i++) {
 				double dx = local[i + 1][0] - local[i][0];
 				double dy = local[i + 1][1] - local[i][1];
@@ -658,9 +656,8 @@ public final class ConnectorRoad extends Road {
 				double offsetX = poseX - projectedX;
 				double offsetY = poseY - projectedY;
 				double distanceSquared = offsetX * offsetX + offsetY * offsetY;
-				double segmentLength = Math.sqrt(segmentLengthSquared);
-				double remaining = Math.max(0.0,
-						totalLength - distanceBeforeSegment - fraction * segmentLength);
+				double remaining = Math.max(0.0, totalLength - arcLength[i]
+						- fraction * (arcLength[i + 1] - arcLength[i]));
 				if (distanceSquared < bestDistanceSquared - GEOMETRY_EPSILON
 						|| (Math.abs(distanceSquared - bestDistanceSquared)
 								<= GEOMETRY_EPSILON
@@ -669,7 +666,6 @@ public final class ConnectorRoad extends Road {
 					bestDistanceSquared = distanceSquared;
 					bestRemaining = remaining;
 				}
-				distanceBeforeSegment += segmentLength;
 			}
 		}
 		return bestRemaining;
@@ -0,0 +1,89 @@
+package mets_r.facility;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+/**
+ * Hashed timer wheel of future departures for active-road stepping. A road
+ * whose departure queue holds only vehicles due in later ticks schedules itself
+ * at the earliest due tick and leaves the active set; at that tick the wheel
+ * marks it active again, so idle roads with hour-ahead trips are neither stepped
+ * nor scanned in between. Ticks beyond one turn of the wheel share a slot with
+ * nearer ticks and simply stay in it until their own tick is drained.
+ *
+ * Roads schedule from the road workers and the scheduler drains once per tick,
+ * so access is synchronized; both are rare next to the road steps.
+ */
+final class DepartureWheel {
+	private static final int SLOTS = 1024; // Power of two
+
+	private final int[][] roadIDs = new int[SLOTS][];
+	private final int[][] dueTicks = new int[SLOTS][];
+	private final int[] sizes = new int[SLOTS];
+	private int drainedTick = Integer.MIN_VALUE;
+	private int pending;
+	private long scheduled;
+	private long woken;
+
+	synchronized void schedule(int roadID, int dueTick) {
+		int slot = dueTick & (SLOTS - 1);
+		int n = this.sizes[slot];
+		if (this.roadIDs[slot] == null) {
+			this.roadIDs[slot] = new int[4];
+			this.dueTicks[slot] = new int[4];
+		} else if (n == this.roadIDs[slot].length) {
+			this.roadIDs[slot] = Arrays.copyOf(this.roadIDs[slot], 2 * n);
+			this.dueTicks[slot] = Arrays.copyOf(this.dueTicks[slot], 2 * n);
+		}
+		this.roadIDs[slot][n] = roadID;
+		this.dueTicks[slot][n] = dueTick;
+		this.sizes[slot] = n + 1;
+		this.pending++;
+		this.scheduled++;
+	}
+
+	/**
+	 * Mark active every road due at or before tick, visiting only the slots of
+	 * the ticks passed since the last drain.
+	 */
+	synchronized void drain(int tick, RoadContext roadContext) {
+		if (tick <= this.drainedTick) return;
+		long span = this.drainedTick == Integer.MIN_VALUE ? 1L : (long) tick - this.drainedTick;
+		int slots = (int) Math.min(SLOTS, span);
+		this.drainedTick = tick;
+		if (this.pending == 0) return;
+		for (int k = 0; k < slots; k++) {
+			int slot = (tick - k) & (SLOTS - 1);
+			int n = this.sizes[slot];
+			int kept = 0;
+			for (int i = 0; i < n; i++) {
+				int roadID = this.roadIDs[slot][i];
+				int dueTick = this.dueTicks[slot][i];
+				if (dueTick <= tick) {
+					roadContext.markRoadActive(roadID);
+					this.woken++;
+				} else {
+					this.roadIDs[slot][kept] = roadID;
+					this.dueTicks[slot][kept] = dueTick;
+					kept++;
+				}
+			}
+			this.pending -= n - kept;
+			this.sizes[slot] = kept;
+		}
+	}
+
+	synchronized void clear() {
+		Arrays.fill(this.sizes, 0);
+		this.pending = 0;
+		this.drainedTick = Integer.MIN_VALUE;
+	}
+
+	synchronized LinkedHashMap<String, Object> getStatus() {
+		LinkedHashMap<String, Object> status = new LinkedHashMap<String, Object>();
+		status.put("pending", this.pending);
+		status.put("scheduled", this.scheduled);
+		status.put("woken", this.woken);
+		return status;
+	}
+}
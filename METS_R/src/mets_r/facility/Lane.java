@@ -2,6 +2,7 @@ package mets_r.facility;
 
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Random;
@@ -29,6 +30,7 @@ public class Lane {
 	private ArrayList<Coordinate> coords;
 	private double length;
 	private double[] segmentSlopes; // slope[i] = dz/horizontal for segment coords[i]→coords[i+1]
+	private volatile ArcLengths arcLengths; // Built lazily from coords, dropped when coords change
 	
 	// Connection with other facilities
 	private ArrayList<Integer> upStreamLanes;// Upstream lanes that connect to this
@@ -46,12 +48,15 @@ public class Lane {
 	private Vehicle lastVehicle_; // The last vehicle vehicle on a lane
 	private Random rand; // Random seed for lane changing
 	private double freeSpeed_; // Target speed for vehicles on this lane
+	private final AtomicInteger kinematicsVersion_; // Bumped on every membership or order change
+	private LaneKinematics kinematics; // Created by the owning road when the store is enabled
 
 	public Lane(int id) {
 		this.ID = id;
 		this.origID = "";
 		this.rand = new Random(GlobalVariables.RandomGenerator.nextInt());
 		this.nVehicles_ = new AtomicInteger(0);
+		this.kinematicsVersion_ = new AtomicInteger(0);
 		this.lastVehicle_ = null;
 		this.upStreamLanes = new ArrayList<Integer>();
 		this.downStreamLanes = new ArrayList<Integer>();
@@ -85,10 +90,12 @@ public class Lane {
 	
 	public void setCoords(Coordinate[] coordinates) {
 		this.coords = new ArrayList<Coordinate>(Arrays.asList(coordinates));
+		this.arcLengths = null;
 	}
 	
 	public void setCoords(ArrayList<Coordinate> coords) {
 		this.coords = coords;
+		this.arcLengths = null;
 	}
 
 	
@@ -105,6 +112,123 @@ public class Lane {
 		return res;
 	}
 	
+	/**
+	 * Append (copies of) the lane coordinates from index start to the end.
+	 */
+	public void copyCoordsFrom(int start, List<Coordinate> out) {
+		for (int i = Math.max(0, start); i < this.coords.size(); i++) {
+			Coordinate coord = this.coords.get(i);
+			out.add(new Coordinate(coord.x, coord.y, coord.z));
+		}
+	}
+	
+	/**
+	 * Get (a copy of) coordinate i of the lane
+	 */
+	public Coordinate getCoord(int i) {
+		Coordinate coord = this.coords.get(i);
+		return new Coordinate(coord.x, coord.y, coord.z);
+	}
+	
+	public int getCoordCount() {
+		return this.coords.size();
+	}
+	
+	/**
+	 * Horizontal (orthodromic) distance along the lane from its first coordinate
+	 * to coordinate i.
+	 */
+	public double getArcLength(int i) {
+		return this.arcLengths().horizontal[i];
+	}
+	
+	/**
+	 * Distance along the lane from its first coordinate to coordinate i including
+	 * elevation, measured segment by segment as CityContext.getDistance does.
+	 * Segments whose distance is not finite count as zero length.
+	 */
+	public double getSpatialArcLength(int i) {
+		return this.arcLengths().spatial[i];
+	}
+	
+	/**
+	 * Binary search for the first segment i (coords[i]→coords[i+1]) whose
+	 * downstream end lies at least arcLength from the lane start horizontally.
+	 * @return the segment index, or -1 if the lane is shorter than arcLength
+	 */
+	public int findSegment(double arcLength) {
+		return firstSegmentReaching(this.arcLengths().horizontal, arcLength);
+	}
+	
+	/**
+	 * Same as findSegment on the elevation-aware table, skipping zero-length
+	 * segments so the result always has a heading.
+	 */
+	public int findSpatialSegment(double arcLength) {
+		double[] spatial = this.arcLengths().spatial;
+		int i = firstSegmentReaching(spatial, arcLength);
+		if (i < 0) return -1;
+		while (i < spatial.length - 1 && spatial[i + 1] - spatial[i] <= 1e-9) {
+			i++;
+		}
+		return i < spatial.length - 1 ? i : -1;
+	}
+	
+	private static int firstSegmentReaching(double[] arc, double arcLength) {
+		int lo = 1;
+		int hi = arc.length - 1;
+		if (hi < lo || arc[hi] < arcLength) return -1;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (arc[mid] >= arcLength) hi = mid;
+			else lo = mid + 1;
+		}
+		return lo - 1;
+	}
+	
+	/** Build the arc-length tables now so that the first vehicle does not. */
+	void prepareArcLengths() {
+		this.arcLengths();
+	}
+	
+	private ArcLengths arcLengths() {
+		ArcLengths tables = this.arcLengths;
+		if (tables == null) {
+			tables = new ArcLengths(this.coords);
+			this.arcLengths = tables;
+		}
+		return tables;
+	}
+	
+	/**
+	 * Cumulative distances from the first coordinate, horizontal and with
+	 * elevation. Immutable, so a table built concurrently by two threads is
+	 * identical and either may win the publication.
+	 */
+	private static final class ArcLengths {
+		final double[] horizontal;
+		final double[] spatial;
+		
+		ArcLengths(ArrayList<Coordinate> coords) {
+			int n = coords.size();
+			this.horizontal = new double[n];
+			this.spatial = new double[n];
+			CityContext city = ContextCreator.getCityContext();
+			for (int i = 1; i < n; i++) {
+				Coordinate c1 = coords.get(i - 1);
+				Coordinate c2 = coords.get(i);
+				double h = city.getHorizontalDistance(c1, c2);
+				double d = h;
+				if (!Double.isNaN(c1.z) && !Double.isNaN(c2.z)) {
+					double dz = c2.z - c1.z;
+					d = Math.sqrt(h * h + dz * dz);
+				}
+				this.horizontal[i] = this.horizontal[i - 1] + (Double.isFinite(h) ? h : 0.0);
+				this.spatial[i] = this.spatial[i - 1] + (Double.isFinite(d) ? d : 0.0);
+			}
+		}
+	}
+	
 	public ArrayList<Coordinate> getTurningCoords(int targetLaneID){
 		ArrayList<Coordinate> res = new ArrayList<Coordinate>();
 		if(this.turningCoords.containsKey(targetLaneID)) {
@@ -202,6 +326,7 @@ public class Lane {
 
 
 	public void firstVehicle(Vehicle v) {
+		this.kinematicsVersion_.incrementAndGet();
 		if (v != null) {
 			this.firstVehicle_ = v;
 			v.leading(null);
@@ -210,6 +335,7 @@ public class Lane {
 	}
 
 	public void lastVehicle(Vehicle v) {
+		this.kinematicsVersion_.incrementAndGet();
 		if (v != null) {
 			this.lastVehicle_ = v;
 			v.trailing(null);
@@ -307,6 +433,7 @@ public class Lane {
 
 	public void restoreRuntimeState(double speed, Random restoredRandom) {
 		this.nVehicles_.set(0);
+		this.kinematicsVersion_.incrementAndGet();
 		this.firstVehicle_ = null;
 		this.lastVehicle_ = null;
 		this.freeSpeed_ = speed;
@@ -323,10 +450,39 @@ public class Lane {
 	// vehicle to arrayList.
 	public void addOneVehicle() {
 		nVehicles_.addAndGet(1);
+		this.kinematicsVersion_.incrementAndGet();
 	}
 
 	public void removeOneVehicle() {
 		this.nVehicles_.addAndGet(-1);
+		this.kinematicsVersion_.incrementAndGet();
+	}
+
+	/** Record that vehicles swapped places within the lane list. */
+	public void markReordered() {
+		this.kinematicsVersion_.incrementAndGet();
+	}
+
+	public int getKinematicsVersion() {
+		return this.kinematicsVersion_.get();
+	}
+
+	// Kinematic store of this lane; only the road stepping the lane touches it
+	public LaneKinematics getKinematics() {
+		if (this.kinematics == null) {
+			this.kinematics = new LaneKinematics();
+		}
+		return this.kinematics;
+	}
+
+	/**
+	 * Kinematic store of this lane as its position index, resynced first if the
+	 * lane changed since the last sync. Only the road stepping the lane calls this.
+	 */
+	public LaneKinematics getPositionIndex() {
+		LaneKinematics index = this.getKinematics();
+		if (!index.isCurrent(this)) index.sync(this);
+		return index;
 	}
 
 	// Following are functions dedicated for discretionary lane changing
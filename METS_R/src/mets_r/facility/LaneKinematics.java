@@ -0,0 +1,139 @@
+package mets_r.facility;
+
+import java.util.Arrays;
+
+import mets_r.mobility.Vehicle;
+
+/**
+ * Structure-of-arrays copy of the kinematic state of the vehicles on one lane,
+ * ordered from the downstream end (slot 0 is the first vehicle). The owning
+ * road syncs it when it opens the acceleration pass of stepPart1, after the
+ * transfers and lane changes of the tick, so slot i - 1 holds the same-lane
+ * leader of the vehicle in slot i and the car-following model reads the leader
+ * position, speed, acceleration and length from contiguous arrays instead of
+ * chasing leader objects.
+ *
+ * A copy is stale once the vehicles move (the road marks it dirty at the start
+ * of stepPart1), the lane membership changes (tracked by the lane's kinematics
+ * version) or a vehicle on it is written out of band (co-sim sync, restore,
+ * setters). Slots are only read while the road has the store active, and only
+ * by vehicles bound by the latest sync.
+ *
+ * With LANE_POSITION_INDEX the store also serves as the position index of the
+ * lane: the distances are ascending by slot, so the leader and follower of a
+ * position on an adjacent lane are found by binary search.
+ */
+public final class LaneKinematics {
+	private static final int INITIAL_CAPACITY = 8;
+
+	private Vehicle[] vehicles = new Vehicle[INITIAL_CAPACITY];
+	private double[] distance = new double[INITIAL_CAPACITY];
+	private double[] speed = new double[INITIAL_CAPACITY];
+	private double[] acc = new double[INITIAL_CAPACITY];
+	private double[] length = new double[INITIAL_CAPACITY];
+	private int count;
+	private int laneVersion = -1;
+	private int syncCount; // Stamp of the latest sync, held by the vehicles it bound
+	private volatile boolean dirty = true;
+	private boolean active;
+
+	/** Copy the state of the vehicles on the lane, from the first one backward. */
+	void sync(Lane lane) {
+		int version = lane.getKinematicsVersion();
+		int stamp = ++this.syncCount;
+		int n = 0;
+		for (Vehicle v = lane.firstVehicle(); v != null; v = v.trailing()) {
+			if (n == this.vehicles.length) this.grow();
+			this.vehicles[n] = v;
+			this.distance[n] = v.getDistanceToNextJunction();
+			this.speed[n] = v.currentSpeed();
+			this.acc[n] = v.currentAcc();
+			this.length[n] = v.length();
+			v.bindKinematics(this, n, stamp);
+			n++;
+		}
+		if (n < this.count) Arrays.fill(this.vehicles, n, this.count, null);
+		this.count = n;
+		this.laneVersion = version;
+		this.dirty = false;
+	}
+
+	boolean isCurrent(Lane lane) {
+		return !this.dirty && this.laneVersion == lane.getKinematicsVersion();
+	}
+
+	void setActive(boolean active) {
+		this.active = active;
+	}
+
+	public void markDirty() {
+		this.dirty = true;
+	}
+
+	/** Whether the store is being read by its road and a vehicle bound with stamp is in it. */
+	public boolean isBound(int stamp) {
+		return this.active && stamp == this.syncCount;
+	}
+
+	/**
+	 * Last slot whose vehicle is at most dist from the downstream junction, i.e.
+	 * the leader of a vehicle placed at dist, or -1 if there is none.
+	 */
+	public int leaderSlot(double dist) {
+		int follower = this.firstSlotBeyond(dist);
+		return follower - 1;
+	}
+
+	/**
+	 * First slot whose vehicle is farther than dist from the downstream junction,
+	 * i.e. the follower of a vehicle placed at dist, or -1 if there is none.
+	 */
+	public int followerSlot(double dist) {
+		int follower = this.firstSlotBeyond(dist);
+		return follower < this.count ? follower : -1;
+	}
+
+	private int firstSlotBeyond(double dist) {
+		int lo = 0;
+		int hi = this.count;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (this.distance[mid] <= dist) lo = mid + 1;
+			else hi = mid;
+		}
+		return lo;
+	}
+
+	public int size() {
+		return this.count;
+	}
+
+	public Vehicle vehicleAt(int slot) {
+		return this.vehicles[slot];
+	}
+
+	public double distanceAt(int slot) {
+		return this.distance[slot];
+	}
+
+	public double speedAt(int slot) {
+		return this.speed[slot];
+	}
+
+	public double accAt(int slot) {
+		return this.acc[slot];
+	}
+
+	public double lengthAt(int slot) {
+		return this.length[slot];
+	}
+
+	private void grow() {
+		int capacity = this.vehicles.length * 2;
+		this.vehicles = Arrays.copyOf(this.vehicles, capacity);
+		this.distance = Arrays.copyOf(this.distance, capacity);
+		this.speed = Arrays.copyOf(this.speed, capacity);
+		this.acc = Arrays.copyOf(this.acc, capacity);
+		this.length = Arrays.copyOf(this.length, capacity);
+	}
+}
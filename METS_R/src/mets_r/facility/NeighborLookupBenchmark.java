@@ -0,0 +1,142 @@
+package mets_r.facility;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import mets_r.ContextCreator;
+import mets_r.GlobalVariables;
+import mets_r.mobility.Vehicle;
+
+/**
+ * Compares the adjacent-lane leader/follower lookup of lane changing on a dense
+ * multi-lane road of the configured scenario (built without a Repast run): the
+ * walk along the road's macro list that Vehicle.leadVehicle and lagVehicle do by
+ * default against the binary search over the lane kinematic stores
+ * (LANE_POSITION_INDEX). Both run the real lookup code on the same vehicles,
+ * placed on the road with Road.teleportVehicle. Every vehicle queries the leader
+ * and follower on both adjacent lanes each tick, as the lane-changing models
+ * do. The index cost includes resyncing every lane's store each tick, as after
+ * the vehicles move. One lane can be left nearly empty (a closure or managed
+ * lane), where the walk degrades to the length of the road. Exits with status 1
+ * if the two lookups disagree on any vehicle.
+ *
+ * Usage: NeighborLookupBenchmark [vehiclesPerKmPerLane] [ticks] [sparseLane]
+ */
+public class NeighborLookupBenchmark {
+	private static long sink;
+
+	public static void main(String[] args) {
+		double density = args.length > 0 ? Double.parseDouble(args[0]) : 100;
+		int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+		int sparseLane = args.length > 2 ? Integer.parseInt(args[2]) : -1;
+
+		ContextCreator.buildStandalone();
+		Road road = widestRoad();
+		if (road == null) {
+			System.out.println("FAIL: the scenario has no road with more than one lane");
+			System.exit(1);
+		}
+		ArrayList<Lane> lanes = road.getLanes();
+		Random rand = new Random(42);
+		int n = 0;
+		for (int l = 0; l < lanes.size(); l++) {
+			Lane lane = lanes.get(l);
+			if (lane.getCoords() == null || lane.getCoords().size() < 2) continue;
+			int count = l == sparseLane ? 2 : Math.max(1, (int) (density * lane.getLength() / 1000));
+			double spacing = lane.getLength() / count;
+			for (int k = 0; k < count; k++) {
+				double d = Math.min(lane.getLength(), (k + 0.5 + 0.8 * (rand.nextDouble() - 0.5)) * spacing);
+				road.teleportVehicle(new Vehicle(Vehicle.GV, Vehicle.NONE_OF_THE_ABOVE), lane, d);
+				n++;
+			}
+		}
+		ArrayList<Vehicle> vehicles = new ArrayList<Vehicle>(n);
+		for (Vehicle v = road.firstVehicle(); v != null; v = v.macroTrailing()) vehicles.add(v);
+
+		System.out.println(String.format("road=%d lanes=%d length=%.1f vehicles=%d ticks=%d sparseLane=%d",
+				road.getID(), lanes.size(), road.getLength(), vehicles.size(), ticks, sparseLane));
+		long mismatches = compare(vehicles, lanes);
+		System.out.println("lookups disagreeing between walk and index: " + mismatches);
+
+		boolean indexed = GlobalVariables.LANE_POSITION_INDEX;
+		lookups(vehicles, lanes, false, Math.max(1, ticks / 5));
+		lookups(vehicles, lanes, true, Math.max(1, ticks / 5));
+		long start = System.nanoTime();
+		long walkQueries = lookups(vehicles, lanes, false, ticks);
+		long walkNanos = System.nanoTime() - start;
+		start = System.nanoTime();
+		long indexQueries = lookups(vehicles, lanes, true, ticks);
+		long indexNanos = System.nanoTime() - start;
+		GlobalVariables.LANE_POSITION_INDEX = indexed;
+		System.out.println(String.format("%8s %14s %14s", "", "ns/query", "ms/tick"));
+		System.out.println(String.format("%8s %14.1f %14.3f", "walk", (double) walkNanos / walkQueries,
+				walkNanos / 1e6 / ticks));
+		System.out.println(String.format("%8s %14.1f %14.3f", "index", (double) indexNanos / indexQueries,
+				indexNanos / 1e6 / ticks));
+		System.out.println(String.format("speedup %.2f", (double) walkNanos / indexNanos));
+		System.exit(mismatches == 0 ? 0 : 1);
+	}
+
+	// Road with the most lanes, the longest among those
+	private static Road widestRoad() {
+		Road best = null;
+		for (Road road : ContextCreator.getRoadContext().getAll()) {
+			if (road.getNumberOfLanes() < 2) continue;
+			if (best == null || road.getNumberOfLanes() > best.getNumberOfLanes()
+					|| (road.getNumberOfLanes() == best.getNumberOfLanes() && road.getLength() > best.getLength())) {
+				best = road;
+			}
+		}
+		return best;
+	}
+
+	private static long lookups(ArrayList<Vehicle> vehicles, ArrayList<Lane> lanes, boolean indexed, int ticks) {
+		GlobalVariables.LANE_POSITION_INDEX = indexed;
+		long queries = 0;
+		for (int t = 0; t < ticks; t++) {
+			if (indexed) {
+				for (Lane lane : lanes) lane.getKinematics().markDirty(); // Vehicles moved since the last tick
+			}
+			for (Vehicle v : vehicles) {
+				int l = lanes.indexOf(v.getLane());
+				for (int target = l - 1; target <= l + 1; target += 2) {
+					if (target < 0 || target >= lanes.size()) continue;
+					Lane plane = lanes.get(target);
+					double dist = v.getDistanceToNextJunction();
+					sink += identity(v.leadVehicle(plane, dist));
+					sink += identity(v.lagVehicle(plane, dist));
+					queries += 2;
+				}
+			}
+		}
+		return queries;
+	}
+
+	// Count the lookups where the walk and the index return different vehicles
+	private static long compare(ArrayList<Vehicle> vehicles, ArrayList<Lane> lanes) {
+		boolean indexed = GlobalVariables.LANE_POSITION_INDEX;
+		long mismatches = 0;
+		for (Vehicle v : vehicles) {
+			int l = lanes.indexOf(v.getLane());
+			for (int target = l - 1; target <= l + 1; target += 2) {
+				if (target < 0 || target >= lanes.size()) continue;
+				Lane plane = lanes.get(target);
+				double dist = v.getDistanceToNextJunction();
+				GlobalVariables.LANE_POSITION_INDEX = false;
+				Vehicle walkLead = v.leadVehicle(plane, dist);
+				Vehicle walkLag = v.lagVehicle(plane, dist);
+				GlobalVariables.LANE_POSITION_INDEX = true;
+				Vehicle indexLead = v.leadVehicle(plane, dist);
+				Vehicle indexLag = v.lagVehicle(plane, dist);
+				if (walkLead != indexLead) mismatches++;
+				if (walkLag != indexLag) mismatches++;
+			}
+		}
+		GlobalVariables.LANE_POSITION_INDEX = indexed;
+		return mismatches;
+	}
+
+	private static int identity(Vehicle v) {
+		return v == null ? -1 : v.getID();
+	}
+}
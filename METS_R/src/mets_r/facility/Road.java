@@ -1,9 +1,11 @@
 package mets_r.facility;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -12,7 +14,11 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.vividsolutions.jts.geom.Coordinate;
 import mets_r.*;
@@ -20,6 +26,8 @@ import mets_r.data.input.BackgroundTraffic;
 import mets_r.mobility.ElectricBus;
 import mets_r.mobility.ElectricTaxi;
 import mets_r.mobility.ElectricVehicle;
+import mets_r.mobility.EnergyBatch;
+import mets_r.mobility.LaneChangingModels;
 import mets_r.mobility.Vehicle;
 
 /**
@@ -39,17 +47,32 @@ public class Road {
 	
 	public final static int COSIM = 1;
 	
+	// Fidelity levels: per-vehicle car-following and lane changing, or the link queue model
+	public final static int FIDELITY_MICRO = 0;
+	public final static int FIDELITY_MESO = 1;
+	
 	public final static int NONE_OF_THE_ABOVE = -1;
 
 	private static final double MPH_TO_METERS_PER_SECOND = 0.44694;
 	private static final double DEFAULT_STREET_PARKING_CAPACITY_PER_METER = 0.115;
 	private static final double DEFAULT_STREET_PARKING_MAX_SPEED_MPS = 30.0 * MPH_TO_METERS_PER_SECOND;
+	private static final double MESO_JAM_SPACING = 7.5; // Meters per vehicle at jam density
+	private static final double MESO_MIN_SPEED_RATIO = 0.05; // Bounds the link travel time of a jammed road
+	private static final double MESO_SATURATION_FLOW = 0.5; // Vehicles per second leaving the queue of a lane
+
+	/* Intra-road split of acceleration decisions on heavy roads */
+	private static volatile ForkJoinPool intraRoadPool; // Used when the caller is not a fork/join worker
+	private static final LongAdder intraRoadSplits = new LongAdder();
+	private static final LongAdder intraRoadSubtasks = new LongAdder();
+	private static final LongAdder intraRoadYieldTags = new LongAdder();
+	private static final LongAdder kinematicResyncs = new LongAdder(); // Lane stores synced before the decisions
 	
 	/* Private variables */
 	private int ID;
 	private String origID;
 	private int roadType = NONE_OF_THE_ABOVE;
 	private int controlType = NONE_OF_THE_ABOVE;
+	private volatile int fidelity = parseFidelity(GlobalVariables.ROAD_FIDELITY_DEFAULT);
 	private double length;
 	private ArrayList<Coordinate> coords;
 	
@@ -94,6 +117,11 @@ public class Road {
 	private ConcurrentLinkedQueue<Vehicle> toAddDepartureVeh; // Tree map is not thread-safe, so use this 
 	private final ArrayList<Vehicle> stepVehicleBuffer = new ArrayList<Vehicle>();
 	private final ArrayList<Vehicle> departureBuffer = new ArrayList<Vehicle>();
+	private MesoLaneQueue[] mesoQueues; // Link queue of each lane, null while no vehicle is queued
+	private boolean mesoStepped; // Whether the last decision step ran the link queue
+	// Earliest tick the departure queue can release a vehicle, MIN_VALUE when it must be
+	// checked now. Written by the departure pass, reset whenever the queue changes.
+	private volatile int nextDepartureTick_ = Integer.MIN_VALUE;
 	private double speedLimit_; // Speed for travel time estimation
 	private double travelTimeSum;
 	private int travelTimeCount;
@@ -106,6 +134,14 @@ public class Road {
 	// and read by the METIS partitioner for edge weight computation.
 	private AtomicInteger nShadowVehicles;
 	private AtomicInteger nFutureRoutingVehicles;
+	// Smoothed wall time of the last road steps, used to size work-stealing chunks
+	private long stepPart1CostNanos;
+	private long stepPart2CostNanos;
+	// Partition that stepped this road in the current tick, used to keep global transfers local
+	private int stepPartition = -1;
+	private int stepPartitionTick = -1;
+	// Partition the partitioner last assigned this road to, used for transfer locality stats
+	private int partitionOwner = -1;
 	
 	/* Public variables */
 	public double currentEnergy;
@@ -180,7 +216,7 @@ public class Road {
 		if (ContextCreator.getRoadContext().get(this.getID()) != this) return;
 
 		int tickcount = ContextCreator.getCurrentTick();
-		addVehicleToDepartureMap();
+		if (!this.toAddDepartureVeh.isEmpty()) addVehicleToDepartureMap();
 		
 		/* Log all vehicle states */
 		Vehicle currentVehicle = this.firstVehicle();
@@ -213,11 +249,14 @@ public class Road {
 			}
 		}
 
-		/* Vehicle departure */
-		if (this.getControlType() != Road.COSIM) {
+		/* Vehicle departure, skipped without locking while nothing is due */
+		if (this.getControlType() != Road.COSIM && tickcount >= this.nextDepartureTick_) {
 			while (true) {
 				Vehicle v = this.departureVehicleQueueHead();
-				if (v == null) break;
+				if (v == null) {
+					this.nextDepartureTick_ = Integer.MAX_VALUE;
+					break;
+				}
 				try {
 					// Queue ownership transfer and admission use the same vehicle
 					// monitor, so two road workers cannot admit or requeue it between
@@ -238,7 +277,13 @@ public class Road {
 							boolean busTrip = (v.getVehicleClass() == Vehicle.EBUS);
 							if (busTrip && v.getOriginID() == v.getDestID()) {
 								roadContext.removeVehicleFromEnteringQueues(v);
-								v.reachDest();
+								if (GlobalVariables.DETERMINISTIC_PARALLEL) {
+									// Stop-side effects (passengers, logs, next departure) touch other
+									// entities; run them in the ID-ordered arrival pass instead.
+									ContextCreator.getVehicleContext().addArrivalVehicles(v);
+								} else {
+									v.reachDest();
+								}
 							} else if (v.enterNetwork(this)) {
 								this.removeVehicleFromNewQueue(departTime, v);
 							} else {
@@ -252,7 +297,9 @@ public class Road {
 								break; // Network is full, stop processing departures
 							}
 						} else {
-							break; // Reached vehicles scheduled for future ticks
+							// Reached vehicles scheduled for future ticks
+							this.deferDepartures(departTime);
+							break;
 						}
 					}
 				} catch (Throwable ex) {
@@ -267,7 +314,17 @@ public class Road {
 		if(!(this.getControlType() == Road.COSIM)) {
 			if (this.firstVehicle_ == null) return;
 
-			boolean usesLaneChangeAdvice = "LC2013".equals(GlobalVariables.LANE_CHANGING_MODEL);
+			if (this.fidelity == FIDELITY_MESO) {
+				this.stepMesoscopicQueue(tickcount, !this.mesoStepped);
+				this.mesoStepped = true;
+				return;
+			}
+			this.mesoStepped = false;
+			if (this.mesoQueues != null) {
+				this.releaseMesoscopicQueues(tickcount); // Drains the queue of a road switched back to MICRO
+			}
+
+			boolean usesLaneChangeAdvice = LaneChangingModels.CONFIGURED.advisesAcceleration();
 			if (usesLaneChangeAdvice) {
 				currentVehicle = this.firstVehicle();
 				while (currentVehicle != null) {
@@ -277,16 +334,23 @@ public class Road {
 				}
 			}
 
-			// Phase 1: lane-changing decisions for all vehicles
+			// Vehicles moved since the lane stores were last synced
+			if (GlobalVariables.LANE_POSITION_INDEX || GlobalVariables.KINEMATIC_STORE) {
+				this.invalidatePositionIndex();
+			}
+
+			// Phase 1: desired speeds of all vehicles, lane-changing decisions of those due to decide this tick
 			currentVehicle = this.firstVehicle();
 			while (currentVehicle != null) {
 				Vehicle nextVehicle = currentVehicle.macroTrailing();
-				if (currentVehicle.isDormantOnRoad() || currentVehicle.isExternalRoadTransition()) {
+				if (currentVehicle.isDormantOnRoad() || currentVehicle.isExternalRoadTransition()
+						|| currentVehicle.isMesoQueued()) {
 					currentVehicle = nextVehicle;
 					continue;
 				}
 				try {
-					currentVehicle.calcLaneChangingState(tickcount);
+					currentVehicle.refreshDesiredSpeed(tickcount);
+					if (currentVehicle.beginDecisionTick(tickcount)) currentVehicle.calcLaneChangingState(tickcount);
 				} catch (Throwable ex) {
 					ContextCreator.logger.error("Road.stepPart1 lane-change failed road=" + this.ID
 							+ " vehicle=" + currentVehicle.getID(), ex);
@@ -307,7 +371,7 @@ public class Road {
 
 			// 2. Iterate through the buffered list to safely apply macro list repairs
 			for (Vehicle v : vehicleBuffer) {
-				if (v.isDormantOnRoad() || v.isExternalRoadTransition()) {
+				if (v.isDormantOnRoad() || v.isExternalRoadTransition() || v.isMesoQueued()) {
 					continue;
 				}
 				try {
@@ -322,10 +386,15 @@ public class Road {
 			vehicleBuffer.clear();
 
 			// Phase 3: acceleration decisions (now with correct leading vehicles)
+			if (GlobalVariables.KINEMATIC_STORE || this.splitsAccelerationDecisions()) {
+				this.stepAccelerationDecisionsDeferred();
+				return;
+			}
 			currentVehicle = this.firstVehicle();
 			while (currentVehicle != null) {
 				Vehicle nextVehicle = currentVehicle.macroTrailing();
-				if (currentVehicle.isDormantOnRoad() || currentVehicle.isExternalRoadTransition()) {
+				if (currentVehicle.isDormantOnRoad() || currentVehicle.isExternalRoadTransition()
+						|| currentVehicle.isMesoQueued()) {
 					currentVehicle = nextVehicle;
 					continue;
 				}
@@ -341,6 +410,347 @@ public class Road {
 		}
 	}
 
+	/**
+	 * Link queue of a mesoscopic road. A vehicle that enters the road (or was on
+	 * it when it became MESO) joins the queue of a lane that connects to its next
+	 * road, at the downstream end, with an exit tick of its entry tick plus its
+	 * travel time to the end at the current link speed. Each lane releases its
+	 * head once that tick has passed, at most at the saturation flow and one
+	 * vehicle at a time, and the released vehicle leaves through the normal
+	 * junction transfer, so the next road sees an ordinary arrival. Queued
+	 * vehicles take no decisions and do not move, so the work per tick follows
+	 * the entries and releases rather than the vehicles on the road. Entry is
+	 * refused while the road holds its jam density (isMesoscopicStorageFull),
+	 * which spills the queue back upstream.
+	 * 
+	 * @param wholeRoad true on the first step after the road became MESO, when
+	 *                  every vehicle joins, including those at the junction
+	 */
+	private void stepMesoscopicQueue(int tickcount, boolean wholeRoad) {
+		// Later entrants are behind the queue, at the end of the macro list
+		List<Vehicle> entrants = this.stepVehicleBuffer;
+		entrants.clear();
+		for (Vehicle v = this.lastVehicle(); v != null; v = v.macroLeading()) {
+			if (v.isMesoQueued()) {
+				if (wholeRoad) continue;
+				break;
+			}
+			if (!v.isOnLane() && !wholeRoad) break;
+			if (!v.isDormantOnRoad() && !v.isExternalRoadTransition()) entrants.add(v);
+		}
+		if (!entrants.isEmpty()) {
+			double ticksPerMeter = 1.0 / (this.getMesoscopicSpeed() * GlobalVariables.SIMULATION_STEP_SIZE);
+			for (int i = entrants.size() - 1; i >= 0; i--) { // Front to back
+				Vehicle v = entrants.get(i);
+				int exitTick = tickcount + Math.max(1, (int) Math.ceil(v.getDistanceToNextJunction() * ticksPerMeter));
+				try {
+					if (v.joinMesoscopicQueue(tickcount, exitTick)) {
+						this.mesoQueue(v.getLane()).vehicles.add(v);
+					}
+				} catch (Throwable ex) {
+					ContextCreator.logger.error("Road.stepPart1 queue entry failed road=" + this.ID
+							+ " vehicle=" + v.getID(), ex);
+				}
+			}
+			entrants.clear();
+		}
+		this.releaseMesoscopicQueues(tickcount);
+
+		// Released vehicles wait at the downstream end for the junction transfer
+		if (this.mesoQueues == null) return;
+		for (MesoLaneQueue queue : this.mesoQueues) {
+			if (queue != null && queue.released != null) queue.released.ensureAccelerationPlan(0.0);
+		}
+	}
+
+	/**
+	 * Release the head of each lane queue whose exit tick has passed, if the
+	 * previous released vehicle has left the road and the lane has outflow
+	 * capacity left. Runs on a MICRO road as well until its queue is empty.
+	 */
+	private void releaseMesoscopicQueues(int tickcount) {
+		if (this.mesoQueues == null) return;
+		double capacity = MESO_SATURATION_FLOW * GlobalVariables.SIMULATION_STEP_SIZE;
+		boolean holding = false;
+		for (MesoLaneQueue queue : this.mesoQueues) {
+			if (queue == null) continue;
+			if (queue.released != null && (queue.released.getRoad() != this || queue.released.isOnLane())) {
+				queue.released = null; // Transferred
+			}
+			queue.credit = Math.min(1.0, queue.credit + capacity);
+			Vehicle head = queue.vehicles.peek();
+			while (head != null && (head.getRoad() != this || !head.isMesoQueued())) { // Removed by a control message
+				queue.vehicles.poll();
+				head = queue.vehicles.peek();
+			}
+			if (head != null && queue.released == null && queue.credit >= 1.0
+					&& head.getMesoscopicExitTick() <= tickcount) {
+				queue.vehicles.poll();
+				queue.credit -= 1.0;
+				try {
+					head.releaseFromMesoscopicQueue(tickcount);
+					queue.released = head;
+				} catch (Throwable ex) {
+					ContextCreator.logger.error("Road.stepPart1 queue release failed road=" + this.ID
+							+ " vehicle=" + head.getID(), ex);
+				}
+			}
+			holding |= !queue.vehicles.isEmpty() || queue.released != null;
+		}
+		if (!holding && this.fidelity != FIDELITY_MESO) this.mesoQueues = null;
+	}
+
+	private MesoLaneQueue mesoQueue(Lane lane) {
+		if (this.mesoQueues == null) this.mesoQueues = new MesoLaneQueue[this.lanes.size()];
+		int index = Math.max(0, this.getLaneIndex(lane));
+		if (this.mesoQueues[index] == null) this.mesoQueues[index] = new MesoLaneQueue();
+		return this.mesoQueues[index];
+	}
+
+	/** Point queue of one lane of a mesoscopic road. */
+	private static final class MesoLaneQueue {
+		final ArrayDeque<Vehicle> vehicles = new ArrayDeque<Vehicle>(); // In entry order
+		Vehicle released; // Released vehicle still waiting for the junction transfer
+		double credit; // Outflow capacity accumulated, in vehicles
+	}
+
+	/**
+	 * Whether a mesoscopic road holds its storage capacity, the jam density over
+	 * all lanes, so upstream vehicles wait to enter it.
+	 */
+	public boolean isMesoscopicStorageFull() {
+		return this.fidelity == FIDELITY_MESO
+				&& this.getVehicleNum() >= Math.max(1.0, this.length * Math.max(1, this.getNumberOfLanes()) / MESO_JAM_SPACING);
+	}
+
+	/**
+	 * Link speed of the mesoscopic model, from the Greenshields speed-density
+	 * relation over all lanes of the road.
+	 */
+	public double getMesoscopicSpeed() {
+		double jamVehicles = this.length * Math.max(1, this.getNumberOfLanes()) / MESO_JAM_SPACING;
+		double ratio = jamVehicles <= 0.0 ? 1.0 : 1.0 - this.getVehicleNum() / jamVehicles;
+		return this.getSpeedLimit() * Math.max(MESO_MIN_SPEED_RATIO, Math.min(1.0, ratio));
+	}
+
+	public int getFidelity() {
+		return this.fidelity;
+	}
+
+	/**
+	 * Switch the road between microscopic simulation and the link queue. Takes
+	 * effect at the next stepPart1; vehicles still queued when a road returns to
+	 * MICRO are released on schedule. Co-simulated roads stay microscopic.
+	 * 
+	 * @return true if the road accepted the level
+	 */
+	public boolean setFidelity(int fidelity) {
+		if (fidelity == FIDELITY_MESO && this.controlType == Road.COSIM) return false;
+		this.fidelity = fidelity == FIDELITY_MESO ? FIDELITY_MESO : FIDELITY_MICRO;
+		return true;
+	}
+
+	/** Fidelity level for a configuration name, MESO or MICRO (default). */
+	public static int parseFidelity(String name) {
+		String level = name == null ? "" : name.trim().toUpperCase();
+		return "MESO".equals(level) || "MESOSCOPIC".equals(level) ? FIDELITY_MESO : FIDELITY_MICRO;
+	}
+
+	private boolean splitsAccelerationDecisions() {
+		return GlobalVariables.MULTI_THREADING && GlobalVariables.INTRA_ROAD_PARALLEL_WEIGHT > 0
+				&& this.getStepLoadWeight() > GlobalVariables.INTRA_ROAD_PARALLEL_WEIGHT
+				&& this.getVehicleNum() >= 2 * Math.max(1, GlobalVariables.INTRA_ROAD_CHUNK_VEHICLES);
+	}
+
+	/**
+	 * Phase 3 in an order other than the macro-list walk: over contiguous position
+	 * ranges of the macro list as parallel sub-tasks on a heavy road, otherwise
+	 * lane by lane over the kinematic stores. Each decision reads the (unchanged)
+	 * positions of its neighbours and writes only its own vehicle, except that
+	 * nosing tags the lag vehicle as yielding. Those tags are resolved serially in
+	 * macro order first: a tag on a vehicle behind the nosing vehicle is applied
+	 * before the decisions, a tag on one already decided is applied after them,
+	 * which reproduces the serial walk exactly.
+	 */
+	private void stepAccelerationDecisionsDeferred() {
+		List<Vehicle> vehicles = this.stepVehicleBuffer;
+		vehicles.clear();
+		for (Vehicle v = this.firstVehicle(); v != null; v = v.macroTrailing()) {
+			if (v.isDormantOnRoad() || v.isExternalRoadTransition() || v.isMesoQueued()) continue;
+			vehicles.add(v);
+		}
+		int n = vehicles.size();
+
+		IdentityHashMap<Vehicle, Integer> order = null;
+		ArrayList<Vehicle> lateTags = null;
+		for (int i = 0; i < n; i++) {
+			Vehicle lag;
+			try {
+				lag = vehicles.get(i).nosingYieldTarget();
+			} catch (Throwable ex) {
+				lag = null;
+			}
+			if (lag == null) continue;
+			if (order == null) {
+				order = new IdentityHashMap<Vehicle, Integer>(2 * n);
+				for (int j = 0; j < n; j++) order.put(vehicles.get(j), j);
+			}
+			Integer lagIndex = order.get(lag);
+			if (lagIndex != null && lagIndex < i) {
+				if (lateTags == null) lateTags = new ArrayList<Vehicle>();
+				lateTags.add(lag);
+			} else {
+				lag.markYielding();
+			}
+			intraRoadYieldTags.increment();
+		}
+
+		boolean useStore = GlobalVariables.KINEMATIC_STORE;
+		if (useStore) this.activateKinematics(true);
+		else if (GlobalVariables.LANE_POSITION_INDEX) this.refreshPositionIndex();
+		try {
+			if (this.splitsAccelerationDecisions()) {
+				this.decideAccelerationSplit(vehicles);
+			} else {
+				this.decideAccelerationByLane(vehicles);
+			}
+		} finally {
+			if (useStore) this.activateKinematics(false);
+		}
+
+		if (lateTags != null) {
+			for (Vehicle lag : lateTags) lag.markYielding();
+		}
+		vehicles.clear();
+	}
+
+	private void decideAccelerationSplit(List<Vehicle> vehicles) {
+		int n = vehicles.size();
+		int chunk = Math.max(1, GlobalVariables.INTRA_ROAD_CHUNK_VEHICLES);
+		int parts = Math.max(1, Math.min(Math.max(1, GlobalVariables.N_THREADS), n / chunk));
+		boolean inPool = ForkJoinTask.inForkJoinPool();
+		ForkJoinTask<?>[] forked = new ForkJoinTask<?>[parts - 1];
+		for (int p = 1; p < parts; p++) {
+			AccelerationRange range = new AccelerationRange(this, vehicles,
+					(int) ((long) n * p / parts), (int) ((long) n * (p + 1) / parts));
+			forked[p - 1] = inPool ? range.fork() : intraRoadPool().submit(range);
+		}
+		this.decideAccelerationRange(vehicles, 0, n / parts);
+		for (ForkJoinTask<?> task : forked) {
+			task.join();
+		}
+		intraRoadSplits.increment();
+		intraRoadSubtasks.add(parts);
+	}
+
+	private void decideAccelerationRange(List<Vehicle> vehicles, int from, int to) {
+		for (int i = from; i < to; i++) {
+			this.decideAcceleration(vehicles.get(i));
+		}
+	}
+
+	// Sweep each lane store front to back, then the vehicles not on a lane list
+	private void decideAccelerationByLane(List<Vehicle> vehicles) {
+		for (Lane lane : this.lanes) {
+			LaneKinematics store = lane.getKinematics();
+			for (int i = 0; i < store.size(); i++) {
+				Vehicle v = store.vehicleAt(i);
+				if (v.isDormantOnRoad() || v.isExternalRoadTransition() || v.isMesoQueued()) continue;
+				this.decideAcceleration(v);
+			}
+		}
+		for (Vehicle v : vehicles) {
+			if (!v.inActiveKinematics()) this.decideAcceleration(v);
+		}
+	}
+
+	private void decideAcceleration(Vehicle v) {
+		try {
+			v.calcAccState(false);
+		} catch (Throwable ex) {
+			ContextCreator.logger.error("Road.stepPart1 acceleration failed road=" + this.ID
+					+ " vehicle=" + v.getID(), ex);
+			v.ensureAccelerationPlan(0.0);
+		}
+	}
+
+	/**
+	 * Open the lane stores for the acceleration pass, syncing the lanes whose
+	 * vehicles moved or changed since their last sync. This runs after the
+	 * transfers and lane changes, so the stores match the lane lists.
+	 */
+	private void activateKinematics(boolean active) {
+		for (Lane lane : this.lanes) {
+			LaneKinematics store = lane.getKinematics();
+			if (active && !store.isCurrent(lane)) {
+				store.sync(lane);
+				kinematicResyncs.increment();
+			}
+			store.setActive(active);
+		}
+	}
+
+	private void invalidatePositionIndex() {
+		for (Lane lane : this.lanes) {
+			lane.getKinematics().markDirty();
+		}
+	}
+
+	// Resync stale position indexes before the decisions may query them concurrently
+	private void refreshPositionIndex() {
+		for (Lane lane : this.lanes) {
+			lane.getPositionIndex();
+		}
+	}
+
+	private static final class AccelerationRange extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Road road;
+		private final List<Vehicle> vehicles;
+		private final int from;
+		private final int to;
+
+		AccelerationRange(Road road, List<Vehicle> vehicles, int from, int to) {
+			this.road = road;
+			this.vehicles = vehicles;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			this.road.decideAccelerationRange(this.vehicles, this.from, this.to);
+		}
+	}
+
+	private static ForkJoinPool intraRoadPool() {
+		ForkJoinPool pool = intraRoadPool;
+		if (pool == null) {
+			synchronized (Road.class) {
+				if (intraRoadPool == null) {
+					intraRoadPool = new ForkJoinPool(Math.max(1, GlobalVariables.N_THREADS));
+				}
+				pool = intraRoadPool;
+			}
+		}
+		return pool;
+	}
+
+	/** Counters of the intra-road split of heavy roads, for the scheduler status. */
+	public static LinkedHashMap<String, Object> getIntraRoadStatus() {
+		LinkedHashMap<String, Object> status = new LinkedHashMap<String, Object>();
+		status.put("weightThreshold", GlobalVariables.INTRA_ROAD_PARALLEL_WEIGHT);
+		status.put("splitSteps", intraRoadSplits.sum());
+		status.put("subtasks", intraRoadSubtasks.sum());
+		status.put("yieldTags", intraRoadYieldTags.sum());
+		return status;
+	}
+
+	/** Number of lane kinematic stores synced before an acceleration pass. */
+	public static long getKinematicResyncCount() {
+		return kinematicResyncs.sum();
+	}
+
 	// Realization step
 	public void stepPart2() {
 		if (ContextCreator.getRoadContext().get(this.getID()) != this) return;
@@ -348,26 +758,46 @@ public class Road {
 		/* Vehicle movement */
 		if(!(this.getControlType() == Road.COSIM)) {
 			Vehicle currentVehicle = this.firstVehicle();
+			EnergyBatch energyBatch = GlobalVariables.BATCHED_ENERGY_STAGE ? EnergyBatch.local() : null;
 			
-			// happened during time t to t + 1, conducting vehicle movements
-			while (currentVehicle != null) {
-				Vehicle nextVehicle = currentVehicle.macroTrailing();
-				if (currentVehicle.isDormantOnRoad() || currentVehicle.isExternalRoadTransition()) {
-					currentVehicle = nextVehicle;
-					continue;
+			if (this.fidelity == FIDELITY_MESO) {
+				// Only the released vehicles move, queued ones wait at the downstream end
+				if (this.mesoQueues != null) {
+					for (MesoLaneQueue queue : this.mesoQueues) {
+						if (queue != null && queue.released != null && queue.released.getRoad() == this) {
+							this.moveVehicle(queue.released, energyBatch);
+						}
+					}
 				}
-				try {
-					currentVehicle.move();
-					currentVehicle.updateBatteryLevel(); // Update the energy for each move
-				} catch (Throwable ex) {
-					ContextCreator.logger.error("Road.stepPart2 movement failed road=" + this.ID
-							+ " vehicle=" + currentVehicle.getID(), ex);
-					currentVehicle.ensureAccelerationPlan(0.0);
+			} else {
+				// happened during time t to t + 1, conducting vehicle movements
+				while (currentVehicle != null) {
+					Vehicle nextVehicle = currentVehicle.macroTrailing();
+					if (!currentVehicle.isMesoQueued()) this.moveVehicle(currentVehicle, energyBatch);
+					currentVehicle = nextVehicle;
 				}
-				currentVehicle = nextVehicle;
+			}
+			if (energyBatch != null && !energyBatch.isOpen()) {
+				energyBatch.flush(); // Not inside a road stage batch
 			}
 		}
 	}
+
+	private void moveVehicle(Vehicle vehicle, EnergyBatch energyBatch) {
+		if (vehicle.isDormantOnRoad() || vehicle.isExternalRoadTransition()) return;
+		try {
+			vehicle.move();
+			if (energyBatch != null) {
+				energyBatch.add(vehicle); // Energy computed with the rest of the batch
+			} else {
+				vehicle.updateBatteryLevel(); // Update the energy for each move
+			}
+		} catch (Throwable ex) {
+			ContextCreator.logger.error("Road.stepPart2 movement failed road=" + this.ID
+					+ " vehicle=" + vehicle.getID(), ex);
+			vehicle.ensureAccelerationPlan(0.0);
+		}
+	}
 	
 	/**
 	 * Teleport vehicle for trace-based replay
@@ -699,6 +1129,48 @@ public class Road {
 		return weight >= Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) weight;
 	}
 
+	/**
+	 * Record the measured wall time of one stepPart1/stepPart2 call. Values are
+	 * smoothed so one slow tick does not dominate the next chunk split. Only the
+	 * worker stepping this road writes it, and the scheduler reads it after the
+	 * stage barrier.
+	 */
+	public void recordStepCost(boolean part1, long nanos) {
+		long measured = Math.max(1L, nanos);
+		if (part1) {
+			this.stepPart1CostNanos = this.stepPart1CostNanos == 0L ? measured
+					: (3L * this.stepPart1CostNanos + measured) >> 2;
+		} else {
+			this.stepPart2CostNanos = this.stepPart2CostNanos == 0L ? measured
+					: (3L * this.stepPart2CostNanos + measured) >> 2;
+		}
+	}
+
+	/** Smoothed step cost in nanoseconds, or 0 if the road was never measured. */
+	public long getStepCostNanos(boolean part1) {
+		return part1 ? this.stepPart1CostNanos : this.stepPart2CostNanos;
+	}
+
+	/** Record which scheduler partition steps this road in the given tick. */
+	public void setStepPartition(int partition, int tick) {
+		this.stepPartition = partition;
+		this.stepPartitionTick = tick;
+	}
+
+	/** Partition that stepped this road in the given tick, or -1 if it was not stepped. */
+	public int getStepPartition(int tick) {
+		return this.stepPartitionTick == tick ? this.stepPartition : -1;
+	}
+
+	public void setPartitionOwner(int partition) {
+		this.partitionOwner = partition;
+	}
+
+	/** Partition the road was last assigned to, or -1 if it was never partitioned. */
+	public int getPartitionOwner() {
+		return this.partitionOwner;
+	}
+
 	public int getParkingCapacity() {
 		return this.parking_capacity;
 	}
@@ -779,7 +1251,12 @@ public class Road {
 
 	public boolean hasActiveVehicles() {
 		if (this.nVehicles_.get() > 0 || this.firstVehicle_ != null || this.lastVehicle_ != null
-				|| !this.departureVehMap.isEmpty() || !this.toAddDepartureVeh.isEmpty()) {
+				|| !this.toAddDepartureVeh.isEmpty()) {
+			return true;
+		}
+		// Future departures wait in the departure wheel, which reactivates the road
+		if (!this.departureVehMap.isEmpty() && !(ContextCreator.getRoadContext().usesDepartureWheel()
+				&& ContextCreator.getCurrentTick() < this.nextDepartureTick_)) {
 			return true;
 		}
 		for (Lane lane : this.lanes) {
@@ -810,6 +1287,7 @@ public class Road {
 		this.prevFirstVehicle = null;
 		this.departureVehMap.clear();
 		this.toAddDepartureVeh.clear();
+		this.nextDepartureTick_ = Integer.MIN_VALUE;
 		this.speedLimit_ = restoredSpeedLimit;
 		this.travelTime = restoredTravelTime;
 		this.travelTimeSum = 0.0;
@@ -881,6 +1359,7 @@ public class Road {
 			pending.add(v);
 		}
 		pending.sort((a, b) -> Integer.compare(a.getID(), b.getID()));
+		this.nextDepartureTick_ = Integer.MIN_VALUE;
 		for (Vehicle v : pending) {
 			int departuretime_ = v.getDepTime();
 			if (!this.departureVehMap.containsKey(departuretime_)) {
@@ -962,6 +1441,7 @@ public class Road {
 		for (Integer departureTime : emptyDepartureTimes) {
 			this.departureVehMap.remove(departureTime);
 		}
+		if (removed) this.nextDepartureTick_ = Integer.MIN_VALUE;
 		if (removed || !containsVehicleInEnteringQueue(v)) {
 			ContextCreator.getRoadContext().unregisterEnteringVehicle(this, v);
 		}
@@ -1021,6 +1501,15 @@ public class Road {
 		}
 	}
 
+	/**
+	 * Skip the departure pass until dueTick and, under active-road stepping, let
+	 * the departure wheel wake the road then.
+	 */
+	private void deferDepartures(int dueTick) {
+		this.nextDepartureTick_ = dueTick;
+		ContextCreator.getRoadContext().scheduleDepartureWake(this, dueTick);
+	}
+
 	public synchronized Vehicle departureVehicleQueueHead() {
 		while (!this.departureVehMap.isEmpty()) {
 			int firstDeparture_ = this.departureVehMap.firstKey();
@@ -1033,6 +1522,29 @@ public class Road {
 		return null;
 	}
 
+	/**
+	 * Append the vehicles due to depart from this road at tick, in departure
+	 * order and at most max in total, for the routing stage to route ahead of
+	 * the departure pass.
+	 */
+	public void collectDueDepartures(int tick, List<Vehicle> out, int max) {
+		if (this.getControlType() == Road.COSIM) return;
+		if (tick < this.nextDepartureTick_ && this.toAddDepartureVeh.isEmpty()) return;
+		int limit = out.size() + max;
+		synchronized (this) {
+			for (ArrayList<Vehicle> queue : this.departureVehMap.headMap(tick, true).values()) {
+				for (Vehicle v : queue) {
+					if (out.size() >= limit) return;
+					if (!v.isOnRoad()) out.add(v);
+				}
+			}
+		}
+		for (Vehicle v : this.toAddDepartureVeh) {
+			if (out.size() >= limit) return;
+			if (v.getDepTime() <= tick && !v.isOnRoad()) out.add(v);
+		}
+	}
+
 	public synchronized List<Vehicle> getEnteringVehicleQueueSnapshot() {
 		LinkedHashMap<Integer, Vehicle> uniqueVehicles = new LinkedHashMap<Integer, Vehicle>();
 		for (ArrayList<Vehicle> queue : this.departureVehMap.values()) {
@@ -1061,6 +1573,7 @@ public class Road {
 		unregisterEnteringQueueMemberships();
 		this.departureVehMap.clear();
 		this.toAddDepartureVeh.clear();
+		this.nextDepartureTick_ = Integer.MIN_VALUE;
 		this.externalLaneReservations.clear();
 		if (vehicles == null) return;
 		Set<Integer> restoredVehicleIDs = new HashSet<Integer>();
@@ -3,6 +3,7 @@ package mets_r.facility;
 import java.io.File;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -24,7 +25,9 @@ import com.vividsolutions.jts.geom.GeometryFactory;
 import mets_r.ContextCreator;
 import mets_r.GlobalVariables;
 import mets_r.data.input.SumoXML;
+import mets_r.mobility.EnergyBatch;
 import mets_r.mobility.Vehicle;
+import mets_r.routing.RouteContext;
 
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
@@ -48,19 +51,24 @@ public class RoadContext extends FacilityContext<Road> {
 	private static final double SAME_CONNECTOR_HEADWAY_FACTOR = 1.2;
 	private static final int FIRST_CONNECTOR_INTERNAL_ID = -2;
 
-	private ConcurrentHashMap<Integer, Long> activeRoadIDs;
+	private ConcurrentHashMap<Integer, Boolean> activeRoadIDs;
 	private ConcurrentHashMap<Integer, ConcurrentHashMap<Integer, Boolean>> enteringVehicleRoadIDs;
 	private AtomicLong activeRoadMarkVersion;
+	private final DepartureWheel departureWheel = new DepartureWheel();
 	private final HashMap<Long, Integer> connectorIDByMovement;
 	private int nextConnectorInternalID;
 	private volatile ConnectorTopology connectorTopology;
 	private final ConcurrentHashMap<Integer, Boolean> activeIntersectionIDs;
 	private final ConcurrentHashMap<Integer, AtomicInteger> connectorVehicleCountByTargetRoad;
 	private final ReentrantReadWriteLock connectorTopologyLock;
+	// Road order of the batched sequential step, rebuilt when the road set changes
+	private int roadSetVersion = 0;
+	private int sequentialStepVersion = -1;
+	private Road[] sequentialStepRoads = new Road[0];
 	
 	public RoadContext() {
 		super("RoadContext");
-		this.activeRoadIDs = new ConcurrentHashMap<Integer, Long>();
+		this.activeRoadIDs = new ConcurrentHashMap<Integer, Boolean>();
 		this.enteringVehicleRoadIDs = new ConcurrentHashMap<Integer, ConcurrentHashMap<Integer, Boolean>>();
 		this.activeRoadMarkVersion = new AtomicLong(0);
 		this.connectorIDByMovement = new HashMap<Long, Integer>();
@@ -1016,6 +1024,53 @@ public class RoadContext extends FacilityContext<Road> {
 		}
 	}
 
+	@Override
+	public void put(int ID, Road road) {
+		super.put(ID, road);
+		this.roadSetVersion++;
+	}
+
+	/**
+	 * Sequential scheduler hook: stepPart1 of every road from one scheduled
+	 * action instead of one Repast action per road.
+	 */
+	public void stepRoadsPart1() {
+		if (GlobalVariables.BATCHED_ROUTING_STAGE) {
+			RouteContext.runRoutingStage(Collections.singletonList(Arrays.asList(getSequentialStepRoads())),
+					ContextCreator.getCurrentTick(), null);
+		}
+		for (Road road : getSequentialStepRoads()) road.stepPart1();
+		if (GlobalVariables.BATCHED_ROUTING_STAGE) RouteContext.endRoutingStage();
+	}
+
+	/** Sequential scheduler hook: stepPart2 of every road, in the stepPart1 order. */
+	public void stepRoadsPart2() {
+		if (!GlobalVariables.BATCHED_ENERGY_STAGE) {
+			for (Road road : getSequentialStepRoads()) road.stepPart2();
+			return;
+		}
+		EnergyBatch energyBatch = EnergyBatch.local();
+		energyBatch.begin();
+		try {
+			for (Road road : getSequentialStepRoads()) road.stepPart2();
+		} finally {
+			energyBatch.end();
+		}
+	}
+
+	/** Bumped whenever a road is added or removed. */
+	public int getRoadSetVersion() {
+		return this.roadSetVersion;
+	}
+
+	private Road[] getSequentialStepRoads() {
+		if (this.sequentialStepVersion != this.roadSetVersion) {
+			this.sequentialStepRoads = this.getAll().toArray(new Road[0]);
+			this.sequentialStepVersion = this.roadSetVersion;
+		}
+		return this.sequentialStepRoads;
+	}
+
 	/** Sequential scheduler hook; the threaded scheduler partitions this same work. */
 	public void stepIntersections() {
 		if (!GlobalVariables.ENABLE_INTERSECTION_SWEPT_COLLISION_CHECK) return;
@@ -1045,9 +1100,40 @@ public class RoadContext extends FacilityContext<Road> {
 		}
 	}
 
+	/**
+	 * Add a road to the active set. The version moves once per newly active
+	 * road, so after a stage of concurrent marks it is the same whatever order
+	 * the marks came in.
+	 */
 	public void markRoadActive(int roadID) {
-		this.activeRoadIDs.computeIfAbsent(roadID,
-				id -> Long.valueOf(this.activeRoadMarkVersion.incrementAndGet()));
+		if (this.activeRoadIDs.putIfAbsent(roadID, Boolean.TRUE) == null) {
+			this.activeRoadMarkVersion.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Whether roads with only future departures leave the active set and are
+	 * woken by the departure wheel at their next due tick.
+	 */
+	public boolean usesDepartureWheel() {
+		return GlobalVariables.MULTI_THREADING && GlobalVariables.ACTIVE_ROAD_STEPPING;
+	}
+
+	void scheduleDepartureWake(Road road, int dueTick) {
+		if (road != null && usesDepartureWheel()) {
+			this.departureWheel.schedule(road.getID(), dueTick);
+		}
+	}
+
+	/** Mark active the roads whose next departure is due at tick; once per tick. */
+	public void wakeDueDepartures(int tick) {
+		if (usesDepartureWheel()) {
+			this.departureWheel.drain(tick, this);
+		}
+	}
+
+	public LinkedHashMap<String, Object> getDepartureWheelStatus() {
+		return this.departureWheel.getStatus();
 	}
 
 	public void registerEnteringVehicle(Road road, Vehicle vehicle) {
@@ -1154,9 +1240,15 @@ public class RoadContext extends FacilityContext<Road> {
 		roads.add(road);
 	}
 
+	/**
+	 * Active roads in road-ID order. The hash set's own iteration order depends
+	 * on the order concurrent stages marked the roads, so it is never exposed.
+	 */
 	public List<Road> getActiveRoadsSnapshot() {
-		ArrayList<Road> activeRoads = new ArrayList<Road>(this.activeRoadIDs.size());
-		for (Integer roadID : this.activeRoadIDs.keySet()) {
+		ArrayList<Integer> roadIDs = new ArrayList<Integer>(this.activeRoadIDs.keySet());
+		Collections.sort(roadIDs);
+		ArrayList<Road> activeRoads = new ArrayList<Road>(roadIDs.size());
+		for (Integer roadID : roadIDs) {
 			Road road = this.get(roadID);
 			if (road != null) {
 				activeRoads.add(road);
@@ -1180,9 +1272,9 @@ public class RoadContext extends FacilityContext<Road> {
 			if (road.hasActiveVehicles()) {
 				markRoadActive(road);
 			} else {
-				this.activeRoadIDs.computeIfPresent(road.getID(), (id, mark) -> {
+				this.activeRoadIDs.computeIfPresent(road.getID(), (id, active) -> {
 					if (road.hasActiveVehicles()) {
-						return mark;
+						return active;
 					}
 					this.activeRoadMarkVersion.incrementAndGet();
 					return null;
@@ -1205,6 +1297,7 @@ public class RoadContext extends FacilityContext<Road> {
 	public void rebuildActiveRoadsFromState() {
 		this.activeRoadIDs.clear();
 		this.enteringVehicleRoadIDs.clear();
+		this.departureWheel.clear();
 		this.activeRoadMarkVersion.incrementAndGet();
 		for (Road road : this.getAll()) {
 			if (road.hasActiveVehicles()) {
@@ -1799,5 +1892,6 @@ public class RoadContext extends FacilityContext<Road> {
 			roadIDs.remove(ID);
 		}
 		super.remove(ID);
+		this.roadSetVersion++;
 	}
 }
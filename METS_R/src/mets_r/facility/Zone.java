@@ -33,6 +33,7 @@ import mets_r.mobility.ElectricVehicle;
 import mets_r.mobility.Request;
 import mets_r.mobility.Vehicle;
 import mets_r.routing.RouteContext;
+import mets_r.routing.SkimMatrix;
 
 public class Zone {
 	/* Constants */
@@ -50,6 +51,11 @@ public class Zone {
 	private int privateTripTimeIndex = 0;
 	private int modeSplitCacheHour = -1;
 	private Map<Integer, ModeSplitChoice> modeSplitCache;
+	// Passenger generation planned ahead of the ordered zone.part1 pass
+	private final ArrayList<PlannedRequest> demandPlan = new ArrayList<PlannedRequest>();
+	private int demandPlanTick = -1;
+	private double plannedFutureDemand;
+	private boolean plannedFutureDemandUpdate;
 	
 	// For vehicle repositioning
 	private int lastDemandUpdateHour = -1; // the last time for updating the demand generation rate
@@ -224,6 +230,25 @@ public class Zone {
 		}
 	}
 
+	/**
+	 * Parallel-safe part of zone.part1. Plans this tick's passenger generation
+	 * (demand sampling, mode split and sharing decisions), which only draws from
+	 * this zone's own random streams and caches. Requests are created, and other
+	 * zones' random streams are drawn, when {@link #stepPart1()} replays the plan
+	 * in the ordered pass, so the outcome equals the serial step.
+	 */
+	public void prepareStepPart1() {
+		try {
+			if (ContextCreator.getZoneContext().get(this.getID()) == null) return;
+			if (ContextCreator.getCurrentTick() == GlobalVariables.SIMULATION_STOP_TIME) return;
+			this.planPassengers();
+		} catch (Throwable ex) {
+			this.demandPlanTick = -1;
+			ContextCreator.logger.error("Zone.prepareStepPart1 failed; zone=" + this.ID
+					+ ", tick=" + ContextCreator.getCurrentTick(), ex);
+		}
+	}
+
 	private void stepPart1Unsafe() {
 		// Guard against a stale scheduled action firing after this zone was removed
 		// (e.g. after the meta zone is removed when real zones are added at runtime).
@@ -377,11 +402,34 @@ public class Zone {
 	
 	// Generate passenger
 	protected void generatePassenger() {
-		this.publicTripTimeIndex = this.currentPublicTripTimeIndex();
-		if (this.lastDemandUpdateHour != this.publicTripTimeIndex) {
-			this.futureDemand = 0.0;
+		if (this.demandPlanTick != ContextCreator.getCurrentTick()) {
+			this.planPassengers();
+		}
+		this.demandPlanTick = -1;
+		if (this.plannedFutureDemandUpdate) {
+			this.futureDemand = this.plannedFutureDemand;
+		}
+		for (PlannedRequest planned : this.demandPlan) {
+			if (planned.mode == PlannedRequest.BUS) {
+				this.generateBusRequest(planned.destZone, planned.destination, planned.busRouteID);
+			} else {
+				this.createTaxiRequest(planned.destZone, planned.destination,
+						planned.mode == PlannedRequest.SHARABLE_TAXI);
+			}
 		}
+		this.demandPlan.clear();
+	}
+
+	/**
+	 * Decide how many requests to generate towards each destination and by which
+	 * mode. Only this zone's demand, mode, share and routing random streams are
+	 * drawn; request creation is left to {@link #generatePassenger()}.
+	 */
+	private void planPassengers() {
+		this.demandPlan.clear();
+		this.publicTripTimeIndex = this.currentPublicTripTimeIndex();
 		boolean updateFutureDemand = this.lastDemandUpdateHour != this.publicTripTimeIndex;
+		double newFutureDemand = 0.0;
 		this.refreshModeSplitCacheIfNeeded();
 		for (Zone destZone : ContextCreator.getZoneContext().getAll()) {
 			int destination = destZone.getID();
@@ -401,25 +449,31 @@ public class Zone {
 
 				ModeSplitChoice modeSplit = this.getModeSplitChoice(destZone, destination);
 				if (modeSplit.hasBusChoice()) {
+					boolean busServable = this.getClosestRoad(false) != null && destZone.getClosestRoad(true) != null;
 					for (int i = 0; i < numToGenerate; i++) {
-						if (rand_mode_only.nextDouble() >= modeSplit.busShare
-								|| !this.generateBusRequest(destZone, destination, modeSplit.busRouteID)) {
-							this.generateTaxiRequest(destZone, destination, baseDemand);
+						if (rand_mode_only.nextDouble() >= modeSplit.busShare || !busServable) {
+							this.planTaxiRequest(destZone, destination, baseDemand);
+						} else {
+							this.demandPlan.add(new PlannedRequest(destZone, destination, PlannedRequest.BUS,
+									modeSplit.busRouteID));
 						}
 					}
 					if (updateFutureDemand) {
-						this.futureDemand += passRate * modeSplit.taxiShare;
+						newFutureDemand += passRate * modeSplit.taxiShare;
 					}
 				} else {
 					for (int i = 0; i < numToGenerate; i++) {
-						this.generateTaxiRequest(destZone, destination, baseDemand);
+						this.planTaxiRequest(destZone, destination, baseDemand);
 					}
 					if (updateFutureDemand) {
-						this.futureDemand += passRate;
+						newFutureDemand += passRate;
 					}
 				}
 			}
 		}
+		this.plannedFutureDemandUpdate = updateFutureDemand;
+		this.plannedFutureDemand = newFutureDemand;
+		this.demandPlanTick = ContextCreator.getCurrentTick();
 	}
 
 	private void refreshModeSplitCacheIfNeeded() {
@@ -455,8 +509,14 @@ public class Zone {
 		return new ModeSplitChoice(busChoice.routeID, busShare);
 	}
 
-	private void generateTaxiRequest(Zone destZone, int destination, double sharableRate) {
-		if (rand_share_only.nextDouble() < sharableRate && GlobalVariables.RH_DEMAND_SHARABLE) {
+	private void planTaxiRequest(Zone destZone, int destination, double sharableRate) {
+		boolean sharable = rand_share_only.nextDouble() < sharableRate && GlobalVariables.RH_DEMAND_SHARABLE;
+		this.demandPlan.add(new PlannedRequest(destZone, destination,
+				sharable ? PlannedRequest.SHARABLE_TAXI : PlannedRequest.TAXI, -1));
+	}
+
+	private void createTaxiRequest(Zone destZone, int destination, boolean sharable) {
+		if (sharable) {
 			Request newPass = new Request(this.ID, destination, this.getClosestRoad(false),
 					destZone.sampleRoad(true), 1);
 			newPass.setWillingToShare(true);
@@ -522,6 +582,12 @@ public class Zone {
 	}
 
 	private TravelCost getTaxiTravelCost(Zone destZone) {
+		SkimMatrix skim = RouteContext.getSkim();
+		if (skim != null && skim.contains(this.ID, destZone.getID())) {
+			double time = skim.getTime(this.ID, destZone.getID());
+			if (Double.isNaN(time)) return null;
+			return new TravelCost(time, skim.getDistance(this.ID, destZone.getID()));
+		}
 		Integer originRoadID = this.getClosestRoad(false);
 		Integer destRoadID = destZone.getClosestRoad(true);
 		if (originRoadID == null || destRoadID == null) return null;
@@ -608,6 +674,23 @@ public class Zone {
 		}
 	}
 
+	private static class PlannedRequest {
+		static final int TAXI = 0;
+		static final int SHARABLE_TAXI = 1;
+		static final int BUS = 2;
+		final Zone destZone;
+		final int destination;
+		final int mode;
+		final int busRouteID;
+
+		PlannedRequest(Zone destZone, int destination, int mode, int busRouteID) {
+			this.destZone = destZone;
+			this.destination = destination;
+			this.mode = mode;
+			this.busRouteID = busRouteID;
+		}
+	}
+
 	private static class ModeSplitChoice {
 		final int busRouteID;
 		final double busShare;
@@ -1112,6 +1195,8 @@ public class Zone {
 		this.publicTripTimeIndex = -1;
 		this.privateTripTimeIndex = 0;
 		this.invalidateModeSplitCache();
+		this.demandPlan.clear();
+		this.demandPlanTick = -1;
 		this.lastDemandUpdateHour = -1;
 		this.futureDemand = 0.0;
 		this.futureSupply.set(0);
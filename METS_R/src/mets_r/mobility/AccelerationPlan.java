@@ -0,0 +1,60 @@
+package mets_r.mobility;
+
+/**
+ * Planned acceleration rates of one vehicle, as a deque of primitive doubles in
+ * a ring buffer. The decision phase appends (add) or, for externally controlled
+ * acceleration, prepends (push) a rate and move() pops the head. The plan
+ * normally holds a single entry, so the buffer never grows after the first
+ * ticks and the decide/move cycle allocates nothing.
+ */
+final class AccelerationPlan {
+	private double[] rates = new double[2];
+	private int head;
+	private int size;
+
+	boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	/** Append a rate at the tail. */
+	void add(double rate) {
+		if (this.size == this.rates.length) this.grow();
+		this.rates[(this.head + this.size) % this.rates.length] = rate;
+		this.size++;
+	}
+
+	/** Insert a rate at the head, so it is popped next. */
+	void push(double rate) {
+		if (this.size == this.rates.length) this.grow();
+		this.head = (this.head + this.rates.length - 1) % this.rates.length;
+		this.rates[this.head] = rate;
+		this.size++;
+	}
+
+	/** Remove and return the head rate; the plan must not be empty. */
+	double pop() {
+		if (this.size == 0) throw new java.util.NoSuchElementException();
+		double rate = this.rates[this.head];
+		this.head = (this.head + 1) % this.rates.length;
+		this.size--;
+		return rate;
+	}
+
+	void clear() {
+		this.head = 0;
+		this.size = 0;
+	}
+
+	private void grow() {
+		double[] grown = new double[this.rates.length * 2];
+		for (int i = 0; i < this.size; i++) {
+			grown[i] = this.rates[(this.head + i) % this.rates.length];
+		}
+		this.rates = grown;
+		this.head = 0;
+	}
+}
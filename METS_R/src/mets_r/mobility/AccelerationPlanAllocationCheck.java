@@ -0,0 +1,196 @@
+package mets_r.mobility;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+
+import mets_r.ContextCreator;
+import mets_r.facility.Lane;
+import mets_r.facility.Road;
+
+/**
+ * Allocation regression check of the steady-state decide/move cycle of the
+ * acceleration plan. Each tick every vehicle appends its decision (or takes the
+ * ensureAccelerationPlan fallback, or an external push) and move() pops it. After
+ * warm-up the plan cycle must allocate zero bytes; the LinkedList<Double> plan it
+ * replaced is measured alongside for reference.
+ *
+ * Real vehicles are then placed on the roads of the configured scenario (built
+ * without a Repast run) and driven through calcAccState and move road by road,
+ * as stepPart1 and stepPart2 do, for a few ticks. The whole cycle must allocate
+ * less per vehicle-tick than the boxed plan alone did. Exits with status 1 on
+ * failure.
+ *
+ * Usage: AccelerationPlanAllocationCheck [vehicles] [ticks]
+ */
+public class AccelerationPlanAllocationCheck {
+	private static final double SPACING = 25.0; // Meters between placed vehicles on a lane
+	private static final double END_CLEARANCE = 60.0; // Meters kept free before the junction
+	private static double sink;
+
+	public static void main(String[] args) {
+		int vehicles = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)
+				|| !((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+			System.out.println("Thread allocation counters are not supported by this JVM, skipping");
+			return;
+		}
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		threads.setThreadAllocatedMemoryEnabled(true);
+		long thread = Thread.currentThread().getId();
+
+		AccelerationPlan[] plans = new AccelerationPlan[vehicles];
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		LinkedList<Double>[] lists = new LinkedList[vehicles];
+		for (int i = 0; i < vehicles; i++) {
+			plans[i] = new AccelerationPlan();
+			lists[i] = new LinkedList<Double>();
+		}
+		for (int t = 0; t < 5; t++) {
+			tickPlans(plans, t);
+			tickLists(lists, t);
+		}
+
+		long overhead = measureOverhead(threads, thread);
+		long before = threads.getThreadAllocatedBytes(thread);
+		for (int t = 0; t < ticks; t++) tickPlans(plans, t);
+		long planBytes = Math.max(0L, threads.getThreadAllocatedBytes(thread) - before - overhead);
+
+		before = threads.getThreadAllocatedBytes(thread);
+		for (int t = 0; t < ticks; t++) tickLists(lists, t);
+		long listBytes = Math.max(0L, threads.getThreadAllocatedBytes(thread) - before - overhead);
+		plans = null;
+		lists = null;
+
+		// Real vehicles on the scenario roads, a few ticks so none reaches a junction
+		ContextCreator.buildStandalone();
+		ArrayList<Road> roads = populate(vehicles);
+		int placed = 0;
+		for (Road road : roads) {
+			for (Vehicle v = road.firstVehicle(); v != null; v = v.macroTrailing()) placed++;
+		}
+		int vehicleTicks = Math.max(1, Math.min(ticks, 10));
+		for (int t = 0; t < 2; t++) tickVehicles(roads);
+		before = threads.getThreadAllocatedBytes(thread);
+		for (int t = 0; t < vehicleTicks; t++) tickVehicles(roads);
+		long vehicleBytes = Math.max(0L, threads.getThreadAllocatedBytes(thread) - before - overhead);
+
+		double listPerCycle = (double) listBytes / ((long) vehicles * ticks);
+		double vehiclePerTick = placed == 0 ? 0.0 : (double) vehicleBytes / ((long) placed * vehicleTicks);
+		System.out.println(String.format("vehicles=%d ticks=%d placed=%d vehicleTicks=%d", vehicles, ticks,
+				placed, vehicleTicks));
+		System.out.println(String.format("%-24s %16s %14s %18s", "cycle", "bytes", "bytes/tick",
+				"bytes/vehicle-tick"));
+		System.out.println(String.format("%-24s %16d %14d %18.2f", "AccelerationPlan", planBytes,
+				planBytes / ticks, (double) planBytes / ((long) vehicles * ticks)));
+		System.out.println(String.format("%-24s %16d %14d %18.2f", "LinkedList<Double>", listBytes,
+				listBytes / ticks, listPerCycle));
+		System.out.println(String.format("%-24s %16d %14d %18.2f", "Vehicle decide/move", vehicleBytes,
+				vehicleBytes / vehicleTicks, vehiclePerTick));
+		boolean failed = false;
+		if (planBytes != 0L) {
+			System.out.println("FAIL: steady-state acceleration plan cycle allocated " + planBytes + " bytes");
+			failed = true;
+		}
+		if (placed == 0) {
+			System.out.println("FAIL: no road of the scenario could take a vehicle");
+			failed = true;
+		} else if (vehiclePerTick >= listPerCycle) {
+			System.out.println(String.format(
+					"FAIL: vehicle decide/move allocated %.2f bytes per vehicle-tick, the boxed plan took %.2f",
+					vehiclePerTick, listPerCycle));
+			failed = true;
+		}
+		if (!failed) {
+			System.out.println("OK: steady-state acceleration plan cycle is allocation-free");
+		}
+		System.exit(failed ? 1 : 0);
+	}
+
+	// Place up to n vehicles on the lanes of the roads in ID order, moving at half the speed limit
+	private static ArrayList<Road> populate(int n) {
+		ArrayList<Road> roads = new ArrayList<Road>(ContextCreator.getRoadContext().getAll());
+		Collections.sort(roads, new Comparator<Road>() {
+			@Override
+			public int compare(Road a, Road b) {
+				return Integer.compare(a.getID(), b.getID());
+			}
+		});
+		ArrayList<Road> used = new ArrayList<Road>();
+		int placed = 0;
+		for (Road road : roads) {
+			if (placed >= n) break;
+			boolean any = false;
+			for (Lane lane : road.getLanes()) {
+				if (lane.getCoords() == null || lane.getCoords().size() < 2) continue;
+				for (double d = END_CLEARANCE; d <= lane.getLength() - SPACING && placed < n; d += SPACING) {
+					Vehicle v = new Vehicle(Vehicle.GV, Vehicle.NONE_OF_THE_ABOVE);
+					road.teleportVehicle(v, lane, d);
+					v.setSpeed(0.5 * road.getSpeedLimit());
+					placed++;
+					any = true;
+				}
+			}
+			if (any) used.add(road);
+		}
+		return used;
+	}
+
+	// Decisions over the macro list of each road, then the moves, as a road step does
+	private static void tickVehicles(ArrayList<Road> roads) {
+		for (Road road : roads) {
+			for (Vehicle v = road.firstVehicle(); v != null; v = v.macroTrailing()) v.calcAccState();
+		}
+		for (Road road : roads) {
+			Vehicle v = road.firstVehicle();
+			while (v != null) {
+				Vehicle next = v.macroTrailing();
+				v.move();
+				sink += v.currentSpeed();
+				v = next;
+			}
+		}
+	}
+
+	// Same mix as a tick: decisions, fallback plans for failed decisions, external pushes
+	private static void tickPlans(AccelerationPlan[] plans, int tick) {
+		for (int i = 0; i < plans.length; i++) {
+			AccelerationPlan plan = plans[i];
+			int kind = (i + tick) % 16;
+			if (kind == 0) {
+				plan.push(-1.0);
+			} else if (kind != 1) {
+				plan.add(0.01 * kind);
+			}
+			if (plan.isEmpty()) plan.add(0.0);
+			sink += plan.pop();
+		}
+	}
+
+	private static void tickLists(LinkedList<Double>[] lists, int tick) {
+		for (int i = 0; i < lists.length; i++) {
+			LinkedList<Double> plan = lists[i];
+			int kind = (i + tick) % 16;
+			if (kind == 0) {
+				plan.push(-1.0);
+			} else if (kind != 1) {
+				plan.add(0.01 * kind);
+			}
+			if (plan.isEmpty()) plan.add(0.0);
+			sink += plan.pop();
+		}
+	}
+
+	private static long measureOverhead(com.sun.management.ThreadMXBean threads, long thread) {
+		long overhead = Long.MAX_VALUE;
+		for (int i = 0; i < 5; i++) {
+			long before = threads.getThreadAllocatedBytes(thread);
+			overhead = Math.min(overhead, threads.getThreadAllocatedBytes(thread) - before);
+		}
+		return overhead;
+	}
+}
@@ -0,0 +1,25 @@
+package mets_r.mobility;
+
+/**
+ * Longitudinal driver model. Implementations hold no per-vehicle state; the
+ * driver parameters live in primitive fields of the vehicle, so one instance
+ * serves all vehicles. The built-in models are in {@link CarFollowingModels}.
+ */
+public interface CarFollowingModel {
+	/**
+	 * Acceleration rate of the ego vehicle following front.
+	 * 
+	 * @param ego Vehicle deciding its acceleration
+	 * @param front Leading vehicle, or null when there is none
+	 */
+	double acceleration(Vehicle ego, Vehicle front);
+
+	/** Most negative acceleration the model may command for the ego vehicle. */
+	double maxDeceleration(Vehicle ego);
+
+	/**
+	 * Acceleration of the ego vehicle on a free road, with no leader and the
+	 * downstream junction beyond braking distance (FREE_FLOW_FAST_PATH).
+	 */
+	double freeFlowAcceleration(Vehicle ego);
+}
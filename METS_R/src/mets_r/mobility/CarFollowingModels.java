@@ -0,0 +1,90 @@
+package mets_r.mobility;
+
+import mets_r.GlobalVariables;
+
+/**
+ * Built-in car-following models, see the Vehicle class comment for a summary
+ * of each. The configured model is resolved once from CAR_FOLLOWING_MODEL, so
+ * the per-vehicle call site sees a single constant receiver instead of string
+ * comparisons on every decision.
+ */
+public enum CarFollowingModels implements CarFollowingModel {
+	HERMAN {
+		@Override
+		public double acceleration(Vehicle ego, Vehicle front) {
+			return ego.calcHermanCarFollowingRate(front);
+		}
+	},
+	KRAUSS {
+		@Override
+		public double acceleration(Vehicle ego, Vehicle front) {
+			return ego.calcKraussCarFollowingRate(front);
+		}
+
+		@Override
+		public double maxDeceleration(Vehicle ego) {
+			return -ego.kraussEmergencyDecelMagnitude();
+		}
+	},
+	IDM {
+		@Override
+		public double acceleration(Vehicle ego, Vehicle front) {
+			return ego.calcIdmCarFollowingRate(front);
+		}
+
+		@Override
+		public double freeFlowAcceleration(Vehicle ego) {
+			return ego.calcIdmCarFollowingRate(null);
+		}
+	},
+	WIEDEMANN74 {
+		@Override
+		public double acceleration(Vehicle ego, Vehicle front) {
+			return ego.calcWiedemann74CarFollowingRate(front);
+		}
+
+		@Override
+		public double freeFlowAcceleration(Vehicle ego) {
+			return ego.calcWiedemann74CarFollowingRate(null);
+		}
+	},
+	WIEDEMANN99 {
+		@Override
+		public double acceleration(Vehicle ego, Vehicle front) {
+			return ego.calcWiedemann99CarFollowingRate(front);
+		}
+
+		@Override
+		public double freeFlowAcceleration(Vehicle ego) {
+			return ego.calcWiedemann99CarFollowingRate(null);
+		}
+	};
+
+	/** The model selected by CAR_FOLLOWING_MODEL in Data.properties. */
+	public static final CarFollowingModel CONFIGURED = resolve(GlobalVariables.CAR_FOLLOWING_MODEL);
+
+	@Override
+	public double maxDeceleration(Vehicle ego) {
+		return ego.effectiveMaxDeceleration();
+	}
+
+	/** Closed-form approach to the desired speed, as the free-flow regime of Herman and Krauss. */
+	@Override
+	public double freeFlowAcceleration(Vehicle ego) {
+		return ego.calcDesiredSpeedRate();
+	}
+
+	/** Model for a configuration name; unknown names fall back to HERMAN. */
+	public static CarFollowingModel resolve(String name) {
+		String model = name == null ? "" : name.trim().toUpperCase();
+		if ("KRAUSS".equals(model)) return KRAUSS;
+		if ("IDM".equals(model)) return IDM;
+		if ("WIEDEMANN74".equals(model) || "WIEDEMANN_74".equals(model) || "W74".equals(model)) {
+			return WIEDEMANN74;
+		}
+		if ("WIEDEMANN99".equals(model) || "WIEDEMANN_99".equals(model) || "W99".equals(model)) {
+			return WIEDEMANN99;
+		}
+		return HERMAN;
+	}
+}
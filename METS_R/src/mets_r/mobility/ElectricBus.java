@@ -118,6 +118,24 @@ public class ElectricBus extends ElectricVehicle {
 			this.tickConsume = 0.0;
 		}
 	}
+
+	@Override
+	public void updateBatteryLevel(int ticks) {
+		if (this.routeID >= 0) {
+			applyTickEnergy(calculateEnergy() * ticks);
+		} else {
+			this.tickConsume = 0.0;
+		}
+	}
+
+	@Override
+	protected void stageEnergy(EnergyBatch batch) {
+		if (this.routeID >= 0) {
+			super.stageEnergy(batch);
+		} else {
+			this.tickConsume = 0.0;
+		}
+	}
 	
 	@Override
 	public int decideChargerType() {
@@ -1,6 +1,7 @@
 package mets_r.mobility;
 
 import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.math3.analysis.interpolation.SplineInterpolator;
 import org.apache.commons.math3.analysis.polynomials.PolynomialSplineFunction;
 
@@ -17,6 +18,10 @@ import mets_r.facility.Road;
  */
 
 public class ElectricVehicle extends Vehicle {
+	// Energy coefficients per vehicle class, for the batched energy stage
+	private static final ConcurrentHashMap<Class<?>, EnergyBatch.Coefficients> energyCoefficients =
+			new ConcurrentHashMap<Class<?>, EnergyBatch.Coefficients>();
+
 	// Local variables
 	protected double batteryCapacity; // the battery capacity
 	protected double batteryLevel; // current battery level, unit KWh
@@ -75,6 +80,11 @@ public class ElectricVehicle extends Vehicle {
 		applyTickEnergy(tickEnergy);
 	}
 	
+	@Override
+	public void updateBatteryLevel(int ticks) {
+		applyTickEnergy(calculateEnergy() * ticks); // Same speed and acceleration in every tick
+	}
+	
 	@Override
 	public void reachDest() {
 		if (this.onChargingRoute_) {
@@ -296,6 +306,25 @@ public class ElectricVehicle extends Vehicle {
 		return energyConsumption;
 	}
 
+	/**
+	 * Stage this tick's energy in the batch instead of updateBatteryLevel, with
+	 * the same inputs as calculateEnergy.
+	 */
+	protected void stageEnergy(EnergyBatch batch) {
+		double velocity = this.movingFlag ? currentSpeed() : 0.0;
+		double acceleration = this.movingFlag ? currentAcc() : 0.0;
+		batch.append(this, velocity, acceleration, getMass(), this.energyCoefficients());
+	}
+
+	private EnergyBatch.Coefficients energyCoefficients() {
+		EnergyBatch.Coefficients coefficients = energyCoefficients.get(this.getClass());
+		if (coefficients == null) {
+			coefficients = new EnergyBatch.Coefficients(this);
+			energyCoefficients.putIfAbsent(this.getClass(), coefficients);
+		}
+		return coefficients;
+	}
+
 	protected void applyTickEnergy(double tickEnergy) {
 		tickConsume = tickEnergy;
 		totalConsume += tickEnergy;
@@ -0,0 +1,179 @@
+package mets_r.mobility;
+
+import java.util.Arrays;
+
+import mets_r.GlobalVariables;
+
+/**
+ * Tick energy of the electric vehicles moved by one road worker, computed in a
+ * batch after the movement (BATCHED_ENERGY_STAGE). Road.stepPart2 stages each
+ * moved EV with its speed, acceleration, mass and the precomputed energy
+ * coefficients of its class, and the batch evaluates the Fiori et al. power
+ * model of ElectricVehicle.calculateEnergy over primitive arrays: the traction
+ * power as one straight-line loop the JIT can vectorize, then the battery power
+ * with regenerative braking, then the battery updates.
+ *
+ * Each worker thread owns one batch. A road stage opens it around its roads so
+ * the batch spans the whole partition; a road stepped outside an open batch
+ * flushes its own vehicles at the end of its step.
+ */
+public final class EnergyBatch {
+	private static final int INITIAL_CAPACITY = 64;
+	private static final int MAX_BATCH = 4096; // Flush early beyond this many vehicles
+	private static final ThreadLocal<EnergyBatch> LOCAL = new ThreadLocal<EnergyBatch>() {
+		@Override
+		protected EnergyBatch initialValue() {
+			return new EnergyBatch();
+		}
+	};
+
+	private ElectricVehicle[] vehicles = new ElectricVehicle[INITIAL_CAPACITY];
+	private double[] speed = new double[INITIAL_CAPACITY];
+	private double[] acc = new double[INITIAL_CAPACITY];
+	private double[] mass = new double[INITIAL_CAPACITY];
+	private double[] rolling = new double[INITIAL_CAPACITY];
+	private double[] rollingC1 = new double[INITIAL_CAPACITY];
+	private double[] rollingC2 = new double[INITIAL_CAPACITY];
+	private double[] drag = new double[INITIAL_CAPACITY];
+	private double[] motorEfficiency = new double[INITIAL_CAPACITY];
+	private double[] gearEfficiency = new double[INITIAL_CAPACITY];
+	private double[] auxiliaryPower = new double[INITIAL_CAPACITY];
+	private double[] regen = new double[INITIAL_CAPACITY];
+	private double[] energy = new double[INITIAL_CAPACITY];
+	private int count;
+	private boolean open;
+
+	/**
+	 * Energy coefficients of one vehicle class, folded from the energy hooks of
+	 * ElectricVehicle. The road is flat in the energy model, so the grade force
+	 * vanishes and the rolling term reduces to one factor per class.
+	 */
+	static final class Coefficients {
+		final double rolling; // g * C_r / 1000
+		final double rollingC1;
+		final double rollingC2;
+		final double drag; // 1/2 rho A C_D
+		final double motorEfficiency;
+		final double gearEfficiency;
+		final double auxiliaryPower;
+		final double regen;
+
+		Coefficients(ElectricVehicle ev) {
+			this.rolling = ev.energyGravity() * ev.energyRollingCoefficient() / 1000;
+			this.rollingC1 = ev.energyRollingC1();
+			this.rollingC2 = ev.energyRollingC2();
+			this.drag = 0.5 * ev.energyAirDensity() * ev.energyFrontalArea() * ev.energyDragCoefficient();
+			this.motorEfficiency = ev.energyMotorEfficiency();
+			this.gearEfficiency = ev.energyGearEfficiency();
+			this.auxiliaryPower = ev.energyAuxiliaryPower();
+			this.regen = ev.energyRegenCoefficient();
+		}
+	}
+
+	/** Batch of the calling worker thread. */
+	public static EnergyBatch local() {
+		return LOCAL.get();
+	}
+
+	/** Open the batch for a stage; vehicles staged until end() are computed together. */
+	public void begin() {
+		this.open = true;
+	}
+
+	/** Compute the staged vehicles and close the batch. */
+	public void end() {
+		this.open = false;
+		this.flush();
+	}
+
+	public boolean isOpen() {
+		return this.open;
+	}
+
+	/** Stage the tick energy of a moved vehicle; vehicles without a battery are ignored. */
+	public void add(Vehicle v) {
+		if (v instanceof ElectricVehicle) {
+			((ElectricVehicle) v).stageEnergy(this);
+			if (this.count >= MAX_BATCH) this.flush();
+		}
+	}
+
+	void append(ElectricVehicle v, double speed, double acc, double mass, Coefficients c) {
+		if (this.count == this.speed.length) this.grow();
+		int i = this.count++;
+		this.vehicles[i] = v;
+		this.speed[i] = speed;
+		this.acc[i] = acc;
+		this.mass[i] = mass;
+		this.rolling[i] = c.rolling;
+		this.rollingC1[i] = c.rollingC1;
+		this.rollingC2[i] = c.rollingC2;
+		this.drag[i] = c.drag;
+		this.motorEfficiency[i] = c.motorEfficiency;
+		this.gearEfficiency[i] = c.gearEfficiency;
+		this.auxiliaryPower[i] = c.auxiliaryPower;
+		this.regen[i] = c.regen;
+	}
+
+	/** Compute the energy of the staged vehicles, charge it to them and empty the batch. */
+	public void flush() {
+		int n = this.count;
+		if (n == 0) return;
+		this.compute(GlobalVariables.SIMULATION_STEP_SIZE);
+		for (int i = 0; i < n; i++) {
+			this.vehicles[i].applyTickEnergy(this.energy[i]);
+		}
+		Arrays.fill(this.vehicles, 0, n, null);
+		this.count = 0;
+	}
+
+	/** Fill energy (kWh) for the staged slots over a tick of dt seconds. */
+	private void compute(double dt) {
+		int n = this.count;
+		double[] speed = this.speed;
+		double[] acc = this.acc;
+		double[] mass = this.mass;
+		double[] rolling = this.rolling;
+		double[] rollingC1 = this.rollingC1;
+		double[] rollingC2 = this.rollingC2;
+		double[] drag = this.drag;
+		double[] power = this.energy; // Traction power first, overwritten by the energy
+		// Traction power: F * v with F = ma + m g C_r/1000 (c1 v + c2) + 1/2 rho A C_D v^2
+		for (int i = 0; i < n; i++) {
+			double v = speed[i];
+			double m = mass[i];
+			power[i] = (m * acc[i] + m * rolling[i] * (rollingC1[i] * v + rollingC2[i]) + drag[i] * v * v) * v;
+		}
+		// Battery power, with regenerative braking for negative traction power
+		double toKwh = dt / (3600 * 1000); // W*s to kWh
+		for (int i = 0; i < n; i++) {
+			double pte = power[i];
+			double pbat;
+			if (pte >= 0) {
+				pbat = (pte / this.motorEfficiency[i] + this.auxiliaryPower[i]) / this.gearEfficiency[i];
+			} else {
+				double a = Math.abs(acc[i]);
+				double nrb = a > 1e-6 ? 1 / Math.exp(this.regen[i] / a) : 0.0; // From Fiori eq. (10)
+				pbat = pte * nrb + this.auxiliaryPower[i] / this.gearEfficiency[i];
+			}
+			power[i] = pbat * toKwh;
+		}
+	}
+
+	private void grow() {
+		int capacity = this.speed.length * 2;
+		this.vehicles = Arrays.copyOf(this.vehicles, capacity);
+		this.speed = Arrays.copyOf(this.speed, capacity);
+		this.acc = Arrays.copyOf(this.acc, capacity);
+		this.mass = Arrays.copyOf(this.mass, capacity);
+		this.rolling = Arrays.copyOf(this.rolling, capacity);
+		this.rollingC1 = Arrays.copyOf(this.rollingC1, capacity);
+		this.rollingC2 = Arrays.copyOf(this.rollingC2, capacity);
+		this.drag = Arrays.copyOf(this.drag, capacity);
+		this.motorEfficiency = Arrays.copyOf(this.motorEfficiency, capacity);
+		this.gearEfficiency = Arrays.copyOf(this.gearEfficiency, capacity);
+		this.auxiliaryPower = Arrays.copyOf(this.auxiliaryPower, capacity);
+		this.regen = Arrays.copyOf(this.regen, capacity);
+		this.energy = Arrays.copyOf(this.energy, capacity);
+	}
+}
@@ -0,0 +1,102 @@
+package mets_r.mobility;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import mets_r.ContextCreator;
+
+/**
+ * Compares the per-vehicle energy computation of Road.stepPart2 with the
+ * batched stage (BATCHED_ENERGY_STAGE) on a mixed fleet of real private EVs,
+ * taxis and buses, created in the configured scenario (built without a Repast
+ * run). The per-object side calls ElectricVehicle.updateBatteryLevel on each
+ * vehicle; the batch side stages the same vehicles with EnergyBatch.add and
+ * computes and charges them with flush, as a road worker does after the
+ * movement. The tick energy charged by both sides is checked to agree before
+ * timing. Exits with status 1 if it does not.
+ *
+ * Usage: EnergyBatchBenchmark [vehicles] [ticks]
+ */
+public class EnergyBatchBenchmark {
+	private static final double TOLERANCE = 1e-9; // Relative
+	private static double sink;
+
+	public static void main(String[] args) {
+		int vehicles = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		ContextCreator.buildStandalone();
+		Random rand = new Random(42);
+		ElectricVehicle[] fleet = new ElectricVehicle[vehicles];
+		for (int i = 0; i < vehicles; i++) {
+			double kind = rand.nextDouble();
+			if (kind < 0.1) {
+				fleet[i] = new ElectricBus(-1, new ArrayList<Integer>(), new ArrayList<Integer>());
+			} else if (kind < 0.4) {
+				fleet[i] = new ElectricTaxi();
+			} else {
+				fleet[i] = new ElectricVehicle(Vehicle.EV, Vehicle.NONE_OF_THE_ABOVE);
+			}
+			fleet[i].setMovingFlag(rand.nextDouble() > 0.1);
+		}
+		EnergyBatch batch = new EnergyBatch();
+
+		System.out.println(String.format("vehicles=%d ticks=%d", vehicles, ticks));
+		drive(fleet, rand);
+		double[] expected = new double[vehicles];
+		for (int i = 0; i < vehicles; i++) expected[i] = fleet[i].calculateEnergy();
+		batched(batch, fleet);
+		double maxRelativeError = 0.0;
+		for (int i = 0; i < vehicles; i++) {
+			double error = Math.abs(fleet[i].tickConsume - expected[i]) / Math.max(1e-12, Math.abs(expected[i]));
+			maxRelativeError = Math.max(maxRelativeError, error);
+		}
+		System.out.println(String.format("max relative difference between paths: %.3e", maxRelativeError));
+
+		for (int t = 0; t < Math.max(1, ticks / 5); t++) { // Warm-up
+			perObject(fleet);
+			batched(batch, fleet);
+		}
+		long objectNanos = 0L;
+		long batchNanos = 0L;
+		for (int t = 0; t < ticks; t++) {
+			drive(fleet, rand);
+			long start = System.nanoTime();
+			perObject(fleet);
+			long mid = System.nanoTime();
+			batched(batch, fleet);
+			long end = System.nanoTime();
+			objectNanos += mid - start;
+			batchNanos += end - mid;
+		}
+		System.out.println(String.format("%10s %14s %14s", "", "ns/vehicle", "ms/tick"));
+		System.out.println(String.format("%10s %14.2f %14.3f", "perObject",
+				(double) objectNanos / ((long) vehicles * ticks), objectNanos / 1e6 / ticks));
+		System.out.println(String.format("%10s %14.2f %14.3f", "batched",
+				(double) batchNanos / ((long) vehicles * ticks), batchNanos / 1e6 / ticks));
+		System.out.println(String.format("speedup %.2f (sink %.3f)", (double) objectNanos / batchNanos, sink));
+		System.exit(maxRelativeError <= TOLERANCE ? 0 : 1);
+	}
+
+	private static void drive(ElectricVehicle[] fleet, Random rand) {
+		for (ElectricVehicle v : fleet) {
+			v.setSpeed(rand.nextDouble() * 30);
+			v.setAccRate(rand.nextGaussian() * 1.5);
+		}
+	}
+
+	// Energy of each vehicle as Road.stepPart2 computes it without the stage
+	private static void perObject(ElectricVehicle[] fleet) {
+		for (ElectricVehicle v : fleet) {
+			v.updateBatteryLevel();
+			sink += v.tickConsume;
+		}
+	}
+
+	// Staging, computing and charging, as one road worker does after the movement
+	private static void batched(EnergyBatch batch, ElectricVehicle[] fleet) {
+		batch.begin();
+		for (ElectricVehicle v : fleet) batch.add(v);
+		batch.end();
+		for (ElectricVehicle v : fleet) sink += v.tickConsume;
+	}
+}
@@ -0,0 +1,28 @@
+package mets_r.mobility;
+
+/**
+ * Lateral driver model. Like {@link CarFollowingModel}, implementations are
+ * stateless and shared; the built-in models are in {@link LaneChangingModels}.
+ */
+public interface LaneChangingModel {
+	/**
+	 * Evaluate and, if accepted, perform a lane change of the ego vehicle.
+	 * 
+	 * @return true if the vehicle changed lane
+	 */
+	boolean decide(Vehicle ego);
+
+	/**
+	 * Whether the model advises an acceleration bound to the ego vehicle and its
+	 * blocking followers, which the acceleration decision then applies.
+	 */
+	boolean advisesAcceleration();
+
+	/**
+	 * Whether a vehicle with an incomplete mandatory lane change can hold at the
+	 * preferred distance before the junction. A model that only evaluates
+	 * mandatory changes in part of the lane returns false, and the hold is kept
+	 * inside the downstream half of the lane.
+	 */
+	boolean holdsAtPreferredDistance();
+}
@@ -0,0 +1,50 @@
+package mets_r.mobility;
+
+import mets_r.GlobalVariables;
+
+/**
+ * Built-in lane-changing models, resolved once from LANE_CHANGING_MODEL.
+ */
+public enum LaneChangingModels implements LaneChangingModel {
+	AHMED {
+		@Override
+		public boolean decide(Vehicle ego) {
+			return ego.makeAhmedLaneChangingDecision();
+		}
+
+		@Override
+		public boolean advisesAcceleration() {
+			return false;
+		}
+
+		@Override
+		public boolean holdsAtPreferredDistance() {
+			return false; // Mandatory changes are only evaluated in the downstream half of a lane
+		}
+	},
+	LC2013 {
+		@Override
+		public boolean decide(Vehicle ego) {
+			return ego.makeLC2013LaneChangingDecision();
+		}
+
+		@Override
+		public boolean advisesAcceleration() {
+			return true;
+		}
+
+		@Override
+		public boolean holdsAtPreferredDistance() {
+			return true;
+		}
+	};
+
+	/** The model selected by LANE_CHANGING_MODEL in Data.properties. */
+	public static final LaneChangingModel CONFIGURED = resolve(GlobalVariables.LANE_CHANGING_MODEL);
+
+	/** Model for a configuration name; unknown names fall back to AHMED. */
+	public static LaneChangingModel resolve(String name) {
+		String model = name == null ? "" : name.trim().toUpperCase();
+		return "LC2013".equals(model) ? LC2013 : AHMED;
+	}
+}
@@ -8,14 +8,16 @@ import mets_r.data.input.SumoXML;
 import mets_r.facility.ConnectorRoad;
 import mets_r.facility.Junction;
 import mets_r.facility.Lane;
+import mets_r.facility.LaneKinematics;
 import mets_r.facility.Road;
 import mets_r.facility.Signal;
 import mets_r.routing.RouteContext;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.geotools.geometry.jts.JTS;
 import org.geotools.referencing.GeodeticCalculator;
@@ -28,7 +30,8 @@ import org.opengis.referencing.operation.TransformException;
  * General vehicle
  *
  * Driver behavior models are selected with {@code CAR_FOLLOWING_MODEL} and
- * {@code LANE_CHANGING_MODEL} in Data.properties.
+ * {@code LANE_CHANGING_MODEL} in Data.properties, resolved once at startup into
+ * {@link CarFollowingModels} and {@link LaneChangingModels}.
  *
  * Car-following models:
  * - {@code HERMAN}: the original METS-R car-following formulation. It uses
@@ -76,6 +79,13 @@ public class Vehicle {
 	public final static int ETAXI = 1;
 	public final static int EBUS = 2;
 	public final static int EV = 3; // Private electric vehicle
+
+	// Driver models, resolved once from the configuration
+	private static final CarFollowingModel CAR_FOLLOWING_MODEL = CarFollowingModels.CONFIGURED;
+	private static final LaneChangingModel LANE_CHANGING_MODEL = LaneChangingModels.CONFIGURED;
+	// Acceleration decisions taken by the free-flow fast path and by the full model
+	private static final LongAdder freeFlowFastPathTicks = new LongAdder();
+	private static final LongAdder freeFlowModelTicks = new LongAdder();
 	
 	//SensorType
 	public final static int DSRC = 0;
@@ -116,6 +126,13 @@ public class Vehicle {
 	private Road originRoad_;
 	private Road lastDeparturableRoad_;
 	private Coordinate currentCoord_; // this variable is created when the vehicle is initialized
+	// Within a segment the position is a linear function of nextDistance_, so
+	// move() only records where the segment interpolation started and
+	// currentCoord_ is materialized when somebody reads it.
+	private boolean coordPending_; // currentCoord_ is stale, the pose follows from the anchor
+	private final Coordinate coordAnchor_ = new Coordinate(); // Pose when the interpolation started
+	private Coordinate coordAnchorTarget_; // Waypoint the interpolation heads to
+	private double coordAnchorDistance_; // nextDistance_ when the interpolation started
 	private Coordinate originCoord_;
 	private final double length; // vehicle length, fixed at construction
 	private double distance_; // distance to downstream junction
@@ -125,7 +142,7 @@ public class Vehicle {
 	
 	private double currentSpeed_;
 	private double accRate_;
-	private LinkedList<Double> accPlan_; 
+	private AccelerationPlan accPlan_; // Primitive deque, no boxing per decision
 	private boolean accDecided_;
 	private double bearing_;
 	private double desiredSpeed_; // in meter/sec
@@ -192,6 +209,19 @@ public class Vehicle {
 	private Vehicle trailing_; // Trailing vehicle in the lane
 	private Vehicle macroLeading_; // Leading vehicle on the road (with all lanes combined)
 	private Vehicle macroTrailing_; // Trailing vehicle on the road (with all lanes combined)
+	private LaneKinematics kinematics_; // Lane store that last synced this vehicle
+	// Decision action step (DECISION_INTERVAL_TICKS)
+	private boolean decisionDue_; // Whether this vehicle re-decides in the current tick
+	private Vehicle decidedLeader_; // Leader at the last acceleration decision
+	private double decidedAcc_; // Acceleration of the last decision, held until the next one
+	private int kinematicSlot_; // Slot of this vehicle in kinematics_
+	private int kinematicStamp_; // Sync of kinematics_ that bound kinematicSlot_
+	private int followSlot_ = -1; // Store slot of the leader while the car-following model runs
+	// Link queue of a mesoscopic road (Road.stepMesoscopicQueue)
+	private Road mesoQueueRoad_; // Road whose queue holds the vehicle, null when not queued
+	private int mesoEntryTick_;
+	private int mesoExitTick_;
+	private double mesoQueueDistance_; // Distance covered while queued
 	
 	// Variables for lane changing model
 	private boolean nosingFlag;// If a vehicle in MLC and it can't find gap acceptance then nosing is true.
@@ -263,7 +293,11 @@ public class Vehicle {
 					"Vehicle length must be a finite positive value in meters");
 		}
 		this.ID = ContextCreator.generateAgentID();
-		this.rand = new Random(GlobalVariables.RandomGenerator.nextInt());
+		// Deterministic mode seeds each vehicle from its ID instead of the shared
+		// generator, so its streams do not depend on how many draws came before.
+		this.rand = GlobalVariables.DETERMINISTIC_PARALLEL
+				? new Random(ContextCreator.entityRandomSeed(this.ID))
+				: new Random(GlobalVariables.RandomGenerator.nextInt());
 		this.rand_route_only = new Random(rand.nextInt());
 		this.rand_relocate_only = new Random(rand.nextInt());
 		this.rand_car_follow_only = new Random(rand.nextInt());
@@ -276,7 +310,7 @@ public class Vehicle {
 		this.normalDeceleration_ = -0.5;
 		this.currentLaneSlope_ = 0;
 		this.currentSegmentIdx_ = 0;
-		this.accPlan_ = new LinkedList<Double>();
+		this.accPlan_ = new AccelerationPlan();
 		this.accDecided_ = false;
 
 		this.previousEpochCoord = new Coordinate(0, 0, 0.0);
@@ -861,6 +895,7 @@ public class Vehicle {
 			this.coordMap.clear();
 		}
 		this.distance_ = 0.0;
+		this.materializeCoord();
 		this.nextDistance_ = 0.0;
 		this.currentSegmentIdx_ = 0;
 		this.currentLaneSlope_ = 0.0;
@@ -933,6 +968,14 @@ public class Vehicle {
 	public void updateBatteryLevel() {
 		// Do nothing
 	}
+
+	/**
+	 * A place holder for charging the energy of several ticks at the current
+	 * speed and acceleration at once
+	 */
+	public void updateBatteryLevel(int ticks) {
+		// Do nothing
+	}
 	
 	/**
 	 * A place holder for reporting vehicle status
@@ -1443,7 +1486,7 @@ public class Vehicle {
 	        double dx = a.x - b.x;
 	        double dy = a.y - b.y;
 	        double lenSq = dx * dx + dy * dy;
-	        double segmentLen = this.distance(a, b);
+	        double segmentLen = plane.getArcLength(i) - plane.getArcLength(i - 1);
 
 	        if (lenSq > 0) {
 	            double apx = currCoord.x - b.x;
@@ -1483,16 +1526,13 @@ public class Vehicle {
 	                    minDist = d;
 	                    segIdx = i;
 	                    projectedParam = param;
-	                    projectedSegmentLen = this.distance(a, b);
+	                    projectedSegmentLen = plane.getArcLength(i) - plane.getArcLength(i - 1);
 	                    projectedCoord = this.projectCoordinateOnSegment(b, a, param);
 	                }
 	            }
 	        }
 	        if (segIdx >= 0) {
-		        newDistance = 0;
-		        for (int i = coords.size() - 1; i > segIdx; i--) {
-		            newDistance += this.distance(coords.get(i), coords.get(i - 1));
-		        }
+		        newDistance = plane.getArcLength(coords.size() - 1) - plane.getArcLength(segIdx);
 		        newDistance += (1.0 - projectedParam) * projectedSegmentLen;
 	        } else {
 	            newDistance = this.distance_;
@@ -1540,12 +1580,9 @@ public class Vehicle {
 		int segIdx = (plane == cachedProjectionLane_) ? cachedProjectionSegmentIdx_ : -1;
 		Coordinate projectedCoord = (plane == cachedProjectionLane_) ? cachedProjectionCoord_ : null;
 
-		ArrayList<Coordinate> coords = plane.getCoords();
 		ArrayList<Coordinate> newCoordMap = new ArrayList<>();
 		if (segIdx > 0) {
-			for (int j = segIdx; j < coords.size(); j++) {
-				newCoordMap.add(coords.get(j));
-			}
+			plane.copyCoordsFrom(segIdx, newCoordMap);
 		}
 
 		if(newCoordMap.size() == 0) {
@@ -1572,10 +1609,10 @@ public class Vehicle {
 	}
 
 	private void updateBearingAndNextDistanceToCoordMap() {
+		Coordinate current = this.currentCoord();
 		double previousBearing = Double.isFinite(this.bearing_) ? this.bearing_ : 0.0;
 		this.bearing_ = previousBearing;
 		this.nextDistance_ = 0.0;
-		Coordinate current = this.currentCoord_;
 		if (current == null || this.coordMap.isEmpty()) {
 			return;
 		}
@@ -1611,21 +1648,15 @@ public class Vehicle {
 		if (plane != null) {
 			this.distance_ = this.distance_ + plane.getLength();
 			
-			ArrayList<Coordinate> coords = plane.getCoords();
-			double accDist = plane.getLength();
-			for (int i = 0; i < coords.size() - 1; i++) {
-				accDist -= distance(coords.get(i), coords.get(i+1));
-				if (this.distance_ + 1e-4 >= accDist) { // Find the first pt in CoordMap that has smaller distance_
-					for (int j = i + 1; j < coords.size(); j++) { // Add the rest coords into the CoordMap
-						coordMap.add(coords.get(j));
-					}
-					currentSegmentIdx_ = i;
-					currentLaneSlope_ = plane.getSegmentSlope(i);
-					break;
-				}
+			// Find the first segment whose downstream end is closer to the lane end than distance_
+			int i = plane.findSegment(plane.getLength() - this.distance_ - 1e-4);
+			if (i >= 0) {
+				plane.copyCoordsFrom(i + 1, coordMap); // Add the rest coords into the CoordMap
+				currentSegmentIdx_ = i;
+				currentLaneSlope_ = plane.getSegmentSlope(i);
 			}
 			if (coordMap.size() == 0) {
-				ContextCreator.logger.error("Lane changing error, could not find coordMap for the target lane:" + lane.getID() + ", accDist: " + accDist+ ", distance: "+ this.distance_);
+				ContextCreator.logger.error("Lane changing error, could not find coordMap for the target lane:" + plane.getID() + ", length: " + plane.getLength() + ", distance: "+ this.distance_);
 			}
 			this.updateBearingAndNextDistanceToCoordMap();
 			this.insertToLane(plane);
@@ -1730,44 +1761,36 @@ public class Vehicle {
 				lane.lastVehicle(this);
 			}
 			
-			ArrayList<Coordinate> coords = lane.getCoords();
 			coordMap.clear();
-			double accDist = lane.getLength();
 			boolean positioned = false;
-			for (int i = 0; i < coords.size() - 1; i++) {
-				Coordinate upstream = coords.get(i);
-				Coordinate downstream = coords.get(i + 1);
-				double segmentDistance = ContextCreator.getCityContext().getDistance(upstream, downstream);
-				if (!Double.isFinite(segmentDistance) || segmentDistance <= 1e-9) {
-					continue;
-				}
-				accDist -= segmentDistance;
-				if (this.distance_ + 1e-4 >= accDist) { // Find the first pt in CoordMap that has smaller distance_, add noise to avoid numerical issue
-					double distanceToDownstream = Math.max(0.0,
-							Math.min(segmentDistance, this.distance_ - accDist));
-					double distanceFromUpstream = segmentDistance - distanceToDownstream;
-					double fraction = Math.max(0.0, Math.min(1.0,
-							distanceFromUpstream / segmentDistance));
-					this.setCurrentCoord(new Coordinate(
-							upstream.x + fraction * (downstream.x - upstream.x),
-							upstream.y + fraction * (downstream.y - upstream.y),
-							upstream.z + fraction * (downstream.z - upstream.z)));
-					double[] distAndAngle = new double[2];
-					double horizontalDistance = this.distance2(upstream, downstream, distAndAngle);
-					if (horizontalDistance > COINCIDENT_WAYPOINT_TOLERANCE_METERS
-							&& Double.isFinite(distAndAngle[1])) {
-						this.bearing_ = distAndAngle[1];
-					}
-					
-					for (int j = i + 1; j < coords.size(); j++) { // Add the rest coords into the CoordMap
-						coordMap.add(coords.get(j));
-					}
-					currentSegmentIdx_ = i;
-					currentLaneSlope_ = lane.getSegmentSlope(i);
-					this.updateBearingAndNextDistanceToCoordMap();
-					positioned = true;
-					break;
+			// Find the first non-degenerate segment whose downstream end is closer to the lane end than distance_, add noise to avoid numerical issue
+			int i = lane.findSpatialSegment(lane.getLength() - this.distance_ - 1e-4);
+			if (i >= 0) {
+				Coordinate upstream = lane.getCoord(i);
+				Coordinate downstream = lane.getCoord(i + 1);
+				double segmentDistance = lane.getSpatialArcLength(i + 1) - lane.getSpatialArcLength(i);
+				double accDist = lane.getLength() - lane.getSpatialArcLength(i + 1);
+				double distanceToDownstream = Math.max(0.0,
+						Math.min(segmentDistance, this.distance_ - accDist));
+				double distanceFromUpstream = segmentDistance - distanceToDownstream;
+				double fraction = Math.max(0.0, Math.min(1.0,
+						distanceFromUpstream / segmentDistance));
+				this.setCurrentCoord(new Coordinate(
+						upstream.x + fraction * (downstream.x - upstream.x),
+						upstream.y + fraction * (downstream.y - upstream.y),
+						upstream.z + fraction * (downstream.z - upstream.z)));
+				double[] distAndAngle = new double[2];
+				double horizontalDistance = this.distance2(upstream, downstream, distAndAngle);
+				if (horizontalDistance > COINCIDENT_WAYPOINT_TOLERANCE_METERS
+						&& Double.isFinite(distAndAngle[1])) {
+					this.bearing_ = distAndAngle[1];
 				}
+				
+				lane.copyCoordsFrom(i + 1, coordMap); // Add the rest coords into the CoordMap
+				currentSegmentIdx_ = i;
+				currentLaneSlope_ = lane.getSegmentSlope(i);
+				this.updateBearingAndNextDistanceToCoordMap();
+				positioned = true;
 			}
 			if (!positioned) {
 				// A zero-length connector has no heading of its own. Keep the
@@ -1801,28 +1824,40 @@ public class Vehicle {
 	}
 
 	/**
-	 * Phase 1: evaluate and execute lane-changing decisions.
-	 * Must run for ALL vehicles on the road before acceleration decisions,
-	 * so that the acceleration is computed against the correct (post-lane-change) leading vehicle.
+	 * Resample the desired speed every 10 ticks, or when it is unset. Runs for
+	 * every vehicle on the road each tick, before beginDecisionTick, so the
+	 * driver variability does not depend on DECISION_INTERVAL_TICKS.
 	 */
-	public void calcLaneChangingState(int tickcount) {
+	public void refreshDesiredSpeed(int tickcount) {
 		if (this.lane == null) return;
 		boolean invalidDesiredSpeed = !Double.isFinite(this.desiredSpeed_)
 				|| this.desiredSpeed_ <= 0.0;
 		if (this.hasActiveConnectorReservation()) {
-			// Connector occupancy suppresses lane-changing decisions, but a restored
-			// zero-speed vehicle still needs a longitudinal target speed.
+			// A restored zero-speed vehicle on a connector still needs a longitudinal target speed
 			if (invalidDesiredSpeed) {
-				this.desiredSpeed_ = this.lane.getRandomFreeSpeed(
-						rand_car_follow_only.nextGaussian());
+				this.desiredSpeed_ = this.lane.getRandomFreeSpeed(rand_car_follow_only.nextGaussian());
 			}
 			return;
 		}
+		if (!this.isOnLane()) return;
+		if (tickcount % 10 == 0 || invalidDesiredSpeed) {
+			this.desiredSpeed_ = this.lane.getRandomFreeSpeed(rand_car_follow_only.nextGaussian());
+		}
+	}
+
+	/**
+	 * Phase 1: evaluate and execute lane-changing decisions.
+	 * Must run for ALL vehicles on the road before acceleration decisions,
+	 * so that the acceleration is computed against the correct (post-lane-change) leading vehicle.
+	 */
+	public void calcLaneChangingState(int tickcount) {
+		if (this.lane == null) return;
+		if (this.hasActiveConnectorReservation()) return; // Connector occupancy suppresses lane-changing decisions
 		if (!this.prepareLaneChangeTarget()) return;
 		if (this.lane == null || this.road == null || !this.isOnLane()) return;
 		this.cachedProjectionLane_ = null;
-		if (tickcount % 10 == 0 || invalidDesiredSpeed) {
-			this.desiredSpeed_ = this.lane.getRandomFreeSpeed(rand_car_follow_only.nextGaussian());
+		if (GlobalVariables.FREE_FLOW_FAST_PATH && this.isIsolatedFreeFlow()) {
+			return; // Nothing ahead to change lanes for
 		}
 		if (this.road.getNumberOfLanes() > 1 && this.isOnLane() && (this.distance_ >= GlobalVariables.NO_LANECHANGING_LENGTH)) {
 			this.makeLaneChangingDecision();
@@ -1834,8 +1869,23 @@ public class Vehicle {
 	 * Called after all lane changes on the road are finalized and the macro list is repaired.
 	 */
 	public void calcAccState() {
-		if (!this.accDecided_) {
-			this.makeAcceleratingDecision();
+		this.calcAccState(true);
+	}
+
+	/**
+	 * Variant used by intra-road sub-tasks. With markYield false, nosing does not
+	 * tag the lag vehicle; the road applies those tags itself (see
+	 * nosingYieldTarget) so concurrent sub-tasks never write another vehicle.
+	 */
+	public void calcAccState(boolean markYield) {
+		if (!this.accDecided_ && GlobalVariables.DECISION_INTERVAL_TICKS > 1 && !this.decisionDue_
+				&& this.leading_ == this.decidedLeader_ && !this.nosingFlag && !this.yieldingFlag
+				&& !this.hasPendingLaneChangeAdvice()) {
+			// Between action points: hold the last decided acceleration
+			this.accPlan_.add(this.decidedAcc_);
+		} else if (!this.accDecided_) {
+			this.decidedAcc_ = this.makeAcceleratingDecision(markYield);
+			this.decidedLeader_ = this.leading_;
 		} else {
 			this.accDecided_ = false;
 			this.ensureAccelerationPlan(this.accRate_);
@@ -1849,6 +1899,10 @@ public class Vehicle {
 	 * This function updates accRate_ at the end.
 	 */
 	public void makeAcceleratingDecision() {
+		this.makeAcceleratingDecision(true);
+	}
+
+	private double makeAcceleratingDecision(boolean markYield) {
 		double aZ = this.accRate_; /* car-following */
 		double acc = this.maxAcceleration_; /* returned rate */
 		if (this.isOnLane()) {
@@ -1857,14 +1911,29 @@ public class Vehicle {
 			 * in yielding or nosing state
 			 */
 			if (!this.nosingFlag && !this.yieldingFlag) {
-				aZ = this.calcCarFollowingRate(this.vehicleAhead());
+				// The vehicle ahead is the lane leader, one slot ahead in a synced store
+				this.followSlot_ = this.inActiveKinematics() ? this.kinematicSlot_ - 1 : -1;
+				try {
+					if (!GlobalVariables.FREE_FLOW_FAST_PATH) {
+						aZ = this.calcCarFollowingRate(this.vehicleAhead());
+					} else if (this.isIsolatedFreeFlow()) {
+						this.regime_ = GlobalVariables.STATUS_REGIME_FREEFLOWING;
+						aZ = CAR_FOLLOWING_MODEL.freeFlowAcceleration(this);
+						freeFlowFastPathTicks.increment();
+					} else {
+						aZ = this.calcCarFollowingRate(this.vehicleAhead());
+						freeFlowModelTicks.increment();
+					}
+				} finally {
+					this.followSlot_ = -1;
+				}
 			} else if (this.nosingFlag) {
-				aZ = this.nosing();
+				aZ = this.nosing(markYield);
 			} else if (this.yieldingFlag) {
 				aZ = this.yielding();
 			}
 
-		if ("LC2013".equals(GlobalVariables.LANE_CHANGING_MODEL) && this.lcAccelerationAdvice_ < aZ) {
+		if (LANE_CHANGING_MODEL.advisesAcceleration() && this.lcAccelerationAdvice_ < aZ) {
 			aZ = this.lcAccelerationAdvice_;
 		}
 
@@ -1886,8 +1955,150 @@ public class Vehicle {
 		if (Double.isNaN(accRate_)) {
 			ContextCreator.logger.error("NaN acceleration rate for " + this);
 		}
+		return acc;
+	}
+
+	/**
+	 * Whether this vehicle re-evaluates its lane-changing and acceleration
+	 * decisions in this tick. With DECISION_INTERVAL_TICKS above one, each vehicle
+	 * decides on its own phase of the interval (staggered by ID) and holds its
+	 * acceleration in between, unless a safety-critical condition forces an
+	 * immediate decision.
+	 */
+	public boolean beginDecisionTick(int tickcount) {
+		int interval = GlobalVariables.DECISION_INTERVAL_TICKS;
+		this.decisionDue_ = interval <= 1 || tickcount % interval == Math.floorMod(this.getID(), interval)
+				|| this.requiresImmediateDecision(interval);
+		return this.decisionDue_;
+	}
+
+	// Another vehicle's lane change asked this one to slow below its held acceleration
+	private boolean hasPendingLaneChangeAdvice() {
+		return LANE_CHANGING_MODEL.advisesAcceleration() && this.lcAccelerationAdvice_ < this.decidedAcc_;
+	}
+
+	private boolean requiresImmediateDecision(int interval) {
+		if (!this.isOnLane() || this.nosingFlag || this.yieldingFlag) return true;
+		if (this.leading_ != this.decidedLeader_) return true; // new leader
+		if (this.hasPendingLaneChangeAdvice()) return true;
+		if (this.regime_ == GlobalVariables.STATUS_REGIME_EMERGENCY) return true;
+		double horizon = interval * GlobalVariables.SIMULATION_STEP_SIZE;
+		double brakingDistance = this.currentSpeed_ * this.currentSpeed_
+				/ (2.0 * Math.max(0.1, -effectiveNormalDeceleration()));
+		// The junction may need a stop before the next action point
+		if (this.distance_ <= this.currentSpeed_ * horizon + brakingDistance) return true;
+		if (this.leading_ != null) {
+			// Closing in on the leader within the interval
+			double closing = Math.max(0.0, this.currentSpeed_ - this.leading_.currentSpeed_);
+			if (this.gapDistance(this.leading_) <= closing * horizon
+					+ this.currentSpeed_ * GlobalVariables.SIMULATION_STEP_SIZE) {
+				return true;
+			}
+		}
+		return false;
 	}
 	
+	/**
+	 * Whether this vehicle drives alone on a free road (FREE_FLOW_FAST_PATH): on
+	 * a lane, not nosing, yielding or braking hard, with no mandatory lane change
+	 * left and no leader or downstream junction within the sight distance plus
+	 * its comfortable braking distance. Such a vehicle skips the lane-changing
+	 * evaluation and takes the free-road acceleration of its model; it falls back
+	 * to the full model as soon as any of these come into range.
+	 */
+	private boolean isIsolatedFreeFlow() {
+		if (!this.isOnLane() || this.nosingFlag || this.yieldingFlag
+				|| this.regime_ == GlobalVariables.STATUS_REGIME_EMERGENCY) {
+			return false;
+		}
+		if (this.hasActiveConnectorReservation() || this.hasIncompleteMandatoryLaneChange()) return false;
+		double reach = GlobalVariables.FREE_FLOW_SIGHT_DISTANCE + this.currentSpeed_ * this.currentSpeed_
+				/ (2.0 * Math.max(0.1, -effectiveNormalDeceleration()));
+		if (this.distance_ <= reach) return false; // Junction approach
+		Vehicle front = this.vehicleAhead();
+		return front == null || this.gapDistance(front) > reach;
+	}
+
+	/** Counters of the free-flow fast path, for the scheduler status. */
+	public static LinkedHashMap<String, Object> getFreeFlowStatus() {
+		long fast = freeFlowFastPathTicks.sum();
+		long model = freeFlowModelTicks.sum();
+		LinkedHashMap<String, Object> status = new LinkedHashMap<String, Object>();
+		status.put("fastPathTicks", fast);
+		status.put("modelTicks", model);
+		status.put("fastPathShare", fast + model == 0L ? 0.0 : (double) fast / (fast + model));
+		return status;
+	}
+
+	/**
+	 * Join the link queue of the current (mesoscopic) road: the vehicle waits at
+	 * the downstream end of a lane that connects to its next road, without
+	 * decisions or movement, until the road releases it at exitTick or later.
+	 * Ends a junction connector membership, since the vehicle no longer occupies
+	 * the entrance.
+	 * 
+	 * @return false if the vehicle cannot be placed on a lane of the road
+	 */
+	public boolean joinMesoscopicQueue(int tick, int exitTick) {
+		if (this.road == null || this.lane == null) return false;
+		Lane queueLane = this.targetLane();
+		if (queueLane == null || queueLane.getCoords() == null || queueLane.getCoords().size() < 2) {
+			queueLane = this.lane;
+		}
+		if (queueLane.getCoords() == null || queueLane.getCoords().size() < 2) return false;
+		double remaining = Math.max(0.0, this.distance_);
+		this.removeFromCurrentLane();
+		this.road.teleportVehicle(this, queueLane, 0.0);
+		this.invalidateKinematics();
+		this.resetLaneChangeRuntimeState();
+		this.currentSpeed_ = 0.0;
+		this.accRate_ = 0.0;
+		this.accDecided_ = false;
+		this.accPlan_.clear();
+		this.movingFlag = false;
+		this.mesoQueueRoad_ = this.road;
+		this.mesoEntryTick_ = tick;
+		this.mesoExitTick_ = exitTick;
+		this.mesoQueueDistance_ = remaining;
+		return true;
+	}
+
+	/**
+	 * Leave the link queue at the downstream end of the lane. The ticks spent in
+	 * the queue are added to the trip and link travel times, the distance to the
+	 * trip distance, and the energy of cruising that distance at the average
+	 * speed over those ticks is charged. The vehicle is then at the end of the
+	 * lane, as after a normal movement, and takes the junction transfer.
+	 */
+	public void releaseFromMesoscopicQueue(int tick) {
+		int ticks = Math.max(0, tick - this.mesoEntryTick_);
+		this.mesoQueueRoad_ = null;
+		this.endTime += ticks;
+		this.linkTravelTime += ticks;
+		this.accummulatedDistance_ += this.mesoQueueDistance_;
+		if (ticks > 0) {
+			this.currentSpeed_ = this.mesoQueueDistance_ / (ticks * GlobalVariables.SIMULATION_STEP_SIZE);
+			this.accRate_ = 0.0;
+			this.movingFlag = true;
+			this.updateBatteryLevel(ticks);
+		}
+		this.coordMap.clear();
+		this.setCurrentCoord(this.lane.getEndCoord());
+		this.coordMap.add(this.currentCoord_);
+		this.nextDistance_ = 0;
+		this.distance_ = 0;
+		this.onLane = false;
+	}
+
+	/** Whether the vehicle waits in the link queue of its (mesoscopic) road. */
+	public boolean isMesoQueued() {
+		return this.mesoQueueRoad_ != null && this.mesoQueueRoad_ == this.road;
+	}
+
+	public int getMesoscopicExitTick() {
+		return this.mesoExitTick_;
+	}
+
 	/**
 	 * Calculate the vehicle acceleration when it is free flow (not doing car following)
 	 * 
@@ -1919,10 +2130,20 @@ public class Vehicle {
 		}
 		
 		// free flow
+		return this.calcDesiredSpeedRate();
+	}
+
+	/**
+	 * Calculate the vehicle acceleration toward its desired speed, ignoring the
+	 * road end
+	 * 
+	 * @return acc Vehicle acceleration
+	 */
+	double calcDesiredSpeedRate() {
 		if (this.currentSpeed_ < this.desiredSpeed_) { // accelerate to reach the desired speed
 			return Math.min(this.maxAcceleration(), (this.desiredSpeed_ - this.currentSpeed_) / GlobalVariables.SIMULATION_STEP_SIZE);
 		} else { // decelerate if it exceeds the desired speed
-			return Math.max(effNormalDec, (this.desiredSpeed_ - this.currentSpeed_) / GlobalVariables.SIMULATION_STEP_SIZE);
+			return Math.max(effectiveNormalDeceleration(), (this.desiredSpeed_ - this.currentSpeed_) / GlobalVariables.SIMULATION_STEP_SIZE);
 		}
 	}
 
@@ -1947,23 +2168,10 @@ public class Vehicle {
 	 * @return acc Vehicle acceleration
 	 */
 	public double calcCarFollowingRate(Vehicle front) {
-		String model = GlobalVariables.CAR_FOLLOWING_MODEL;
-		if ("KRAUSS".equals(model)) {
-			return calcKraussCarFollowingRate(front);
-		}
-		if ("IDM".equals(model)) {
-			return calcIdmCarFollowingRate(front);
-		}
-		if ("WIEDEMANN74".equals(model) || "WIEDEMANN_74".equals(model) || "W74".equals(model)) {
-			return calcWiedemann74CarFollowingRate(front);
-		}
-		if ("WIEDEMANN99".equals(model) || "WIEDEMANN_99".equals(model) || "W99".equals(model)) {
-			return calcWiedemann99CarFollowingRate(front);
-		}
-		return calcHermanCarFollowingRate(front);
+		return CAR_FOLLOWING_MODEL.acceleration(this, front);
 	}
 
-	private double calcHermanCarFollowingRate(Vehicle front) {
+	double calcHermanCarFollowingRate(Vehicle front) {
 		// If there is no front vehicle the car will be in free flow regime and have max
 		// acceleration if not reaching the
 		// desired speed
@@ -1990,14 +2198,14 @@ public class Vehicle {
 		// depending on headway
 		// Emergency regime
 		if (headway < hlower) {
-			double dv = currentSpeed_ - front.currentSpeed_;
+			double dv = currentSpeed_ - leaderSpeed(front);
 			if (dv < 0.0f) { // the leader is decelerating
-				acc = front.accRate_ + 0.25f * effNormalDec;
+				acc = leaderAcc(front) + 0.25f * effNormalDec;
 			} else {
 				if(space <= 0) {
 					space = 0.01f;
 				}
-				acc = front.accRate_ - 0.5f * dv * dv / space;
+				acc = leaderAcc(front) - 0.5f * dv * dv / space;
 			}
 			acc = Math.min(effNormalDec, acc);
 			regime_ = GlobalVariables.STATUS_REGIME_EMERGENCY;
@@ -2009,7 +2217,7 @@ public class Vehicle {
 		}
 		// We are using Herman model
 		else {
-			double dv = front.currentSpeed_ - currentSpeed_;
+			double dv = leaderSpeed(front) - currentSpeed_;
 			if (dv < 0) {
 				acc = dv * AlphaDec *  Math.pow(currentSpeed_, BetaDec) /  (Math.pow(space, GammaDec));
 			} else if (dv > 0) {
@@ -2022,7 +2230,7 @@ public class Vehicle {
 		return acc;
 	}
 
-	private double calcKraussCarFollowingRate(Vehicle front) {
+	double calcKraussCarFollowingRate(Vehicle front) {
 		if (front == null) {
 			regime_ = GlobalVariables.STATUS_REGIME_FREEFLOWING;
 			return calcFreeFlowRate();
@@ -2033,7 +2241,7 @@ public class Vehicle {
 		double decel = kraussDecelMagnitude();
 		double emergencyDecel = kraussEmergencyDecelMagnitude();
 		double rawGap = gapDistance(front);
-		double leaderSpeed = Math.max(0.0, front.currentSpeed_);
+		double leaderSpeed = Math.max(0.0, leaderSpeed(front));
 		double leaderApparentDecel = apparentDecelMagnitude(front);
 		double safeSpeed = safeFollowSpeed(rawGap, leaderSpeed, leaderApparentDecel,
 				decel, tau, GlobalVariables.KRAUSS_MIN_GAP);
@@ -2060,7 +2268,7 @@ public class Vehicle {
 		return clampAcceleration(acc);
 	}
 
-	private double calcIdmCarFollowingRate(Vehicle front) {
+	double calcIdmCarFollowingRate(Vehicle front) {
 		double step = Math.max(GlobalVariables.SIMULATION_STEP_SIZE, 1e-6);
 		double desiredSpeed = Math.max(0.0, desiredSpeed_);
 		if (desiredSpeed <= 1e-6) {
@@ -2069,7 +2277,7 @@ public class Vehicle {
 			return clampAcceleration(-idmDecelMagnitude());
 		}
 
-		double leaderSpeed = front == null ? desiredSpeed : Math.max(0.0, front.currentSpeed_);
+		double leaderSpeed = front == null ? desiredSpeed : Math.max(0.0, leaderSpeed(front));
 		double gap = front == null ? 1.0e6 : gapDistance(front);
 		double idmSpeed = idmNextSpeed(gap, currentSpeed_, leaderSpeed, desiredSpeed, front != null);
 		double freeFlowSpeed = Math.max(0.0, currentSpeed_ + calcFreeFlowRate() * step);
@@ -2131,19 +2339,19 @@ public class Vehicle {
 		return positiveOr(GlobalVariables.IDM_DECEL, Math.max(0.1, -effectiveNormalDeceleration()));
 	}
 
-	private double calcWiedemann74CarFollowingRate(Vehicle front) {
+	double calcWiedemann74CarFollowingRate(Vehicle front) {
 		if (front == null) {
 			regime_ = GlobalVariables.STATUS_REGIME_FREEFLOWING;
 			return applyWiedemannJerkLimit(calcFreeFlowRate());
 		}
 
 		double gap = gapDistance(front);
-		double closingSpeed = currentSpeed_ - front.currentSpeed_;
+		double closingSpeed = currentSpeed_ - leaderSpeed(front);
 		double tau = Math.max(GlobalVariables.SIMULATION_STEP_SIZE, GlobalVariables.WIEDEMANN74_TAU);
 		double desiredGap = wiedemann74DesiredDistance();
 		double upperFollowingGap = desiredGap * Math.max(1.0,
 				GlobalVariables.WIEDEMANN74_FOLLOWING_DISTANCE_FACTOR);
-		double leaderSpeed = Math.max(0.0, front.currentSpeed_);
+		double leaderSpeed = Math.max(0.0, leaderSpeed(front));
 		double leaderApparentDecel = wiedemannApparentDecelMagnitude(front);
 		double normalDecel = Math.max(0.1, -effectiveNormalDeceleration());
 		double emergencyDecel = wiedemannEmergencyDecelMagnitude();
@@ -2189,14 +2397,14 @@ public class Vehicle {
 		return applyWiedemannJerkLimit(accelerationToSpeed(Math.min(desiredSpeed_, safeSpeed), tau));
 	}
 
-	private double calcWiedemann99CarFollowingRate(Vehicle front) {
+	double calcWiedemann99CarFollowingRate(Vehicle front) {
 		if (front == null) {
 			regime_ = GlobalVariables.STATUS_REGIME_FREEFLOWING;
 			return applyWiedemannJerkLimit(wiedemann99FreeAcceleration());
 		}
 
 		double gap = gapDistance(front);
-		double leaderSpeed = Math.max(0.0, front.currentSpeed_);
+		double leaderSpeed = Math.max(0.0, leaderSpeed(front));
 		double relativeSpeed = leaderSpeed - currentSpeed_;
 		double closingSpeed = Math.max(0.0, -relativeSpeed);
 		double tau = Math.max(GlobalVariables.SIMULATION_STEP_SIZE, GlobalVariables.WIEDEMANN99_CC1);
@@ -2340,7 +2548,7 @@ public class Vehicle {
 		return positiveOr(GlobalVariables.KRAUSS_DECEL, Math.max(0.1, -effectiveNormalDeceleration()));
 	}
 
-	private double kraussEmergencyDecelMagnitude() {
+	double kraussEmergencyDecelMagnitude() {
 		return positiveOr(GlobalVariables.KRAUSS_EMERGENCY_DECEL,
 				Math.max(kraussDecelMagnitude(), Math.max(0.1, -effectiveMaxDeceleration())));
 	}
@@ -2392,10 +2600,7 @@ public class Vehicle {
 	}
 
 	private double effectiveModelMaxDeceleration() {
-		if ("KRAUSS".equals(GlobalVariables.CAR_FOLLOWING_MODEL)) {
-			return -kraussEmergencyDecelMagnitude();
-		}
-		return effectiveMaxDeceleration();
+		return CAR_FOLLOWING_MODEL.maxDeceleration(this);
 	}
 
 	private double positiveOr(double value, double fallback) {
@@ -2432,7 +2637,11 @@ public class Vehicle {
 	 */
 	public double gapDistance(Vehicle front) {
 		double headwayDistance;
-		if (front != null && front.getLane() != null && this.lane != null) { /* vehicle ahead */
+		int leaderSlot = this.leaderSlot(front);
+		if (leaderSlot >= 0) { /* same-lane leader in the kinematic store */
+			headwayDistance = this.distance_ - this.kinematics_.distanceAt(leaderSlot)
+					- this.kinematics_.lengthAt(leaderSlot);
+		} else if (front != null && front.getLane() != null && this.lane != null) { /* vehicle ahead */
 			if (this.lane.getID() == front.getLane().getID()) { /* same lane */
 				headwayDistance = this.distance_ - front.getDistanceToNextJunction() - front.length();
 				
@@ -2449,18 +2658,54 @@ public class Vehicle {
 		return Math.max(0.0, headwayDistance);
 	}
 	
+	/**
+	 * Slot of the leader in the active kinematic store of this vehicle's lane,
+	 * or -1 outside the car-following model of an acceleration pass over the
+	 * stores. Within it, front is always the vehicle ahead, which the store
+	 * synced from the lane list holds in the slot before this vehicle's.
+	 */
+	private int leaderSlot(Vehicle front) {
+		return front == null ? -1 : this.followSlot_;
+	}
+
+	private double leaderSpeed(Vehicle front) {
+		int slot = this.leaderSlot(front);
+		return slot >= 0 ? this.kinematics_.speedAt(slot) : front.currentSpeed_;
+	}
+
+	private double leaderAcc(Vehicle front) {
+		int slot = this.leaderSlot(front);
+		return slot >= 0 ? this.kinematics_.accAt(slot) : front.accRate_;
+	}
+
+	/** Record the lane store slot of this vehicle, called by LaneKinematics.sync. */
+	public void bindKinematics(LaneKinematics store, int slot, int stamp) {
+		this.kinematics_ = store;
+		this.kinematicSlot_ = slot;
+		this.kinematicStamp_ = stamp;
+	}
+
+	/** Whether the latest sync of an active kinematic store bound this vehicle. */
+	public boolean inActiveKinematics() {
+		LaneKinematics store = this.kinematics_;
+		return store != null && store.isBound(this.kinematicStamp_);
+	}
+
+	// Out-of-band kinematic writes make the lane store resync before it is read
+	private void invalidateKinematics() {
+		LaneKinematics store = this.kinematics_;
+		if (store != null) store.markDirty();
+	}
+
 	/**
 	 * The Lane-Changing model for calculating the lane changing decisions
 	 */
 	public boolean makeLaneChangingDecision() {
-		if ("LC2013".equals(GlobalVariables.LANE_CHANGING_MODEL)) {
-			return makeLC2013LaneChangingDecision();
-		}
-		return makeAhmedLaneChangingDecision();
+		return LANE_CHANGING_MODEL.decide(this);
 	}
 
 	// Ahmed (1999) lane changing model.
-	private boolean makeAhmedLaneChangingDecision() {
+	boolean makeAhmedLaneChangingDecision() {
 		if (this.distFraction() < 0.5) {
 			// Halfway to the downstream intersection, only mantatory LC allowed, check the
 			// correct lane
@@ -2498,7 +2743,7 @@ public class Vehicle {
 		return false;
 	}
 
-	private boolean makeLC2013LaneChangingDecision() {
+	boolean makeLC2013LaneChangingDecision() {
 		LaneChangeIntent intent = lc2013ChooseIntent();
 		if (intent == null || intent.targetLane == null) {
 			lc2013DecayPersistentMotivation();
@@ -2837,7 +3082,7 @@ public class Vehicle {
 	 * resetting the previous snapshot coordinate to the vehicle's current location.
 	 */
 	public void syncPreviousEpochCoord() {
-		setPreviousEpochCoord(this.currentCoord_);
+		setPreviousEpochCoord(this.currentCoord());
 	}
 	
 	/**
@@ -3025,7 +3270,7 @@ public class Vehicle {
 	private double mandatoryLaneChangeHoldDistance(double laneLength) {
 		double preferredHold = GlobalVariables.NO_LANECHANGING_LENGTH
 				+ MANDATORY_LANE_CHANGE_HOLD_BUFFER_METERS;
-		if ("LC2013".equals(GlobalVariables.LANE_CHANGING_MODEL)) {
+		if (LANE_CHANGING_MODEL.holdsAtPreferredDistance()) {
 			return preferredHold;
 		}
 		if (!Double.isFinite(laneLength)) {
@@ -3100,8 +3345,12 @@ public class Vehicle {
 				double distToMove = dx - distTravelled;
 				if(distToMove > 0) {
 					this.distance_ -=  distToMove;
-					this.move2(this.getCurrentCoord(), this.coordMap.get(0), nextDistance_, distToMove);
-					this.nextDistance_ -= distToMove;
+					if (this.currentConnector == null) {
+						this.advanceCoordLazily(this.coordMap.get(0), distToMove);
+					} else { // Connector poses feed the intersection checks every tick
+						this.move2(this.currentCoord(), this.coordMap.get(0), nextDistance_, distToMove);
+						this.nextDistance_ -= distToMove;
+					}
 				}
 				lastStepMove =  dx;
 				travelledMaxDist = true;
@@ -3133,9 +3382,26 @@ public class Vehicle {
 		}
 	}
 
+	/**
+	 * True when a pending changeRoad() can only read and write the current road,
+	 * the planned next road and the junction between them. Transfers that may
+	 * reach the destination, reroute, recover a missed lane or gridlock, or hand
+	 * the move to a co-simulator are excluded because their side effects reach
+	 * beyond those three resources.
+	 */
+	public synchronized boolean isPartitionLocalTransfer() {
+		if (this.externalRoadTransition || this.isDormantOnRoad()) return this.road != null;
+		return !this.isReachDest && this.road != null && this.lane != null && this.nextRoad_ != null
+				&& this.nextRoadMatchesPath() && this.nextLane_ != null
+				&& this.isDirectLaneTransition(this.lane, this.nextLane_)
+				&& this.stuckTime < GlobalVariables.MAX_STUCK_TIME
+				&& this.road.getControlType() != Road.COSIM
+				&& this.nextRoad_.getControlType() != Road.COSIM;
+	}
+
 	/**
 	 * This function changes the vehicle from its current road to the next road.
-	 * 
+	 *
 	 * @return 0-fail , 1-success to change the road
 	 */
 	public synchronized boolean changeRoad() {
@@ -3484,7 +3750,7 @@ public class Vehicle {
 		if (!this.isOnConnector() || this.currentConnector == null) return 0.0;
 		double nativeRemaining = this.getConnectorDistanceRemaining();
 		if (Double.isFinite(nativeRemaining)) return nativeRemaining;
-		double estimated = this.currentConnector.estimateRemainingDistance(this.currentCoord_);
+		double estimated = this.currentConnector.estimateRemainingDistance(this.currentCoord());
 		return Double.isFinite(estimated) ? Math.max(0.0, estimated) : Double.NaN;
 	}
 
@@ -3662,8 +3928,10 @@ public class Vehicle {
 		}
 
 		this.currentCoord_ = new Coordinate(restoredPose);
+		this.coordPending_ = false;
 		this.bearing_ = restoredBearing;
 		this.distance_ = restoredDistance;
+		this.invalidateKinematics();
 		this.nextDistance_ = restoredNextDistance;
 		this.currentSegmentIdx_ = Math.max(0, restoredSegmentIndex);
 		this.currentLaneSlope_ = restoredLaneSlope;
@@ -3739,6 +4007,7 @@ public class Vehicle {
 			this.coordMap.clear();
 			this.coordMap.addAll(priorCoordMap);
 			this.distance_ = priorDistance;
+			this.invalidateKinematics();
 			this.nextDistance_ = priorNextDistance;
 			this.bearing_ = priorBearing;
 			this.currentSegmentIdx_ = priorSegmentIndex;
@@ -3786,6 +4055,7 @@ public class Vehicle {
 		this.currentLaneSlope_ = 0.0;
 		this.onLane = false;
 		this.currentSpeed_ = Math.max(0.0, handoffSpeed);
+		this.invalidateKinematics();
 		this.accRate_ = 0.0;
 		this.accDecided_ = false;
 		this.accPlan_.clear();
@@ -4205,7 +4475,7 @@ public class Vehicle {
 	}
 
 	private ExternalLaneProjection projectExternalPoseToLane(Lane targetLane) {
-		return this.projectPoseToLane(this.currentCoord_, targetLane);
+		return this.projectPoseToLane(this.currentCoord(), targetLane);
 	}
 
 	/**
@@ -4218,7 +4488,7 @@ public class Vehicle {
 	private boolean hasValidatedNativeConnectorPrefix(double laneLength) {
 		if (!this.onRoad || !this.onLane || this.externalRoadTransition
 				|| this.isDormantOnRoad() || this.road == null || this.lane == null
-				|| this.lane.getRoad() != this.road || this.currentCoord_ == null
+				|| this.lane.getRoad() != this.road || this.currentCoord() == null
 				|| this.coordMap == null) {
 			return false;
 		}
@@ -4265,7 +4535,7 @@ public class Vehicle {
 
 		double remainingPathDistance = 0.0;
 		double recomputedPrefixDistance = 0.0;
-		Coordinate previous = this.currentCoord_;
+		Coordinate previous = this.currentCoord();
 		for (int i = 0; i < this.coordMap.size(); i++) {
 			Coordinate waypoint = this.coordMap.get(i);
 			if (waypoint == null) {
@@ -4282,7 +4552,7 @@ public class Vehicle {
 			previous = waypoint;
 		}
 
-		double firstWaypointDistance = distance(this.currentCoord_, this.coordMap.get(0));
+		double firstWaypointDistance = distance(this.currentCoord(), this.coordMap.get(0));
 		return Double.isFinite(remainingPathDistance)
 				&& Double.isFinite(recomputedPrefixDistance)
 				&& Double.isFinite(this.nextDistance_)
@@ -4309,7 +4579,7 @@ public class Vehicle {
 		if (this.road != takeoverRoad) {
 			return "Vehicle " + this.ID + " macro membership disagrees with its current road";
 		}
-		Coordinate pose = this.currentCoord_;
+		Coordinate pose = this.currentCoord();
 		if (pose == null || !Double.isFinite(pose.x) || !Double.isFinite(pose.y)
 				|| !Double.isFinite(pose.z)) {
 			return "Vehicle " + this.ID + " has no finite current pose";
@@ -4502,6 +4772,7 @@ public class Vehicle {
 			this.setPreviousEpochCoord(authoritativePose);
 			this.bearing_ = authoritativeBearing;
 			this.currentSpeed_ = authoritativeSpeed;
+			this.invalidateKinematics();
 			return true;
 		}
 
@@ -4514,6 +4785,7 @@ public class Vehicle {
 		this.externalTransitionTargetLane = targetLane;
 		this.onLane = false;
 		this.distance_ = 0.0;
+		this.materializeCoord();
 		this.nextDistance_ = 0.0;
 		this.currentSegmentIdx_ = 0;
 		this.currentLaneSlope_ = 0.0;
@@ -4523,6 +4795,7 @@ public class Vehicle {
 		this.setPreviousEpochCoord(authoritativePose);
 		this.bearing_ = authoritativeBearing;
 		this.currentSpeed_ = authoritativeSpeed;
+		this.invalidateKinematics();
 
 		boolean targetLaneReserved =
 				mirroredRoad.tryReserveExternalLane(targetLane, this);
@@ -4569,12 +4842,12 @@ public class Vehicle {
 				throw new IllegalArgumentException(
 						"Vehicle is not in a recoverable active lane-end handoff state");
 			}
-			if (this.currentCoord_ == null) {
+			if (this.currentCoord() == null) {
 				throw new IllegalArgumentException(
 						"Off-lane vehicle has no retained lane-end pose");
 			}
 			double laneEndDistance = ContextCreator.getCityContext().getDistance(
-					this.currentCoord_, this.lane.getEndCoord());
+					this.currentCoord(), this.lane.getEndCoord());
 			if (!Double.isFinite(this.distance_)
 					|| Math.abs(this.distance_) > COINCIDENT_WAYPOINT_TOLERANCE_METERS
 					|| !Double.isFinite(laneEndDistance)
@@ -4669,7 +4942,7 @@ public class Vehicle {
 		// The road never changes here, so road counts and the route are preserved.
 		double previousDistance = this.distance_;
 		boolean previousOnLane = this.onLane;
-		Coordinate previousPose = new Coordinate(this.currentCoord_);
+		Coordinate previousPose = new Coordinate(this.currentCoord());
 		Coordinate previousEpochPose = new Coordinate(this.previousEpochCoord);
 		double previousBearing = this.bearing_;
 		double previousSpeed = this.currentSpeed_;
@@ -4688,6 +4961,7 @@ public class Vehicle {
 			this.setCurrentCoord(new Coordinate(authoritativePose));
 			this.bearing_ = authoritativeBearing;
 			this.currentSpeed_ = authoritativeSpeed;
+			this.invalidateKinematics();
 			// Road.teleportVehicle snapshots the projected centerline pose. Replace
 			// that snapshot only after restoring the externally authoritative pose.
 			this.syncPreviousEpochCoord();
@@ -4708,6 +4982,7 @@ public class Vehicle {
 				this.previousEpochCoord = previousEpochPose;
 				this.bearing_ = previousBearing;
 				this.currentSpeed_ = previousSpeed;
+				this.invalidateKinematics();
 				this.nextLane_ = previousNextLane;
 				this.nextDistance_ = previousNextDistance;
 				this.currentSegmentIdx_ = previousSegmentIndex;
@@ -4880,7 +5155,7 @@ public class Vehicle {
 	 * More negative uphill; less negative downhill.
 	 * @return effective maximum deceleration in m/sÂ² (negative value)
 	 */
-	private double effectiveMaxDeceleration() {
+	double effectiveMaxDeceleration() {
 		return maxDeceleration_ - GRAVITY * currentLaneSlope_;
 	}
 	
@@ -5179,6 +5454,7 @@ public class Vehicle {
 	 * Get (a copy of) of the vehicle location
 	 */
 	public synchronized Coordinate getCurrentCoord() {
+		this.materializeCoord();
 		Coordinate coord = new Coordinate();
 		coord.x = this.currentCoord_.x;
 		coord.y = this.currentCoord_.y;
@@ -5190,6 +5466,7 @@ public class Vehicle {
 	 * Get (a copy of) of the vehicle location in the original coordinate system
 	 */
 	public synchronized Coordinate getCurrentCoord(MathTransform transform) {
+		this.materializeCoord();
 		Coordinate coord = new Coordinate();
 		coord.x = this.currentCoord_.x;
 		coord.y = this.currentCoord_.y;
@@ -5210,6 +5487,7 @@ public class Vehicle {
 		if (coord == null) {
 			ContextCreator.logger.error("New coord is null!");
 		} else {
+			this.coordPending_ = false;
 			this.currentCoord_.x = coord.x;
 			this.currentCoord_.y = coord.y;
 			this.currentCoord_.z = coord.z;
@@ -5230,6 +5508,7 @@ public class Vehicle {
 		if (coord == null) {
 			ContextCreator.logger.error("New coord is null!");
 		} else {
+			this.coordPending_ = false;
 			this.currentCoord_.x = coord.x;
 			this.currentCoord_.y = coord.y;
 			this.currentCoord_.z = coord.z;
@@ -5270,6 +5549,7 @@ public class Vehicle {
 	}
 
 	protected void pauseOnRoadWithoutMovement() {
+		this.invalidateKinematics();
 		this.cancelExternalRoadTransition();
 		this.clearShadowImpact();
 		this.currentSpeed_ = 0.0;
@@ -5514,6 +5794,7 @@ public class Vehicle {
 		} else {
 			pl.lastVehicle(this);
 		}
+		pl.markReordered();
 	}
 
 	/** Move a vehicle backward after its distance increases during restoration. */
@@ -5543,6 +5824,7 @@ public class Vehicle {
 		} else {
 			pl.firstVehicle(this);
 		}
+		pl.markReordered();
 	}
 
 	/**
@@ -5983,6 +6265,7 @@ public class Vehicle {
 	}
 
 	private void handleMissedLaneRecoveryLivenessFallback() {
+		this.invalidateKinematics();
 		if (this.missedLaneRecoveryFallbackHandled || this.externalRoadTransition) {
 			return;
 		}
@@ -6365,20 +6648,22 @@ public class Vehicle {
 	 * status. This function will be called in makeAccelerationDecision
 	 */
 	public double nosing() {
+		return this.nosing(true);
+	}
+
+	private double nosing(boolean markYield) {
 		double acc = 0;
-		double lagGap;
 		Lane tarLane = this.tempLane();
 		if(tarLane != null) {
 			double newDistance = this.distanceInNewLane(tarLane);
 			Vehicle leadVehicle = this.leadVehicle(tarLane, newDistance);
-			Vehicle lagVehicle = this.lagVehicle(tarLane, newDistance);
 			/*
 			 * 0. If there is a lag vehicle in the target lane, the vehicle will yield that
 			 * lag vehicle however, the yielding is only true if the distance is less than
 			 * some threshold
 			 */
-			lagGap = this.lagGap(lagVehicle, newDistance);
-			if (lagVehicle != null  && lagGap < GlobalVariables.MIN_LAG) {
+			Vehicle lagVehicle = this.yieldTarget(tarLane, newDistance);
+			if (lagVehicle != null && markYield) {
 				lagVehicle.yieldingFlag = true;
 			}
 			Vehicle front = this.leading();
@@ -6415,6 +6700,33 @@ public class Vehicle {
 		return acc;
 	}
 
+	private Vehicle yieldTarget(Lane tarLane, double newDistance) {
+		Vehicle lagVehicle = this.lagVehicle(tarLane, newDistance);
+		if (lagVehicle != null && this.lagGap(lagVehicle, newDistance) < GlobalVariables.MIN_LAG) {
+			return lagVehicle;
+		}
+		return null;
+	}
+
+	/**
+	 * The lag vehicle that calcAccState would tag as yielding this tick, or null.
+	 * Reads only positions and lane membership, which acceleration decisions do
+	 * not change, so the road can resolve the tags before running the decisions.
+	 */
+	public Vehicle nosingYieldTarget() {
+		if (this.accDecided_ || !this.nosingFlag || !this.isOnLane()) return null;
+		Lane tarLane = this.tempLane();
+		if (tarLane == null) return null;
+		return this.yieldTarget(tarLane, this.distanceInNewLane(tarLane));
+	}
+
+	/**
+	 * Tag this vehicle as yielding to a nosing vehicle, as nosing() does.
+	 */
+	public void markYielding() {
+		this.yieldingFlag = true;
+	}
+
 	/**
 	 * While moving, the vehicle will checks if the vehicles in adjection lanes are
 	 * nosing to its lane or not after some distance to the downstream node If the
@@ -6518,6 +6830,12 @@ public class Vehicle {
      * @return Vehicle leadVehicle, or null if none exists ahead
 	 */
 	public Vehicle leadVehicle(Lane plane, double dist) {
+	    if (GlobalVariables.LANE_POSITION_INDEX) {
+	        LaneKinematics index = plane.getPositionIndex();
+	        int slot = index.leaderSlot(dist);
+	        if (slot >= 0 && index.vehicleAt(slot) == this) slot--;
+	        return slot >= 0 ? index.vehicleAt(slot) : null;
+	    }
 	    
 	    // 1. First check if a macro-trailing vehicle could actually be the new leader 
 	    // due to lane projection/geometry differences.
@@ -6566,6 +6884,12 @@ public class Vehicle {
      * @return Vehicle lagVehicle, or null if none exists behind
     */
 	public Vehicle lagVehicle(Lane plane, double dist) {
+	    if (GlobalVariables.LANE_POSITION_INDEX) {
+	        LaneKinematics index = plane.getPositionIndex();
+	        int slot = index.followerSlot(dist);
+	        if (slot >= 0 && index.vehicleAt(slot) == this) slot = slot + 1 < index.size() ? slot + 1 : -1;
+	        return slot >= 0 ? index.vehicleAt(slot) : null;
+	    }
 	    
 	    // 1. First check if a macro-leading vehicle could actually be the new lag vehicle 
 	    // due to lane projection/geometry differences.
@@ -6755,6 +7079,9 @@ public class Vehicle {
 	public double entranceGap(Lane nextlane) {
 		double gap = 0;
 		if (nextlane != null) {
+			if (nextlane.getRoad() != null && nextlane.getRoad().isMesoscopicStorageFull()) {
+				return 0; // The link queue holds its jam density, the vehicle waits upstream
+			}
 			Vehicle newleader = nextlane.lastVehicle();
 			if (newleader != null) {
 				ConnectorRoad leaderConnector = newleader.getCurrentConnector();
@@ -6834,6 +7161,48 @@ public class Vehicle {
 			(1 - p) * origin.z + p * target.z));
 	}
 	
+	/**
+	 * Move toward target by distanceTravelled without writing currentCoord_.
+	 * Successive calls toward the same waypoint scale the offset from it by
+	 * nextDistance_ after / before, so the pose after any number of them is the
+	 * anchor pose scaled by nextDistance_ / coordAnchorDistance_.
+	 */
+	private synchronized void advanceCoordLazily(Coordinate target, double distanceTravelled) {
+		if (!this.coordPending_ || this.coordAnchorTarget_ != target) {
+			this.materializeCoord();
+			this.coordAnchor_.x = this.currentCoord_.x;
+			this.coordAnchor_.y = this.currentCoord_.y;
+			this.coordAnchor_.z = this.currentCoord_.z;
+			this.coordAnchorTarget_ = target;
+			this.coordAnchorDistance_ = this.nextDistance_;
+			this.coordPending_ = true;
+		}
+		this.nextDistance_ -= distanceTravelled;
+	}
+	
+	/**
+	 * Write the pose deferred by advanceCoordLazily into currentCoord_.
+	 */
+	private synchronized void materializeCoord() {
+		if (!this.coordPending_) return;
+		this.coordPending_ = false;
+		double r = this.coordAnchorDistance_ > 0 ? this.nextDistance_ / this.coordAnchorDistance_ : 0;
+		if (r < 0) r = 0;
+		if (r > 1) r = 1;
+		Coordinate target = this.coordAnchorTarget_;
+		this.coordAnchorTarget_ = null;
+		this.currentCoord_.x = r * this.coordAnchor_.x + (1 - r) * target.x;
+		this.currentCoord_.y = r * this.coordAnchor_.y + (1 - r) * target.y;
+		this.currentCoord_.z = r * this.coordAnchor_.z + (1 - r) * target.z;
+		this.refreshConnectorPoseState();
+	}
+	
+	/** The up-to-date (not copied) pose for reads inside the vehicle. */
+	private Coordinate currentCoord() {
+		if (this.coordPending_) this.materializeCoord();
+		return this.currentCoord_;
+	}
+	
 	/**
 	 * Manually specify the acceleration
 	 * @param acc
@@ -6983,10 +7352,11 @@ public class Vehicle {
 	 * Extend the coordMap by attaching a coordinate to its starting place
 	 */
 	public void extendCoordMap(Coordinate newCoord) {
-		double newdist =  this.distance(newCoord, this.currentCoord_); 
+		double newdist =  this.distance(newCoord, this.currentCoord()); 
 		if(newdist > 0.0) {
-			this.coordMap.add(0, this.currentCoord_);
+			this.coordMap.add(0, this.currentCoord());
 			this.currentCoord_ = newCoord;
+			this.coordPending_ = false;
 			this.distance_ += newdist;
 			this.nextDistance_ = newdist;
 		}
@@ -7089,10 +7459,11 @@ public class Vehicle {
 	
 	public void setSpeed(double speed) {
 		this.currentSpeed_ = speed;
+		this.invalidateKinematics();
 		this.refreshConnectorPoseState();
 	}
-	public void setAccRate(double acc) { this.accRate_ = acc; }
-	public void setDistance(double dist) { this.distance_ = dist; }
+	public void setAccRate(double acc) { this.accRate_ = acc; this.invalidateKinematics(); }
+	public void setDistance(double dist) { this.distance_ = dist; this.invalidateKinematics(); }
 	public void setMovingFlag(boolean flag) { this.movingFlag = flag; }
 	public void setOnRoad(boolean flag) { this.onRoad = flag; }
 	public void setOnLane(boolean flag) { this.onLane = flag; }
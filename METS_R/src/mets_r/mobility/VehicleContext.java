@@ -721,7 +721,16 @@ public class VehicleContext extends DefaultContext<Vehicle> {
 	public void executeGlobalTransfers() {
 		List<Vehicle> sortedTransfers = drainVehicleQueue(this.allTransferringVehicles);
 	    sortedTransfers.sort(Comparator.comparingInt(Vehicle::getID));
-	    
+	    commitTransfers(sortedTransfers);
+	    executeArrivals();
+	}
+
+	/**
+	 * Commit road transfers in the given order. Used for the whole sorted list in
+	 * serial mode, and for each partition batch and the serial remainder of a
+	 * {@link GlobalTransferPlan}.
+	 */
+	public void commitTransfers(List<Vehicle> sortedTransfers) {
 	    for (Vehicle currentVehicle: sortedTransfers) {
 	        if (currentVehicle.isExternalRoadTransition()) {
 	            continue;
@@ -741,6 +750,9 @@ public class VehicleContext extends DefaultContext<Vehicle> {
                 if (r != null) {
                     r.recordEnergyConsumption(currentVehicle);
                     r.recordTravelTime(currentVehicle);
+                    if (GlobalVariables.MULTI_THREADING && ContextCreator.partitioner != null) {
+                        ContextCreator.partitioner.recordRoadTransfer(r, currentVehicle.getRoad());
+                    }
                 }
 	                if (!currentVehicle.isExternalRoadTransition()) {
 	                    currentVehicle.setAccumulatedDistance(currentVehicle.getAccummulatedDistance()
@@ -749,7 +761,10 @@ public class VehicleContext extends DefaultContext<Vehicle> {
                 currentVehicle.setMovingFlag(true);
             }
 	    }
-	    
+	}
+
+	/** Process the vehicles that reached their destination this tick in ID order. */
+	public void executeArrivals() {
 	    List<Vehicle> sortedArrivals = drainVehicleQueue(this.allArrivingVehicles);
 	    sortedArrivals.sort(Comparator.comparingInt(Vehicle::getID));
 	    
@@ -758,6 +773,123 @@ public class VehicleContext extends DefaultContext<Vehicle> {
 	    }
 	}
 
+	/**
+	 * Transfers of one tick split into batches that can be committed in parallel
+	 * and a serial remainder. Every batch and the remainder are in vehicle-ID
+	 * order.
+	 */
+	public static final class GlobalTransferPlan {
+		private final ArrayList<ArrayList<Vehicle>> partitionTransfers;
+		private final ArrayList<Vehicle> serialTransfers;
+		private int localCount;
+
+		GlobalTransferPlan(int nPartitions) {
+			this.partitionTransfers = new ArrayList<ArrayList<Vehicle>>(nPartitions);
+			for (int i = 0; i < nPartitions; i++) this.partitionTransfers.add(new ArrayList<Vehicle>());
+			this.serialTransfers = new ArrayList<Vehicle>();
+		}
+
+		public List<Vehicle> getPartitionTransfers(int partition) {
+			return this.partitionTransfers.get(partition);
+		}
+
+		public List<Vehicle> getSerialTransfers() {
+			return this.serialTransfers;
+		}
+
+		public int getLocalCount() {
+			return this.localCount;
+		}
+
+		public int getSerialCount() {
+			return this.serialTransfers.size();
+		}
+	}
+
+	/**
+	 * Drain the pending transfers and split them for partition-local commit.
+	 * A transfer touches its current road, its next road and the junction (and
+	 * connector intersection) between them. Transfers sharing any of these are
+	 * grouped into one component. A component stays in a partition batch only if
+	 * all its transfers start on roads stepped by that partition in this tick and
+	 * all of them are {@link Vehicle#isPartitionLocalTransfer() local}. Everything
+	 * else goes to the serial remainder. Components never share a resource and
+	 * each batch is committed in vehicle-ID order, so every road, lane and
+	 * intersection sees its transfers in the order of one ID-ordered pass. The
+	 * shared indexes the batches also touch do not record their order: the
+	 * active road and intersection sets are read back sorted by ID, and the
+	 * active road version moves once per newly active road.
+	 */
+	public GlobalTransferPlan planGlobalTransfers(int nPartitions) {
+		List<Vehicle> sortedTransfers = drainVehicleQueue(this.allTransferringVehicles);
+		sortedTransfers.sort(Comparator.comparingInt(Vehicle::getID));
+		GlobalTransferPlan plan = new GlobalTransferPlan(nPartitions);
+		int n = sortedTransfers.size();
+		if (n == 0) return plan;
+
+		int tick = ContextCreator.getCurrentTick();
+		int[] parent = new int[n];
+		int[] partition = new int[n];
+		HashMap<Long, Integer> resourceOwner = new HashMap<Long, Integer>(n * 4);
+		for (int i = 0; i < n; i++) {
+			parent[i] = i;
+			Vehicle v = sortedTransfers.get(i);
+			Road road = v.getRoad();
+			partition[i] = road == null || !v.isPartitionLocalTransfer() ? -1 : road.getStepPartition(tick);
+			if (partition[i] >= nPartitions) partition[i] = -1;
+			if (road == null) continue;
+			unionResource(resourceOwner, parent, i, transferResourceKey(0, road.getID()));
+			unionResource(resourceOwner, parent, i, transferResourceKey(1, road.getDownStreamJunction()));
+			Road nextRoad = v.getNextRoad();
+			if (nextRoad != null) {
+				unionResource(resourceOwner, parent, i, transferResourceKey(0, nextRoad.getID()));
+				ConnectorRoad connector = ContextCreator.getRoadContext().getConnector(road, nextRoad);
+				if (connector != null) {
+					unionResource(resourceOwner, parent, i, transferResourceKey(2, connector.getIntersectionID()));
+				}
+			}
+		}
+
+		// A component is local only if every member is local to the same partition
+		int[] componentPartition = new int[n];
+		Arrays.fill(componentPartition, -2);
+		for (int i = 0; i < n; i++) {
+			int root = findTransferRoot(parent, i);
+			if (componentPartition[root] == -2) componentPartition[root] = partition[i];
+			else if (componentPartition[root] != partition[i]) componentPartition[root] = -1;
+		}
+		for (int i = 0; i < n; i++) {
+			int p = componentPartition[findTransferRoot(parent, i)];
+			if (p >= 0) {
+				plan.partitionTransfers.get(p).add(sortedTransfers.get(i));
+				plan.localCount++;
+			} else {
+				plan.serialTransfers.add(sortedTransfers.get(i));
+			}
+		}
+		return plan;
+	}
+
+	private static long transferResourceKey(int type, int id) {
+		return ((long) type << 32) | (id & 0xffffffffL);
+	}
+
+	private static void unionResource(HashMap<Long, Integer> resourceOwner, int[] parent, int transfer, long key) {
+		Integer other = resourceOwner.putIfAbsent(key, transfer);
+		if (other == null) return;
+		int a = findTransferRoot(parent, transfer);
+		int b = findTransferRoot(parent, other);
+		if (a != b) parent[Math.max(a, b)] = Math.min(a, b);
+	}
+
+	private static int findTransferRoot(int[] parent, int i) {
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
 	private List<Vehicle> drainVehicleQueue(ConcurrentLinkedQueue<Vehicle> queue) {
 		ArrayList<Vehicle> vehicles = new ArrayList<Vehicle>();
 		for (Vehicle v = queue.poll(); v != null; v = queue.poll()) {
@@ -0,0 +1,732 @@
+package mets_r.routing;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Customizable contraction hierarchy over a directed graph given as arcs
+ * between integer nodes. The metric-independent part is built once from the
+ * topology: a nested dissection elimination order, the chordal supergraph it
+ * induces (each hierarchy arc joins a node to a higher-ranked neighbor) and the
+ * lower triangles of every hierarchy arc. customize then folds a set of arc
+ * weights into the hierarchy, level by level of the elimination tree so the
+ * nodes of one level are customized in parallel, and query answers a shortest
+ * path by walking the elimination tree up from both ends, without a priority
+ * queue, and unpacks it into original arcs.
+ *
+ * A Metric is immutable once customized, so queries on one metric may run
+ * concurrently with the customization of the next.
+ */
+final class ContractionHierarchy {
+	private static final int PARALLEL_LEVEL_NODES = 256; // Customize smaller levels serially
+	private static final int LEAF_NODES = 16; // Parts ordered without a separator
+	private static final double TERMINAL_SHARE = 0.4; // Share of a part at each end seeding a cut
+	private static final double[][] CUT_DIRECTIONS = { { 1, 0 }, { 0, 1 }, { 1, 1 }, { 1, -1 } };
+
+	private final int nodeCount;
+	private final int[] rank; // Elimination position of each node, its number within the hierarchy
+	// Hierarchy nodes are numbered by rank, so the ancestors every query walks share a few cache lines
+	private final int[] firstArc; // Hierarchy arcs of node u: [firstArc[u], firstArc[u + 1])
+	private final int[] arcTail; // Lower endpoint
+	private final int[] arcHead; // Higher endpoint, ascending within a node
+	private final int[] parent; // Elimination tree parent: the lowest higher neighbor, -1 for a root
+	private final int[] firstTriangle; // Lower triangles of arc e: [firstTriangle[e], firstTriangle[e + 1])
+	private final int[] triangleLow; // Arc {x, tail} of the triangle
+	private final int[] triangleHigh; // Arc {x, head} of the triangle
+	private final int[] levelNodes; // Nodes grouped by elimination tree level
+	private final int[] firstLevelNode;
+	private final int[] originalArc; // Hierarchy arc of each original arc, -1 for loops
+	private final boolean[] originalUp; // Whether the original arc runs from tail to head
+
+	/** Weights of the hierarchy arcs in both directions under one set of original weights. */
+	static final class Metric {
+		final double[] up; // tail -> head
+		final double[] down; // head -> tail
+		// How each direction was reached: a triangle index, -1 - k for original arc k
+		final int[] upVia;
+		final int[] downVia;
+
+		Metric(int arcs) {
+			this.up = new double[arcs];
+			this.down = new double[arcs];
+			this.upVia = new int[arcs];
+			this.downVia = new int[arcs];
+		}
+	}
+
+	/**
+	 * @param nodeCount Number of nodes, indexed from 0
+	 * @param tail Tail node of each original arc
+	 * @param head Head node of each original arc
+	 * @param xs Position of each node for the separators, or null to cut along BFS distance
+	 * @param ys
+	 */
+	ContractionHierarchy(int nodeCount, int[] tail, int[] head, double[] xs, double[] ys) {
+		this.nodeCount = nodeCount;
+		this.rank = new int[nodeCount];
+
+		List<HashSet<Integer>> adjacency = new ArrayList<HashSet<Integer>>(nodeCount);
+		for (int u = 0; u < nodeCount; u++) adjacency.add(new HashSet<Integer>());
+		for (int k = 0; k < tail.length; k++) {
+			if (tail[k] == head[k]) continue;
+			adjacency.get(tail[k]).add(head[k]);
+			adjacency.get(head[k]).add(tail[k]);
+		}
+		int[][] neighbors = new int[nodeCount][];
+		for (int u = 0; u < nodeCount; u++) {
+			neighbors[u] = new int[adjacency.get(u).size()];
+			int i = 0;
+			for (int v : adjacency.get(u)) neighbors[u][i++] = v;
+		}
+		int[] order = nestedDissectionOrder(neighbors, xs, ys);
+		for (int r = 0; r < nodeCount; r++) this.rank[order[r]] = r;
+
+		// Eliminate in rank order: the higher neighbors of a node become a clique (the fill)
+		int[][] upper = new int[nodeCount][];
+		for (int r = 0; r < nodeCount; r++) {
+			int x = order[r];
+			HashSet<Integer> remaining = adjacency.get(x);
+			int[] up = new int[remaining.size()];
+			int i = 0;
+			for (int v : remaining) up[i++] = v;
+			upper[x] = up;
+			for (int v : up) adjacency.get(v).remove(x);
+			for (int a = 0; a < up.length; a++) {
+				for (int b = a + 1; b < up.length; b++) {
+					if (adjacency.get(up[a]).add(up[b])) adjacency.get(up[b]).add(up[a]);
+				}
+			}
+			adjacency.set(x, null);
+		}
+
+		// Hierarchy arcs in CSR form by rank, heads ascending
+		this.firstArc = new int[nodeCount + 1];
+		for (int u = 0; u < nodeCount; u++) this.firstArc[u + 1] = this.firstArc[u] + upper[order[u]].length;
+		int arcs = this.firstArc[nodeCount];
+		this.arcTail = new int[arcs];
+		this.arcHead = new int[arcs];
+		for (int u = 0; u < nodeCount; u++) {
+			int[] heads = upper[order[u]];
+			for (int i = 0; i < heads.length; i++) heads[i] = this.rank[heads[i]];
+			Arrays.sort(heads);
+			for (int i = 0; i < heads.length; i++) {
+				this.arcTail[this.firstArc[u] + i] = u;
+				this.arcHead[this.firstArc[u] + i] = heads[i];
+			}
+		}
+		this.parent = new int[nodeCount];
+		for (int u = 0; u < nodeCount; u++) {
+			this.parent[u] = this.firstArc[u] < this.firstArc[u + 1] ? this.arcHead[this.firstArc[u]] : -1;
+		}
+
+		// Lower triangles: x below both ends of arc {u, v} with arcs {x, u} and {x, v}
+		int[] triangleCount = new int[arcs + 1];
+		for (int x = 0; x < nodeCount; x++) {
+			for (int i = this.firstArc[x]; i < this.firstArc[x + 1]; i++) {
+				for (int j = i + 1; j < this.firstArc[x + 1]; j++) {
+					triangleCount[this.findArc(this.arcHead[i], this.arcHead[j])]++;
+				}
+			}
+		}
+		this.firstTriangle = new int[arcs + 1];
+		for (int e = 0; e < arcs; e++) this.firstTriangle[e + 1] = this.firstTriangle[e] + triangleCount[e];
+		int triangles = this.firstTriangle[arcs];
+		this.triangleLow = new int[triangles];
+		this.triangleHigh = new int[triangles];
+		int[] fill = Arrays.copyOf(this.firstTriangle, arcs);
+		for (int x = 0; x < nodeCount; x++) {
+			for (int i = this.firstArc[x]; i < this.firstArc[x + 1]; i++) {
+				for (int j = i + 1; j < this.firstArc[x + 1]; j++) {
+					int e = this.findArc(this.arcHead[i], this.arcHead[j]);
+					this.triangleLow[fill[e]] = i;
+					this.triangleHigh[fill[e]] = j;
+					fill[e]++;
+				}
+			}
+		}
+
+		// Elimination tree levels: a node only depends on the arcs of its lower neighbors
+		int[] level = new int[nodeCount];
+		int levels = 0;
+		for (int x = 0; x < nodeCount; x++) {
+			levels = Math.max(levels, level[x] + 1);
+			for (int e = this.firstArc[x]; e < this.firstArc[x + 1]; e++) {
+				int v = this.arcHead[e];
+				level[v] = Math.max(level[v], level[x] + 1);
+			}
+		}
+		this.firstLevelNode = new int[levels + 1];
+		for (int u = 0; u < nodeCount; u++) this.firstLevelNode[level[u] + 1]++;
+		for (int l = 0; l < levels; l++) this.firstLevelNode[l + 1] += this.firstLevelNode[l];
+		this.levelNodes = new int[nodeCount];
+		int[] levelFill = Arrays.copyOf(this.firstLevelNode, levels);
+		for (int u = 0; u < nodeCount; u++) this.levelNodes[levelFill[level[u]]++] = u;
+
+		this.originalArc = new int[tail.length];
+		this.originalUp = new boolean[tail.length];
+		for (int k = 0; k < tail.length; k++) {
+			int u = this.rank[tail[k]];
+			int v = this.rank[head[k]];
+			if (u == v) {
+				this.originalArc[k] = -1;
+			} else if (u < v) {
+				this.originalArc[k] = this.findArc(u, v);
+				this.originalUp[k] = true;
+			} else {
+				this.originalArc[k] = this.findArc(v, u);
+			}
+		}
+	}
+
+	/**
+	 * Elimination order by nested dissection: each connected part is split by a
+	 * small vertex separator, which is ordered after the rest of the part, and
+	 * the pieces left are ordered the same way. The separator is the smallest
+	 * minimum vertex cut between the two ends of the part along one of a few
+	 * directions through the node positions (inertial flow), or along the BFS
+	 * distance from a peripheral node without positions. Small parts keep their
+	 * BFS order. Separators of road networks are small, which keeps the fill,
+	 * the elimination tree depth and with it the query cost small.
+	 */
+	private static int[] nestedDissectionOrder(int[][] neighbors, double[] x, double[] y) {
+		int n = neighbors.length;
+		int[] order = new int[n];
+		int[] part = new int[n]; // Id of the part each node currently belongs to
+		int[] distance = new int[n];
+		int[] bfs = new int[n];
+		VertexCut cut = new VertexCut(n);
+		int nextPart = 1;
+		ArrayDeque<int[]> tasks = new ArrayDeque<int[]>();
+		ArrayDeque<Integer> taskEnds = new ArrayDeque<Integer>();
+		int[] all = new int[n];
+		for (int u = 0; u < n; u++) all[u] = u;
+		tasks.push(all);
+		taskEnds.push(n);
+		while (!tasks.isEmpty()) {
+			int[] nodes = tasks.pop();
+			int end = taskEnds.pop(); // The nodes take the ranks [end - nodes.length, end)
+			if (nodes.length == 0) continue;
+			int id = nextPart++;
+			for (int u : nodes) part[u] = id;
+
+			int reached = bfsWithin(neighbors, part, id, nodes[0], distance, bfs);
+			if (reached < nodes.length) { // Disconnected: the other components are independent
+				int[] component = Arrays.copyOf(bfs, reached);
+				int[] rest = new int[nodes.length - reached];
+				int stamp = nextPart++;
+				for (int i = 0; i < reached; i++) part[bfs[i]] = stamp;
+				int k = 0;
+				for (int u : nodes) if (part[u] == id) rest[k++] = u;
+				tasks.push(component);
+				taskEnds.push(end);
+				tasks.push(rest);
+				taskEnds.push(end - reached);
+				continue;
+			}
+			if (nodes.length <= LEAF_NODES) {
+				for (int i = 0; i < reached; i++) order[end - reached + i] = bfs[i];
+				continue;
+			}
+
+			double[][] keys;
+			if (x != null) {
+				keys = new double[CUT_DIRECTIONS.length][nodes.length];
+				for (int d = 0; d < CUT_DIRECTIONS.length; d++) {
+					for (int i = 0; i < nodes.length; i++) {
+						keys[d][i] = CUT_DIRECTIONS[d][0] * x[nodes[i]] + CUT_DIRECTIONS[d][1] * y[nodes[i]];
+					}
+				}
+			} else { // Distance from the node farthest from an arbitrary start
+				bfsWithin(neighbors, part, id, bfs[reached - 1], distance, bfs);
+				keys = new double[1][nodes.length];
+				for (int i = 0; i < nodes.length; i++) keys[0][i] = distance[nodes[i]];
+			}
+			int[] separator = cut.separator(neighbors, part, id, nodes, keys);
+			for (int k = 0; k < separator.length; k++) {
+				order[end - separator.length + k] = separator[k];
+				part[separator[k]] = 0;
+			}
+			int[] rest = new int[nodes.length - separator.length];
+			int k = 0;
+			for (int u : nodes) if (part[u] == id) rest[k++] = u;
+			tasks.push(rest);
+			taskEnds.push(end - separator.length);
+		}
+		return order;
+	}
+
+	/**
+	 * Minimum vertex cuts within a part, as maximum flows over the part with
+	 * every node split into an entry and an exit joined by a unit arc. The flow
+	 * runs from the lowest-keyed share of the nodes to the highest-keyed share,
+	 * augmented by blocking flows (Dinic). Of the minimum cuts next to
+	 * either end, the one with the smallest size over its smaller side is kept,
+	 * and a flow that can no longer beat that ratio is abandoned.
+	 */
+	private static final class VertexCut {
+		private static final int INFINITE = Integer.MAX_VALUE / 2;
+
+		private final int[] local; // Index of a node within the current part
+
+		VertexCut(int n) {
+			this.local = new int[n];
+		}
+
+		int[] separator(int[][] neighbors, int[] part, int id, int[] nodes, double[][] keys) {
+			int p = nodes.length;
+			for (int i = 0; i < p; i++) this.local[nodes[i]] = i;
+			int edgeArcs = 0;
+			for (int u : nodes) {
+				for (int v : neighbors[u]) if (part[v] == id) edgeArcs++;
+			}
+			// Node i enters at 2i and exits at 2i + 1, the source is 2p and the sink 2p + 1.
+			// Arcs come in pairs, the reverse of arc a is a ^ 1.
+			int vertices = 2 * p + 2;
+			int source = 2 * p;
+			int sink = 2 * p + 1;
+			int arcs = 2 * (3 * p + edgeArcs);
+			int[] from = new int[arcs];
+			int[] to = new int[arcs];
+			int[] capacity = new int[arcs];
+			int a = 0;
+			for (int i = 0; i < p; i++) a = addArc(from, to, capacity, a, 2 * i, 2 * i + 1, 1);
+			for (int i = 0; i < p; i++) {
+				for (int v : neighbors[nodes[i]]) {
+					if (part[v] == id) a = addArc(from, to, capacity, a, 2 * i + 1, 2 * this.local[v], INFINITE);
+				}
+			}
+			int sourceArcs = a;
+			for (int i = 0; i < p; i++) a = addArc(from, to, capacity, a, source, 2 * i, 0);
+			int sinkArcs = a;
+			for (int i = 0; i < p; i++) a = addArc(from, to, capacity, a, 2 * i + 1, sink, 0);
+			int[] first = new int[vertices + 1];
+			for (int e = 0; e < arcs; e++) first[from[e] + 1]++;
+			for (int v = 0; v < vertices; v++) first[v + 1] += first[v];
+			int[] adjacent = new int[arcs];
+			int[] fill = Arrays.copyOf(first, vertices);
+			for (int e = 0; e < arcs; e++) adjacent[fill[from[e]]++] = e;
+
+			int[] residual = new int[arcs];
+			int[] visited = new int[vertices];
+			int[] reaching = new int[vertices]; // Stamp of the vertices that reach the sink
+			int[] level = new int[vertices];
+			int[] next = new int[vertices]; // Current arc of each vertex in a blocking flow
+			int[] path = new int[vertices];
+			int[] queue = new int[vertices];
+			int stamp = 0;
+			int[] best = null;
+			double bestRatio = Double.POSITIVE_INFINITY;
+			int terminals = Math.max(1, (int) (TERMINAL_SHARE * p));
+			for (double[] key : keys) {
+				System.arraycopy(capacity, 0, residual, 0, arcs);
+				byte[] role = terminals(key, terminals);
+				for (int i = 0; i < p; i++) {
+					if (role[i] == 1) residual[sourceArcs + 2 * i] = INFINITE;
+					if (role[i] == 2) residual[sinkArcs + 2 * i] = INFINITE;
+				}
+				// Dinic: a breadth-first search levels the residual graph, then depth-first
+				// searches along the levels augment until none is left
+				int flow = 0;
+				boolean augmented = true;
+				while (augmented && flow / (0.5 * (p - flow)) < bestRatio) {
+					stamp++;
+					augmented = false;
+					int head = 0;
+					int tail = 0;
+					queue[tail++] = source;
+					visited[source] = stamp;
+					level[source] = 0;
+					while (head < tail) {
+						int u = queue[head++];
+						if (visited[sink] == stamp && level[u] >= level[sink]) break;
+						for (int k = first[u]; k < first[u + 1]; k++) {
+							int e = adjacent[k];
+							int v = to[e];
+							if (residual[e] <= 0 || visited[v] == stamp) continue;
+							visited[v] = stamp;
+							level[v] = level[u] + 1;
+							queue[tail++] = v;
+						}
+					}
+					if (visited[sink] != stamp) break;
+					System.arraycopy(first, 0, next, 0, vertices);
+					int depth = 0;
+					int u = source;
+					while (flow / (0.5 * (p - flow)) < bestRatio) {
+						if (u == sink) {
+							for (int i = 0; i < depth; i++) {
+								residual[path[i]]--;
+								residual[path[i] ^ 1]++;
+							}
+							flow++;
+							augmented = true;
+							depth = 0;
+							u = source;
+							continue;
+						}
+						int e = -1;
+						for (; next[u] < first[u + 1]; next[u]++) {
+							int candidate = adjacent[next[u]];
+							int v = to[candidate];
+							if (residual[candidate] > 0 && visited[v] == stamp && level[v] == level[u] + 1) {
+								e = candidate;
+								break;
+							}
+						}
+						if (e >= 0) {
+							path[depth++] = e;
+							u = to[e];
+						} else if (u == source) {
+							break; // Blocking flow reached
+						} else {
+							level[u] = -1; // Dead end
+							u = from[path[--depth]];
+							next[u]++;
+						}
+					}
+				}
+				if (visited[sink] == stamp) continue; // Cannot beat the best cut
+				// The last search marked the vertices reached from the source; mark those reaching the sink
+				int head = 0;
+				int tail = 0;
+				queue[tail++] = sink;
+				reaching[sink] = stamp;
+				while (head < tail) {
+					int v = queue[head++];
+					for (int k = first[v]; k < first[v + 1]; k++) {
+						int e = adjacent[k] ^ 1; // Arc into v
+						int u = from[e];
+						if (residual[e] <= 0 || reaching[u] == stamp) continue;
+						reaching[u] = stamp;
+						queue[tail++] = u;
+					}
+				}
+				// Both are minimum cuts, one next to the source side and one next to the sink side
+				int sourceSide = 0;
+				int sinkSide = 0;
+				for (int i = 0; i < p; i++) {
+					if (visited[2 * i + 1] == stamp) sourceSide++;
+					if (reaching[2 * i] == stamp) sinkSide++;
+				}
+				boolean nearSource = Math.min(sourceSide, p - flow - sourceSide) >= Math.min(sinkSide, p - flow - sinkSide);
+				double ratio = flow / (double) Math.max(1, nearSource ? Math.min(sourceSide, p - flow - sourceSide)
+						: Math.min(sinkSide, p - flow - sinkSide));
+				if (ratio >= bestRatio) continue;
+				int[] separator = new int[flow];
+				int k = 0;
+				for (int i = 0; i < p; i++) {
+					boolean cut = nearSource ? visited[2 * i] == stamp && visited[2 * i + 1] != stamp
+							: reaching[2 * i + 1] == stamp && reaching[2 * i] != stamp;
+					if (cut) separator[k++] = nodes[i];
+				}
+				best = separator;
+				bestRatio = ratio;
+			}
+			return best;
+		}
+
+		private static int addArc(int[] from, int[] to, int[] capacity, int a, int u, int v, int c) {
+			from[a] = u;
+			to[a] = v;
+			capacity[a] = c;
+			from[a + 1] = v;
+			to[a + 1] = u;
+			capacity[a + 1] = 0;
+			return a + 2;
+		}
+
+		// 1 for the count lowest keys (the source side), 2 for the count highest (the sink side)
+		private static byte[] terminals(double[] key, int count) {
+			int p = key.length;
+			double[] sorted = key.clone();
+			Arrays.sort(sorted);
+			double low = sorted[count - 1];
+			double high = sorted[p - count];
+			byte[] role = new byte[p];
+			int sources = 0;
+			for (int i = 0; i < p; i++) {
+				if (key[i] < low) {
+					role[i] = 1;
+					sources++;
+				}
+			}
+			for (int i = 0; i < p && sources < count; i++) {
+				if (key[i] == low && role[i] == 0) {
+					role[i] = 1;
+					sources++;
+				}
+			}
+			int sinks = 0;
+			for (int i = 0; i < p; i++) {
+				if (key[i] > high && role[i] == 0) {
+					role[i] = 2;
+					sinks++;
+				}
+			}
+			for (int i = p - 1; i >= 0 && sinks < count; i--) { // Ties from the other end of the part
+				if (key[i] == high && role[i] == 0) {
+					role[i] = 2;
+					sinks++;
+				}
+			}
+			return role;
+		}
+	}
+
+	// Breadth-first search over the nodes of one part; fills bfs in visiting order
+	private static int bfsWithin(int[][] neighbors, int[] part, int id, int start, int[] distance, int[] bfs) {
+		int head = 0;
+		int tail = 0;
+		bfs[tail++] = start;
+		part[start] = -id; // Visited in this search
+		distance[start] = 0;
+		while (head < tail) {
+			int u = bfs[head++];
+			for (int v : neighbors[u]) {
+				if (part[v] == id) {
+					part[v] = -id;
+					distance[v] = distance[u] + 1;
+					bfs[tail++] = v;
+				}
+			}
+		}
+		for (int i = 0; i < tail; i++) part[bfs[i]] = id;
+		return tail;
+	}
+
+	/** Hierarchy arc from u to its higher neighbor v, both numbered by rank. */
+	private int findArc(int u, int v) {
+		int lo = this.firstArc[u];
+		int hi = this.firstArc[u + 1] - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int r = this.arcHead[mid];
+			if (r < v) lo = mid + 1;
+			else if (r > v) hi = mid - 1;
+			else return mid;
+		}
+		throw new IllegalStateException("No hierarchy arc between nodes " + u + " and " + v);
+	}
+
+	int getNodeCount() {
+		return this.nodeCount;
+	}
+
+	int getArcCount() {
+		return this.arcTail.length;
+	}
+
+	int getTriangleCount() {
+		return this.triangleLow.length;
+	}
+
+	int getLevelCount() {
+		return this.firstLevelNode.length - 1;
+	}
+
+	/** Metric for the given weight of each original arc. */
+	Metric customize(double[] weight) {
+		int arcs = this.arcTail.length;
+		Metric metric = new Metric(arcs);
+		Arrays.fill(metric.up, Double.POSITIVE_INFINITY);
+		Arrays.fill(metric.down, Double.POSITIVE_INFINITY);
+		Arrays.fill(metric.upVia, Integer.MIN_VALUE);
+		Arrays.fill(metric.downVia, Integer.MIN_VALUE);
+		for (int k = 0; k < this.originalArc.length; k++) {
+			int e = this.originalArc[k];
+			if (e < 0) continue;
+			double w = weight[k];
+			if (this.originalUp[k]) {
+				if (w < metric.up[e]) {
+					metric.up[e] = w;
+					metric.upVia[e] = -1 - k;
+				}
+			} else if (w < metric.down[e]) {
+				metric.down[e] = w;
+				metric.downVia[e] = -1 - k;
+			}
+		}
+		for (int l = 0; l + 1 < this.firstLevelNode.length; l++) {
+			int from = this.firstLevelNode[l];
+			int to = this.firstLevelNode[l + 1];
+			if (to - from >= PARALLEL_LEVEL_NODES) {
+				IntStream.range(from, to).parallel().forEach(i -> this.customizeNode(metric, this.levelNodes[i]));
+			} else {
+				for (int i = from; i < to; i++) this.customizeNode(metric, this.levelNodes[i]);
+			}
+		}
+		return metric;
+	}
+
+	// Relax the arcs of u over their lower triangles, whose arcs belong to lower levels
+	private void customizeNode(Metric metric, int u) {
+		double[] up = metric.up;
+		double[] down = metric.down;
+		for (int e = this.firstArc[u]; e < this.firstArc[u + 1]; e++) {
+			double bestUp = up[e];
+			double bestDown = down[e];
+			int viaUp = metric.upVia[e];
+			int viaDown = metric.downVia[e];
+			for (int t = this.firstTriangle[e]; t < this.firstTriangle[e + 1]; t++) {
+				int low = this.triangleLow[t]; // x - u
+				int high = this.triangleHigh[t]; // x - v
+				double viaX = down[low] + up[high]; // u -> x -> v
+				if (viaX < bestUp) {
+					bestUp = viaX;
+					viaUp = t;
+				}
+				viaX = down[high] + up[low]; // v -> x -> u
+				if (viaX < bestDown) {
+					bestDown = viaX;
+					viaDown = t;
+				}
+			}
+			up[e] = bestUp;
+			down[e] = bestDown;
+			metric.upVia[e] = viaUp;
+			metric.downVia[e] = viaDown;
+		}
+	}
+
+	/** Search state of one thread, reused across queries. */
+	static final class Query {
+		private final double[] forward;
+		private final double[] backward;
+		private final int[] forwardArc;
+		private final int[] backwardArc;
+		private final int[] forwardStamp;
+		private final int[] backwardStamp;
+		private int stamp;
+		private final IntList unpackStack = new IntList();
+
+		Query(ContractionHierarchy hierarchy) {
+			int n = hierarchy.nodeCount;
+			this.forward = new double[n];
+			this.backward = new double[n];
+			this.forwardArc = new int[n];
+			this.backwardArc = new int[n];
+			this.forwardStamp = new int[n];
+			this.backwardStamp = new int[n];
+		}
+	}
+
+	/**
+	 * Shortest path from source to target under the metric, appending its
+	 * original arcs to path in travel order.
+	 *
+	 * @return The path weight, or infinity when the target is unreachable
+	 */
+	double query(Metric metric, Query q, int source, int target, IntList path) {
+		if (source == target) return 0.0;
+		if (++q.stamp == 0) { // Wrapped, clear the stamps
+			Arrays.fill(q.forwardStamp, 0);
+			Arrays.fill(q.backwardStamp, 0);
+			q.stamp = 1;
+		}
+		int stamp = q.stamp;
+		int s = this.rank[source];
+		int t = this.rank[target];
+		q.forward[s] = 0.0;
+		q.forwardArc[s] = -1;
+		q.forwardStamp[s] = stamp;
+		q.backward[t] = 0.0;
+		q.backwardArc[t] = -1;
+		q.backwardStamp[t] = stamp;
+
+		// Below their lowest common ancestor the two upward search spaces are disjoint
+		while (s != t) {
+			if (t < 0 || (s >= 0 && s < t)) {
+				this.relaxUpward(metric.up, s, q.forward, q.forwardArc, q.forwardStamp, stamp);
+				s = this.parent[s];
+			} else {
+				this.relaxUpward(metric.down, t, q.backward, q.backwardArc, q.backwardStamp, stamp);
+				t = this.parent[t];
+			}
+		}
+		// Common ancestors: the meeting node is one of them, and a side no shorter than the best stops
+		double best = Double.POSITIVE_INFINITY;
+		int meet = -1;
+		for (int w = s; w >= 0; w = this.parent[w]) {
+			boolean forwardReached = q.forwardStamp[w] == stamp;
+			boolean backwardReached = q.backwardStamp[w] == stamp;
+			if (forwardReached && backwardReached && q.forward[w] + q.backward[w] < best) {
+				best = q.forward[w] + q.backward[w];
+				meet = w;
+			}
+			if (forwardReached && q.forward[w] < best) {
+				this.relaxUpward(metric.up, w, q.forward, q.forwardArc, q.forwardStamp, stamp);
+			}
+			if (backwardReached && q.backward[w] < best) {
+				this.relaxUpward(metric.down, w, q.backward, q.backwardArc, q.backwardStamp, stamp);
+			}
+		}
+		if (meet < 0) return Double.POSITIVE_INFINITY;
+
+		// Forward half: upward arcs from the source to the meeting node
+		int mark = path.size();
+		for (int v = meet; q.forwardArc[v] >= 0; v = this.arcTail[q.forwardArc[v]]) {
+			path.add(q.forwardArc[v]);
+		}
+		path.reverse(mark, path.size());
+		int forwardEnd = path.size();
+		// Backward half: downward arcs from the meeting node to the target
+		for (int v = meet; q.backwardArc[v] >= 0; v = this.arcTail[q.backwardArc[v]]) {
+			path.add(q.backwardArc[v]);
+		}
+		// Unpack the hierarchy arcs into original arcs, in place of the arc list
+		int arcs = path.size() - mark;
+		int[] hierarchyPath = new int[arcs];
+		for (int i = 0; i < arcs; i++) hierarchyPath[i] = path.get(mark + i);
+		path.truncate(mark);
+		for (int i = 0; i < arcs; i++) {
+			this.unpack(metric, q, hierarchyPath[i], mark + i < forwardEnd, path);
+		}
+		return best;
+	}
+
+	// Relax the upward arcs of u if the search has reached it; their heads are ancestors of u
+	private void relaxUpward(double[] weight, int u, double[] dist, int[] arcOf, int[] stampOf, int stamp) {
+		if (stampOf[u] != stamp) return;
+		double d = dist[u];
+		for (int e = this.firstArc[u]; e < this.firstArc[u + 1]; e++) {
+			double candidate = d + weight[e];
+			if (candidate == Double.POSITIVE_INFINITY) continue;
+			int v = this.arcHead[e];
+			if (stampOf[v] != stamp || candidate < dist[v]) {
+				dist[v] = candidate;
+				arcOf[v] = e;
+				stampOf[v] = stamp;
+			}
+		}
+	}
+
+	// Append the original arcs of a hierarchy arc in the given direction
+	private void unpack(Metric metric, Query q, int arc, boolean up, IntList path) {
+		IntList stack = q.unpackStack;
+		stack.clear();
+		stack.add(up ? arc : ~arc); // Complement marks the downward direction
+		while (stack.size() > 0) {
+			int item = stack.pop();
+			boolean itemUp = item >= 0;
+			int e = itemUp ? item : ~item;
+			int via = itemUp ? metric.upVia[e] : metric.downVia[e];
+			if (via < 0) {
+				path.add(-1 - via);
+				continue;
+			}
+			int low = this.triangleLow[via]; // x - tail
+			int high = this.triangleHigh[via]; // x - head
+			if (itemUp) { // tail -> x -> head, pushed in reverse
+				stack.add(high);
+				stack.add(~low);
+			} else { // head -> x -> tail
+				stack.add(low);
+				stack.add(~high);
+			}
+		}
+	}
+}
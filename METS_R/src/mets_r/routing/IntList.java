@@ -0,0 +1,42 @@
+package mets_r.routing;
+
+import java.util.Arrays;
+
+/** Growable list of ints. */
+final class IntList {
+	private int[] values = new int[32];
+	private int size;
+
+	void add(int value) {
+		if (this.size == this.values.length) this.values = Arrays.copyOf(this.values, 2 * this.size);
+		this.values[this.size++] = value;
+	}
+
+	int get(int i) {
+		return this.values[i];
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	int pop() {
+		return this.values[--this.size];
+	}
+
+	void clear() {
+		this.size = 0;
+	}
+
+	void truncate(int size) {
+		this.size = size;
+	}
+
+	void reverse(int from, int to) {
+		for (int i = from, j = to - 1; i < j; i++, j--) {
+			int t = this.values[i];
+			this.values[i] = this.values[j];
+			this.values[j] = t;
+		}
+	}
+}
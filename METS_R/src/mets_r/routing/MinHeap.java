@@ -0,0 +1,62 @@
+package mets_r.routing;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of (key, node) pairs without decrease-key: a search pushes a
+ * node again when its distance improves and skips the stale entries on pop.
+ */
+final class MinHeap {
+	private double[] keys = new double[64];
+	private int[] nodes = new int[64];
+	private int size;
+
+	void clear() {
+		this.size = 0;
+	}
+
+	boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	double minKey() {
+		return this.keys[0];
+	}
+
+	void push(double key, int node) {
+		if (this.size == this.keys.length) {
+			this.keys = Arrays.copyOf(this.keys, 2 * this.size);
+			this.nodes = Arrays.copyOf(this.nodes, 2 * this.size);
+		}
+		int i = this.size++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (this.keys[parent] <= key) break;
+			this.keys[i] = this.keys[parent];
+			this.nodes[i] = this.nodes[parent];
+			i = parent;
+		}
+		this.keys[i] = key;
+		this.nodes[i] = node;
+	}
+
+	int pop() {
+		int top = this.nodes[0];
+		int last = --this.size;
+		double key = this.keys[last];
+		int node = this.nodes[last];
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= last) break;
+			if (child + 1 < last && this.keys[child + 1] < this.keys[child]) child++;
+			if (this.keys[child] >= key) break;
+			this.keys[i] = this.keys[child];
+			this.nodes[i] = this.nodes[child];
+			i = child;
+		}
+		this.keys[i] = key;
+		this.nodes[i] = node;
+		return top;
+	}
+}
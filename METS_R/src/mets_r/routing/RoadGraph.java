@@ -0,0 +1,394 @@
+package mets_r.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Routing graph in compressed sparse row form. Nodes and arcs are dense ints:
+ * the arcs leaving node u are [firstOut[u], firstOut[u + 1]), each with its
+ * head node, the ID of the road it represents (-1 for a turn between roads)
+ * and its weight in one double array that the weight refresh updates in place.
+ * A reverse index over the same arcs serves the backward searches.
+ *
+ * The searches run on primitive arrays and a primitive heap with the state of
+ * one thread in a Search, and return paths as arrays of road IDs. The graph is
+ * rebuilt with the VehicleRouting when the road network changes.
+ */
+final class RoadGraph {
+	private final int nodeCount;
+	private final HashMap<Object, Integer> nodeIndex; // Network node to dense index
+	private final int[] firstOut; // Arcs leaving node u: [firstOut[u], firstOut[u + 1])
+	private final int[] arcTail;
+	private final int[] arcHead;
+	private final int[] arcRoad; // Road ID of the arc, -1 for a turn
+	private final double[] weight;
+	private final int[] firstIn; // Arcs entering node v: inArc[firstIn[v]], ..., inArc[firstIn[v + 1] - 1]
+	private final int[] inArc;
+
+	/**
+	 * @param nodes Network nodes; their position is their index
+	 * @param tail  Tail node index of each arc
+	 * @param head  Head node index of each arc
+	 * @param road  Road ID of each arc, -1 for a turn
+	 * @param w     Weight of each arc
+	 */
+	RoadGraph(List<?> nodes, int[] tail, int[] head, int[] road, double[] w) {
+		int n = nodes.size();
+		int m = tail.length;
+		this.nodeCount = n;
+		this.nodeIndex = new HashMap<Object, Integer>(2 * n);
+		for (int u = 0; u < n; u++) this.nodeIndex.put(nodes.get(u), u);
+
+		// Counting sort of the arcs by tail
+		this.firstOut = new int[n + 1];
+		for (int k = 0; k < m; k++) this.firstOut[tail[k] + 1]++;
+		for (int u = 0; u < n; u++) this.firstOut[u + 1] += this.firstOut[u];
+		this.arcTail = new int[m];
+		this.arcHead = new int[m];
+		this.arcRoad = new int[m];
+		this.weight = new double[m];
+		int[] next = Arrays.copyOf(this.firstOut, n);
+		for (int k = 0; k < m; k++) {
+			int e = next[tail[k]]++;
+			this.arcTail[e] = tail[k];
+			this.arcHead[e] = head[k];
+			this.arcRoad[e] = road[k];
+			this.weight[e] = w[k];
+		}
+		this.firstIn = new int[n + 1];
+		for (int e = 0; e < m; e++) this.firstIn[this.arcHead[e] + 1]++;
+		for (int v = 0; v < n; v++) this.firstIn[v + 1] += this.firstIn[v];
+		this.inArc = new int[m];
+		next = Arrays.copyOf(this.firstIn, n);
+		for (int e = 0; e < m; e++) this.inArc[next[this.arcHead[e]]++] = e;
+	}
+
+	int getNodeCount() {
+		return this.nodeCount;
+	}
+
+	int getArcCount() {
+		return this.arcHead.length;
+	}
+
+	/** Dense index of a network node, or -1 if it is not in the graph. */
+	int indexOf(Object node) {
+		Integer index = this.nodeIndex.get(node);
+		return index == null ? -1 : index;
+	}
+
+	int getArcTail(int e) {
+		return this.arcTail[e];
+	}
+
+	int getArcHead(int e) {
+		return this.arcHead[e];
+	}
+
+	int getArcRoad(int e) {
+		return this.arcRoad[e];
+	}
+
+	double getWeight(int e) {
+		return this.weight[e];
+	}
+
+	/** Weights of all arcs, indexed by arc; callers must not modify it. */
+	double[] getWeights() {
+		return this.weight;
+	}
+
+	/** Arc from node u to node v, or -1. */
+	int findArc(int u, int v) {
+		for (int e = this.firstOut[u]; e < this.firstOut[u + 1]; e++) {
+			if (this.arcHead[e] == v) return e;
+		}
+		return -1;
+	}
+
+	/** Set the weight of the arc between the nodes; returns whether it changed. */
+	boolean setWeight(int u, int v, double w) {
+		int e = u < 0 || v < 0 ? -1 : this.findArc(u, v);
+		if (e < 0 || this.weight[e] == w) return false;
+		this.weight[e] = w;
+		return true;
+	}
+
+	/**
+	 * Road IDs along a path of arcs, keeping only IDs of at least minRoadID.
+	 * Turns carry -1; the route searches keep road 0 (minRoadID 0) while the
+	 * k-shortest path list has always left it out (minRoadID 1).
+	 */
+	int[] toRoadIDs(int[] arcs, int minRoadID) {
+		int roads = 0;
+		for (int e : arcs) {
+			if (this.arcRoad[e] >= minRoadID) roads++;
+		}
+		int[] ids = new int[roads];
+		int j = 0;
+		for (int e : arcs) {
+			if (this.arcRoad[e] >= minRoadID) ids[j++] = this.arcRoad[e];
+		}
+		return ids;
+	}
+
+	/** Search state of one thread, reused across queries. */
+	static final class Search {
+		private final double[] forward;
+		private final double[] backward;
+		private final int[] forwardArc;
+		private final int[] backwardArc;
+		private final int[] forwardStamp;
+		private final int[] backwardStamp;
+		private int stamp;
+		private final int[] nodeBan; // Yen spur searches: nodes and arcs excluded under banStamp
+		private final int[] arcBan;
+		private int banStamp;
+		private final MinHeap forwardHeap = new MinHeap();
+		private final MinHeap backwardHeap = new MinHeap();
+		private double[] treeTime; // One-to-all searches: totals along the tree, allocated on first use
+		private double[] treeLength;
+		final IntList arcs = new IntList(); // Scratch path for callers
+
+		Search(RoadGraph graph) {
+			int n = graph.nodeCount;
+			this.forward = new double[n];
+			this.backward = new double[n];
+			this.forwardArc = new int[n];
+			this.backwardArc = new int[n];
+			this.forwardStamp = new int[n];
+			this.backwardStamp = new int[n];
+			this.nodeBan = new int[n];
+			this.arcBan = new int[graph.arcHead.length];
+		}
+
+		private int nextStamp() {
+			if (++this.stamp == 0) { // Wrapped, clear the stamps
+				Arrays.fill(this.forwardStamp, 0);
+				Arrays.fill(this.backwardStamp, 0);
+				this.stamp = 1;
+			}
+			return this.stamp;
+		}
+
+		private void clearBans() {
+			if (++this.banStamp == 0) {
+				Arrays.fill(this.nodeBan, 0);
+				Arrays.fill(this.arcBan, 0);
+				this.banStamp = 1;
+			}
+		}
+
+		/** Whether the last one-to-all search reached node v. */
+		boolean isReached(int v) {
+			return this.forwardStamp[v] == this.stamp;
+		}
+
+		/** Arc time along the last one-to-all tree from its source to node v. */
+		double getTime(int v) {
+			return this.treeTime[v];
+		}
+
+		/** Arc length along the last one-to-all tree from its source to node v. */
+		double getLength(int v) {
+			return this.treeLength[v];
+		}
+	}
+
+	/**
+	 * Dijkstra from source to every reachable node under the arc weights,
+	 * summing arcTime and arcLength along the shortest path tree. Read the
+	 * result with Search.isReached, getTime and getLength.
+	 */
+	void oneToAll(Search s, int source, double[] arcTime, double[] arcLength) {
+		if (s.treeTime == null) {
+			s.treeTime = new double[this.nodeCount];
+			s.treeLength = new double[this.nodeCount];
+		}
+		int stamp = s.nextStamp();
+		s.forwardHeap.clear();
+		s.forward[source] = 0.0;
+		s.forwardArc[source] = -1;
+		s.forwardStamp[source] = stamp;
+		s.treeTime[source] = 0.0;
+		s.treeLength[source] = 0.0;
+		s.forwardHeap.push(0.0, source);
+		while (!s.forwardHeap.isEmpty()) {
+			double key = s.forwardHeap.minKey();
+			int u = s.forwardHeap.pop();
+			if (key > s.forward[u]) continue; // Stale entry
+			for (int e = this.firstOut[u]; e < this.firstOut[u + 1]; e++) {
+				int v = this.arcHead[e];
+				double d = key + this.weight[e];
+				if (s.forwardStamp[v] != stamp || d < s.forward[v]) {
+					s.forward[v] = d;
+					s.forwardArc[v] = e;
+					s.forwardStamp[v] = stamp;
+					s.treeTime[v] = s.treeTime[u] + arcTime[e];
+					s.treeLength[v] = s.treeLength[u] + arcLength[e];
+					s.forwardHeap.push(d, v);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Shortest path from source to target by bidirectional Dijkstra, appending
+	 * its arcs to path in travel order.
+	 *
+	 * @return The path weight, or infinity when the target is unreachable
+	 */
+	double shortestPath(Search s, int source, int target, IntList path) {
+		return this.bidirectional(s, source, target, path, false);
+	}
+
+	private double bidirectional(Search s, int source, int target, IntList path, boolean banned) {
+		if (source == target) return 0.0;
+		int stamp = s.nextStamp();
+		int ban = s.banStamp;
+		s.forwardHeap.clear();
+		s.backwardHeap.clear();
+		s.forward[source] = 0.0;
+		s.forwardArc[source] = -1;
+		s.forwardStamp[source] = stamp;
+		s.forwardHeap.push(0.0, source);
+		s.backward[target] = 0.0;
+		s.backwardArc[target] = -1;
+		s.backwardStamp[target] = stamp;
+		s.backwardHeap.push(0.0, target);
+		double best = Double.POSITIVE_INFINITY;
+		int meet = -1;
+		while (!s.forwardHeap.isEmpty() && !s.backwardHeap.isEmpty()) {
+			double forwardMin = s.forwardHeap.minKey();
+			double backwardMin = s.backwardHeap.minKey();
+			if (forwardMin + backwardMin >= best) break;
+			if (forwardMin <= backwardMin) {
+				int u = s.forwardHeap.pop();
+				if (forwardMin > s.forward[u]) continue; // Stale entry
+				for (int e = this.firstOut[u]; e < this.firstOut[u + 1]; e++) {
+					int v = this.arcHead[e];
+					if (banned && (s.arcBan[e] == ban || s.nodeBan[v] == ban)) continue;
+					double d = forwardMin + this.weight[e];
+					if (s.forwardStamp[v] != stamp || d < s.forward[v]) {
+						s.forward[v] = d;
+						s.forwardArc[v] = e;
+						s.forwardStamp[v] = stamp;
+						s.forwardHeap.push(d, v);
+						if (s.backwardStamp[v] == stamp && d + s.backward[v] < best) {
+							best = d + s.backward[v];
+							meet = v;
+						}
+					}
+				}
+			} else {
+				int v = s.backwardHeap.pop();
+				if (backwardMin > s.backward[v]) continue;
+				for (int i = this.firstIn[v]; i < this.firstIn[v + 1]; i++) {
+					int e = this.inArc[i];
+					int u = this.arcTail[e];
+					if (banned && (s.arcBan[e] == ban || s.nodeBan[u] == ban)) continue;
+					double d = backwardMin + this.weight[e];
+					if (s.backwardStamp[u] != stamp || d < s.backward[u]) {
+						s.backward[u] = d;
+						s.backwardArc[u] = e;
+						s.backwardStamp[u] = stamp;
+						s.backwardHeap.push(d, u);
+						if (s.forwardStamp[u] == stamp && d + s.forward[u] < best) {
+							best = d + s.forward[u];
+							meet = u;
+						}
+					}
+				}
+			}
+		}
+		if (meet < 0) return Double.POSITIVE_INFINITY;
+		int mark = path.size();
+		for (int v = meet; s.forwardArc[v] >= 0; v = this.arcTail[s.forwardArc[v]]) {
+			path.add(s.forwardArc[v]);
+		}
+		path.reverse(mark, path.size());
+		for (int u = meet; s.backwardArc[u] >= 0; u = this.arcHead[s.backwardArc[u]]) {
+			path.add(s.backwardArc[u]);
+		}
+		return best;
+	}
+
+	/** A path of arcs with its weight. */
+	static final class Path {
+		final int[] arcs;
+		final double weight;
+
+		Path(int[] arcs, double weight) {
+			this.arcs = arcs;
+			this.weight = weight;
+		}
+	}
+
+	/**
+	 * Up to k loopless shortest paths from source to target in increasing
+	 * weight, by Yen's algorithm with bidirectional spur searches.
+	 */
+	List<Path> kShortestPaths(Search s, int source, int target, int k) {
+		List<Path> found = new ArrayList<Path>();
+		if (k <= 0 || source == target) return found;
+		IntList arcs = new IntList();
+		double first = this.shortestPath(s, source, target, arcs);
+		if (Double.isInfinite(first)) return found;
+		found.add(new Path(toArray(arcs), first));
+		List<Path> candidates = new ArrayList<Path>();
+		while (found.size() < k) {
+			int[] previous = found.get(found.size() - 1).arcs;
+			double rootWeight = 0.0;
+			for (int i = 0; i < previous.length; i++) {
+				int spur = this.arcTail[previous[i]];
+				s.clearBans();
+				// Arcs leaving the spur node on the paths sharing this root are excluded
+				for (Path p : found) {
+					if (p.arcs.length > i && samePrefix(p.arcs, previous, i)) s.arcBan[p.arcs[i]] = s.banStamp;
+				}
+				// So are the root nodes, to keep the path loopless
+				for (int j = 0; j < i; j++) s.nodeBan[this.arcTail[previous[j]]] = s.banStamp;
+				arcs.clear();
+				double spurWeight = this.bidirectional(s, spur, target, arcs, true);
+				if (!Double.isInfinite(spurWeight)) {
+					int[] candidate = new int[i + arcs.size()];
+					System.arraycopy(previous, 0, candidate, 0, i);
+					for (int j = 0; j < arcs.size(); j++) candidate[i + j] = arcs.get(j);
+					if (!contains(candidates, candidate) && !contains(found, candidate)) {
+						candidates.add(new Path(candidate, rootWeight + spurWeight));
+					}
+				}
+				rootWeight += this.weight[previous[i]];
+			}
+			if (candidates.isEmpty()) break;
+			int best = 0;
+			for (int j = 1; j < candidates.size(); j++) {
+				if (candidates.get(j).weight < candidates.get(best).weight) best = j;
+			}
+			found.add(candidates.remove(best));
+		}
+		return found;
+	}
+
+	private static boolean samePrefix(int[] a, int[] b, int length) {
+		for (int i = 0; i < length; i++) {
+			if (a[i] != b[i]) return false;
+		}
+		return true;
+	}
+
+	private static boolean contains(List<Path> paths, int[] arcs) {
+		for (Path p : paths) {
+			if (Arrays.equals(p.arcs, arcs)) return true;
+		}
+		return false;
+	}
+
+	static int[] toArray(IntList list) {
+		int[] values = new int[list.size()];
+		for (int i = 0; i < values.length; i++) values[i] = list.get(i);
+		return values;
+	}
+}
@@ -0,0 +1,174 @@
+package mets_r.routing;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+import mets_r.ContextCreator;
+import mets_r.facility.Road;
+import mets_r.mobility.Vehicle;
+
+/**
+ * Routing stage ahead of the road step (BATCHED_ROUTING_STAGE). The stage
+ * collects the vehicles due to depart from the roads stepped this tick,
+ * deduplicates their routes by (departure road, destination road) and computes
+ * the missing ones together on a fork/join pool, so a partition with many
+ * departures no longer runs their searches inline. Each pool thread reuses its
+ * own search state in VehicleRouting. The departure pass then takes the routes
+ * from this table through RouteContext.shortestPathRoute.
+ *
+ * The table only serves the departure pass of the tick it was computed for:
+ * it is emptied once the road stage that follows has run, so it never grows
+ * into a second route cache next to ROUTE_CACHE_SIZE, and routes computed
+ * under an older routing weight epoch are never returned. Reroutes on road
+ * changes are not batched and still search inline.
+ */
+final class RouteBatch {
+	private static final int MAX_DEPARTURES_PER_ROAD = 32; // A road admits a few vehicles per tick
+	private static final int LEAF_REQUESTS = 8; // Searches per fork/join leaf
+
+	private final ConcurrentHashMap<Long, Road[]> routes = new ConcurrentHashMap<Long, Road[]>();
+	private volatile long epoch = Long.MIN_VALUE;
+	private final ArrayList<Vehicle> departures = new ArrayList<Vehicle>();
+	private final HashSet<Long> requested = new HashSet<Long>();
+	private final ArrayList<Road> origins = new ArrayList<Road>();
+	private final ArrayList<Road> destinations = new ArrayList<Road>();
+
+	private final LongAdder hits = new LongAdder();
+	private long stages;
+	private long requests; // Due departures seen by the stage
+	private long searches; // Distinct pairs searched
+	private long unroutable;
+	private long discarded; // Stage results dropped because the weights changed meanwhile
+	private long lastSearches;
+	private int lastRoutes; // Routes the last stage held for its departure pass
+	private long lastStageNanos;
+	private long totalStageNanos;
+
+	/** Route computed by the stage under the given epoch, or null. */
+	Road[] get(int originRoadID, int destRoadID, long epoch) {
+		if (epoch != this.epoch) return null;
+		Road[] path = this.routes.get(RouteCache.key(originRoadID, destRoadID));
+		if (path != null) this.hits.increment();
+		return path;
+	}
+
+	/**
+	 * Compute the routes of the departures due at tick from the given roads.
+	 * Runs between road stages; pool may be null to search on the caller.
+	 */
+	synchronized void run(List<? extends Collection<Road>> partitions, int tick, ForkJoinPool pool) {
+		long start = System.nanoTime();
+		this.routes.clear();
+		this.epoch = RouteContext.getWeightEpoch();
+		this.requested.clear();
+		this.origins.clear();
+		this.destinations.clear();
+		for (Collection<Road> roads : partitions) {
+			for (Road road : roads) {
+				this.departures.clear();
+				road.collectDueDepartures(tick, this.departures, MAX_DEPARTURES_PER_ROAD);
+				for (Vehicle v : this.departures) {
+					Road dest = ContextCreator.getRoadContext().get(v.getDestRoad());
+					if (dest == null || dest == road) continue;
+					this.requests++;
+					Long key = RouteCache.key(road.getID(), dest.getID());
+					if (!this.requested.add(key)) continue;
+					this.origins.add(road);
+					this.destinations.add(dest);
+				}
+			}
+		}
+		this.departures.clear();
+
+		int n = this.origins.size();
+		Road[][] results = new Road[n][];
+		if (pool != null && n > LEAF_REQUESTS) {
+			pool.invoke(new SearchTask(this.origins, this.destinations, results, 0, n));
+		} else {
+			search(this.origins, this.destinations, results, 0, n);
+		}
+		if (RouteContext.getWeightEpoch() == this.epoch) {
+			for (int i = 0; i < n; i++) {
+				if (results[i] == null) {
+					this.unroutable++;
+					continue;
+				}
+				this.routes.put(RouteCache.key(this.origins.get(i).getID(), this.destinations.get(i).getID()),
+						results[i]);
+			}
+		} else {
+			this.discarded += n;
+		}
+		this.lastRoutes = this.routes.size();
+		this.stages++;
+		this.searches += n;
+		this.lastSearches = n;
+		this.lastStageNanos = System.nanoTime() - start;
+		this.totalStageNanos += this.lastStageNanos;
+	}
+
+	private static void search(List<Road> origins, List<Road> destinations, Road[][] results, int lo, int hi) {
+		for (int i = lo; i < hi; i++) {
+			List<Road> path = RouteContext.shortestPathRoute(origins.get(i), destinations.get(i), null);
+			results[i] = path == null || path.isEmpty() ? null : path.toArray(new Road[0]);
+		}
+	}
+
+	// Halves the request range until a leaf is small enough to search on one worker
+	@SuppressWarnings("serial")
+	private static final class SearchTask extends RecursiveAction {
+		private final List<Road> origins;
+		private final List<Road> destinations;
+		private final Road[][] results;
+		private final int lo;
+		private final int hi;
+
+		SearchTask(List<Road> origins, List<Road> destinations, Road[][] results, int lo, int hi) {
+			this.origins = origins;
+			this.destinations = destinations;
+			this.results = results;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.hi - this.lo <= LEAF_REQUESTS) {
+				search(this.origins, this.destinations, this.results, this.lo, this.hi);
+				return;
+			}
+			int mid = (this.lo + this.hi) >>> 1;
+			invokeAll(new SearchTask(this.origins, this.destinations, this.results, this.lo, mid),
+					new SearchTask(this.origins, this.destinations, this.results, mid, this.hi));
+		}
+	}
+
+	/** Drop the stage's routes once the departure pass they were computed for has run. */
+	synchronized void endDepartures() {
+		this.routes.clear();
+	}
+
+	synchronized LinkedHashMap<String, Object> getStatus() {
+		LinkedHashMap<String, Object> status = new LinkedHashMap<String, Object>();
+		long hits = this.hits.sum();
+		status.put("stages", this.stages);
+		status.put("lastRoutes", this.lastRoutes);
+		status.put("departures", this.requests);
+		status.put("searches", this.searches);
+		status.put("lastSearches", this.lastSearches);
+		status.put("unroutable", this.unroutable);
+		status.put("discarded", this.discarded);
+		status.put("hits", hits);
+		status.put("dedupRate", this.requests == 0L ? 0.0 : 1.0 - (double) this.searches / this.requests);
+		status.put("lastStageNanos", this.lastStageNanos);
+		status.put("totalStageNanos", this.totalStageNanos);
+		return status;
+	}
+}
@@ -0,0 +1,95 @@
+package mets_r.routing;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import mets_r.facility.Road;
+
+/**
+ * Bounded LRU cache of single shortest paths between road pairs. An entry is
+ * tagged with the routing weight epoch it was computed under (see
+ * RouteContext.getWeightEpoch) and only served while that epoch is current, so
+ * a weight update invalidates every cached path at once without a sweep; stale
+ * entries are replaced on the next miss or age out of the LRU order.
+ *
+ * Routes are requested from the road, zone and dispatch workers, so access is
+ * synchronized; the critical section is a hash lookup next to a graph search.
+ */
+final class RouteCache {
+	private static final class Entry {
+		final long epoch;
+		final Road[] path;
+
+		Entry(long epoch, Road[] path) {
+			this.epoch = epoch;
+			this.path = path;
+		}
+	}
+
+	private final int capacity;
+	private final LinkedHashMap<Long, Entry> entries;
+	private long hits;
+	private long misses;
+	private long staleMisses; // Misses on an entry from an older epoch
+	private long evictions;
+
+	RouteCache(int capacity) {
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+				if (size() <= RouteCache.this.capacity) return false;
+				RouteCache.this.evictions++;
+				return true;
+			}
+		};
+	}
+
+	static long key(int originRoadID, int destRoadID) {
+		return ((long) originRoadID << 32) | (destRoadID & 0xffffffffL);
+	}
+
+	/** Cached path between the roads under the given epoch, or null on a miss. */
+	synchronized Road[] get(int originRoadID, int destRoadID, long epoch) {
+		Entry entry = this.entries.get(key(originRoadID, destRoadID));
+		if (entry == null) {
+			this.misses++;
+			return null;
+		}
+		if (entry.epoch != epoch) {
+			this.misses++;
+			this.staleMisses++;
+			return null;
+		}
+		this.hits++;
+		return entry.path;
+	}
+
+	/** Store a path computed under epoch; paths of an older epoch never replace newer ones. */
+	synchronized void put(int originRoadID, int destRoadID, long epoch, Road[] path) {
+		Long key = key(originRoadID, destRoadID);
+		Entry entry = this.entries.get(key);
+		if (entry != null && entry.epoch > epoch) return;
+		this.entries.put(key, new Entry(epoch, path));
+	}
+
+	synchronized void clear() {
+		this.entries.clear();
+	}
+
+	synchronized LinkedHashMap<String, Object> getStatus(long epoch) {
+		LinkedHashMap<String, Object> status = new LinkedHashMap<String, Object>();
+		long lookups = this.hits + this.misses;
+		status.put("capacity", this.capacity);
+		status.put("size", this.entries.size());
+		status.put("weightEpoch", epoch);
+		status.put("hits", this.hits);
+		status.put("misses", this.misses);
+		status.put("staleMisses", this.staleMisses);
+		status.put("evictions", this.evictions);
+		status.put("hitRate", lookups == 0L ? 0.0 : (double) this.hits / lookups);
+		return status;
+	}
+}
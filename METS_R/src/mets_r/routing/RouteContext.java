@@ -1,13 +1,19 @@
 package mets_r.routing;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.GeometryFactory;
 
 import mets_r.ContextCreator;
+import mets_r.GlobalVariables;
 import mets_r.facility.*;
 
 public class RouteContext {
@@ -19,17 +25,102 @@ public class RouteContext {
 	public static double little_buffer_distance; 
 	public static double big_buffer_distance;
 
+	// Routing weight epoch, bumped whenever an edge weight or the graph changes
+	private static final AtomicLong weightEpoch = new AtomicLong();
+	private static final RouteCache routeCache = GlobalVariables.ROUTE_CACHE_SIZE > 0
+			? new RouteCache(GlobalVariables.ROUTE_CACHE_SIZE) : null;
+	private static final RouteBatch routeBatch = GlobalVariables.BATCHED_ROUTING_STAGE ? new RouteBatch() : null;
+	private static volatile SkimMatrix skim;
+
 	/* Initialize route object */
 	public static void createRoute(){
 		geomFac = new GeometryFactory();
 		vbr = new VehicleRouting(ContextCreator.getRoadNetwork());
 		little_buffer_distance = 0.0001;
 		big_buffer_distance = 100;
+		bumpWeightEpoch();
+	}
+
+	/**
+	 * Invalidate every path computed under the current routing weights. Called
+	 * after an edge weight of the routing graph changes and when it is rebuilt.
+	 */
+	public static void bumpWeightEpoch() {
+		weightEpoch.incrementAndGet();
+	}
+
+	public static long getWeightEpoch() {
+		return weightEpoch.get();
+	}
+
+	/** Graph size and preprocessing counters of the routing engine. */
+	public static LinkedHashMap<String, Object> getRoutingEngineStatus() {
+		return vbr == null ? null : vbr.getEngineStatus();
+	}
+
+	/**
+	 * Routing stage: compute the routes of the departures due at tick from the
+	 * given roads ahead of the road step, on the pool or, if it is null, on the
+	 * caller. Does nothing unless BATCHED_ROUTING_STAGE is set; departures draw
+	 * their k-shortest path from the vehicle's random stream, so the stage is
+	 * skipped with K_SHORTEST_PATH.
+	 */
+	public static void runRoutingStage(List<? extends Collection<Road>> roads, int tick, ForkJoinPool pool) {
+		if (routeBatch == null || vbr == null || GlobalVariables.K_SHORTEST_PATH) return;
+		routeBatch.run(roads, tick, pool);
+	}
+
+	/** End of the departure pass the routing stage ran for; its routes are dropped. */
+	public static void endRoutingStage() {
+		if (routeBatch != null) routeBatch.endDepartures();
+	}
+
+	/** Counters of the routing stage, or null when BATCHED_ROUTING_STAGE is off. */
+	public static LinkedHashMap<String, Object> getRoutingStageStatus() {
+		return routeBatch == null ? null : routeBatch.getStatus();
+	}
+
+	/**
+	 * Recompute the zone skim after a routing weight refresh, searching on the
+	 * pool or, if it is null, on the caller. Does nothing unless SKIM_MATRIX is
+	 * set or when the weights have not changed since the last skim. With the
+	 * JGRAPHT engine the primitive graph is built and kept up to date only for
+	 * the skim. The skim holds single shortest paths, so it is not used with
+	 * K_SHORTEST_PATH, where route costs come from a path drawn from the
+	 * caller's random stream.
+	 */
+	public static void refreshSkim(ForkJoinPool pool) {
+		if (!GlobalVariables.SKIM_MATRIX || GlobalVariables.K_SHORTEST_PATH) return;
+		if (vbr == null || vbr.getRoadGraph() == null) return;
+		long epoch = weightEpoch.get();
+		SkimMatrix current = skim;
+		if (current != null && current.getEpoch() == epoch) return;
+		skim = SkimMatrix.compute(vbr, ContextCreator.getZoneContext().getAll(), epoch, pool);
+	}
+
+	/** Zone skim under the current routing weights, or null if there is none or K_SHORTEST_PATH is set. */
+	public static SkimMatrix getSkim() {
+		if (GlobalVariables.K_SHORTEST_PATH) return null;
+		SkimMatrix current = skim;
+		return current != null && current.getEpoch() == weightEpoch.get() ? current : null;
+	}
+
+	/** Size and compute time of the last zone skim, or null when there is none. */
+	public static LinkedHashMap<String, Object> getSkimStatus() {
+		SkimMatrix current = skim;
+		return current == null ? null : current.getStatus();
+	}
+
+	/** Hit and miss counters of the route cache, or null when ROUTE_CACHE_SIZE is 0. */
+	public static LinkedHashMap<String, Object> getRouteCacheStatus() {
+		return routeCache == null ? null : routeCache.getStatus(weightEpoch.get());
 	}
 
 	/* Update the node based routing object, update the next nearest node matrix */
 	public static void setEdgeWeight(Node node1, Node node2, double weight) {
-		vbr.setEdgeWeight(node1, node2, weight);
+		if (vbr.setEdgeWeight(node1, node2, weight)) {
+			bumpWeightEpoch();
+		}
 	}
 	
 	public static List<Road> shortestPathRoute(Road originRoad, Road destRoad, Random rand){
@@ -60,8 +151,28 @@ public class RouteContext {
 					+ roadLabel(originRoad) + ", destination=" + roadLabel(destRoad));
 			return null;
 		}
+		// Only the single shortest path is deterministic; k-shortest path choice draws from rand
+		boolean deterministic = !GlobalVariables.K_SHORTEST_PATH || rand == null;
+		boolean cacheable = routeCache != null && deterministic;
+		long epoch = weightEpoch.get();
+		if (routeBatch != null && deterministic) {
+			Road[] batched = routeBatch.get(originRoad.getID(), destRoad.getID(), epoch);
+			if (batched != null) {
+				return new ArrayList<Road>(Arrays.asList(batched));
+			}
+		}
+		if (cacheable) {
+			Road[] cached = routeCache.get(originRoad.getID(), destRoad.getID(), epoch);
+			if (cached != null) {
+				return new ArrayList<Road>(Arrays.asList(cached)); // Callers consume their route
+			}
+		}
 		try {
-			return vbr.computeRoute(originRoad, destRoad, originDownStreamNode, destUpStreamNode, rand);
+			List<Road> path = vbr.computeRoute(originRoad, destRoad, originDownStreamNode, destUpStreamNode, rand);
+			if (cacheable && path != null) {
+				routeCache.put(originRoad.getID(), destRoad.getID(), epoch, path.toArray(new Road[0]));
+			}
+			return path;
 		} catch (Exception ex) {
 			ContextCreator.logger.warn("Routing failed between " + roadLabel(originRoad) + " and "
 					+ roadLabel(destRoad) + ": " + ex.getMessage());
@@ -0,0 +1,344 @@
+package mets_r.routing;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.jgrapht.GraphPath;
+import org.jgrapht.alg.shortestpath.BidirectionalDijkstraShortestPath;
+import org.jgrapht.alg.shortestpath.YenKShortestPath;
+import org.jgrapht.graph.DefaultDirectedWeightedGraph;
+import org.jgrapht.graph.DefaultWeightedEdge;
+
+/**
+ * Equivalence check of the routing engines against the JGraphT bidirectional
+ * Dijkstra (ROUTING_ENGINE = JGRAPHT): the Dijkstra on the primitive road graph
+ * (DIJKSTRA) and the contraction hierarchy (CCH). The network is a SUMO net.xml
+ * such as the NYC network of NETWORK_FILE, weighted by free-flow travel time
+ * and with the junction positions for the hierarchy separators, or a synthetic
+ * grid with one-way streets when no file is given. For random
+ * origin-destination pairs the engines must agree on the path weight, and each
+ * returned path must be a connected path of original edges with that weight;
+ * the k-shortest paths of the road graph must match the JGraphT Yen weights.
+ * The weights are then perturbed, updated in place in the road graph and the
+ * hierarchy re-customized, as at a routing weight refresh, and the pairs
+ * checked again. The query times of all three are reported, and the speedup of
+ * CCH is taken over DIJKSTRA, the engine it replaces in the simulation. Exits
+ * with status 1 on any disagreement.
+ *
+ * Usage: RoutingEngineEquivalenceCheck [net.xml|gridSize] [pairs] [refreshes]
+ */
+public class RoutingEngineEquivalenceCheck {
+	private static final double TOLERANCE = 1e-9;
+	private static final int K = 3; // Paths per pair in the k-shortest path check
+	private static final int K_SAMPLES = 100;
+
+	private static int nodeCount;
+	private static final ArrayList<Integer> tails = new ArrayList<Integer>();
+	private static final ArrayList<Integer> heads = new ArrayList<Integer>();
+	private static final ArrayList<Double> weights = new ArrayList<Double>();
+	private static double[] xs; // Node positions, null if unknown
+	private static double[] ys;
+
+	public static void main(String[] args) throws Exception {
+		String network = args.length > 0 ? args[0] : "60";
+		int pairs = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		int refreshes = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+		if (network.endsWith(".xml")) {
+			loadSumoNetwork(network);
+		} else {
+			buildGrid(Integer.parseInt(network), new Random(7));
+		}
+		int m = tails.size();
+		int[] tail = new int[m];
+		int[] head = new int[m];
+		double[] weight = new double[m];
+		for (int k = 0; k < m; k++) {
+			tail[k] = tails.get(k);
+			head[k] = heads.get(k);
+			weight[k] = weights.get(k);
+		}
+		System.out.println(String.format("network=%s nodes=%d edges=%d pairs=%d", network, nodeCount, m, pairs));
+
+		long start = System.nanoTime();
+		ContractionHierarchy cch = new ContractionHierarchy(nodeCount, tail, head, xs, ys);
+		System.out.println(String.format("preprocess ms=%.1f arcs=%d triangles=%d levels=%d",
+				(System.nanoTime() - start) / 1e6, cch.getArcCount(), cch.getTriangleCount(), cch.getLevelCount()));
+
+		// Road graph with the original edge index as the road ID of each arc
+		int[] edgeIDs = new int[m];
+		for (int k = 0; k < m; k++) edgeIDs[k] = k;
+		ArrayList<Integer> nodes = new ArrayList<Integer>(nodeCount);
+		for (int u = 0; u < nodeCount; u++) nodes.add(u);
+		start = System.nanoTime();
+		RoadGraph roadGraph = new RoadGraph(nodes, tail, head, edgeIDs, weight);
+		System.out.println(String.format("road graph ms=%.1f arcs=%d", (System.nanoTime() - start) / 1e6,
+				roadGraph.getArcCount()));
+
+		DefaultDirectedWeightedGraph<Integer, DefaultWeightedEdge> graph =
+				new DefaultDirectedWeightedGraph<Integer, DefaultWeightedEdge>(DefaultWeightedEdge.class);
+		for (int u = 0; u < nodeCount; u++) graph.addVertex(u);
+		DefaultWeightedEdge[] edges = new DefaultWeightedEdge[m];
+		for (int k = 0; k < m; k++) {
+			if (tail[k] == head[k]) continue;
+			DefaultWeightedEdge existing = graph.getEdge(tail[k], head[k]);
+			if (existing != null) { // Parallel edges: the graph keeps the lighter one
+				if (weight[k] < graph.getEdgeWeight(existing)) graph.setEdgeWeight(existing, weight[k]);
+				continue;
+			}
+			edges[k] = graph.addEdge(tail[k], head[k]);
+		}
+
+		Random rand = new Random(42);
+		long failures = 0;
+		long directTotalNanos = 0L;
+		long cchTotalNanos = 0L;
+		for (int round = 0; round <= refreshes; round++) {
+			if (round > 0) { // Congestion at a refresh: every weight scaled by a random factor
+				for (int k = 0; k < m; k++) weight[k] = weights.get(k) * (1.0 + 2.0 * rand.nextDouble());
+				for (int e = 0; e < roadGraph.getArcCount(); e++) { // In place, as the network refresh does
+					int k = roadGraph.getArcRoad(e);
+					roadGraph.setWeight(roadGraph.getArcTail(e), roadGraph.getArcHead(e), weight[k]);
+				}
+			}
+			for (int k = 0; k < m; k++) {
+				if (edges[k] != null) graph.setEdgeWeight(edges[k], weight[k]);
+			}
+			for (int k = 0; k < m; k++) { // Parallel edges after the rescale
+				if (edges[k] == null && tail[k] != head[k]) {
+					DefaultWeightedEdge existing = graph.getEdge(tail[k], head[k]);
+					if (weight[k] < graph.getEdgeWeight(existing)) graph.setEdgeWeight(existing, weight[k]);
+				}
+			}
+			start = System.nanoTime();
+			ContractionHierarchy.Metric metric = cch.customize(weight);
+			double customizeMs = (System.nanoTime() - start) / 1e6;
+
+			int[] sources = new int[pairs];
+			int[] targets = new int[pairs];
+			for (int i = 0; i < pairs; i++) {
+				sources[i] = rand.nextInt(nodeCount);
+				targets[i] = rand.nextInt(nodeCount);
+			}
+			BidirectionalDijkstraShortestPath<Integer, DefaultWeightedEdge> dijkstra =
+					new BidirectionalDijkstraShortestPath<Integer, DefaultWeightedEdge>(graph);
+			double[] expected = new double[pairs];
+			start = System.nanoTime();
+			for (int i = 0; i < pairs; i++) {
+				GraphPath<Integer, DefaultWeightedEdge> path = dijkstra.getPath(sources[i], targets[i]);
+				expected[i] = path == null ? Double.POSITIVE_INFINITY : path.getWeight();
+			}
+			long jgraphtNanos = System.nanoTime() - start;
+
+			ContractionHierarchy.Query query = new ContractionHierarchy.Query(cch);
+			IntList arcs = new IntList();
+			double[] actual = new double[pairs];
+			start = System.nanoTime();
+			for (int i = 0; i < pairs; i++) {
+				arcs.clear();
+				actual[i] = cch.query(metric, query, sources[i], targets[i], arcs);
+			}
+			long cchNanos = System.nanoTime() - start;
+
+			RoadGraph.Search search = new RoadGraph.Search(roadGraph);
+			double[] direct = new double[pairs];
+			int[][] directPaths = new int[pairs][];
+			start = System.nanoTime();
+			for (int i = 0; i < pairs; i++) {
+				arcs.clear();
+				direct[i] = roadGraph.shortestPath(search, sources[i], targets[i], arcs);
+				directPaths[i] = roadGraph.toRoadIDs(RoadGraph.toArray(arcs), 0);
+			}
+			long directNanos = System.nanoTime() - start;
+
+			long roundFailures = 0;
+			for (int i = 0; i < pairs; i++) {
+				arcs.clear();
+				cch.query(metric, query, sources[i], targets[i], arcs);
+				boolean same = sameWeight(expected[i], actual[i])
+						&& validPath(RoadGraph.toArray(arcs), sources[i], targets[i], tail, head, weight, actual[i])
+						&& sameWeight(expected[i], direct[i])
+						&& validPath(directPaths[i], sources[i], targets[i], tail, head, weight, direct[i]);
+				if (!same) {
+					if (roundFailures < 5) {
+						System.out.println(String.format("MISMATCH %d -> %d jgrapht=%.9f dijkstra=%.9f cch=%.9f",
+								sources[i], targets[i], expected[i], direct[i], actual[i]));
+					}
+					roundFailures++;
+				}
+			}
+
+			// k-shortest paths on a sample of the pairs
+			YenKShortestPath<Integer, DefaultWeightedEdge> yen = new YenKShortestPath<Integer, DefaultWeightedEdge>(graph);
+			for (int i = 0; i < Math.min(pairs, K_SAMPLES); i++) {
+				if (sources[i] == targets[i]) continue;
+				List<GraphPath<Integer, DefaultWeightedEdge>> reference = yen.getPaths(sources[i], targets[i], K);
+				List<RoadGraph.Path> paths = roadGraph.kShortestPaths(search, sources[i], targets[i], K);
+				boolean same = reference.size() == paths.size();
+				for (int j = 0; same && j < paths.size(); j++) {
+					same = sameWeight(reference.get(j).getWeight(), paths.get(j).weight) && validPath(
+							roadGraph.toRoadIDs(paths.get(j).arcs, 0), sources[i], targets[i], tail, head, weight,
+							paths.get(j).weight);
+				}
+				if (!same) {
+					if (roundFailures < 5) {
+						System.out.println(String.format("K MISMATCH %d -> %d jgrapht=%d paths dijkstra=%d paths",
+								sources[i], targets[i], reference.size(), paths.size()));
+					}
+					roundFailures++;
+				}
+			}
+			// One-to-all trees, as the zone skim runs them, on a sample of the sources
+			double[] arcWeight = roadGraph.getWeights();
+			for (int i = 0; i < Math.min(pairs, K_SAMPLES); i++) {
+				roadGraph.oneToAll(search, sources[i], arcWeight, arcWeight);
+				double tree = search.isReached(targets[i]) ? search.getTime(targets[i]) : Double.POSITIVE_INFINITY;
+				boolean same = sameWeight(expected[i], tree)
+						&& (Double.isInfinite(tree) || search.getLength(targets[i]) == tree);
+				if (!same) {
+					if (roundFailures < 5) {
+						System.out.println(String.format("TREE MISMATCH %d -> %d jgrapht=%.9f tree=%.9f",
+								sources[i], targets[i], expected[i], tree));
+					}
+					roundFailures++;
+				}
+			}
+			failures += roundFailures;
+			directTotalNanos += directNanos;
+			cchTotalNanos += cchNanos;
+			System.out.println(String.format("round %d customize ms=%.1f us/query jgrapht=%.1f dijkstra=%.1f "
+					+ "cch=%.2f cch speedup over dijkstra=%.1fx mismatches=%d", round, customizeMs,
+					jgraphtNanos / 1e3 / pairs, directNanos / 1e3 / pairs, cchNanos / 1e3 / pairs,
+					(double) directNanos / cchNanos, roundFailures));
+		}
+		System.out.println(String.format("cch speedup over dijkstra, all rounds: %.1fx",
+				(double) directTotalNanos / cchTotalNanos));
+		if (failures > 0) {
+			System.out.println("FAIL: " + failures + " paths differ between the engines");
+			System.exit(1);
+		}
+		System.out.println("OK: road graph and contraction hierarchy paths match JGraphT");
+	}
+
+	private static boolean sameWeight(double expected, double actual) {
+		return Double.isInfinite(expected) ? Double.isInfinite(actual)
+				: Math.abs(actual - expected) <= TOLERANCE * Math.max(1.0, expected);
+	}
+
+	// The edges must lead from source to target and add up to the reported weight
+	private static boolean validPath(int[] edges, int source, int target, int[] tail, int[] head,
+			double[] weight, double total) {
+		if (Double.isInfinite(total)) return edges.length == 0;
+		int at = source;
+		double sum = 0.0;
+		for (int k : edges) {
+			if (tail[k] != at) return false;
+			at = head[k];
+			sum += weight[k];
+		}
+		return at == target && Math.abs(sum - total) <= TOLERANCE * Math.max(1.0, total);
+	}
+
+	private static void addEdge(int from, int to, double weight) {
+		tails.add(from);
+		heads.add(to);
+		weights.add(weight);
+	}
+
+	// Grid of size x size intersections; a third of the streets are one-way
+	private static void buildGrid(int size, Random rand) {
+		nodeCount = size * size;
+		xs = new double[nodeCount];
+		ys = new double[nodeCount];
+		for (int r = 0; r < size; r++) {
+			for (int c = 0; c < size; c++) {
+				int u = r * size + c;
+				xs[u] = c;
+				ys[u] = r;
+				if (c + 1 < size) addStreet(u, u + 1, rand);
+				if (r + 1 < size) addStreet(u, u + size, rand);
+			}
+		}
+	}
+
+	private static void addStreet(int a, int b, Random rand) {
+		double travelTime = 5.0 + 25.0 * rand.nextDouble();
+		double kind = rand.nextDouble();
+		if (kind >= 1.0 / 3) {
+			addEdge(a, b, travelTime);
+			addEdge(b, a, travelTime * (0.8 + 0.4 * rand.nextDouble()));
+		} else if (kind < 1.0 / 6) {
+			addEdge(a, b, travelTime);
+		} else {
+			addEdge(b, a, travelTime);
+		}
+	}
+
+	// Non-internal edges of a SUMO network, weighted by length over the speed of their first lane
+	private static void loadSumoNetwork(String file) throws IOException, XMLStreamException {
+		HashMap<String, Integer> nodes = new HashMap<String, Integer>();
+		HashMap<String, double[]> junctions = new HashMap<String, double[]>();
+		try (InputStream in = new FileInputStream(file)) {
+			XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+			String from = null;
+			String to = null;
+			boolean laneSeen = false;
+			while (reader.hasNext()) {
+				int event = reader.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					String name = reader.getLocalName();
+					if ("edge".equals(name)) {
+						boolean internal = "internal".equals(reader.getAttributeValue(null, "function"));
+						from = internal ? null : reader.getAttributeValue(null, "from");
+						to = internal ? null : reader.getAttributeValue(null, "to");
+						laneSeen = false;
+					} else if ("lane".equals(name) && from != null && to != null && !laneSeen) {
+						laneSeen = true;
+						double length = Double.parseDouble(reader.getAttributeValue(null, "length"));
+						double speed = Double.parseDouble(reader.getAttributeValue(null, "speed"));
+						addEdge(nodeIndex(nodes, from), nodeIndex(nodes, to), length / Math.max(0.1, speed));
+					} else if ("junction".equals(name)) {
+						junctions.put(reader.getAttributeValue(null, "id"),
+								new double[] { Double.parseDouble(reader.getAttributeValue(null, "x")),
+										Double.parseDouble(reader.getAttributeValue(null, "y")) });
+					}
+				} else if (event == XMLStreamConstants.END_ELEMENT && "edge".equals(reader.getLocalName())) {
+					from = null;
+					to = null;
+				}
+			}
+			reader.close();
+		}
+		nodeCount = nodes.size();
+		xs = new double[nodeCount];
+		ys = new double[nodeCount];
+		for (HashMap.Entry<String, Integer> node : nodes.entrySet()) {
+			double[] position = junctions.get(node.getKey());
+			if (position == null) { // Separators along BFS distance instead
+				xs = null;
+				ys = null;
+				return;
+			}
+			xs[node.getValue()] = position[0];
+			ys[node.getValue()] = position[1];
+		}
+	}
+
+	private static int nodeIndex(HashMap<String, Integer> nodes, String id) {
+		Integer index = nodes.get(id);
+		if (index == null) {
+			index = nodes.size();
+			nodes.put(id, index);
+		}
+		return index;
+	}
+}
@@ -0,0 +1,233 @@
+package mets_r.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import mets_r.ContextCreator;
+import mets_r.facility.Road;
+import mets_r.facility.Zone;
+
+/**
+ * Zone-to-zone travel costs under one set of routing weights (SKIM_MATRIX).
+ * Each origin zone runs one Dijkstra from its departure road to the whole
+ * network, in parallel across zones on the scheduler's pool, and the travel time and length along the
+ * tree to every destination zone's arrival road are stored in dense row-major
+ * arrays. A cost is then an array read instead of a point-to-point search.
+ *
+ * Costs match the sums over the shortest path route between the two roads,
+ * the roads themselves included; NaN marks a pair without a route.
+ */
+public final class SkimMatrix {
+	private static final int LEAF_ROWS = 4; // Origin zones per fork/join leaf
+
+	private final long epoch;
+	private final int zoneCount;
+	private final int[] zoneIndex; // Zone ID to row and column, -1 for none
+	private final double[] time; // [origin * zoneCount + destination]
+	private final double[] distance;
+	private final int unreachable;
+	private final long computeNanos;
+
+	private SkimMatrix(long epoch, int[] zoneIndex, int zoneCount, double[] time, double[] distance,
+			long computeNanos) {
+		this.epoch = epoch;
+		this.zoneIndex = zoneIndex;
+		this.zoneCount = zoneCount;
+		this.time = time;
+		this.distance = distance;
+		this.computeNanos = computeNanos;
+		int unreachable = 0;
+		for (double t : time) {
+			if (Double.isNaN(t)) unreachable++;
+		}
+		this.unreachable = unreachable;
+	}
+
+	/**
+	 * Compute the skim of the zones on the routing graph with the current road
+	 * travel times, tagged with the routing weight epoch it was computed under.
+	 * The origin rows are searched on the pool, or on the caller if it is null.
+	 */
+	static SkimMatrix compute(VehicleRouting routing, Collection<Zone> zoneCollection, long epoch,
+			ForkJoinPool pool) {
+		long start = System.nanoTime();
+		List<Zone> zones = new ArrayList<Zone>(zoneCollection);
+		Collections.sort(zones, new Comparator<Zone>() {
+			@Override
+			public int compare(Zone a, Zone b) {
+				return Integer.compare(a.getID(), b.getID());
+			}
+		});
+		int maxID = -1;
+		for (Zone zone : zones) maxID = Math.max(maxID, zone.getID());
+		int[] zoneIndex = new int[maxID + 1];
+		Arrays.fill(zoneIndex, -1);
+		for (int i = 0; i < zones.size(); i++) {
+			if (zones.get(i).getID() >= 0) zoneIndex[zones.get(i).getID()] = i;
+		}
+		Rows rows = new Rows(routing, zones);
+		if (pool != null && rows.n > LEAF_ROWS) {
+			pool.invoke(new RowTask(rows, 0, rows.n));
+		} else {
+			rows.compute(0, rows.n);
+		}
+		return new SkimMatrix(epoch, zoneIndex, rows.n, rows.time, rows.distance, System.nanoTime() - start);
+	}
+
+	// Inputs and results of one skim computation, one origin zone per row
+	private static final class Rows {
+		private final VehicleRouting routing;
+		private final RoadGraph graph;
+		private final int n;
+		private final Road[] originRoads;
+		private final Road[] destRoads;
+		private final int[] sources;
+		private final int[] targets;
+		private final double[] arcTime;
+		private final double[] arcLength;
+		private final double[] time;
+		private final double[] distance;
+
+		Rows(VehicleRouting routing, List<Zone> zones) {
+			this.routing = routing;
+			this.graph = routing.getRoadGraph();
+			this.n = zones.size();
+			this.originRoads = new Road[this.n];
+			this.destRoads = new Road[this.n];
+			this.sources = new int[this.n];
+			this.targets = new int[this.n];
+			for (int i = 0; i < this.n; i++) {
+				Zone zone = zones.get(i);
+				this.originRoads[i] = getRoad(zone.getClosestRoad(false));
+				this.destRoads[i] = getRoad(zone.getClosestRoad(true));
+				this.sources[i] = this.originRoads[i] == null ? -1
+						: this.graph.indexOf(this.originRoads[i].getDownStreamNode());
+				this.targets[i] = this.destRoads[i] == null ? -1
+						: this.graph.indexOf(this.destRoads[i].getUpStreamNode());
+			}
+
+			// Time and length of each arc; turns between roads add nothing
+			int m = this.graph.getArcCount();
+			this.arcTime = new double[m];
+			this.arcLength = new double[m];
+			for (int e = 0; e < m; e++) {
+				int roadID = this.graph.getArcRoad(e);
+				Road road = roadID < 0 ? null : ContextCreator.getRoadContext().get(roadID);
+				if (road == null) continue;
+				this.arcTime[e] = road.getTravelTime();
+				this.arcLength[e] = road.getLength();
+			}
+
+			this.time = new double[this.n * this.n];
+			this.distance = new double[this.n * this.n];
+			Arrays.fill(this.time, Double.NaN);
+			Arrays.fill(this.distance, Double.NaN);
+		}
+
+		void compute(int lo, int hi) {
+			for (int i = lo; i < hi; i++) this.computeRow(i);
+		}
+
+		private void computeRow(int i) {
+			int n = this.n;
+			Road o = this.originRoads[i];
+			if (o == null) return;
+			RoadGraph.Search s = null;
+			for (int j = 0; j < n; j++) {
+				Road d = this.destRoads[j];
+				if (d == null) continue;
+				double t;
+				double l;
+				if (o.getID() == d.getID()) {
+					t = o.getTravelTime();
+					l = o.getLength();
+				} else {
+					int target = this.targets[j];
+					if (!o.canBeOrigin() || !d.canBeDest() || this.sources[i] < 0 || target < 0) continue;
+					if (s == null) {
+						s = this.routing.search();
+						this.graph.oneToAll(s, this.sources[i], this.arcTime, this.arcLength);
+					}
+					if (!s.isReached(target)) continue;
+					t = o.getTravelTime() + s.getTime(target) + d.getTravelTime();
+					l = o.getLength() + s.getLength(target) + d.getLength();
+				}
+				if (Double.isNaN(t) || Double.isInfinite(t) || Double.isNaN(l) || Double.isInfinite(l)) continue;
+				this.time[i * n + j] = t;
+				this.distance[i * n + j] = l;
+			}
+		}
+	}
+
+	// Halves the origin rows until a leaf is small enough for one worker
+	@SuppressWarnings("serial")
+	private static final class RowTask extends RecursiveAction {
+		private final Rows rows;
+		private final int lo;
+		private final int hi;
+
+		RowTask(Rows rows, int lo, int hi) {
+			this.rows = rows;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.hi - this.lo <= LEAF_ROWS) {
+				this.rows.compute(this.lo, this.hi);
+				return;
+			}
+			int mid = (this.lo + this.hi) >>> 1;
+			invokeAll(new RowTask(this.rows, this.lo, mid), new RowTask(this.rows, mid, this.hi));
+		}
+	}
+
+	private static Road getRoad(Integer roadID) {
+		return roadID == null ? null : ContextCreator.getRoadContext().get(roadID);
+	}
+
+	private int indexOf(int zoneID) {
+		return zoneID < 0 || zoneID >= this.zoneIndex.length ? -1 : this.zoneIndex[zoneID];
+	}
+
+	/** Routing weight epoch the skim was computed under. */
+	public long getEpoch() {
+		return this.epoch;
+	}
+
+	/** Whether both zones were part of the skim. */
+	public boolean contains(int originZoneID, int destZoneID) {
+		return this.indexOf(originZoneID) >= 0 && this.indexOf(destZoneID) >= 0;
+	}
+
+	/** Travel time between the zones, or NaN if there is no route or a zone is not in the skim. */
+	public double getTime(int originZoneID, int destZoneID) {
+		int i = this.indexOf(originZoneID);
+		int j = this.indexOf(destZoneID);
+		return i < 0 || j < 0 ? Double.NaN : this.time[i * this.zoneCount + j];
+	}
+
+	/** Route length between the zones, or NaN if there is no route or a zone is not in the skim. */
+	public double getDistance(int originZoneID, int destZoneID) {
+		int i = this.indexOf(originZoneID);
+		int j = this.indexOf(destZoneID);
+		return i < 0 || j < 0 ? Double.NaN : this.distance[i * this.zoneCount + j];
+	}
+
+	LinkedHashMap<String, Object> getStatus() {
+		LinkedHashMap<String, Object> status = new LinkedHashMap<String, Object>();
+		status.put("zones", this.zoneCount);
+		status.put("epoch", this.epoch);
+		status.put("unreachable", this.unreachable);
+		status.put("computeNanos", this.computeNanos);
+		return status;
+	}
+}
@@ -1,6 +1,8 @@
 package mets_r.routing;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Random;
 
@@ -9,6 +11,8 @@ import org.jgrapht.alg.shortestpath.YenKShortestPath;
 import org.jgrapht.graph.DefaultDirectedWeightedGraph;
 import org.jgrapht.GraphPath;
 
+import com.vividsolutions.jts.geom.Coordinate;
+
 import repast.simphony.context.space.graph.ContextJungNetwork;
 import repast.simphony.space.graph.JungNetwork;
 import repast.simphony.space.graph.Network;
@@ -20,8 +24,23 @@ import mets_r.facility.Node;
 import mets_r.facility.Road;
 
 public class VehicleRouting {
+	// Object graph of the road network, only built for ROUTING_ENGINE = JGRAPHT
 	public DefaultDirectedWeightedGraph<Node, RepastEdge<Node>> transformedNetwork = null;
 
+	// Primitive routing graph of the road network, searched with per-thread state; with JGRAPHT
+	// it is only built for the zone skim (SKIM_MATRIX)
+	private RoadGraph graph;
+	private final ThreadLocal<RoadGraph.Search> search = new ThreadLocal<RoadGraph.Search>();
+
+	// Customizable contraction hierarchy (ROUTING_ENGINE = CCH), customized lazily per weight epoch
+	private ContractionHierarchy cch;
+	private volatile ContractionHierarchy.Metric cchMetric;
+	private volatile long cchMetricEpoch = Long.MIN_VALUE;
+	private long cchPreprocessNanos;
+	private long cchCustomizations;
+	private long cchLastCustomizeNanos;
+	private final ThreadLocal<ContractionHierarchy.Query> cchQuery = new ThreadLocal<ContractionHierarchy.Query>();
+
 	@SuppressWarnings({"unchecked", "rawtypes"})
 	public VehicleRouting(Network<Node> roadNetwork) {
 		Graph<Node, RepastEdge<Node>> graphA = null;
@@ -29,17 +48,178 @@ public class VehicleRouting {
 			graphA = ((JungNetwork) roadNetwork).getGraph();
 		else if (roadNetwork instanceof ContextJungNetwork)
 			graphA = ((ContextJungNetwork) roadNetwork).getGraph();
-		NodeToJgraph<Node> converter = new NodeToJgraph<Node>();
-		transformedNetwork = converter.convertToJgraph(graphA);
+		if ("JGRAPHT".equals(GlobalVariables.ROUTING_ENGINE)) {
+			NodeToJgraph<Node> converter = new NodeToJgraph<Node>();
+			transformedNetwork = converter.convertToJgraph(graphA);
+			if (GlobalVariables.SKIM_MATRIX) this.graph = buildRoadGraph(graphA);
+			return;
+		}
+		this.graph = buildRoadGraph(graphA);
+		if ("CCH".equals(GlobalVariables.ROUTING_ENGINE)) {
+			this.buildContractionHierarchy(graphA);
+		}
+	}
+
+	/** Routing graph with the current weights and the road of every edge, resolved once. */
+	private static RoadGraph buildRoadGraph(Graph<Node, RepastEdge<Node>> network) {
+		List<Node> nodes = new ArrayList<Node>(network.getVertices());
+		HashMap<Node, Integer> index = new HashMap<Node, Integer>(2 * nodes.size());
+		for (Node node : nodes) index.put(node, index.size());
+		int m = network.getEdgeCount();
+		int[] tail = new int[m];
+		int[] head = new int[m];
+		int[] road = new int[m];
+		double[] weight = new double[m];
+		int k = 0;
+		for (RepastEdge<Node> edge : network.getEdges()) {
+			tail[k] = index.get(network.getSource(edge));
+			head[k] = index.get(network.getDest(edge));
+			road[k] = ContextCreator.getCityContext().getRoadIDFromEdge(edge);
+			weight[k] = edge.getWeight();
+			k++;
+		}
+		return new RoadGraph(nodes, tail, head, road, weight);
+	}
+
+	/** Build the metric-independent hierarchy over the arcs of the routing graph. */
+	private void buildContractionHierarchy(Graph<Node, RepastEdge<Node>> network) {
+		long start = System.nanoTime();
+		int[] tail = new int[this.graph.getArcCount()];
+		int[] head = new int[tail.length];
+		for (int e = 0; e < tail.length; e++) {
+			tail[e] = this.graph.getArcTail(e);
+			head[e] = this.graph.getArcHead(e);
+		}
+		double[] x = new double[this.graph.getNodeCount()];
+		double[] y = new double[x.length];
+		for (Node node : network.getVertices()) { // A node stands for one end of its road
+			Road road = node.getRoad();
+			Coordinate coord = road == null ? null
+					: node == road.getUpStreamNode() ? road.getStartCoord() : road.getEndCoord();
+			if (coord == null) { // Separators along BFS distance instead
+				x = null;
+				y = null;
+				break;
+			}
+			x[this.graph.indexOf(node)] = coord.x;
+			y[this.graph.indexOf(node)] = coord.y;
+		}
+		this.cch = new ContractionHierarchy(this.graph.getNodeCount(), tail, head, x, y);
+		this.cchPreprocessNanos = System.nanoTime() - start;
+		ContextCreator.logger.info("Contraction hierarchy built: nodes=" + this.cch.getNodeCount()
+				+ " arcs=" + this.cch.getArcCount() + " triangles=" + this.cch.getTriangleCount()
+				+ " levels=" + this.cch.getLevelCount() + " ms=" + this.cchPreprocessNanos / 1000000);
+	}
+
+	/** Hierarchy metric for the current routing weights, customized once per weight epoch. */
+	private ContractionHierarchy.Metric currentMetric() {
+		long epoch = RouteContext.getWeightEpoch();
+		if (this.cchMetricEpoch == epoch) return this.cchMetric;
+		synchronized (this) {
+			if (this.cchMetricEpoch != epoch) {
+				long start = System.nanoTime();
+				this.cchMetric = this.cch.customize(this.graph.getWeights());
+				this.cchMetricEpoch = epoch;
+				this.cchCustomizations++;
+				this.cchLastCustomizeNanos = System.nanoTime() - start;
+			}
+			return this.cchMetric;
+		}
 	}
 
-	public void setEdgeWeight(Node node1, Node node2, double weight) {
-//		ContextCreator.logger.info("Node 1" + node1.getID() + " Node 2" + node2.getID() + " Weight " + weight); 
-		transformedNetwork.setEdgeWeight(transformedNetwork.getEdge(node1, node2), weight);
+	/** Primitive routing graph, or null for ROUTING_ENGINE = JGRAPHT. */
+	RoadGraph getRoadGraph() {
+		return this.graph;
+	}
+
+	/** Search state of the calling thread. */
+	RoadGraph.Search search() {
+		RoadGraph.Search s = this.search.get();
+		if (s == null) {
+			s = new RoadGraph.Search(this.graph);
+			this.search.set(s);
+		}
+		return s;
+	}
+
+	/**
+	 * IDs of the roads on the shortest path between the nodes, excluding the
+	 * roads the nodes belong to, or null if there is no path.
+	 */
+	public int[] shortestRoadIDs(Node currNode, Node destNode) {
+		if (this.graph == null || transformedNetwork != null) return null;
+		int source = this.graph.indexOf(currNode);
+		int target = this.graph.indexOf(destNode);
+		if (source < 0 || target < 0) return null;
+		RoadGraph.Search s = this.search();
+		IntList arcs = s.arcs;
+		arcs.clear();
+		double weight;
+		if (this.cch != null) {
+			ContractionHierarchy.Query query = this.cchQuery.get();
+			if (query == null) {
+				query = new ContractionHierarchy.Query(this.cch);
+				this.cchQuery.set(query);
+			}
+			weight = this.cch.query(this.currentMetric(), query, source, target, arcs);
+		} else {
+			weight = this.graph.shortestPath(s, source, target, arcs);
+		}
+		if (Double.isInfinite(weight)) return null;
+		return this.graph.toRoadIDs(RoadGraph.toArray(arcs), 0);
+	}
+
+	/** Size of the routing graph and preprocessing counters of the engine. */
+	public synchronized LinkedHashMap<String, Object> getEngineStatus() {
+		LinkedHashMap<String, Object> status = new LinkedHashMap<String, Object>();
+		status.put("engine", GlobalVariables.ROUTING_ENGINE);
+		if (this.graph != null) {
+			status.put("nodes", this.graph.getNodeCount());
+			status.put("edges", this.graph.getArcCount());
+		}
+		if (this.cch != null) {
+			status.put("arcs", this.cch.getArcCount());
+			status.put("triangles", this.cch.getTriangleCount());
+			status.put("levels", this.cch.getLevelCount());
+			status.put("preprocessNanos", this.cchPreprocessNanos);
+			status.put("customizations", this.cchCustomizations);
+			status.put("lastCustomizeNanos", this.cchLastCustomizeNanos);
+		}
+		return status;
+	}
+
+	/** Set the weight of the edge between the nodes; returns whether the weight changed. */
+	public boolean setEdgeWeight(Node node1, Node node2, double weight) {
+//		ContextCreator.logger.info("Node 1" + node1.getID() + " Node 2" + node2.getID() + " Weight " + weight);
+		boolean changed = false;
+		if (this.graph != null) {
+			changed = this.graph.setWeight(this.graph.indexOf(node1), this.graph.indexOf(node2), weight);
+		}
+		if (transformedNetwork != null) {
+			RepastEdge<Node> edge = transformedNetwork.getEdge(node1, node2);
+			changed = transformedNetwork.getEdgeWeight(edge) != weight;
+			transformedNetwork.setEdgeWeight(edge, weight);
+		}
+		return changed;
 	}
 
 	public List<List<Road>> computeKRoute(int K, Road currentRoad, Road destRoad, Node currNode,
 			Node destNode) {
+		if (transformedNetwork != null) {
+			return this.computeKRouteOnObjectGraph(K, currentRoad, destRoad, currNode, destNode);
+		}
+		List<List<Road>> roadPath_ = new ArrayList<List<Road>>();
+		int source = this.graph.indexOf(currNode);
+		int target = this.graph.indexOf(destNode);
+		if (source < 0 || target < 0) return roadPath_;
+		for (RoadGraph.Path path : this.graph.kShortestPaths(this.search(), source, target, K)) {
+			roadPath_.add(toRoadPath(currentRoad, this.graph.toRoadIDs(path.arcs, 1), destRoad));
+		}
+		return roadPath_;
+	}
+
+	private List<List<Road>> computeKRouteOnObjectGraph(int K, Road currentRoad, Road destRoad, Node currNode,
+			Node destNode) {
 		List<List<Road>> roadPath_ = new ArrayList<List<Road>>();
 		YenKShortestPath<Node, RepastEdge<Node>> ksp = new YenKShortestPath<Node, RepastEdge<Node>>(
 				transformedNetwork);
@@ -63,100 +243,130 @@ public class VehicleRouting {
 				roadPath_.add(oneRoadPath_);
 			}
 		}
-		
+
+		return roadPath_;
+	}
+
+	// Origin road, the roads of the path and the destination road
+	private static List<Road> toRoadPath(Road currentRoad, int[] roadIDs, Road destRoad) {
+		List<Road> roadPath_ = new ArrayList<Road>(roadIDs.length + 2);
+		roadPath_.add(currentRoad);
+		for (int roadID : roadIDs) {
+			roadPath_.add(ContextCreator.getRoadContext().get(roadID));
+		}
+		roadPath_.add(destRoad);
 		return roadPath_;
 	}
- 
+
+	// Index of the path to take under the logit choice over path weights
+	private static int chooseLogit(double[] pathLength, double theta, Random rand) {
+		double total = 0.0;
+		for (int i = 0; i < pathLength.length; i++) {
+			total = total + Math.exp(-theta * pathLength[i]);
+		}
+		double random = rand.nextDouble();
+		double cumProb = 0.0;
+		for (int i = 0; i < pathLength.length; i++) {
+			cumProb += Math.exp(-theta * pathLength[i]) / total;
+			if (random < cumProb) return i;
+		}
+		return 0;
+	}
+
 	/* Perform the routing computation */
 	public List<Road> computeRoute(Road currentRoad, Road destRoad, Node currNode, Node destNode, Random rand) {
+		if (currentRoad.getID() == destRoad.getID()) { // Origin and destination road is the same
+			List<Road> roadPath_ = new ArrayList<Road>();
+			roadPath_.add(currentRoad);
+			return roadPath_;
+		}
+		if (transformedNetwork != null) {
+			return this.computeRouteOnObjectGraph(currentRoad, destRoad, currNode, destNode, rand);
+		}
+		int[] roadIDs = null;
+		if (GlobalVariables.K_SHORTEST_PATH && rand != null) { // rand is null when this is used merely for travel time estimation
+			// Find the k-shortest path
+			int source = this.graph.indexOf(currNode);
+			int target = this.graph.indexOf(destNode);
+			if (source >= 0 && target >= 0) {
+				List<RoadGraph.Path> paths = this.graph.kShortestPaths(this.search(), source, target,
+						GlobalVariables.K_VALUE);
+				if (!paths.isEmpty()) {
+					double[] pathLength = new double[paths.size()];
+					for (int i = 0; i < pathLength.length; i++) pathLength[i] = paths.get(i).weight;
+					int k = chooseLogit(pathLength, GlobalVariables.THETA_LOGIT, rand);
+					roadIDs = this.graph.toRoadIDs(paths.get(k).arcs, 0);
+				}
+			}
+		} else { // Single shortest path
+			roadIDs = this.shortestRoadIDs(currNode, destNode);
+		}
+		if (roadIDs == null) {
+			ContextCreator.logger.warn("No routing path between " + roadLabel(currentRoad) + ", "
+					+ roadLabel(destRoad) + " originAllowed=" + currentRoad.canBeOrigin()
+					+ " destAllowed=" + destRoad.canBeDest());
+			return null;
+		}
+		return toRoadPath(currentRoad, roadIDs, destRoad);
+	}
+
+	private List<Road> computeRouteOnObjectGraph(Road currentRoad, Road destRoad, Node currNode, Node destNode,
+			Random rand) {
 		List<Road> roadPath_ = null;
 		List<RepastEdge<Node>> shortestPath = null;
 
 		// Get the edges that make up the shortest path
 		int K = GlobalVariables.K_VALUE;
 		double theta = GlobalVariables.THETA_LOGIT;
-		
-		if (currentRoad.getID() == destRoad.getID()) { // Origin and destination road is the same
-			roadPath_ = new ArrayList<Road>();
-			roadPath_.add(currentRoad);
-		}
-		else {
-			if (GlobalVariables.K_SHORTEST_PATH && rand != null) { // rand is null when this is used merely for travel time estimation
-				// Find the k-shortest path
-				YenKShortestPath<Node, RepastEdge<Node>> ksp = new YenKShortestPath<Node, RepastEdge<Node>>(
+
+		if (GlobalVariables.K_SHORTEST_PATH && rand != null) { // rand is null when this is used merely for travel time estimation
+			// Find the k-shortest path
+			YenKShortestPath<Node, RepastEdge<Node>> ksp = new YenKShortestPath<Node, RepastEdge<Node>>(
+					transformedNetwork);
+			List<GraphPath<Node, RepastEdge<Node>>> kshortestPath = ksp.getPaths(currNode, destNode, K);
+			if (kshortestPath == null || kshortestPath.isEmpty()) {
+				ContextCreator.logger.warn("No routing path between " + roadLabel(currentRoad) + ", "
+						+ roadLabel(destRoad) + " originAllowed=" + currentRoad.canBeOrigin()
+						+ " destAllowed=" + destRoad.canBeDest());
+				return null;
+			}
+
+			double[] pathLength = new double[kshortestPath.size()];
+			for (int i = 0; i < pathLength.length; i++) {
+				pathLength[i] = kshortestPath.get(i).getWeight();
+			}
+			shortestPath = kshortestPath.get(chooseLogit(pathLength, theta, rand)).getEdgeList();
+
+		} else { // Single shortest path
+			try {
+				BidirectionalDijkstraShortestPath<Node, RepastEdge<Node>> sp = new BidirectionalDijkstraShortestPath<Node, RepastEdge<Node>>(
 						transformedNetwork);
-				List<GraphPath<Node, RepastEdge<Node>>> kshortestPath = ksp.getPaths(currNode, destNode, K);
-				if (kshortestPath == null || kshortestPath.isEmpty()) {
+				GraphPath<Node, RepastEdge<Node>> graphPath = sp.getPath(currNode, destNode);
+				if (graphPath == null) {
 					ContextCreator.logger.warn("No routing path between " + roadLabel(currentRoad) + ", "
 							+ roadLabel(destRoad) + " originAllowed=" + currentRoad.canBeOrigin()
 							+ " destAllowed=" + destRoad.canBeDest());
 					return null;
 				}
-	
-				List<Double> pathLength = new ArrayList<Double>();
-				List<Double> pathProb = new ArrayList<Double>();
-				List<Double> cumProb = new ArrayList<Double>();
-				double total = 0.0;
-	
-				for (GraphPath<Node, RepastEdge<Node>> kpath : kshortestPath) {
-					pathLength.add(kpath.getWeight());
-				}
-				for (int i = 0; i < kshortestPath.size(); i++) {
-					total = total + Math.exp(-theta * pathLength.get(i));
-				}
-	
-				// Calculate the probability
-				for (int i = 0; i < kshortestPath.size(); i++) {
-					double prob = Math.exp(-theta * pathLength.get(i)) / total;
-					pathProb.add(prob);
-					if (i == 0)
-						cumProb.add(i, prob);
-					else
-						cumProb.add(i, cumProb.get(i - 1) + prob);
-				}
-	
-				// Find the path to go
-				int k = 0;
-				double random = rand.nextDouble();
-				for (int i = 0; i < kshortestPath.size(); i++) {
-					if (random < cumProb.get(i)) {
-						k = i;
-						break;
-					}
-				}
-				shortestPath = kshortestPath.get(k).getEdgeList();
-	
-			} else { // Single shortest path
-				try {
-					BidirectionalDijkstraShortestPath<Node, RepastEdge<Node>> sp = new BidirectionalDijkstraShortestPath<Node, RepastEdge<Node>>(
-							transformedNetwork);
-					GraphPath<Node, RepastEdge<Node>> graphPath = sp.getPath(currNode, destNode);
-					if (graphPath == null) {
-						ContextCreator.logger.warn("No routing path between " + roadLabel(currentRoad) + ", "
-								+ roadLabel(destRoad) + " originAllowed=" + currentRoad.canBeOrigin()
-								+ " destAllowed=" + destRoad.canBeDest());
-						return null;
-					}
-					shortestPath = graphPath.getEdgeList();
-				}
-				catch(Exception e) {
-					ContextCreator.logger.warn("Routing engine error between " + roadLabel(currentRoad) + ", "
-							+ roadLabel(destRoad) + ": " + e.getMessage());
-				}
+				shortestPath = graphPath.getEdgeList();
 			}
-	
-			// Find the roads which are associated with these edges
-			if (shortestPath != null) { // Found the shortest path
-				roadPath_ = new ArrayList<Road>();
-				roadPath_.add(currentRoad);
-				for (RepastEdge<Node> edge : shortestPath) {
-					int roadID = ContextCreator.getCityContext().getRoadIDFromEdge(edge);
-					if(roadID >= 0) {
-						roadPath_.add(ContextCreator.getRoadContext().get(roadID));
-					}
+			catch(Exception e) {
+				ContextCreator.logger.warn("Routing engine error between " + roadLabel(currentRoad) + ", "
+						+ roadLabel(destRoad) + ": " + e.getMessage());
+			}
+		}
+
+		// Find the roads which are associated with these edges
+		if (shortestPath != null) { // Found the shortest path
+			roadPath_ = new ArrayList<Road>();
+			roadPath_.add(currentRoad);
+			for (RepastEdge<Node> edge : shortestPath) {
+				int roadID = ContextCreator.getCityContext().getRoadIDFromEdge(edge);
+				if(roadID >= 0) {
+					roadPath_.add(ContextCreator.getRoadContext().get(roadID));
 				}
-				roadPath_.add(destRoad);
 			}
+			roadPath_.add(destRoad);
 		}
 		return roadPath_;
 	}